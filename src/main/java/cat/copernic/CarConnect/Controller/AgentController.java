@@ -6,6 +6,7 @@ import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
 import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
 import cat.copernic.CarConnect.Service.MySQL.AgentService;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -13,7 +14,7 @@ import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -37,6 +38,9 @@ public class AgentController {
     @Autowired
     private AgentService agentService;  // Servicio para gestionar los agentes
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Autowired
     private LocalitzacioRepository localitzacioRepository;  // Repositorio de localizaciones
 
@@ -91,8 +95,6 @@ public class AgentController {
             agent.setDataContracte(LocalDate.parse(dataContact));
             String llicenciaCond = llicenciaConduc;
             agent.setLlicenciaConduccio(llicenciaCond);
-            // Instanciar el codificador de contraseñas BCrypt
-            BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
             // Encriptar la contraseña
             String encryptedPassword = passwordEncoder.encode(agent.getPassword());
             agent.setPassword(encryptedPassword);
@@ -137,19 +139,29 @@ public class AgentController {
     }
 
     /**
-     * Lista todos los agentes en el sistema.
+     * Lista los agentes del sistema, una página cada vez (paginación keyset).
      *
      * @param model El modelo para pasar los datos a la vista.
+     * @param despres Cursor de la página siguiente (ID del último elemento).
+     * @param abans Cursor de la página anterior (ID del primer elemento).
+     * @param mida Número de elementos por página.
+     * @param ordre Propiedad por la que ordenar.
+     * @param dir Dirección del orden, "asc" o "desc".
      * @return La vista que muestra la lista de agentes.
      */
     @GetMapping
-    public String llistarAgent(Model model, Authentication authentication){
+    public String llistarAgent(Model model, Authentication authentication, @RequestParam(required = false) String despres,
+            @RequestParam(required = false) String abans, @RequestParam(required = false) Integer mida,
+            @RequestParam(required = false) String ordre, @RequestParam(required = false) String dir){
         boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
         model.addAttribute("isAuthenticated", isAuthenticated);
         if(authentication != null){
             model.addAttribute("authorities", authentication.getAuthorities());
         }
-        model.addAttribute("agents", agentService.llistarAgents());
+        Paginacio<Agent> pagina = agentService.llistarAgents(
+                Paginacio.Peticio.de(despres, abans, mida, ordre, dir, AgentService.ORDRES, "dni"));
+        model.addAttribute("agents", pagina.getElements());
+        model.addAttribute("pagina", pagina);
         return "agent-list"; 
     }
 
@@ -220,8 +232,6 @@ public class AgentController {
         agentActualitzat.setDataContracte(LocalDate.parse(dataContact));
         String llicenciaCond = llicenciaConduc;
         agentActualitzat.setLlicenciaConduccio(llicenciaCond);
-        // Instanciar el codificador de contraseñas BCrypt
-        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
         // Encriptar la contraseña
         String encryptedPassword = passwordEncoder.encode(agentActualitzat.getPassword());
         agentActualitzat.setPassword(encryptedPassword);
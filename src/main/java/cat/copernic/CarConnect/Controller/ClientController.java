@@ -6,12 +6,13 @@ import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusClient;
 import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
 import cat.copernic.CarConnect.Service.MySQL.ClientService;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.util.List;
 import java.util.Optional;
 import java.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -35,21 +36,35 @@ public class ClientController {
     @Autowired
     private ClientService clientService;  // Servicio para gestionar los clientes
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     /**
-     * Muestra la lista de todos los clientes en el sistema.
+     * Muestra una página de la lista de clientes del sistema (paginación
+     * keyset).
      *
      * @param model El modelo para pasar la lista de clientes a la vista.
+     * @param despres Cursor de la página siguiente (ID del último elemento).
+     * @param abans Cursor de la página anterior (ID del primer elemento).
+     * @param mida Número de elementos por página.
+     * @param ordre Propiedad por la que ordenar.
+     * @param dir Dirección del orden, "asc" o "desc".
      * @return La vista con la lista de todos los clientes.
      */
     @GetMapping
-    public String listClients(Model model, Authentication authentication) {
+    public String listClients(Model model, Authentication authentication, @RequestParam(required = false) String despres,
+            @RequestParam(required = false) String abans, @RequestParam(required = false) Integer mida,
+            @RequestParam(required = false) String ordre, @RequestParam(required = false) String dir) {
         try {
             boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
             model.addAttribute("isAuthenticated", isAuthenticated);
             if(authentication != null){
             model.addAttribute("authorities", authentication.getAuthorities());
             }
-            model.addAttribute("clients", clientService.getAllClients());
+            Paginacio<Client> pagina = clientService.getClients(
+                    Paginacio.Peticio.de(despres, abans, mida, ordre, dir, ClientService.ORDRES, "dni"));
+            model.addAttribute("clients", pagina.getElements());
+            model.addAttribute("pagina", pagina);
             return "client-list"; // Página que muestra la lista de clientes
         } catch (Exception e) {
             // Registra el error para depuración
@@ -101,8 +116,6 @@ public class ClientController {
             String llicenciaCond = llicenciaConduc;
             client.setLlicenciaConduccio(llicenciaCond);
 
-            // Instanciar el codificador de contraseñas BCrypt
-            BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
             // Encriptar la contraseña
             String encryptedPassword = passwordEncoder.encode(client.getPassword());
             client.setPassword(encryptedPassword);
@@ -178,8 +191,6 @@ public class ClientController {
             client.setCaducitatLlicenciaConduccio(LocalDate.parse(cadLlicencia));  // Establece la nueva fecha de caducidad de la licencia
             String llicenciaCond = llicenciaConduc;
             client.setLlicenciaConduccio(llicenciaCond);
-            // Instanciar el codificador de contraseñas BCrypt
-            BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
             // Encriptar la contraseña
             String encryptedPassword = passwordEncoder.encode(client.getPassword());
             client.setPassword(encryptedPassword);
@@ -1,10 +1,16 @@
 package cat.copernic.CarConnect.Controller;
 
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
 import cat.copernic.CarConnect.Entity.MongoDB.DocumentacioClient;
 import cat.copernic.CarConnect.Service.MongoDB.DocumentacioClientService;
+import cat.copernic.CarConnect.Storage.DocumentsGridFs;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -49,4 +55,45 @@ public class DocumentacioClientController {
     public Optional<DocumentacioClient> getDocumentByDni(@PathVariable String dni) {
         return service.getDocumentByDni(dni);  // Llama al servicio para obtener la documentación del cliente
     }
+
+    /**
+     * Sube un archivo a la documentación del cliente. El archivo se guarda en
+     * GridFS y la documentación solo guarda su referencia.
+     *
+     * @param dni El DNI del cliente.
+     * @param fitxer El archivo subido.
+     * @return La referencia al archivo guardado.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    @PostMapping("/{dni}/documents")
+    public DocumentFitxer uploadDocument(@PathVariable String dni, @RequestParam("file") MultipartFile fitxer) throws IOException {
+        return service.afegirDocument(dni, fitxer);
+    }
+
+    /**
+     * Descarga un archivo de la documentación del cliente. El contenido se lee de
+     * GridFS por chunks mientras se escribe la respuesta.
+     *
+     * @param dni El DNI del cliente.
+     * @param fileId El ID del archivo en GridFS.
+     * @return El archivo (en línea solo si es de un tipo seguro), o 404 si no
+     * existe.
+     */
+    @GetMapping("/{dni}/documents/{fileId}")
+    public ResponseEntity<Resource> downloadDocument(@PathVariable String dni, @PathVariable String fileId) {
+        return service.obrirDocument(dni, fileId)
+                .map(DocumentsGridFs::resposta)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Elimina un archivo de la documentación del cliente.
+     *
+     * @param dni El DNI del cliente.
+     * @param fileId El ID del archivo en GridFS.
+     */
+    @DeleteMapping("/{dni}/documents/{fileId}")
+    public void deleteDocument(@PathVariable String dni, @PathVariable String fileId) {
+        service.eliminarDocument(dni, fileId);
+    }
 }
@@ -1,10 +1,16 @@
 package cat.copernic.CarConnect.Controller;
 
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
 import cat.copernic.CarConnect.Entity.MongoDB.DocumentacioIncidencia;
 import cat.copernic.CarConnect.Service.MongoDB.DocumentacioIncidenciaService;
+import cat.copernic.CarConnect.Storage.DocumentsGridFs;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.Optional;
 
 /**
@@ -50,4 +56,45 @@ public class DocumentacioIncidenciaController {
     public Optional<DocumentacioIncidencia> getDocumentByIdIncidencia(@PathVariable String idIncidencia) {
         return service.getDocumentByIdIncidencia(idIncidencia);  // Llama al servicio para obtener la documentación de la incidencia
     }
+
+    /**
+     * Sube un archivo a la documentación de la incidencia. El archivo se guarda en
+     * GridFS y la documentación solo guarda su referencia.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fitxer El archivo subido.
+     * @return La referencia al archivo guardado.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    @PostMapping("/{idIncidencia}/documents")
+    public DocumentFitxer uploadDocument(@PathVariable String idIncidencia, @RequestParam("file") MultipartFile fitxer) throws IOException {
+        return service.afegirDocument(idIncidencia, fitxer);
+    }
+
+    /**
+     * Descarga un archivo de la documentación de la incidencia. El contenido se lee de
+     * GridFS por chunks mientras se escribe la respuesta.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fileId El ID del archivo en GridFS.
+     * @return El archivo (en línea solo si es de un tipo seguro), o 404 si no
+     * existe.
+     */
+    @GetMapping("/{idIncidencia}/documents/{fileId}")
+    public ResponseEntity<Resource> downloadDocument(@PathVariable String idIncidencia, @PathVariable String fileId) {
+        return service.obrirDocument(idIncidencia, fileId)
+                .map(DocumentsGridFs::resposta)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Elimina un archivo de la documentación de la incidencia.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fileId El ID del archivo en GridFS.
+     */
+    @DeleteMapping("/{idIncidencia}/documents/{fileId}")
+    public void deleteDocument(@PathVariable String idIncidencia, @PathVariable String fileId) {
+        service.eliminarDocument(idIncidencia, fileId);
+    }
 }
@@ -0,0 +1,54 @@
+package cat.copernic.CarConnect.Controller;
+
+import cat.copernic.CarConnect.DiagnosticFilsVirtuals;
+import cat.copernic.CarConnect.DiagnosticFilsVirtuals.Fixacio;
+import cat.copernic.CarConnect.Security.CodificadorContrasenyes;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Controlador que expone el estado de los recursos internos de la aplicación
+ * en JSON, para supervisarlos. Solo pueden acceder los administradores (regla
+ * "/**" de {@code SecurityConfig}).
+ *
+ * @author david
+ */
+@Controller
+@RequestMapping("/estat")
+public class EstatController {
+
+    @Autowired
+    private CodificadorContrasenyes codificadorContrasenyes;
+
+    @Autowired
+    private DiagnosticFilsVirtuals diagnosticFilsVirtuals;
+
+    /**
+     * Devuelve el estado del ejecutor de contraseñas: hilos activos, tareas en
+     * cola, capacidad de la cola y tareas completadas y rechazadas.
+     *
+     * @return El estado del ejecutor.
+     */
+    @GetMapping("/contrasenyes")
+    @ResponseBody
+    public CodificadorContrasenyes.Estat estatContrasenyes() {
+        return codificadorContrasenyes.estat();
+    }
+
+    /**
+     * Devuelve los hilos virtuales fijados a su portador, agrupados por el
+     * código que los ha fijado. La lista está vacía si los hilos virtuales no
+     * están activados.
+     *
+     * @return Las fijaciones, de más a menos tiempo fijado.
+     */
+    @GetMapping("/fils-virtuals")
+    @ResponseBody
+    public List<Fixacio> estatFilsVirtuals() {
+        return diagnosticFilsVirtuals.fixacions();
+    }
+}
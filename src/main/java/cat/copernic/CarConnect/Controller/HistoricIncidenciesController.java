@@ -1,14 +1,15 @@
 package cat.copernic.CarConnect.Controller;
 
-import cat.copernic.CarConnect.Entity.MongoDB.HistoricIncidencies;
 import cat.copernic.CarConnect.Service.MongoDB.HistoricIncidenciesService;
+import cat.copernic.CarConnect.Service.MongoDB.InformeIncidenciesService;
+import cat.copernic.CarConnect.Service.MongoDB.InformeIncidenciesService.InformeIncidencies;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
-import java.time.format.DateTimeFormatter;
-import java.util.List;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
  * Controlador para gestionar las incidencias históricas. Este controlador
@@ -28,23 +29,21 @@ public class HistoricIncidenciesController {
     @Autowired
     private HistoricIncidenciesService historicService;  // Servicio para gestionar las incidencias históricas
 
+    @Autowired
+    private InformeIncidenciesService informeIncidenciesService;
+
     /**
      * Maneja la ruta "/historic-incidencies" para listar las incidencias
-     * históricas.
+     * históricas, por páginas y de la más reciente a la más antigua.
      */
     @GetMapping("/historic-incidencies")
-    public String getHistoricIncidencies(Model model) {
-        List<HistoricIncidencies> historics = historicService.getAllHistorics();
-
-        // Formatear fechas
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-        for (HistoricIncidencies historic : historics) {
-            if (historic.getFecha() != null) {
-                historic.setFechaFormateada(historic.getFecha().format(formatter));
-            }
-        }
+    public String getHistoricIncidencies(@RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + InformeIncidenciesService.MIDA_PER_DEFECTE) int mida,
+            Model model) {
+        InformeIncidencies informe = informeIncidenciesService.generarInforme(null, pagina, mida);
 
-        model.addAttribute("historics", historics);
+        model.addAttribute("historics", informe.incidencies());
+        model.addAttribute("informe", informe);
         return "historic-list-incidencies"; // Nombre del template a renderizar
     }
 
@@ -58,40 +57,50 @@ public class HistoricIncidenciesController {
         return "redirect:/historic/historic-incidencies";
     }
 
+    /**
+     * Muestra el informe de costes de las incidencias, opcionalmente filtrado
+     * por matrícula. La página, los totales, los totales por vehículo y los
+     * totales por mes se calculan en MongoDB (ver
+     * {@link InformeIncidenciesService}).
+     *
+     * @param vehicleId La matrícula por la que filtrar (opcional).
+     * @param pagina El número de página, desde 0 (opcional).
+     * @param mida El número de incidencias por página (opcional).
+     * @param model El modelo para la vista.
+     * @return El nombre de la vista del informe.
+     */
     @GetMapping("/informe")
-    public String getVehicleReport(String vehicleId, Model model) {
-        // Obtener incidencias filtradas por vehicleId o todas
-        List<HistoricIncidencies> historics = (vehicleId == null || vehicleId.isEmpty())
-                ? historicService.getAllHistorics()
-                : historicService.getHistoricsByVehicle(vehicleId);
-
-        // Ordenar: primero las fechas válidas en orden descendente, luego las nulas
-        historics.sort((a, b) -> {
-            if (a.getFecha() == null && b.getFecha() == null) {
-                return 0;
-            }
-            if (a.getFecha() == null) {
-                return 1; // Fecha nula va al final
-            }
-            if (b.getFecha() == null) {
-                return -1;
-            }
-            return b.getFecha().compareTo(a.getFecha());
-        });
-
-        // Calcular totales
-        int totalIncidencies = historics.size();
-        double totalCost = historics.stream()
-                .filter(h -> h.getCost() != 0) // Validar costo no nulo
-                .mapToDouble(HistoricIncidencies::getCost)
-                .sum();
+    public String getVehicleReport(@RequestParam(required = false) String vehicleId,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + InformeIncidenciesService.MIDA_PER_DEFECTE) int mida,
+            Model model) {
+        InformeIncidencies informe = informeIncidenciesService.generarInforme(vehicleId, pagina, mida);
 
         // Añadir datos al modelo
-        model.addAttribute("historics", historics);
-        model.addAttribute("totalIncidencies", totalIncidencies);
-        model.addAttribute("totalCost", totalCost);
+        model.addAttribute("historics", informe.incidencies());
+        model.addAttribute("totalIncidencies", informe.totalIncidencies());
+        model.addAttribute("totalCost", informe.totalCost());
+        model.addAttribute("perVehicle", informe.perVehicle());
+        model.addAttribute("perMes", informe.perMes());
+        model.addAttribute("informe", informe);
+        model.addAttribute("vehicleId", vehicleId);
 
         return "informe-historic"; // Nombre del template del informe
     }
 
+    /**
+     * Devuelve el mismo informe en JSON.
+     *
+     * @param vehicleId La matrícula por la que filtrar (opcional).
+     * @param pagina El número de página, desde 0 (opcional).
+     * @param mida El número de incidencias por página (opcional).
+     * @return La página del informe con sus totales.
+     */
+    @GetMapping("/informe/dades")
+    @ResponseBody
+    public InformeIncidencies getVehicleReportDades(@RequestParam(required = false) String vehicleId,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + InformeIncidenciesService.MIDA_PER_DEFECTE) int mida) {
+        return informeIncidenciesService.generarInforme(vehicleId, pagina, mida);
+    }
 }
@@ -1,18 +1,27 @@
 package cat.copernic.CarConnect.Controller;
 
 import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Service.MongoDB.EstadistiquesReservesService;
+import cat.copernic.CarConnect.Service.MongoDB.EstadistiquesReservesService.Dimensio;
+import cat.copernic.CarConnect.Service.MongoDB.EstadistiquesReservesService.FilaEstadistica;
 import cat.copernic.CarConnect.Service.MongoDB.HistoricReservesService;
+import cat.copernic.CarConnect.Service.MongoDB.InformeReservesService;
+import cat.copernic.CarConnect.Service.MongoDB.InformeReservesService.InformeReserves;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDate;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.Comparator;
-import java.util.Objects;
 
 /**
  * Controlador para gestionar las reservas históricas.
@@ -26,6 +35,12 @@ public class HistoricReservesController {
     @Autowired
     private HistoricReservesService historicReservesService;
 
+    @Autowired
+    private InformeReservesService informeReservesService;
+
+    @Autowired
+    private EstadistiquesReservesService estadistiquesService;
+
     /**
      * Muestra una lista de todas las reservas históricas.
      *
@@ -44,39 +59,66 @@ public class HistoricReservesController {
      * 
      * Si se especifica un DNI, el informe solo incluye las reservas asociadas con ese cliente.
      * Los resultados se ordenan primero por el DNI del cliente y luego por la fecha de inicio (más reciente primero).
-     * También se calculan el número total de reservas y el precio total.
+     * También se calculan el número total de reservas y el precio total. El filtro, el orden,
+     * la paginación y los totales se calculan en MongoDB (ver {@link InformeReservesService}).
      *
      * @param clientDni el DNI del cliente para filtrar las reservas (opcional)
+     * @param pagina    el número de página, desde 0 (opcional)
+     * @param mida      el número de reservas por página (opcional)
      * @param model     el objeto modelo que se usa para pasar datos a la vista
      * @return el nombre de la vista que muestra el informe de reservas
      */
     @GetMapping("/informe-reservas")
-    public String informeReserves(@RequestParam(required = false) String clientDni, Model model) {
-        // Obtener todas las reservas
-        List<HistoricReserves> historicReserves = historicReservesService.findAll();
-
-        // Filtrar por DNI del cliente si se proporciona
-        if (clientDni != null && !clientDni.isEmpty()) {
-            historicReserves = historicReserves.stream()
-                    .filter(reserva -> Objects.equals(reserva.getClientDni(), clientDni))
-                    .collect(Collectors.toList());
-        }
-
-        // Ordenar por DNI del cliente y luego por fecha de inicio (más reciente primero)
-        historicReserves = historicReserves.stream()
-                .sorted(Comparator.comparing(HistoricReserves::getClientDni, Comparator.nullsLast(String::compareTo))
-                        .thenComparing(HistoricReserves::getStartDate, Comparator.nullsLast(Comparator.reverseOrder())))
-                .collect(Collectors.toList());
-
-        // Calcular totales
-        long totalReserves = historicReserves.size();
-        double totalPrice = historicReserves.stream().mapToDouble(HistoricReserves::getTotalPrice).sum();
+    public String informeReserves(@RequestParam(required = false) String clientDni,
+            @RequestParam(defaultValue = "0") int pagina,
+            @RequestParam(defaultValue = "" + InformeReservesService.MIDA_PER_DEFECTE) int mida,
+            Model model) {
+        InformeReserves informe = informeReservesService.generarInforme(clientDni, pagina, mida);
 
         // Pasar datos al modelo
-        model.addAttribute("historicReserves", historicReserves);
-        model.addAttribute("totalReserves", totalReserves);
-        model.addAttribute("totalPrice", totalPrice);
+        model.addAttribute("historicReserves", informe.reserves());
+        model.addAttribute("totalReserves", informe.totalReserves());
+        model.addAttribute("totalPrice", informe.totalPrice());
+        model.addAttribute("informe", informe);
+        model.addAttribute("clientDni", clientDni);
 
         return "historic-informe"; // Nombre de la vista para el informe de reservas
     }
+
+    /**
+     * Devuelve los ingresos, las reservas y los días de utilización por día
+     * de un periodo, agrupados por vehículo, localización o tipo de vehículo.
+     * Se leen de los agregados diarios (ver {@link EstadistiquesReservesService}).
+     *
+     * @param desde    el primer día (por defecto, hace 30 días)
+     * @param fins     el último día (por defecto, hoy)
+     * @param dimensio la dimensión por la que agrupar (por defecto, LOCALITZACIO)
+     * @return una fila por día y valor de la dimensión
+     */
+    @GetMapping("/estadistiques")
+    @ResponseBody
+    public List<FilaEstadistica> estadistiques(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fins,
+            @RequestParam(defaultValue = "LOCALITZACIO") Dimensio dimensio) {
+        LocalDate fi = fins != null ? fins : LocalDate.now();
+        LocalDate inici = desde != null ? desde : fi.minusDays(30);
+        if (fi.isBefore(inici)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El rango de fechas no es válido.");
+        }
+        return estadistiquesService.consultar(inici, fi, dimensio);
+    }
+
+    /**
+     * Vuelve a calcular los agregados diarios a partir del histórico de
+     * reservas, en segundo plano.
+     */
+    @PostMapping("/estadistiques/reagregar")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @ResponseBody
+    public void reagregarEstadistiques() {
+        if (!estadistiquesService.iniciarReagregacio()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya se están recalculando las estadísticas.");
+        }
+    }
 }
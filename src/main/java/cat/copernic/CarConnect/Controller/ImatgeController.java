@@ -1,14 +1,23 @@
 package cat.copernic.CarConnect.Controller;
 
-import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusRendicio;
 import cat.copernic.CarConnect.Repository.MySQL.ImatgeRepository;
+import cat.copernic.CarConnect.Repository.MySQL.ImatgeRepository.ImatgeInfo;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleImageRenditionRepository.RendicioInfo;
+import cat.copernic.CarConnect.Service.MySQL.ImatgeService;
+import cat.copernic.CarConnect.utils.TipusContingutUtils;
+import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 /**
  * Controlador para gestionar las imágenes de vehículos. Este controlador
@@ -27,24 +36,142 @@ public class ImatgeController {
     @Autowired
     private ImatgeRepository imagenRepository;  // Repositorio para acceder a las imágenes de vehículos
 
+    @Autowired
+    private ImatgeService imatgeService;
+
     /**
-     * Obtiene una imagen de vehículo a partir de su ID.
+     * Obtiene una imagen de vehículo a partir de su ID. El contenido se sirve
+     * directamente desde el BlobStore, sin cargarlo en memoria, y admite
+     * peticiones Range.
      *
      * @param idImagen El ID de la imagen que se desea obtener.
-     * @return La imagen en formato byte[] junto con los encabezados adecuados.
+     * @param webRequest La petición, usada para las cabeceras condicionales.
+     * @return La imagen junto con los encabezados adecuados.
      * @throws Throwable Si ocurre algún error al obtener la imagen.
      */
     @GetMapping("/imagen")
-    public ResponseEntity<byte[]> obtenerImagen(@RequestParam Long idImagen) throws Throwable {
-        // Buscar la imagen en el repositorio por su ID
-        VehicleImages imagen = (VehicleImages) imagenRepository.findById(idImagen)
+    public ResponseEntity<Resource> obtenerImagen(@RequestParam Long idImagen, WebRequest webRequest) throws Throwable {
+        // Buscar los metadatos de la imagen por su ID, sin el contenido
+        ImatgeInfo info = imagenRepository.findInfoById(idImagen)
                 .orElseThrow(() -> new RuntimeException("Imagen no encontrada"));
+        if (info.getHash() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return servirImatge(webRequest, info.getHash(), info, tipusContingut(info.getContentType()));
+    }
+
+    /**
+     * Sirve la imagen principal de un vehículo directamente desde el BlobStore
+     * a la respuesta, con soporte de peticiones Range. La respuesta incluye ETag, Last-Modified y
+     * Cache-Control para que el navegador pueda reutilizarla y revalidarla con
+     * un 304.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param webRequest La petición, usada para las cabeceras condicionales.
+     * @return La imagen en streaming, 304 si no ha cambiado o 404 si el
+     * vehículo no tiene imágenes.
+     */
+    @GetMapping("/vehicles/{matricula}/images/primary")
+    public ResponseEntity<Resource> obtenerImagenPrincipal(@PathVariable String matricula, WebRequest webRequest) {
+        ImatgeInfo info = imatgeService.getImatgePrincipal(matricula).orElse(null);
+        if (info == null || info.getHash() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // El contenido se identifica por su hash, así que el hash sirve de ETag
+        return servirImatge(webRequest, info.getHash(), info, tipusContingut(info.getContentType()));
+    }
+
+    /**
+     * Sirve una versión redimensionada (thumbnail, card o full) de la imagen
+     * principal de un vehículo. Si la versión todavía no se ha generado se
+     * sirve la imagen original.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param mida El nombre de la versión, en minúsculas.
+     * @param webRequest La petición, usada para las cabeceras condicionales.
+     * @return La versión en streaming, 304 si no ha cambiado o 404 si no
+     * existe.
+     */
+    @GetMapping("/vehicles/{matricula}/images/primary/{mida}")
+    public ResponseEntity<Resource> obtenerRendicioPrincipal(@PathVariable String matricula,
+            @PathVariable String mida, WebRequest webRequest) {
+        ImatgeInfo info = imatgeService.getImatgePrincipal(matricula).orElse(null);
+        return servirRendicio(webRequest, info, mida);
+    }
+
+    /**
+     * Sirve una versión redimensionada (thumbnail, card o full) de cualquier
+     * imagen de un vehículo, como la galería de la ficha del vehículo. Si la
+     * versión todavía no se ha generado se sirve la imagen original.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param idImatge El ID de la imagen.
+     * @param mida El nombre de la versión, en minúsculas.
+     * @param webRequest La petición, usada para las cabeceras condicionales.
+     * @return La versión en streaming, 304 si no ha cambiado o 404 si la
+     * imagen no es de ese vehículo.
+     */
+    @GetMapping("/vehicles/{matricula}/images/{idImatge:\\d+}/{mida}")
+    public ResponseEntity<Resource> obtenerRendicio(@PathVariable String matricula, @PathVariable Long idImatge,
+            @PathVariable String mida, WebRequest webRequest) {
+        ImatgeInfo info = imatgeService.getImatge(matricula, idImatge).orElse(null);
+        return servirRendicio(webRequest, info, mida);
+    }
+
+    private ResponseEntity<Resource> servirRendicio(WebRequest webRequest, ImatgeInfo info, String mida) {
+        TipusRendicio tipus;
+        try {
+            tipus = TipusRendicio.valueOf(mida.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        if (info == null || info.getHash() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        RendicioInfo rendicio = imatgeService.getRendicio(info.getId(), tipus).orElse(null);
+        if (rendicio == null || rendicio.getHash() == null) {
+            return servirImatge(webRequest, info.getHash(), info, tipusContingut(info.getContentType()));
+        }
+        return servirImatge(webRequest, rendicio.getHash(), info, tipusContingut(rendicio.getContentType()));
+    }
+
+    /**
+     * Tipo con el que se sirve una imagen. Las imágenes antiguas pueden tener
+     * guardado el tipo que declaró el navegador: solo se respeta si es un tipo
+     * de imagen reconocido por su firma, para no servir en línea un
+     * {@code image/svg+xml} o un {@code text/html}.
+     */
+    private MediaType tipusContingut(String contentType) {
+        if (contentType == null) {
+            return MediaType.IMAGE_JPEG;
+        }
+        return TipusContingutUtils.esImatge(contentType)
+                ? MediaType.parseMediaType(contentType)
+                : MediaType.APPLICATION_OCTET_STREAM;
+    }
+
+    private ResponseEntity<Resource> servirImatge(WebRequest webRequest, String hash, ImatgeInfo info,
+            MediaType contentType) {
+        String etag = "\"" + hash + "\"";
+        long lastModified = info.getDataPujada() != null ? info.getDataPujada().toEpochMilli() : -1;
 
-        // Configurar los encabezados HTTP para la respuesta
-        HttpHeaders headers = new HttpHeaders();
-        headers.set("Content-Type", "image/jpeg"); // Tipo de contenido de la imagen (puede ser otro formato)
+        CacheControl cacheControl = CacheControl.maxAge(1, TimeUnit.HOURS).cachePublic();
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
 
-        // Retornar la imagen como respuesta con los encabezados adecuados
-        return new ResponseEntity<>(imagen.getData(), headers, HttpStatus.OK);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(etag)
+                .header("X-Content-Type-Options", "nosniff")
+                .cacheControl(cacheControl);
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        // Spring escribe el recurso por bloques y atiende las cabeceras Range
+        return response.body(imatgeService.getRecurs(hash));
     }
 }
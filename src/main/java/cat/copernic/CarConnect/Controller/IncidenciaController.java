@@ -1,17 +1,20 @@
 package cat.copernic.CarConnect.Controller;
 
-import cat.copernic.CarConnect.Entity.MongoDB.HistoricIncidencies;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Entity.MySQL.Usuario;
 import cat.copernic.CarConnect.Entity.MySQL.Incidencia;
 import cat.copernic.CarConnect.Entity.MySQL.IncidenciaFiles;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Repository.MySQL.IncidenciaFilesRepository.IncidenciaFileInfo;
 import cat.copernic.CarConnect.Repository.MySQL.IncidenciaRepository;
-import cat.copernic.CarConnect.Service.MongoDB.HistoricIncidenciesService;
 import cat.copernic.CarConnect.Service.MySQL.IncidenciaFilesService;
 import cat.copernic.CarConnect.Service.MySQL.IncidenciaService;
 import cat.copernic.CarConnect.Service.MySQL.VehicleService;
+import cat.copernic.CarConnect.utils.DescarregaFitxer;
 import jakarta.validation.Valid;
 import java.io.IOException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -20,13 +23,10 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.multipart.MultipartFile;
@@ -58,8 +58,6 @@ public class IncidenciaController {
     @Autowired
     private IncidenciaRepository incidenciaRepository;
 
-    @Autowired
-    private HistoricIncidenciesService historicIncidenciesService;
 
     /**
      * Muestra el formulario para crear una nueva incidencia para un vehículo.
@@ -95,7 +93,8 @@ public class IncidenciaController {
     }
 
     /**
-     * Crea o actualiza una incidencia en la base de datos.
+     * Crea o actualiza una incidencia en la base de datos. El servicio registra
+     * el cambio en el histórico en la misma transacción.
      *
      * @param incidencia La incidencia que se va a crear o actualizar.
      * @param result El resultado de la validación del formulario.
@@ -103,18 +102,6 @@ public class IncidenciaController {
      * error o éxito.
      * @return La vista de redirección después de la operación.
      */
-    
-    private void saveIncidenciaToHistoric(Incidencia incidencia) {
-        HistoricIncidencies historic = new HistoricIncidencies();
-        historic.setDescription(incidencia.getDescription());
-        historic.setCost(incidencia.getCost());
-        historic.setVehicleId(incidencia.getVehicle().getMatricula());
-        historic.setAberta(incidencia.isOberta());
-        historic.setFecha(incidencia.getFecha());
-
-        historicIncidenciesService.saveToHistoric(historic);
-    }
-    
     // Mètode creat incidència
 
     @PostMapping("/create/{matricula}")
@@ -132,7 +119,6 @@ public class IncidenciaController {
                     throw new IllegalStateException("No se pueden tener más de una incidencia abierta por vehículo.");
                 }
                 incidenciaService.saveIncidencia(incidencia);
-                saveIncidenciaToHistoric(incidencia); // Desar a l'històric
                 if (vehicleService.isDesactivable(matricula, redirectAttributes)){
                     vehicle.setActiu(false);
                     vehicleService.updateVehicle(matricula, vehicle, imagen);
@@ -142,7 +128,6 @@ public class IncidenciaController {
                 redirectAttributes.addFlashAttribute("success", "Incidencia creada correctamente.");
             } else {
                 incidenciaService.updateIncidencia(incidencia);
-                saveIncidenciaToHistoric(incidencia); // Actualitzar a l'històric
                 redirectAttributes.addFlashAttribute("success", "Incidencia actualizada correctamente.");
             }
         } catch (IllegalStateException | IllegalArgumentException e) {
@@ -220,8 +205,6 @@ public class IncidenciaController {
     public String deactivateIncidencia(@PathVariable Long id, RedirectAttributes redirectAttributes) {
         try {
             incidenciaService.toggleIncidenciaState(id);
-            Incidencia incidencia = incidenciaService.getIncidenciaById(id).orElseThrow(() -> new IllegalArgumentException("La incidencia no existe."));
-            saveIncidenciaToHistoric(incidencia); // Registrar a l'històric
             redirectAttributes.addFlashAttribute("success", "Estado de la incidencia actualizado correctamente.");
         } catch (IllegalStateException | IllegalArgumentException e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
@@ -244,8 +227,7 @@ public class IncidenciaController {
         if (authentication != null) {
             model.addAttribute("authorities", authentication.getAuthorities());
 
-            boolean esAdmin = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+            boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
             if (esAdmin) {
                 incidencias = incidenciaService.getAllIncidencias();
                 model.addAttribute("incidencias", incidencias);
@@ -254,39 +236,10 @@ public class IncidenciaController {
                 model.addAttribute("incidencias", incidencias);
             }
 
-            Map<Long, List<String>> incidenciaImages = new HashMap<>(); // Map para almacenar listas de imágenes
-            Map<Long, List<String>> descripcionsImages = new HashMap<>(); // Map para almacenar listas de imágenes
-
-            // Obtener archivos e imágenes para cada incidencia
-            for (Incidencia incidencia : incidencias) {
-                // Obtener archivos relacionados con la incidencia
-                incidencia.setFiles(incidenciaFilesService.getFilesByIncidencia(incidencia.getId()));
-
-                // Obtener imágenes asociadas a la incidencia
-                List<byte[]> imageDataList = incidenciaService.getImagesForIncidencia(incidencia.getId());
-                List<String> descripcionsList = incidenciaFilesService.getDescripcionsForIncidencia(incidencia.getId());
-
-                List<String> base64Images = new ArrayList<>();
-
-                if (imageDataList != null) {
-                    for (byte[] imageData : imageDataList) {
-                        if (imageData != null) {
-                            String base64Image = Base64.getEncoder().encodeToString(imageData);
-                            base64Images.add(base64Image);
-                        }
-                    }
-                }
-
-                System.out.println(incidencia.getDescription());
-                // Asociar imágenes y descripciones al ID de la incidencia
-                incidenciaImages.put(incidencia.getId(), base64Images);
-                descripcionsImages.put(incidencia.getId(), descripcionsList); // Aquí añadimos descripciones
-            }
-
-            // Añadir los datos al modelo
-            model.addAttribute("incidencias", incidencias);
-            model.addAttribute("descripcionsImages", descripcionsImages);
-            model.addAttribute("incidenciaImages", incidenciaImages); // Añadir el map con imágenes en Base64
+            // Metadatos de los archivos de todas las incidencias en una sola consulta;
+            // las imágenes se cargan desde /incidencias/files/{id}
+            model.addAttribute("fitxersIncidencia", incidenciaFilesService.getFileInfoByIncidencies(
+                    incidencias.stream().map(Incidencia::getId).toList()));
         } else {
             model.addAttribute("incidencias", incidencias);
         }
@@ -320,9 +273,34 @@ public class IncidenciaController {
         }
 
         model.addAttribute("incidencias", incidencias);
+        model.addAttribute("fitxersIncidencia", incidenciaFilesService.getFileInfoByIncidencies(
+                incidencias.stream().map(Incidencia::getId).toList()));
         return "incidencias-list";
     }
 
+    /**
+     * Descarga un archivo adjunto de una incidencia. El contenido se sirve
+     * directamente desde el BlobStore, sin cargarlo en memoria, y admite
+     * peticiones Range para poder reanudar descargas de archivos grandes.
+     * Solo las imágenes y los PDF se muestran en línea; el resto se descarga
+     * (ver {@link DescarregaFitxer}).
+     *
+     * @param id El ID del archivo.
+     * @param authentication La autenticación del usuario.
+     * @return El archivo, o 404 si no existe o el usuario no tiene acceso a
+     * la incidencia.
+     */
+    @GetMapping("/files/{id}")
+    public ResponseEntity<Resource> descarregarFitxer(@PathVariable Long id, Authentication authentication) {
+        IncidenciaFileInfo fitxer = incidenciaFilesService.getFileInfo(id, authentication).orElse(null);
+        if (fitxer == null || fitxer.getHash() == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return DescarregaFitxer.resposta(incidenciaFilesService.getContingut(fitxer.getHash()),
+                fitxer.getFileType(), "incidencia-fitxer-" + id, fitxer.getHash());
+    }
+
     @PostMapping("/{id}/upload-file")
     public String uploadFile(@PathVariable Long id,
             @RequestParam("file") MultipartFile file,
@@ -1,5 +1,7 @@
 package cat.copernic.CarConnect.Controller;
 
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Entity.MySQL.Usuario;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
 import cat.copernic.CarConnect.Service.MySQL.LocalitzacioService;
@@ -43,8 +45,7 @@ public class LocalitzacioController {
         if(authentication != null){
             model.addAttribute("authorities", authentication.getAuthorities());
             
-            boolean esAdmin = authentication.getAuthorities().stream()
-            .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+            boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
             if(esAdmin){
                List<Localitzacio> localitzacions = localitzacioService.consultarLocalitzacions();
                model.addAttribute("localitzacions", localitzacions);
@@ -7,10 +7,7 @@ package cat.copernic.CarConnect.Controller;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
 import cat.copernic.CarConnect.Service.MySQL.LocalitzacioService;
 import cat.copernic.CarConnect.Service.MySQL.VehicleService;
-import java.util.Base64;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -36,8 +33,9 @@ public class MainController {
 
     /**
      * Método que maneja las solicitudes a la página de inicio ("/"). Recupera
-     * la lista de vehículos y sus imágenes codificadas en base64, junto con las
-     * localizaciones y los añade al modelo para su visualización en la vista.
+     * la lista de vehículos junto con las localizaciones y los añade al modelo
+     * para su visualización en la vista. Las imágenes no se incluyen en el
+     * modelo: la vista las pide a "/vehicles/{matricula}/images/primary".
      *
      * @param model El modelo donde se almacenan los atributos para la vista.
      * @return La vista "index" que se muestra al usuario en la página de
@@ -46,16 +44,6 @@ public class MainController {
     @GetMapping("/")
         public String homePage(Model model, Authentication authentication) {
         List<Vehicle> vehicles = vehicleService.consultarVehicles();
-        Map<String, String> vehicleImages = new HashMap<>();
-
-        // Obtener las imágenes de los vehículos y convertirlas a base64
-        for (Vehicle vehicle : vehicles) {
-            byte[] imageData = vehicleService.getSmallestImageForVehicle(vehicle.getMatricula());
-            if (imageData != null) {
-                String base64Image = Base64.getEncoder().encodeToString(imageData);
-                vehicleImages.put(vehicle.getMatricula(), base64Image);
-            }
-        }
          
         boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
         model.addAttribute("isAuthenticated", isAuthenticated);
@@ -64,7 +52,6 @@ public class MainController {
         }
         
         model.addAttribute("vehicles", vehicles);
-        model.addAttribute("vehicleImages", vehicleImages); // Añadir imágenes codificadas
         model.addAttribute("localitzacions", localitzacioService.consultarLocalitzacions());
         return "index"; // Vista de la página de inicio
     }
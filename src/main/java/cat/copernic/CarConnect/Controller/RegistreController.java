@@ -8,7 +8,7 @@ import cat.copernic.CarConnect.Entity.MySQL.Client;
 import cat.copernic.CarConnect.Service.MySQL.ClientService;
 import java.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -32,6 +32,9 @@ public class RegistreController {
     @Autowired
     private ClientService clientService;
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     /**
      * Método que maneja las solicitudes a la página de registro (/Registre).
      * Muestra el formulario de registro donde el usuario puede ingresar sus
@@ -65,9 +68,6 @@ public class RegistreController {
         client.setCaducitatDni(LocalDate.parse(caducitatDni));
         client.setCaducitatLlicenciaConduccio(LocalDate.parse(cadLlicencia));
 
-        // Instanciar el codificador de contraseñas BCrypt
-        BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
-
         // Encriptar la contraseña
         String encryptedPassword = passwordEncoder.encode(client.getPassword());
         client.setPassword(encryptedPassword);
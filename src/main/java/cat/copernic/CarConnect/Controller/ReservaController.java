@@ -1,30 +1,28 @@
 package cat.copernic.CarConnect.Controller;
 
-import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Entity.MySQL.Usuario;
 import cat.copernic.CarConnect.Entity.MySQL.Client;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Reserva;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
-import cat.copernic.CarConnect.Repository.MongoDB.HistoricReservesRepository;
+import cat.copernic.CarConnect.Exceptions.ReservaSolapadaException;
 import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository;
-import cat.copernic.CarConnect.Service.MongoDB.HistoricReservesService;
+import cat.copernic.CarConnect.Service.MySQL.DisponibilitatService.PeriodeOcupat;
 import cat.copernic.CarConnect.Service.MySQL.ReservaService;
 import cat.copernic.CarConnect.Service.MySQL.ClientService;
-import cat.copernic.CarConnect.Service.MySQL.EmailService;
 import cat.copernic.CarConnect.Service.MySQL.VehicleService;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 import org.springframework.security.core.Authentication;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
@@ -44,8 +42,6 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @RequestMapping("/reservas")
 public class ReservaController {
 
-    @Autowired
-    private EmailService emailService;
     @Autowired
     private ReservaService reservaService;
 
@@ -58,26 +54,36 @@ public class ReservaController {
     @Autowired
     private ReservaRepository reservaRepository;
 
-    @Autowired
-    private HistoricReservesRepository historicoReservaRepository;
-
-    @Autowired
-    private HistoricReservesService historicReservesService;
-
-    // Mostrar lista de reservas
+    /**
+     * Muestra la lista de reservas. El administrador ve todas las reservas,
+     * una página cada vez (paginación keyset); el resto de usuarios ve las
+     * suyas.
+     *
+     * @param model El modelo para pasar los datos a la vista.
+     * @param authentication La autenticación del usuario.
+     * @param despres Cursor de la página siguiente (ID del último elemento).
+     * @param abans Cursor de la página anterior (ID del primer elemento).
+     * @param mida Número de elementos por página.
+     * @param ordre Propiedad por la que ordenar.
+     * @param dir Dirección del orden, "asc" o "desc".
+     * @return La vista con la lista de reservas.
+     */
     @GetMapping("/list")
-    public String listReservas(Model model, Authentication authentication) {
+    public String listReservas(Model model, Authentication authentication, @RequestParam(required = false) String despres,
+            @RequestParam(required = false) String abans, @RequestParam(required = false) Integer mida,
+            @RequestParam(required = false) String ordre, @RequestParam(required = false) String dir) {
         boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
         model.addAttribute("isAuthenticated", isAuthenticated);
 
         if (authentication != null) {
             model.addAttribute("authorities", authentication.getAuthorities());
 
-            boolean esAdmin = authentication.getAuthorities().stream()
-                    .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+            boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
             if (esAdmin) {
-                var reservas = reservaService.getAllReservas();
-                model.addAttribute("reservas", reservas);
+                Paginacio<Reserva> pagina = reservaService.getAllReservas(
+                        Paginacio.Peticio.de(despres, abans, mida, ordre, dir, ReservaService.ORDRES, "idReserva"));
+                model.addAttribute("reservas", pagina.getElements());
+                model.addAttribute("pagina", pagina);
             } else {
                 var reservas = reservaService.getReservasPropias(authentication);
                 model.addAttribute("reservas", reservas);
@@ -121,13 +127,9 @@ public class ReservaController {
             return "reserva-form";
         }
 
-        // Validación de solapamiento de reservas usando findByVehicleMatricula
-        List<Reserva> reservasExistentes = reservaRepository.findByVehicleMatricula(reserva.getVehicle().getMatricula());
-        boolean conflicto = reservasExistentes.stream().anyMatch(r
-                -> (reserva.getDataHoraRecollida().isBefore(r.getDataHoraDevolucio())
-                && reserva.getDataHoraDevolucio().isAfter(r.getDataHoraRecollida()))
-                || (reserva.getDataHoraRecollida().equals(r.getDataHoraRecollida())
-                || reserva.getDataHoraDevolucio().equals(r.getDataHoraDevolucio())));
+        // Validación de solapamiento de reservas con el índice de disponibilidad
+        boolean conflicto = !reservaService.esVehicleLliure(reserva.getVehicle().getMatricula(),
+                reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio(), null);
 
         if (conflicto) {
             model.addAttribute("conflict", true);
@@ -158,48 +160,16 @@ public class ReservaController {
         double preuTotal = preuBase + fianza;
         reserva.setPreuTotal(preuTotal);
 
-        reservaService.saveReserva(reserva);
-
-        // Crear el contenido del correo electrónico
-        String subject = "Confirmación de Reserva";
-        Localitzacio localitzacio = vehicle.getLocalitzacio();
-        String localitzacioInfo = String.format("%s, %s, %s, %s, %d",
-                localitzacio.getCarrer(), localitzacio.getCiutat(),
-                localitzacio.getProvincia(), localitzacio.getComunitatAutonoma(),
-                localitzacio.getNum());
-
-        String htmlContent = String.format(
-                "<div style='font-family: Arial, sans-serif; padding: 20px; border: 1px solid #ddd; border-radius: 5px;'>"
-                + "<h2 style='color: #4CAF50;'>¡Reserva Confirmada!</h2>"
-                + "<p>Hola <strong>%s</strong>,</p>"
-                + "<p>Tu reserva ha sido confirmada. Aquí están los detalles:</p>"
-                + "<div style='padding: 15px; border: 1px solid #ddd; background-color: #f9f9f9; border-radius: 5px;'>"
-                + "<p><strong>Vehículo:</strong> %s</p>"
-                + "<p><strong>Ubicación:</strong> %s</p>"
-                + "<p><strong>Fecha de Recogida:</strong> %s</p>"
-                + "<p><strong>Fecha de Devolución:</strong> %s</p>"
-                + "<p><strong>Precio Total:</strong> %.2f €</p>"
-                + "</div>"
-                + "<p>Gracias por elegirnos.</p>"
-                + "<img src='https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExbnp5dDJleWtwY3k4bmM1YjN1dGl5em0wdnd1eXB1czJqZWk4ejFidiZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/OBE6ShkIQQjgQ/giphy.gif' alt='Gracias' style='width: 100%%; max-width: 400px; display: block; margin: 20px auto; border-radius: 5px;'>"
-                + "</div>", client.getNombre(), vehicle.getMatricula(), localitzacioInfo,
-                reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio(), preuTotal);
-
-        // Enviar correo electrónico
-        emailService.sendHtmlEmail(client.getEmail(), subject, htmlContent);
-
-        HistoricReserves historic = new HistoricReserves();
-        historic.setReservaId(reserva.getIdReserva());
-        historic.setClientDni(reserva.getClient().getDni());
-        historic.setVehicleId(reserva.getVehicle().getMatricula());
-        historic.setStartDate(reserva.getDataHoraRecollida());
-        historic.setEndDate(reserva.getDataHoraDevolucio());
-        historic.setTotalPrice(reserva.getPreuTotal());
-        historic.setStatus("CREADA");
-        historic.setEmail(reserva.getClient().getEmail());
-        historic.setNom(reserva.getClient().getNombre());
-
-        historicReservesService.saveHistoricReserve(historic);
+        try {
+            reservaService.crearReserva(reserva); // Guarda la reserva, su evento del histórico y el correo de confirmación
+        } catch (ReservaSolapadaException e) {
+            // Otra reserva del mismo vehículo se ha guardado mientras tanto
+            model.addAttribute("conflict", true);
+            model.addAttribute("errorMessage", e.getMessage());
+            model.addAttribute("clients", clientService.getAllClients());
+            model.addAttribute("vehicles", vehicleService.consultarVehicles());
+            return "reserva-form";
+        }
 
         return "redirect:/reservas/list";
     }
@@ -208,16 +178,16 @@ public class ReservaController {
     @GetMapping("/edit/{id}")
     public String editReservaForm(@PathVariable Long id, Model model) {
         var reserva = reservaService.getReservaById(id);
-        var allVehicles = vehicleService.consultarVehicles();
 
-        // Obtenemos vehículos disponibles, incluyendo el que ya tiene reservado esta reserva
-        var reservedVehicles = reservaService.getAllReservas().stream()
-                .filter(r -> !r.getIdReserva().equals(id)) // Excluir la reserva actual
-                .map(Reserva::getVehicle) // Extrae vehículos reservados de otras reservas
-                .collect(Collectors.toList());
-        var availableVehicles = allVehicles.stream()
-                .filter(vehicle -> !reservedVehicles.contains(vehicle)) // Filtra vehículos disponibles
-                .collect(Collectors.toList());
+        // Vehículos libres en las fechas de la reserva, sin contar la propia reserva
+        // (así el vehículo que ya tiene reservado sigue apareciendo)
+        var availableVehicles = vehicleService.consultarVehiclesDisponibles(reserva.getDataHoraRecollida(),
+                reserva.getDataHoraDevolucio(), null, null, null, id);
+        boolean incloure = availableVehicles.stream()
+                .noneMatch(v -> v.getMatricula().equals(reserva.getVehicle().getMatricula()));
+        if (incloure) {
+            availableVehicles.add(0, reserva.getVehicle()); // p. ej. si el vehículo está desactivado
+        }
 
         model.addAttribute("reserva", reserva);
         model.addAttribute("clients", clientService.getAllClients());
@@ -256,45 +226,46 @@ public class ReservaController {
     @PostMapping("/edit/{id}")
     public String updateReserva(@PathVariable Long id, @ModelAttribute Reserva reserva, Model model) {
         try {
-            Reserva existingReserva = reservaService.getReservaById(id);
-
-            if (existingReserva != null) {
-                // Validar que la fecha de devolución no sea anterior a la fecha de recogida
-                if (reserva.getDataHoraDevolucio().isBefore(reserva.getDataHoraRecollida())) {
-                    throw new RuntimeException("La fecha de devolución no puede ser anterior a la fecha de recogida");
-                }
-
-                // Validar y asignar cliente
-                Client client = clientService.getClientByDni(reserva.getClient().getDni());
-                if (client == null) {
-                    throw new RuntimeException("El cliente especificado no existe.");
-                }
-                existingReserva.setClient(client);
-
-                // Validar y asignar vehículo
-                Vehicle vehicle = vehicleService.getVehicleByMatricula(reserva.getVehicle().getMatricula());
-                if (vehicle == null) {
-                    throw new RuntimeException("El vehículo especificado no existe.");
-                }
-                existingReserva.setVehicle(vehicle);
-
-                // Calcular el precio total (Precio base + Fianza)
-                long dias = ChronoUnit.DAYS.between(reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio());
-                double preuBase = dias * vehicle.getPreuPerDia(); // Precio base por el número de días
-                double fianza = vehicle.getFianca(); // Suponiendo que la fianza es un atributo del vehículo
-                double preuTotal = preuBase + fianza; // Precio total incluyendo la fianza
-
-                // Establecer el precio total en la reserva
-                existingReserva.setPreuTotal(preuTotal);
-
-                // Asignar otros valores de fechas
-                existingReserva.setDataHoraRecollida(reserva.getDataHoraRecollida());
-                existingReserva.setDataHoraDevolucio(reserva.getDataHoraDevolucio());
-
-                // Guardar la reserva actualizada
-                reservaService.saveReserva(existingReserva);
+            // Validar que la fecha de devolución no sea anterior a la fecha de recogida
+            if (reserva.getDataHoraDevolucio().isBefore(reserva.getDataHoraRecollida())) {
+                throw new RuntimeException("La fecha de devolución no puede ser anterior a la fecha de recogida");
+            }
+
+            // Validar cliente
+            Client client = clientService.getClientByDni(reserva.getClient().getDni());
+            if (client == null) {
+                throw new RuntimeException("El cliente especificado no existe.");
+            }
+
+            // Validar vehículo
+            Vehicle vehicle = vehicleService.getVehicleByMatricula(reserva.getVehicle().getMatricula());
+            if (vehicle == null) {
+                throw new RuntimeException("El vehículo especificado no existe.");
             }
 
+            // Validar que el vehículo esté libre sin contar esta misma reserva
+            if (!reservaService.esVehicleLliure(vehicle.getMatricula(),
+                    reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio(), id)) {
+                throw new RuntimeException("El vehículo ya está reservado en este periodo de tiempo.");
+            }
+
+            // Calcular el precio total (Precio base + Fianza)
+            long dias = ChronoUnit.DAYS.between(reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio());
+            double preuBase = dias * vehicle.getPreuPerDia(); // Precio base por el número de días
+            double fianza = vehicle.getFianca(); // Suponiendo que la fianza es un atributo del vehículo
+            double preuTotal = preuBase + fianza; // Precio total incluyendo la fianza
+
+            // Los nuevos datos van aparte: el servicio los aplica sobre la reserva
+            // bloqueada y registra la modificación en el histórico en la misma transacción
+            Reserva dades = new Reserva();
+            dades.setClient(client);
+            dades.setVehicle(vehicle);
+            dades.setDataHoraRecollida(reserva.getDataHoraRecollida());
+            dades.setDataHoraDevolucio(reserva.getDataHoraDevolucio());
+            dades.setPreuTotal(preuTotal);
+
+            reservaService.updateReserva(id, dades);
+
             return "redirect:/reservas/list";
         } catch (RuntimeException e) {
             model.addAttribute("errorMessage", e.getMessage()); // Mostrar el mensaje de error
@@ -307,24 +278,7 @@ public class ReservaController {
 
     @GetMapping("/delete/{id}")
     public String deleteReserva(@PathVariable Long id) {
-        Reserva reserva = reservaService.getReservaById(id);
-
-        if (reserva != null) {
-            // Crear un histórico antes de eliminar la reserva
-            HistoricReserves historic = new HistoricReserves();
-            historic.setReservaId(reserva.getIdReserva());
-            historic.setClientDni(reserva.getClient().getDni());
-            historic.setVehicleId(reserva.getVehicle().getMatricula());
-            historic.setStartDate(reserva.getDataHoraRecollida());
-            historic.setEndDate(reserva.getDataHoraDevolucio());
-            historic.setTotalPrice(reserva.getPreuTotal());
-            historic.setStatus("ELIMINADA");
-            historic.setEmail(reserva.getClient().getEmail());
-            historic.setNom(reserva.getClient().getNombre());
-
-            historicReservesService.saveHistoricReserve(historic);
-        }
-
+        // El servicio registra la eliminación en el histórico en la misma transacción
         reservaService.deleteReserva(id);
         return "redirect:/reservas/list";
     }
@@ -344,15 +298,29 @@ public String iniciReserva(Model model) {
 }
 
 
-    public List<LocalDate> getFechasReservadasPorVehiculo(String matricula) {
-        return reservaRepository.findByVehicleMatricula(matricula)
-                .stream()
-                .flatMap(reserva -> {
-                    LocalDate start = reserva.getDataHoraRecollida();  // Aquí, no es necesario toLocalDate()
-                    LocalDate end = reserva.getDataHoraDevolucio();    // Tampoco es necesario toLocalDate()
-                    return start.datesUntil(end.plusDays(1)); // Incluye la fecha de devolución
-                })
-                .collect(Collectors.toList());
+    /**
+     * Devuelve en JSON el calendario de ocupación de un vehículo como periodos
+     * fusionados ({@code [{"inici": "...", "fi": "..."}]}, ambos días
+     * incluidos), para que la página de inicio de reserva lo cargue de forma
+     * asíncrona. El tamaño de la respuesta depende del número de periodos, no
+     * del número de días reservados.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param desde El primer día del calendario (por defecto, hoy).
+     * @param fins El último día del calendario (por defecto, un año después).
+     * @return Los periodos ocupados.
+     */
+    @GetMapping("/calendari/{matricula}")
+    @ResponseBody
+    public List<PeriodeOcupat> getCalendariVehicle(@PathVariable String matricula,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fins) {
+        LocalDate inici = desde != null ? desde : LocalDate.now();
+        LocalDate fi = fins != null ? fins : inici.plusYears(1);
+        if (fi.isBefore(inici)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El rango de fechas no es válido.");
+        }
+        return reservaService.getCalendariVehicle(matricula, inici, fi);
     }
 
     @GetMapping("/selected/{matricula}")
@@ -376,20 +344,13 @@ public String iniciReserva(Model model) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Vehículo no encontrado.");
         }
 
-        // Obtener las reservas existentes para este vehículo
-        List<Reserva> reservasExistentes = reservaRepository.findByVehicleMatricula(matricula);
-
         // Crear una nueva reserva
         Reserva reserva = new Reserva();
 
         // Validar solapamientos para el periodo actual (opcional si ya tienes fechas preestablecidas)
-        boolean conflicto = reservasExistentes.stream().anyMatch(r
-                -> (reserva.getDataHoraRecollida() != null && reserva.getDataHoraDevolucio() != null)
-                && ((reserva.getDataHoraRecollida().isBefore(r.getDataHoraDevolucio())
-                && reserva.getDataHoraDevolucio().isAfter(r.getDataHoraRecollida()))
-                || (reserva.getDataHoraRecollida().equals(r.getDataHoraRecollida())
-                || reserva.getDataHoraDevolucio().equals(r.getDataHoraDevolucio())))
-        );
+        boolean conflicto = reserva.getDataHoraRecollida() != null && reserva.getDataHoraDevolucio() != null
+                && !reservaService.esVehicleLliure(matricula,
+                        reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio(), null);
 
         if (conflicto) {
             model.addAttribute("conflict", true);
@@ -523,12 +484,8 @@ public String guardarReservaUsuario(
             throw new RuntimeException("La fecha de devolución debe ser posterior a la fecha de recogida.");
         }
 
-        List<Reserva> reservasExistentes = reservaRepository.findByVehicleMatricula(reserva.getVehicle().getMatricula());
-        boolean conflicto = reservasExistentes.stream().anyMatch(r
-                -> (reserva.getDataHoraRecollida().isBefore(r.getDataHoraDevolucio())
-                && reserva.getDataHoraDevolucio().isAfter(r.getDataHoraRecollida()))
-                || (reserva.getDataHoraRecollida().equals(r.getDataHoraRecollida())
-                || reserva.getDataHoraDevolucio().equals(r.getDataHoraDevolucio())));
+        boolean conflicto = !reservaService.esVehicleLliure(reserva.getVehicle().getMatricula(),
+                reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio(), null);
 
         if (conflicto) {
             throw new RuntimeException("El vehículo ya está reservado en este periodo de tiempo.");
@@ -557,7 +514,7 @@ public String guardarReservaUsuario(
         double preuTotal = preuBase + fianza;
         reserva.setPreuTotal(preuTotal);
 
-        reservaService.saveReserva(reserva);
+        reservaService.crearReserva(reserva); // Guarda la reserva, su evento del histórico y el correo de confirmación
 
         model.addAttribute("reserva", reserva);
         model.addAttribute("clienteNom", reserva.getClient().getNombre());
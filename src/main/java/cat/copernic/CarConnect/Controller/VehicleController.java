@@ -1,34 +1,38 @@
 package cat.copernic.CarConnect.Controller;
 
-import cat.copernic.CarConnect.Entity.MySQL.Agent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Entity.MySQL.Usuario;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusVehicle;
 import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
 import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
-import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
 import cat.copernic.CarConnect.Service.MySQL.VehicleService;
+import cat.copernic.CarConnect.Repository.MySQL.ImatgeRepository.ImatgeInfo;
 import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
 import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import cat.copernic.CarConnect.Service.MySQL.ImatgeService;
 import cat.copernic.CarConnect.Service.MySQL.LocalitzacioService;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 /**
@@ -44,26 +48,53 @@ public class VehicleController {
     @Autowired
     private VehicleService vehicleService;
     @Autowired
-    private AgentRepository agentRepo;
-    @Autowired
     private VehicleRepository vehicleRepository;
 
     @Autowired
     private LocalitzacioService localitzacioService;
 
+    @Autowired
+    private ImatgeService imatgeService;
+
     @Autowired
     private LocalitzacioRepository localitzacioRepository;
 
     /**
-     * Muestra la lista de vehículos. Este método obtiene todos los vehículos y
-     * los pasa a la vista correspondiente.
+     * Datos de un vehículo libre que devuelve la búsqueda de disponibilidad.
+     */
+    public record VehicleDisponible(String matricula, String marca, String model, int any,
+            String tipusCombustible, TipusVehicle tipusVehicle, double preuPerDia, double fianca,
+            String codiPostal, String ciutat) {
+
+        static VehicleDisponible de(Vehicle vehicle) {
+            Localitzacio localitzacio = vehicle.getLocalitzacio();
+            return new VehicleDisponible(vehicle.getMatricula(), vehicle.getMarca(), vehicle.getModel(),
+                    vehicle.getAny(), vehicle.getTipusCombustible(), vehicle.getTipusVehicle(),
+                    vehicle.getPreuPerDia(), vehicle.getFianca(),
+                    localitzacio.getCodiPostal(), localitzacio.getCiutat());
+        }
+    }
+
+    /**
+     * Muestra la lista de vehículos. Este método obtiene una página de
+     * vehículos (paginación keyset) y la pasa a la vista correspondiente.
      *
      * @param model El modelo para agregar los atributos necesarios para la
      * vista.
+     * @param despres Cursor de la página siguiente (ID del último elemento).
+     * @param abans Cursor de la página anterior (ID del primer elemento).
+     * @param mida Número de elementos por página.
+     * @param ordre Propiedad por la que ordenar.
+     * @param dir Dirección del orden, "asc" o "desc".
      * @return La vista "vehicles-list" que muestra la lista de vehículos.
      */
     @GetMapping
-    public String listVehicles(Model model,  Authentication authentication) {
+    public String listVehicles(Model model,  Authentication authentication, @RequestParam(required = false) String despres,
+            @RequestParam(required = false) String abans, @RequestParam(required = false) Integer mida,
+            @RequestParam(required = false) String ordre, @RequestParam(required = false) String dir) {
+        Paginacio.Peticio peticio = Paginacio.Peticio.de(despres, abans, mida, ordre, dir,
+                VehicleService.ORDRES, "matricula");
+        Paginacio<Vehicle> pagina;
         
         boolean isAuthenticated = authentication != null && authentication.isAuthenticated();
         model.addAttribute("isAuthenticated", isAuthenticated);
@@ -71,20 +102,18 @@ public class VehicleController {
         if(authentication != null){
             model.addAttribute("authorities", authentication.getAuthorities());
             
-            boolean esAdmin = authentication.getAuthorities().stream()
-            .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+            boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
             if(esAdmin){
-               List<Vehicle> vehicles = vehicleService.consultarVehicles();
-               model.addAttribute("vehicles", vehicles);
+               pagina = vehicleService.consultarVehicles(peticio);
             }else{
-               List<Vehicle> vehiclesPropis = vehicleService.consultarVehiclesPropis(authentication);
-               model.addAttribute("vehicles", vehiclesPropis);                
+               pagina = vehicleService.consultarVehiclesPropis(authentication, peticio);
             }
             
         }else{
-            List<Vehicle> vehicles = vehicleService.consultarVehicles();
-            model.addAttribute("vehicles", vehicles);
+            pagina = vehicleService.consultarVehicles(peticio);
         }
+        model.addAttribute("vehicles", pagina.getElements());
+        model.addAttribute("pagina", pagina);
                 
              
        
@@ -114,20 +143,11 @@ public class VehicleController {
         if(authentication != null){
             
         
-            boolean esAdmin = authentication.getAuthorities().stream()
-            .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+            boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
             if(esAdmin){
                  model.addAttribute("localitzacions", localitzacioRepository.findAll());
             }else{
-                UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-                String username = userDetails.getUsername();
-                List<Agent> agents = agentRepo.findByEmail(username);
-                Agent agent = new Agent();
-                if(!agents.isEmpty()){
-                    agent = agents.getFirst();
-                }else agent = null;
-
-                Localitzacio localitzacio = agent.getLocalitzacio();
+                Localitzacio localitzacio = vehicleService.getLocalitzacioAgent(authentication);
                 model.addAttribute("localitzacions", localitzacio);              
             }
         }
@@ -161,8 +181,8 @@ public class VehicleController {
 
             if (imagen != null && !imagen.isEmpty()) {
                 VehicleImages vehicleImage = new VehicleImages();
-                vehicleImage.setData(imagen.getBytes());
                 vehicleImage.setVehicle(vehicle);
+                imatgeService.assignarContingut(vehicleImage, imagen);
 
                 if (vehicle.getImatges() == null) {
                     vehicle.setImatges(new ArrayList<>());
@@ -184,20 +204,11 @@ public class VehicleController {
             if(authentication != null){
 
 
-                boolean esAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+                boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
                 if(esAdmin){
                      model.addAttribute("localitzacions", localitzacioRepository.findAll());
                 }else{
-                    UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-                    String username = userDetails.getUsername();
-                    List<Agent> agents = agentRepo.findByEmail(username);
-                    Agent agent = new Agent();
-                    if(!agents.isEmpty()){
-                        agent = agents.getFirst();
-                    }else agent = null;
-
-                    Localitzacio localitzacio = agent.getLocalitzacio();
+                    Localitzacio localitzacio = vehicleService.getLocalitzacioAgent(authentication);
                     model.addAttribute("localitzacions", localitzacio);              
                 }
             }
@@ -208,6 +219,37 @@ public class VehicleController {
         }
     }
 
+    /**
+     * Busca los vehículos activos libres durante todo un periodo, con filtros
+     * opcionales de localización, tipo y precio máximo por día. La consulta es
+     * única para toda la flota, así que el tiempo de respuesta no depende del
+     * número de vehículos a comprobar uno a uno.
+     *
+     * @param inici El día de recogida (ISO, yyyy-MM-dd).
+     * @param fi El día de devolución (ISO, yyyy-MM-dd).
+     * @param codiPostal El código postal de la localización (opcional).
+     * @param tipus El tipo de vehículo (opcional).
+     * @param preuMaxim El precio por día máximo (opcional).
+     * @return Los vehículos libres en JSON, ordenados por precio.
+     */
+    @GetMapping("/disponibles")
+    @ResponseBody
+    public List<VehicleDisponible> getVehiclesDisponibles(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inici,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fi,
+            @RequestParam(required = false) String codiPostal,
+            @RequestParam(required = false) TipusVehicle tipus,
+            @RequestParam(required = false) Double preuMaxim) {
+        try {
+            return vehicleService.consultarVehiclesDisponibles(inici, fi, codiPostal, tipus, preuMaxim, null)
+                    .stream()
+                    .map(VehicleDisponible::de)
+                    .collect(Collectors.toList());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     // Obtener modelos por marca
     @GetMapping("/models/{marca}")
     @ResponseBody
@@ -264,20 +306,11 @@ public class VehicleController {
             if(authentication != null){
 
 
-                boolean esAdmin = authentication.getAuthorities().stream()
-                .anyMatch(authority -> authority.getAuthority().equals("ADMIN"));
+                boolean esAdmin = Usuario.hasPermis(authentication, TipusPermis.ADMIN);
                 if(esAdmin){
                      model.addAttribute("localitzacions", localitzacioRepository.findAll());
                 }else{
-                    UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-                    String username = userDetails.getUsername();
-                    List<Agent> agents = agentRepo.findByEmail(username);
-                    Agent agent = new Agent();
-                    if(!agents.isEmpty()){
-                        agent = agents.getFirst();
-                    }else agent = null;
-
-                    Localitzacio localitzacio = agent.getLocalitzacio();
+                    Localitzacio localitzacio = vehicleService.getLocalitzacioAgent(authentication);
                     model.addAttribute("localitzacions", localitzacio);              
                 }
             }
@@ -293,18 +326,24 @@ public class VehicleController {
      * @param matricula La matrícula del vehículo a actualizar.
      * @param imagen La nueva imagen del vehículo (opcional).
      * @param vehicle Los nuevos datos del vehículo.
+     * @param redirectAttributes Atributos para mostrar el motivo si se
+     * rechaza la imagen.
      * @return Redirige a la lista de vehículos si la operación es exitosa, o
      * muestra un mensaje de error si ocurre algún problema.
      */
     @PostMapping("/edit/{matricula}")
     public String updateVehicle(@PathVariable String matricula,
             @RequestParam(value = "imagen", required = false) MultipartFile imagen,
-            @ModelAttribute Vehicle vehicle) {
+            @ModelAttribute Vehicle vehicle, RedirectAttributes redirectAttributes) {
         try {
             vehicleService.updateVehicle(matricula, vehicle, imagen);
         } catch (IOException e) {
             e.printStackTrace();
             return "redirect:/vehicles?error=ImageProcessingError";
+        } catch (IllegalArgumentException e) {
+            // Imagen que no es una imagen o que supera el tamaño máximo
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "redirect:/vehicles/edit/" + matricula;
         }
         return "redirect:/vehicles";
     }
@@ -367,9 +406,9 @@ public class VehicleController {
 
 
     /**
-     * Carga un vehículo específico y sus imágenes. Este método carga la imagen
-     * principal del vehículo y las demás imágenes asociadas a él, y las
-     * convierte a formato Base64 para mostrarlas en la vista.
+     * Carga un vehículo específico y sus imágenes. La vista solo recibe los
+     * IDs de las imágenes: el navegador las pide después por URL, como en los
+     * listados, y las puede guardar en caché.
      *
      * @param matricula La matrícula del vehículo a cargar.
      * @param model El modelo para agregar los atributos necesarios para la
@@ -386,22 +425,17 @@ public class VehicleController {
             model.addAttribute("authorities", authentication.getAuthorities());
         }
         if (vehicle != null) {
-            byte[] mainImageData = vehicleService.getSmallestImageForVehicle(matricula);
-            String mainImageBase64 = mainImageData != null ? Base64.getEncoder().encodeToString(mainImageData) : null;
-
-            List<byte[]> restImageDataList = vehicleService.getRestImagesForVehicle(matricula);
-            List<String> restImageBase64List = restImageDataList.stream()
-                    .map(image -> Base64.getEncoder().encodeToString(image))
+            // La primera imagen es la principal; el resto se muestran como miniaturas
+            List<ImatgeInfo> imatges = imatgeService.getImatgesVehicle(matricula);
+            List<Long> idsAltresImatges = imatges.stream()
+                    .skip(1)
+                    .filter(info -> info.getHash() != null)
+                    .map(ImatgeInfo::getId)
                     .collect(Collectors.toList());
 
-            Map<String, String> vehicleImages = new HashMap<>();
-            if (mainImageBase64 != null) {
-                vehicleImages.put(vehicle.getMatricula(), mainImageBase64);
-            }
-
             model.addAttribute("vehicle", vehicle);
-            model.addAttribute("vehicleImages", vehicleImages);
-            model.addAttribute("restImageBase64List", restImageBase64List);
+            model.addAttribute("teImatge", !imatges.isEmpty());
+            model.addAttribute("idsAltresImatges", idsAltresImatges);
         }
 
         return "selected-vehicle";
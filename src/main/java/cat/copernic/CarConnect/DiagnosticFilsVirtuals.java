@@ -0,0 +1,172 @@
+package cat.copernic.CarConnect;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Diagnóstico de hilos virtuales fijados a su portador ("pinning").
+ * <p>
+ * Con {@code spring.threads.virtual.enabled=true}, las peticiones web, las
+ * tareas {@code @Async} y las tareas programadas se ejecutan en hilos
+ * virtuales. Un hilo virtual que se bloquea dentro de un bloque
+ * {@code synchronized} (en nuestro código o en un driver) no libera su hilo
+ * portador, y si pasa a menudo se pierde la ventaja de los hilos virtuales.
+ * Este componente escucha el evento JFR {@code jdk.VirtualThreadPinned} y
+ * agrupa las fijaciones por su origen: el primer marco de la pila que no es
+ * del JDK. La primera vez que aparece un origen se escribe su pila en el log;
+ * después solo se cuenta (ver {@code /estat/fils-virtuals}).
+ * </p>
+ *
+ * @author david
+ */
+@Component
+public class DiagnosticFilsVirtuals {
+
+    private static final Logger log = LoggerFactory.getLogger(DiagnosticFilsVirtuals.class);
+
+    private static final int MARCS_LOG = 12;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean filsVirtuals;
+
+    @Value("${carconnect.fils-virtuals.diagnostic.enabled:true}")
+    private boolean diagnosticActiu;
+
+    @Value("${carconnect.fils-virtuals.diagnostic.llindar:PT20MS}")
+    private Duration llindar;
+
+    private final Map<String, Comptador> perOrigen = new ConcurrentHashMap<>();
+
+    private volatile RecordingStream stream;
+
+    /**
+     * Fijaciones registradas desde un mismo origen.
+     *
+     * @param origen El primer marco de la pila fuera del JDK.
+     * @param vegades El número de fijaciones.
+     * @param totalMillis El tiempo total fijado, en milisegundos.
+     * @param maximMillis La fijación más larga, en milisegundos.
+     */
+    public record Fixacio(String origen, long vegades, long totalMillis, long maximMillis) {
+    }
+
+    private static final class Comptador {
+
+        private final LongAdder vegades = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxim = new AtomicLong();
+    }
+
+    /**
+     * Al arrancar, empieza a escuchar las fijaciones si los hilos virtuales
+     * están activados.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void iniciar() {
+        if (!filsVirtuals || !diagnosticActiu) {
+            return;
+        }
+        try {
+            RecordingStream rs = new RecordingStream();
+            rs.enable("jdk.VirtualThreadPinned").withThreshold(llindar).withStackTrace();
+            rs.onEvent("jdk.VirtualThreadPinned", this::registrar);
+            rs.startAsync();
+            stream = rs;
+            log.info("Diagnóstico de hilos virtuales fijados activo (umbral {} ms).", llindar.toMillis());
+        } catch (Exception e) {
+            log.warn("No se ha podido iniciar el diagnóstico de hilos virtuales", e);
+        }
+    }
+
+    /**
+     * Indica si se están escuchando las fijaciones.
+     *
+     * @return true si el diagnóstico está activo.
+     */
+    public boolean isActiu() {
+        return stream != null;
+    }
+
+    /**
+     * Obtiene las fijaciones registradas, de más a menos tiempo fijado.
+     *
+     * @return Las fijaciones agrupadas por origen.
+     */
+    public List<Fixacio> fixacions() {
+        return perOrigen.entrySet().stream()
+                .map(e -> new Fixacio(e.getKey(), e.getValue().vegades.sum(),
+                        e.getValue().nanos.sum() / 1_000_000, e.getValue().maxim.get() / 1_000_000))
+                .sorted(Comparator.comparingLong(Fixacio::totalMillis).reversed())
+                .toList();
+    }
+
+    @PreDestroy
+    public void aturar() {
+        RecordingStream rs = stream;
+        if (rs != null) {
+            stream = null;
+            rs.close();
+        }
+    }
+
+    private void registrar(RecordedEvent event) {
+        List<RecordedFrame> marcs = event.getStackTrace() != null ? event.getStackTrace().getFrames() : List.of();
+        String origen = origen(marcs);
+        long nanos = event.getDuration().toNanos();
+
+        Comptador comptador = perOrigen.computeIfAbsent(origen, o -> {
+            escriurePila(event, o, marcs);
+            return new Comptador();
+        });
+        comptador.vegades.increment();
+        comptador.nanos.add(nanos);
+        comptador.maxim.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static void escriurePila(RecordedEvent event, String origen, List<RecordedFrame> marcs) {
+        StringBuilder sb = new StringBuilder("Hilo virtual fijado a su portador durante ")
+                .append(event.getDuration().toMillis()).append(" ms en ").append(origen);
+        String fil = event.getThread() != null ? event.getThread().getJavaName() : null;
+        if (fil != null && !fil.isEmpty()) {
+            sb.append(" (").append(fil).append(")");
+        }
+        for (int i = 0; i < marcs.size() && i < MARCS_LOG; i++) {
+            sb.append(System.lineSeparator()).append("    at ").append(marc(marcs.get(i)));
+        }
+        log.warn(sb.toString());
+    }
+
+    /**
+     * Primer marco de la pila que no pertenece al JDK, o el primero de todos
+     * si la pila es solo del JDK.
+     */
+    private static String origen(List<RecordedFrame> marcs) {
+        for (RecordedFrame marc : marcs) {
+            String tipus = marc.getMethod().getType().getName();
+            if (!tipus.startsWith("java.") && !tipus.startsWith("jdk.") && !tipus.startsWith("sun.")) {
+                return marc(marc);
+            }
+        }
+        return marcs.isEmpty() ? "desconocido" : marc(marcs.get(0));
+    }
+
+    private static String marc(RecordedFrame marc) {
+        return marc.getMethod().getType().getName() + "." + marc.getMethod().getName()
+                + (marc.getLineNumber() > 0 ? ":" + marc.getLineNumber() : "");
+    }
+}
@@ -0,0 +1,36 @@
+package cat.copernic.CarConnect.Entity.MongoDB;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Lo que una reserva aporta ahora mismo a {@link EstadisticaDiariaReserves}.
+ * Cuando llega un nuevo evento de la reserva, se resta esta aportación y se
+ * suma la nueva; el ID del último evento aplicado evita aplicar dos veces el
+ * mismo evento.
+ *
+ * @author Carlos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "reservation_daily_stats_state")
+public class AportacioReserva {
+
+    @Id
+    private Long reservaId;
+
+    private String eventId; // ID en historic_reserves del último evento aplicado
+
+    private boolean activa; // false si la reserva está cancelada o eliminada
+    private String vehicleId;
+    private String codiPostal;
+    private String tipusVehicle;
+    private LocalDate inici;
+    private LocalDate fi;
+    private double ingressos;
+}
@@ -0,0 +1,25 @@
+package cat.copernic.CarConnect.Entity.MongoDB;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Referencia a un archivo guardado en un bucket de GridFS. Los documentos de
+ * documentación solo guardan estas referencias; el contenido se lee del bucket
+ * en streaming cuando se descarga.
+ *
+ * @author David
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentFitxer {
+
+    private String fileId; // ObjectId del archivo en GridFS (hexadecimal)
+    private String nom; // Nombre original del archivo
+    private String contentType; // Tipo MIME detectado al subirlo
+    private long mida; // Tamaño en bytes
+    private Instant dataPujada;
+}
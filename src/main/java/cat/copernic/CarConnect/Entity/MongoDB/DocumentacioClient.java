@@ -1,6 +1,7 @@
 package cat.copernic.CarConnect.Entity.MongoDB;
 
-import jakarta.websocket.Encoder.Binary;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
@@ -13,5 +14,5 @@ public class DocumentacioClient {
     private String id; // ID único para el documento
 
     private String dni; // DNI del cliente (relación con Client en MySQL)
-    private Binary[] documents; // Array de rutas o referencias a documentos del cliente (e.g., DNI escaneado)
+    private List<DocumentFitxer> documents = new ArrayList<>(); // Referencias a los archivos en GridFS (e.g., DNI escaneado)
 }
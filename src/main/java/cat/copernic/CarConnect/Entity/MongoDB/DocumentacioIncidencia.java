@@ -1,6 +1,7 @@
 package cat.copernic.CarConnect.Entity.MongoDB;
 
-import jakarta.websocket.Encoder.Binary;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,5 +18,5 @@ public class DocumentacioIncidencia {
     private String id; // ID único para el documento
 
     private String idIncidencia; // ID de la incidencia (relación con Incident en MongoDB)
-    private Binary[] documents; // Array de rutas o referencias a documentos (e.g., fotos, informes)
+    private List<DocumentFitxer> documents = new ArrayList<>(); // Referencias a los archivos en GridFS (e.g., fotos, informes)
 }
@@ -0,0 +1,38 @@
+package cat.copernic.CarConnect.Entity.MongoDB;
+
+import java.time.LocalDate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Agregado diario de las reservas de un vehículo, con la localización y el
+ * tipo que tenía el vehículo en esas reservas. Lo mantiene de forma
+ * incremental {@code EstadistiquesReservesService} a medida que se publican
+ * los eventos del histórico de reservas.
+ *
+ * @author Carlos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "reservation_daily_stats")
+public class EstadisticaDiariaReserves {
+
+    @Id
+    private String id; // "dia|vehicleId|codiPostal|tipusVehicle"
+
+    @Indexed
+    private LocalDate dia;
+
+    private String vehicleId;
+    private String codiPostal;
+    private String tipusVehicle;
+
+    private long reserves; // Reservas que empiezan este día
+    private double ingressos; // Parte del precio de las reservas que corresponde a este día
+    private long diesUtilitzacio; // Días de vehículo ocupados este día
+}
@@ -1,6 +1,8 @@
 package cat.copernic.CarConnect.Entity.MongoDB;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -18,6 +20,11 @@ import java.time.LocalDate;
  */
 
 @Document(collection = "historic_incidencies")
+@CompoundIndexes({
+    // Informe de incidencias: filtro por vehículo y orden por fecha e id (ver InformeIncidenciesService)
+    @CompoundIndex(name = "idx_vehicle_fecha_id", def = "{'vehicleId': 1, 'fecha': -1, '_id': 1}"),
+    @CompoundIndex(name = "idx_fecha_id", def = "{'fecha': -1, '_id': 1}")
+})
 public class HistoricIncidencies {
 
     @Id
@@ -2,6 +2,8 @@ package cat.copernic.CarConnect.Entity.MongoDB;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -23,6 +25,11 @@ import java.time.LocalDate;
 //@Data
 
 @Document(collection = "historic_reserves")
+@CompoundIndexes({
+    // Informe de reservas: filtro por cliente y orden por cliente, fecha e id (ver InformeReservesService)
+    @CompoundIndex(name = "idx_client_data_id", def = "{'clientDni': 1, 'startDate': -1, '_id': 1}"),
+    @CompoundIndex(name = "idx_data", def = "{'startDate': -1}")
+})
 public class HistoricReserves {
 
     @Id
@@ -38,6 +45,8 @@ public class HistoricReserves {
     private String email;
     private String telefon;
     private String nom;
+    private String codiPostal; // Código postal de la localización del vehículo
+    private String tipusVehicle; // Tipo del vehículo (TipusVehicle)
     
     
     //getters y setters
@@ -129,5 +138,21 @@ public class HistoricReserves {
     public void setNom(String nom) {
         this.nom = nom;
     }
+
+    public String getCodiPostal() {
+        return codiPostal;
+    }
+
+    public void setCodiPostal(String codiPostal) {
+        this.codiPostal = codiPostal;
+    }
+
+    public String getTipusVehicle() {
+        return tipusVehicle;
+    }
+
+    public void setTipusVehicle(String tipusVehicle) {
+        this.tipusVehicle = tipusVehicle;
+    }
     
 }
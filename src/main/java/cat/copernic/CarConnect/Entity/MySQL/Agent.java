@@ -20,6 +20,7 @@ import lombok.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import org.springframework.security.core.GrantedAuthority;
 
@@ -199,26 +200,26 @@ public class Agent extends Client {
  
     public void setPermisosSegunRol(){
         
-        String permisos =
-            TipusPermis.HISTORIC_RESERVES.toString()+","+
-            TipusPermis.HISTORIC_INCIDENCIES.toString()+","+
-            TipusPermis.CREAR_RESERVES.toString()+","+
-            TipusPermis.LLISTAR_RESERVES.toString()+","+
-            TipusPermis.EDITAR_RESERVES.toString()+","+
-            TipusPermis.ELIMINAR_RESERVES.toString()+","+
-            TipusPermis.CREAR_VEHICLE.toString()+","+
-            TipusPermis.LLISTAR_VEHICLE.toString()+","+
-            TipusPermis.EDITAR_VEHICLE.toString()+","+
-            TipusPermis.ELIMINAR_VEHICLE.toString()+","+
-            TipusPermis.CREAR_INCIDENCIES.toString()+","+
-            TipusPermis.LLISTAR_INCIDENCIES.toString()+","+
-            TipusPermis.EDITAR_INCIDENCIES.toString()+","+
-            TipusPermis.ELIMINAR_INCIDENCIES.toString()
-            ;
+        EnumSet<TipusPermis> permisos = EnumSet.of(
+            TipusPermis.HISTORIC_RESERVES,
+            TipusPermis.HISTORIC_INCIDENCIES,
+            TipusPermis.CREAR_RESERVES,
+            TipusPermis.LLISTAR_RESERVES,
+            TipusPermis.EDITAR_RESERVES,
+            TipusPermis.ELIMINAR_RESERVES,
+            TipusPermis.CREAR_VEHICLE,
+            TipusPermis.LLISTAR_VEHICLE,
+            TipusPermis.EDITAR_VEHICLE,
+            TipusPermis.ELIMINAR_VEHICLE,
+            TipusPermis.CREAR_INCIDENCIES,
+            TipusPermis.LLISTAR_INCIDENCIES,
+            TipusPermis.EDITAR_INCIDENCIES,
+            TipusPermis.ELIMINAR_INCIDENCIES
+            );
         if(this.rol!=null && this.rol.equals(Rol.ADMINISTRADOR) ){    
-            permisos += ","+TipusPermis.ADMIN.toString();
+            permisos.add(TipusPermis.ADMIN);
         }
-        super.setLlistaPermisos(permisos);
+        super.setPermisos(permisos);
        
     }
      
@@ -8,20 +8,20 @@ import cat.copernic.CarConnect.Entity.MySQL.Enums.Nacionalitats;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusClient;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusLlicenciaConduccio;
-import cat.copernic.CarConnect.Security.Permis;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Inheritance;
 import jakarta.persistence.InheritanceType;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.*;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 /**
@@ -39,6 +39,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 @AllArgsConstructor
 @EqualsAndHashCode(callSuper = true)
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_client_email", columnNames = "email"))
 @Inheritance(strategy=InheritanceType.JOINED)
 public class Client extends Usuario implements UserDetails  {
 
@@ -84,9 +85,12 @@ public class Client extends Usuario implements UserDetails  {
     @OneToMany(mappedBy = "client")
     private List<Reserva> reserves;
             
-    private String llistaPermisos = 
-            TipusPermis.CREAR_RESERVES.toString()+","+
-            TipusPermis.LLISTAR_RESERVES.toString();
+    /**
+     * Antigua lista de permisos separados por comas. Solo se lee para migrar
+     * los usuarios existentes a la máscara de permisos de {@link Usuario}.
+     */
+    @Column(name = "llista_permisos")
+    private String llistaPermisos;
      
 
     /*
@@ -101,21 +105,31 @@ public class Client extends Usuario implements UserDetails  {
      * @param reserves Lista de reservas asociadas al cliente.
      */
 
-     @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        
-        List<GrantedAuthority> ret = new ArrayList<>();
-        
-        String[] llista1 = llistaPermisos.split(",");
-        
-        for (String p : llista1)
-        {
-            ret.add(new Permis(TipusPermis.valueOf(p)));
+    /**
+     * Migra los permisos de la antigua lista separada por comas a la máscara
+     * de bits la primera vez que se carga el usuario. Los nombres que ya no
+     * son permisos se descartan. El cambio se guarda con la siguiente
+     * escritura del usuario.
+     */
+    @PostLoad
+    private void migrarPermisos() {
+        if (llistaPermisos == null) {
+            return;
+        }
+        if (getMascaraPermisos() == 0) {
+            long mascara = 0;
+            for (String permis : llistaPermisos.split(",")) {
+                try {
+                    mascara |= TipusPermis.valueOf(permis.trim()).bit();
+                } catch (IllegalArgumentException e) {
+                    // Entrada vacía o permiso eliminado: no debe impedir cargar el usuario
+                }
+            }
+            setMascaraPermisos(mascara);
         }
-        
-        return ret;
+        llistaPermisos = null;
     }
-    
+
     // GETTERS Y SETTERS
     
     public LocalDate getCaducitatDni() {
@@ -258,14 +272,6 @@ public class Client extends Usuario implements UserDetails  {
     }
     
     
-    public String getLlistaPermisos() {
-        return llistaPermisos;
-    }
-
-    public void setLlistaPermisos(String llistaPermisos) {
-        this.llistaPermisos = llistaPermisos;
-    }
-
     /**
      * Obtiene la nacionalidad del cliente.
      *
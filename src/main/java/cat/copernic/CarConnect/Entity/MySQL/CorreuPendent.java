@@ -0,0 +1,154 @@
+package cat.copernic.CarConnect.Entity.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.EstatCorreu;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Correo de la cola de salida (outbox).
+ * <p>
+ * Las peticiones no envían los correos directamente: guardan una fila en esta
+ * tabla y el proceso {@code EnviamentCorreus} los envía por lotes en segundo
+ * plano, reintentando los que fallan.
+ * </p>
+ *
+ * @author Toni
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "correu_pendent",
+        indexes = @Index(name = "idx_correu_estat_proper_intent", columnList = "estat, proper_intent"))
+public class CorreuPendent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String destinatari;
+
+    @Column(nullable = false)
+    private String assumpte;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String contingut;
+
+    private boolean html; // true si el contenido es HTML
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EstatCorreu estat;
+
+    private int intents; // Número de envíos fallidos
+
+    @Column(nullable = false)
+    private LocalDateTime properIntent; // No se envía antes de este momento
+
+    @Column(nullable = false)
+    private LocalDateTime dataCreacio;
+
+    private LocalDateTime dataEnviament;
+
+    @Column(length = 1000)
+    private String darrerError;
+
+    // Getters y setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDestinatari() {
+        return destinatari;
+    }
+
+    public void setDestinatari(String destinatari) {
+        this.destinatari = destinatari;
+    }
+
+    public String getAssumpte() {
+        return assumpte;
+    }
+
+    public void setAssumpte(String assumpte) {
+        this.assumpte = assumpte;
+    }
+
+    public String getContingut() {
+        return contingut;
+    }
+
+    public void setContingut(String contingut) {
+        this.contingut = contingut;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+
+    public void setHtml(boolean html) {
+        this.html = html;
+    }
+
+    public EstatCorreu getEstat() {
+        return estat;
+    }
+
+    public void setEstat(EstatCorreu estat) {
+        this.estat = estat;
+    }
+
+    public int getIntents() {
+        return intents;
+    }
+
+    public void setIntents(int intents) {
+        this.intents = intents;
+    }
+
+    public LocalDateTime getProperIntent() {
+        return properIntent;
+    }
+
+    public void setProperIntent(LocalDateTime properIntent) {
+        this.properIntent = properIntent;
+    }
+
+    public LocalDateTime getDataCreacio() {
+        return dataCreacio;
+    }
+
+    public void setDataCreacio(LocalDateTime dataCreacio) {
+        this.dataCreacio = dataCreacio;
+    }
+
+    public LocalDateTime getDataEnviament() {
+        return dataEnviament;
+    }
+
+    public void setDataEnviament(LocalDateTime dataEnviament) {
+        this.dataEnviament = dataEnviament;
+    }
+
+    public String getDarrerError() {
+        return darrerError;
+    }
+
+    public void setDarrerError(String darrerError) {
+        this.darrerError = darrerError;
+    }
+}
@@ -0,0 +1,10 @@
+package cat.copernic.CarConnect.Entity.MySQL.Enums;
+
+/**
+ * Enumerador que define los estados de un correo de la cola de salida.
+ */
+public enum EstatCorreu {
+    PENDENT,
+    ENVIAT,
+    FALLIT
+}
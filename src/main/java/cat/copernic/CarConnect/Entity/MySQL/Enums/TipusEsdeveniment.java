@@ -0,0 +1,10 @@
+package cat.copernic.CarConnect.Entity.MySQL.Enums;
+
+/**
+ * Enumerador que define los tipos de evento del histórico, según la colección
+ * de MongoDB a la que se publican.
+ */
+public enum TipusEsdeveniment {
+    RESERVA,
+    INCIDENCIA
+}
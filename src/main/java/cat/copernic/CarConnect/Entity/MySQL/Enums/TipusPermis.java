@@ -1,9 +1,17 @@
 package cat.copernic.CarConnect.Entity.MySQL.Enums;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 /**
  * Enumerador que define los tipos de permisos disponibles en el sistema. Estos
  * permisos se asignan a los roles de usuario para controlar el acceso a la
  * gestión de vehículos, reservas e incidencias.
+ * <p>
+ * Los permisos de un usuario se guardan como una máscara de bits en la que
+ * cada permiso ocupa el bit de su ordinal, así que los permisos nuevos se
+ * tienen que añadir siempre al final.
+ * </p>
  */
 public enum TipusPermis {
     
@@ -42,5 +50,44 @@ public enum TipusPermis {
     HISTORIC_INCIDENCIES,
     HISTORIC_RESERVES,
     // Permisos de administrador
-    ADMIN // Permiso para obtener todos los permisos
+    ADMIN; // Permiso para obtener todos los permisos
+
+    /**
+     * Obtiene el bit del permiso dentro de la máscara.
+     *
+     * @return La máscara con solo este permiso.
+     */
+    public long bit() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * Calcula la máscara de un conjunto de permisos.
+     *
+     * @param permisos Los permisos.
+     * @return La máscara de bits.
+     */
+    public static long mascara(Set<TipusPermis> permisos) {
+        long mascara = 0;
+        for (TipusPermis permis : permisos) {
+            mascara |= permis.bit();
+        }
+        return mascara;
+    }
+
+    /**
+     * Obtiene los permisos de una máscara.
+     *
+     * @param mascara La máscara de bits.
+     * @return Los permisos de la máscara.
+     */
+    public static EnumSet<TipusPermis> deMascara(long mascara) {
+        EnumSet<TipusPermis> permisos = EnumSet.noneOf(TipusPermis.class);
+        for (TipusPermis permis : values()) {
+            if ((mascara & permis.bit()) != 0) {
+                permisos.add(permis);
+            }
+        }
+        return permisos;
+    }
 }
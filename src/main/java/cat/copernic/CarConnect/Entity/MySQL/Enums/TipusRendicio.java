@@ -0,0 +1,27 @@
+package cat.copernic.CarConnect.Entity.MySQL.Enums;
+
+/**
+ * Enumerador que define las versiones redimensionadas que se generan para cada
+ * imagen de vehículo. Cada versión indica el tamaño máximo (en píxeles) del
+ * lado más largo de la imagen.
+ */
+public enum TipusRendicio {
+    THUMBNAIL(240),
+    CARD(640),
+    FULL(1600);
+
+    private final int midaMaxima;
+
+    TipusRendicio(int midaMaxima) {
+        this.midaMaxima = midaMaxima;
+    }
+
+    /**
+     * Obtiene el tamaño máximo del lado más largo de la imagen.
+     *
+     * @return Tamaño máximo en píxeles.
+     */
+    public int getMidaMaxima() {
+        return midaMaxima;
+    }
+}
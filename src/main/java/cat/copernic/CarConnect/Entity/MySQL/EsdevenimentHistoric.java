@@ -0,0 +1,78 @@
+package cat.copernic.CarConnect.Entity.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusEsdeveniment;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento pendiente de publicar en el histórico de MongoDB (outbox).
+ * <p>
+ * Se guarda en la misma transacción que el cambio de la reserva o la
+ * incidencia, así que el histórico nunca pierde un cambio confirmado. El
+ * proceso {@code PublicadorHistoric} lo publica y lo borra.
+ * </p>
+ *
+ * @author Toni
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "esdeveniment_historic")
+public class EsdevenimentHistoric {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private TipusEsdeveniment tipus;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String document; // Documento del histórico en JSON, con su ID de MongoDB ya asignado
+
+    @Column(nullable = false)
+    private LocalDateTime dataCreacio;
+
+    // Getters y setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public TipusEsdeveniment getTipus() {
+        return tipus;
+    }
+
+    public void setTipus(TipusEsdeveniment tipus) {
+        this.tipus = tipus;
+    }
+
+    public String getDocument() {
+        return document;
+    }
+
+    public void setDocument(String document) {
+        this.document = document;
+    }
+
+    public LocalDateTime getDataCreacio() {
+        return dataCreacio;
+    }
+
+    public void setDataCreacio(LocalDateTime dataCreacio) {
+        this.dataCreacio = dataCreacio;
+    }
+}
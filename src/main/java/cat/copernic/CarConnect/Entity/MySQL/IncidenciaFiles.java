@@ -13,7 +13,6 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import jakarta.persistence.Lob;
 
 
 //@Data
@@ -27,14 +26,15 @@ public class IncidenciaFiles {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Lob
-    @Column(nullable = false, columnDefinition = "LONGBLOB")
-    private byte[] fileData; // Archivo en formato binario
-
     private String description;
 
     private String fileType; // Tipo de archivo (ej. "image/png", "image/jpeg")
 
+    private Long mida; // Tamaño en bytes del archivo
+
+    @Column(length = 64)
+    private String hash; // SHA-256 del archivo, referencia al BlobStore
+
     @ManyToOne
     @JoinColumn(name = "incidencia_id", nullable = false)
     private Incidencia incidencia; // Relación con Incidencia
@@ -50,12 +50,20 @@ public class IncidenciaFiles {
         this.id = id;
     }
 
-    public byte[] getFileData() {
-        return fileData;
+    public Long getMida() {
+        return mida;
+    }
+
+    public void setMida(Long mida) {
+        this.mida = mida;
+    }
+
+    public String getHash() {
+        return hash;
     }
 
-    public void setFileData(byte[] fileData) {
-        this.fileData = fileData;
+    public void setHash(String hash) {
+        this.hash = hash;
     }
 
     public String getDescription() {
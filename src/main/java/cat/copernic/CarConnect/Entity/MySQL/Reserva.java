@@ -18,6 +18,8 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@Table(indexes = @Index(name = "idx_reserva_vehicle_dates",
+        columnList = "vehicle_matricula, data_hora_recollida, data_hora_devolucio"))
 public class Reserva {
 
     /**
@@ -1,7 +1,14 @@
 package cat.copernic.CarConnect.Entity.MySQL;
 
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Security.Permis;
 import jakarta.persistence.*;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
 import lombok.Data;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 /**
@@ -48,6 +55,62 @@ public abstract class Usuario implements UserDetails {
      */
     private String telefono;
 
+    /**
+     * Permisos del usuario como máscara de bits (ver {@link TipusPermis#bit()}).
+     * Por defecto, los permisos de un cliente.
+     */
+    @Column(nullable = false)
+    private long permisos = TipusPermis.CREAR_RESERVES.bit() | TipusPermis.LLISTAR_RESERVES.bit();
+
+    /**
+     * Indica si el usuario tiene un permiso.
+     *
+     * @param permis El permiso.
+     * @return true si el usuario tiene el permiso.
+     */
+    public boolean hasPermis(TipusPermis permis) {
+        return (permisos & permis.bit()) != 0;
+    }
+
+    /**
+     * Indica si el usuario tiene un permiso, por nombre. Pensado para las
+     * plantillas, p. ej. {@code ${#authentication.principal.hasPermis('ADMIN')}}.
+     *
+     * @param permis El nombre del permiso.
+     * @return true si el usuario tiene el permiso; false si no lo tiene o el
+     * nombre no es un permiso.
+     */
+    public boolean hasPermis(String permis) {
+        try {
+            return hasPermis(TipusPermis.valueOf(permis));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Indica si el usuario autenticado tiene un permiso.
+     *
+     * @param authentication La autenticación actual, o null.
+     * @param permis El permiso.
+     * @return true si hay un usuario autenticado y tiene el permiso.
+     */
+    public static boolean hasPermis(Authentication authentication, TipusPermis permis) {
+        return authentication != null && authentication.getPrincipal() instanceof Usuario usuari
+                && usuari.hasPermis(permis);
+    }
+
+    /**
+     * Retorna los permisos del usuario. La lista es inmutable y compartida
+     * entre todos los usuarios con los mismos permisos.
+     *
+     * @return Colección de permisos como objetos de tipo {@link GrantedAuthority}.
+     */
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return Permis.deMascara(permisos);
+    }
+
     // MÉTODOS GETTERS Y SETTERS
     /**
      * Obtiene el DNI del usuario.
@@ -157,4 +220,40 @@ public abstract class Usuario implements UserDetails {
     public void setTelefono(String telefono) {
         this.telefono = telefono;
     }
+
+    /**
+     * Obtiene los permisos del usuario.
+     *
+     * @return Los permisos.
+     */
+    public EnumSet<TipusPermis> getPermisos() {
+        return TipusPermis.deMascara(permisos);
+    }
+
+    /**
+     * Establece los permisos del usuario.
+     *
+     * @param permisos Los nuevos permisos.
+     */
+    public void setPermisos(Set<TipusPermis> permisos) {
+        this.permisos = TipusPermis.mascara(permisos);
+    }
+
+    /**
+     * Obtiene la máscara de bits de los permisos.
+     *
+     * @return La máscara.
+     */
+    public long getMascaraPermisos() {
+        return permisos;
+    }
+
+    /**
+     * Establece la máscara de bits de los permisos.
+     *
+     * @param permisos La nueva máscara.
+     */
+    protected void setMascaraPermisos(long permisos) {
+        this.permisos = permisos;
+    }
 }
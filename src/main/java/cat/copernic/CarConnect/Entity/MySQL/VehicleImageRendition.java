@@ -0,0 +1,123 @@
+package cat.copernic.CarConnect.Entity.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusRendicio;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+
+/**
+ * Versión redimensionada y recodificada de una imagen de vehículo.
+ * <p>
+ * Cada {@link VehicleImages} tiene como máximo una versión por
+ * {@link TipusRendicio}. Los listados sirven la miniatura en lugar de la
+ * imagen original.
+ * </p>
+ *
+ * @author Carlos
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "vehicle_image_rendition",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"imatge_id", "tipus"}))
+public class VehicleImageRendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "imatge_id", nullable = false)
+    private VehicleImages imatge;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private TipusRendicio tipus;
+
+    @Column(length = 64)
+    private String hash; // SHA-256 de la versión, referencia al BlobStore
+
+    private String contentType; // Tipo MIME de la versión (ej. "image/jpeg")
+
+    private long mida; // Tamaño en bytes
+
+    private int amplada;
+
+    private int alcada;
+
+    // Getters y setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public VehicleImages getImatge() {
+        return imatge;
+    }
+
+    public void setImatge(VehicleImages imatge) {
+        this.imatge = imatge;
+    }
+
+    public TipusRendicio getTipus() {
+        return tipus;
+    }
+
+    public void setTipus(TipusRendicio tipus) {
+        this.tipus = tipus;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public long getMida() {
+        return mida;
+    }
+
+    public void setMida(long mida) {
+        this.mida = mida;
+    }
+
+    public int getAmplada() {
+        return amplada;
+    }
+
+    public void setAmplada(int amplada) {
+        this.amplada = amplada;
+    }
+
+    public int getAlcada() {
+        return alcada;
+    }
+
+    public void setAlcada(int alcada) {
+        this.alcada = alcada;
+    }
+}
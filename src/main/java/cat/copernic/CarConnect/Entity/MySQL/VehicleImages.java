@@ -4,13 +4,19 @@
  */
 package cat.copernic.CarConnect.Entity.MySQL;
 
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
-import jakarta.persistence.Lob;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
@@ -19,6 +25,8 @@ import lombok.NoArgsConstructor;
  * Clase que representa las imágenes asociadas a un vehículo.
  * Se utiliza para almacenar el contenido binario de las imágenes y asociarlas 
  * a un vehículo específico mediante una relación ManyToOne.
+ * El contenido binario vive en el {@code BlobStore} y la entidad solo guarda
+ * su hash, así que consultar las imágenes de un vehículo no carga los bytes.
  * 
  * @author Carlos
  */
@@ -31,15 +39,37 @@ public class VehicleImages {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Lob
-    private byte[] data; // Contenido binario de la imagen
-
     private String nombre; // Nombre o descripción de la imagen
 
+    private String contentType; // Tipo MIME de la imagen original
+
+    private Long mida; // Tamaño en bytes de la imagen original
+
+    @Column(length = 64)
+    private String hash; // SHA-256 de la imagen original, referencia al BlobStore
+
     @ManyToOne
     @JoinColumn(name = "vehicle_matricula", nullable = false)
     private Vehicle vehicle;
 
+    private Instant dataPujada; // Momento en que se subió la imagen (Last-Modified)
+
+    @OneToMany(mappedBy = "imatge", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<VehicleImageRendition> rendicions = new ArrayList<>(); // Versiones redimensionadas
+
+    @Column(nullable = false)
+    private boolean rendicionsFallides = false; // ImageIO no ha podido generar las versiones (formato no soportado o imagen no válida)
+
+    /**
+     * Asigna la fecha de subida justo antes de insertar la imagen.
+     */
+    @PrePersist
+    void onPrePersist() {
+        if (dataPujada == null) {
+            dataPujada = Instant.now();
+        }
+    }
+
     // Getters y setters
     public Long getId() {
         return id;
@@ -49,12 +79,12 @@ public class VehicleImages {
         this.id = id;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getHash() {
+        return hash;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setHash(String hash) {
+        this.hash = hash;
     }
 
     public String getNombre() {
@@ -65,6 +95,22 @@ public class VehicleImages {
         this.nombre = nombre;
     }
 
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public Long getMida() {
+        return mida;
+    }
+
+    public void setMida(Long mida) {
+        this.mida = mida;
+    }
+
     public Vehicle getVehiculo() {
         return vehicle;
     }
@@ -72,4 +118,28 @@ public class VehicleImages {
     public void setVehicle(Vehicle vehiculo) {
         this.vehicle = vehiculo;
     }
+
+    public Instant getDataPujada() {
+        return dataPujada;
+    }
+
+    public void setDataPujada(Instant dataPujada) {
+        this.dataPujada = dataPujada;
+    }
+
+    public List<VehicleImageRendition> getRendicions() {
+        return rendicions;
+    }
+
+    public void setRendicions(List<VehicleImageRendition> rendicions) {
+        this.rendicions = rendicions;
+    }
+
+    public boolean isRendicionsFallides() {
+        return rendicionsFallides;
+    }
+
+    public void setRendicionsFallides(boolean rendicionsFallides) {
+        this.rendicionsFallides = rendicionsFallides;
+    }
 }
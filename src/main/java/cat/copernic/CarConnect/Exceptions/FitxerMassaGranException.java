@@ -0,0 +1,21 @@
+package cat.copernic.CarConnect.Exceptions;
+
+/**
+ * Excepción que se lanza cuando un archivo subido supera el tamaño máximo
+ * permitido. Se extiende de {@link IllegalArgumentException} para que los
+ * controladores que ya tratan los datos de entrada incorrectos la muestren
+ * como un error de validación más.
+ *
+ * @author Carlos
+ */
+public class FitxerMassaGranException extends IllegalArgumentException {
+
+    /**
+     * Constructor para la excepción FitxerMassaGranException.
+     *
+     * @param message Mensaje de error que describe el motivo de la excepción.
+     */
+    public FitxerMassaGranException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package cat.copernic.CarConnect.Exceptions;
+
+/**
+ * Excepción que se lanza al intentar guardar una reserva cuyo periodo se
+ * solapa con otra reserva no cancelada del mismo vehículo. Es una excepción no
+ * verificada, como el resto de excepciones del sistema.
+ *
+ * @author Toni
+ */
+public class ReservaSolapadaException extends RuntimeException {
+
+    /**
+     * Constructor para la excepción ReservaSolapadaException.
+     *
+     * @param message Mensaje de error que describe el motivo de la excepción.
+     */
+    public ReservaSolapadaException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,31 @@
+package cat.copernic.CarConnect.Exceptions;
+
+import java.time.Duration;
+
+/**
+ * Excepción que se lanza cuando un recurso acotado del sistema (por ejemplo,
+ * el ejecutor de contraseñas) está saturado y no puede aceptar más trabajo.
+ * Se responde con un HTTP 503 y la cabecera Retry-After.
+ *
+ * @author david
+ */
+public class ServeiSaturatException extends RuntimeException {
+
+    private final Duration reintent;
+
+    /**
+     * Constructor para la excepción ServeiSaturatException.
+     *
+     * @param message Mensaje de error que describe el motivo de la excepción.
+     * @param reintent Tiempo que el cliente debería esperar antes de
+     * reintentar.
+     */
+    public ServeiSaturatException(String message, Duration reintent) {
+        super(message);
+        this.reintent = reintent;
+    }
+
+    public Duration getReintent() {
+        return reintent;
+    }
+}
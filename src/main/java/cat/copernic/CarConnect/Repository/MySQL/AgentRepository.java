@@ -2,6 +2,10 @@ package cat.copernic.CarConnect.Repository.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.Agent;
 import cat.copernic.CarConnect.Entity.MySQL.Client;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -18,5 +22,8 @@ public interface AgentRepository extends JpaRepository<Agent, String>, JpaSpecif
     List<Agent> findByEmail(
             @Param("email") String email
     );
+
+    // Listado paginado con keyset (ver Paginacio)
+    Window<Agent> findBy(ScrollPosition posicio, Sort sort, Limit limit);
     //List<Agent> findById(String id);
 }
@@ -1,6 +1,10 @@
 package cat.copernic.CarConnect.Repository.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.Client;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.List;
@@ -17,8 +21,13 @@ public interface ClientRepository extends JpaRepository<Client, String>, JpaSpec
     List<Client> findByEmail(
             @Param("email") String email
     );
-    
-    
+
+    // Cliente o agente por email, por el índice único uk_client_email
+    Optional<Client> findFirstByEmail(String email);
+
+    // Listado paginado con keyset (ver Paginacio)
+    Window<Client> findBy(ScrollPosition posicio, Sort sort, Limit limit);
+
     //List<Client> findById(String dni);
 
 }
@@ -0,0 +1,20 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.CorreuPendent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.EstatCorreu;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repositorio de la cola de salida de correos.
+ *
+ * @author Toni
+ */
+public interface CorreuPendentRepository extends JpaRepository<CorreuPendent, Long> {
+
+    // Siguiente lote de correos a enviar, los más antiguos primero
+    List<CorreuPendent> findByEstatAndProperIntentLessThanEqualOrderById(EstatCorreu estat,
+            LocalDateTime ara, Limit limit);
+}
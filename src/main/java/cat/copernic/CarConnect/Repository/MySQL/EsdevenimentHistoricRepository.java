@@ -0,0 +1,17 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.EsdevenimentHistoric;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+/**
+ * Repositorio de los eventos pendientes de publicar en el histórico.
+ *
+ * @author Toni
+ */
+public interface EsdevenimentHistoricRepository extends JpaRepository<EsdevenimentHistoric, Long> {
+
+    // Siguiente lote de eventos, en el orden en que se guardaron
+    List<EsdevenimentHistoric> findByOrderByIdAsc(Limit limit);
+}
@@ -5,9 +5,14 @@
 package cat.copernic.CarConnect.Repository.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 /**
  *
@@ -16,4 +21,51 @@ import org.springframework.data.jpa.repository.JpaRepository;
 public interface ImatgeRepository extends JpaRepository<VehicleImages, Long> {
 
     Optional<VehicleImages> findById(Long id);
+
+    /**
+     * Metadatos de una imagen sin el contenido binario.
+     */
+    interface ImatgeInfo {
+
+        Long getId();
+
+        String getNombre();
+
+        String getContentType();
+
+        Long getMida();
+
+        String getHash();
+
+        Instant getDataPujada();
+    }
+
+    // Metadatos de una imagen por su ID, sin cargar el blob
+    @Query("SELECT i.id AS id, i.nombre AS nombre, i.contentType AS contentType, i.mida AS mida, "
+            + "i.hash AS hash, i.dataPujada AS dataPujada FROM VehicleImages i WHERE i.id = :id")
+    Optional<ImatgeInfo> findInfoById(@Param("id") Long id);
+
+    // Metadatos de una imagen de un vehículo concreto, sin cargar el blob
+    @Query("SELECT i.id AS id, i.nombre AS nombre, i.contentType AS contentType, i.mida AS mida, "
+            + "i.hash AS hash, i.dataPujada AS dataPujada FROM VehicleImages i "
+            + "WHERE i.id = :id AND i.vehicle.matricula = :matricula")
+    Optional<ImatgeInfo> findInfoByIdAndMatricula(@Param("id") Long id, @Param("matricula") String matricula);
+
+    // Imagen principal (la de ID más bajo) de un vehículo, sin cargar el blob
+    @Query("SELECT i.id AS id, i.nombre AS nombre, i.contentType AS contentType, i.mida AS mida, "
+            + "i.hash AS hash, i.dataPujada AS dataPujada FROM VehicleImages i "
+            + "WHERE i.id = (SELECT MIN(i2.id) FROM VehicleImages i2 WHERE i2.vehicle.matricula = :matricula)")
+    Optional<ImatgeInfo> findPrimaryInfoByMatricula(@Param("matricula") String matricula);
+
+    // Todas las imágenes de un vehículo ordenadas por ID, sin cargar el blob
+    @Query("SELECT i.id AS id, i.nombre AS nombre, i.contentType AS contentType, i.mida AS mida, "
+            + "i.hash AS hash, i.dataPujada AS dataPujada FROM VehicleImages i "
+            + "WHERE i.vehicle.matricula = :matricula ORDER BY i.id")
+    List<ImatgeInfo> findInfoByMatricula(@Param("matricula") String matricula);
+
+    // Imágenes subidas antes de que existieran las versiones redimensionadas,
+    // sin las que ya se intentaron procesar y no se pudieron decodificar
+    @Query("SELECT i.id FROM VehicleImages i WHERE i.id > :desdeId AND i.rendicions IS EMPTY "
+            + "AND i.rendicionsFallides = false ORDER BY i.id")
+    List<Long> findIdsSenseRendicions(@Param("desdeId") Long desdeId, Pageable pageable);
 }
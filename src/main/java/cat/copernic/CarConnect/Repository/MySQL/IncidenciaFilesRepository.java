@@ -11,9 +11,52 @@ package cat.copernic.CarConnect.Repository.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.IncidenciaFiles;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface IncidenciaFilesRepository extends JpaRepository<IncidenciaFiles, Long> {
     List<IncidenciaFiles> findByIncidenciaId(Long incidenciaId);
+
+    /**
+     * Metadatos de un archivo de incidencia sin el contenido binario.
+     */
+    interface IncidenciaFileInfo {
+
+        Long getId();
+
+        String getDescription();
+
+        String getFileType();
+
+        Long getMida();
+
+        String getHash();
+
+        Long getIncidenciaId();
+
+        // Código postal de la localización del vehículo de la incidencia, para comprobar el acceso
+        String getCodiPostal();
+    }
+
+    // Archivos de una incidencia sin cargar el blob
+    @Query("SELECT f.id AS id, f.description AS description, f.fileType AS fileType, f.mida AS mida, "
+            + "f.hash AS hash, f.incidencia.id AS incidenciaId FROM IncidenciaFiles f "
+            + "WHERE f.incidencia.id = :incidenciaId ORDER BY f.id")
+    List<IncidenciaFileInfo> findInfoByIncidenciaId(@Param("incidenciaId") Long incidenciaId);
+
+    // Metadatos de un archivo por su ID, para descargarlo sin cargar el blob
+    @Query("SELECT f.id AS id, f.description AS description, f.fileType AS fileType, f.mida AS mida, "
+            + "f.hash AS hash, i.id AS incidenciaId, l.codiPostal AS codiPostal FROM IncidenciaFiles f "
+            + "JOIN f.incidencia i LEFT JOIN i.vehicle v LEFT JOIN v.localitzacio l WHERE f.id = :id")
+    Optional<IncidenciaFileInfo> findInfoById(@Param("id") Long id);
+
+    // Archivos de varias incidencias a la vez, sin cargar el blob
+    @Query("SELECT f.id AS id, f.description AS description, f.fileType AS fileType, f.mida AS mida, "
+            + "f.hash AS hash, f.incidencia.id AS incidenciaId FROM IncidenciaFiles f "
+            + "WHERE f.incidencia.id IN :incidenciaIds ORDER BY f.id")
+    List<IncidenciaFileInfo> findInfoByIncidenciaIdIn(@Param("incidenciaIds") Collection<Long> incidenciaIds);
 }
@@ -1,8 +1,11 @@
 package cat.copernic.CarConnect.Repository.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.Incidencia;
+import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import java.time.LocalDate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -22,4 +25,14 @@ public interface IncidenciaRepository extends JpaRepository<Incidencia, Long> {
 
     boolean existsByVehicle_MatriculaAndOberta(String matricula, boolean oberta);
 
+    // Todas las incidencias con su vehículo (y la localización) en una sola consulta
+    @Query("SELECT i FROM Incidencia i LEFT JOIN FETCH i.vehicle v LEFT JOIN FETCH v.localitzacio l "
+            + "LEFT JOIN FETCH l.agent ORDER BY i.id")
+    List<Incidencia> findAllAmbVehicle();
+
+    // Incidencias de los vehículos de una localización, con el vehículo en la misma consulta
+    @Query("SELECT i FROM Incidencia i JOIN FETCH i.vehicle v JOIN FETCH v.localitzacio l "
+            + "LEFT JOIN FETCH l.agent WHERE l = :localitzacio ORDER BY i.id")
+    List<Incidencia> findByLocalitzacio(@Param("localitzacio") Localitzacio localitzacio);
+
 }
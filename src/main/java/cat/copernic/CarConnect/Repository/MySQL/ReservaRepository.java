@@ -3,10 +3,20 @@ package cat.copernic.CarConnect.Repository.MySQL;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Reserva;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -15,9 +25,44 @@ import org.springframework.data.repository.query.Param;
 
 public interface ReservaRepository extends JpaRepository<Reserva, Long> {
 
+    /**
+     * Periodo ocupado por una reserva, sin cargar el cliente ni el vehículo.
+     */
+    interface PeriodeReserva {
+
+        Long getIdReserva();
+
+        String getMatricula();
+
+        LocalDate getDataHoraRecollida();
+
+        LocalDate getDataHoraDevolucio();
+    }
+
+    // Periodos de las reservas no canceladas, para el índice de disponibilidad
+    @Query("SELECT r.idReserva AS idReserva, r.vehicle.matricula AS matricula, "
+            + "r.dataHoraRecollida AS dataHoraRecollida, r.dataHoraDevolucio AS dataHoraDevolucio "
+            + "FROM Reserva r WHERE r.dataCancelacio IS NULL")
+    List<PeriodeReserva> findPeriodesActius();
+
+    // Lee una reserva bloqueando su fila (SELECT ... FOR UPDATE) para modificarla,
+    // así la lectura ve la última versión confirmada
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT r FROM Reserva r WHERE r.idReserva = :id")
+    Optional<Reserva> findByIdPerModificar(@Param("id") Long id);
+
     // Método para buscar reservas por la matrícula del vehículo
     List<Reserva> findByVehicleMatricula(String matricula);
+    // El cliente y el vehículo (con su localización) se cargan en la misma consulta
+    @EntityGraph(attributePaths = {"client", "vehicle", "vehicle.localitzacio", "vehicle.localitzacio.agent"})
     List<Reserva> findByClientDni(String dni);
+
+    // Reservas de los vehículos de una localización, con cliente y vehículo en una sola consulta
+    @Query("SELECT r FROM Reserva r JOIN FETCH r.client JOIN FETCH r.vehicle v "
+            + "JOIN FETCH v.localitzacio l LEFT JOIN FETCH l.agent "
+            + "WHERE l = :localitzacio ORDER BY r.idReserva")
+    List<Reserva> findByLocalitzacio(@Param("localitzacio") Localitzacio localitzacio);
     // Consulta personalizada para verificar si el vehículo está reservado en un rango de fechas
     @Query("SELECT COUNT(r) FROM Reserva r "
             + "WHERE r.vehicle.matricula = :matricula "
@@ -27,5 +72,22 @@ public interface ReservaRepository extends JpaRepository<Reserva, Long> {
             @Param("inicio") LocalDate inicio,
             @Param("fin") LocalDate fin);
 
+    // Indica si alguna reserva no cancelada del vehículo ocupa algún día de [inici, fi),
+    // con la misma semántica que el índice de disponibilidad
+    @Query("SELECT COUNT(r) > 0 FROM Reserva r "
+            + "WHERE r.vehicle.matricula = :matricula "
+            + "AND r.dataCancelacio IS NULL "
+            + "AND (:excloure IS NULL OR r.idReserva <> :excloure) "
+            + "AND r.dataHoraRecollida < :fi "
+            + "AND (r.dataHoraDevolucio > :inici OR r.dataHoraRecollida >= :inici)")
+    boolean existsSolapada(@Param("matricula") String matricula,
+            @Param("inici") LocalDate inici,
+            @Param("fi") LocalDate fi,
+            @Param("excloure") Long excloure);
+
+    // Listado paginado con keyset (ver Paginacio); cliente y vehículo en la misma consulta
+    @EntityGraph(attributePaths = {"client", "vehicle", "vehicle.localitzacio", "vehicle.localitzacio.agent"})
+    Window<Reserva> findBy(ScrollPosition posicio, Sort sort, Limit limit);
+
 
 }
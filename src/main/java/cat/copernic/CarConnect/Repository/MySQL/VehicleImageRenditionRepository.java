@@ -0,0 +1,35 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusRendicio;
+import cat.copernic.CarConnect.Entity.MySQL.VehicleImageRendition;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Repositorio de las versiones redimensionadas de las imágenes de vehículos.
+ *
+ * @author Carlos
+ */
+public interface VehicleImageRenditionRepository extends JpaRepository<VehicleImageRendition, Long> {
+
+    /**
+     * Metadatos de una versión sin el contenido binario.
+     */
+    interface RendicioInfo {
+
+        Long getId();
+
+        String getContentType();
+
+        String getHash();
+
+        long getMida();
+    }
+
+    @Query("SELECT r.id AS id, r.contentType AS contentType, r.hash AS hash, r.mida AS mida FROM VehicleImageRendition r "
+            + "WHERE r.imatge.id = :imatgeId AND r.tipus = :tipus")
+    Optional<RendicioInfo> findInfoByImatgeIdAndTipus(@Param("imatgeId") Long imatgeId,
+            @Param("tipus") TipusRendicio tipus);
+}
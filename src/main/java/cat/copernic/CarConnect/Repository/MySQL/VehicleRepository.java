@@ -1,8 +1,20 @@
 package cat.copernic.CarConnect.Repository.MySQL;
 
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusVehicle;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import java.time.LocalDate;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -16,11 +28,41 @@ public interface VehicleRepository extends JpaRepository<Vehicle, String> {
 // Buscar todos los vehículos activos
     List<Vehicle> findByActiuTrue();
     List<Vehicle> findByLocalitzacio(Localitzacio localitzacio);
+    // Bloquea la fila del vehículo (SELECT ... FOR UPDATE) hasta el final de la transacción,
+    // para que las reservas de un mismo vehículo se comprueben y guarden de una en una
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("SELECT v FROM Vehicle v WHERE v.matricula = :matricula")
+    Optional<Vehicle> findByMatriculaPerReservar(@Param("matricula") String matricula);
+
     // Verificar si un vehículo existe por matrícula
     boolean existsByMatricula(String matricula);
 
     // Buscar vehículos con reservas activas
     List<Vehicle> findByReservas_ActiuTrue();  // Asumiendo que tienes una relación de Reservas en la entidad Vehicle
 
+    // Listados paginados con keyset (ver Paginacio)
+    Window<Vehicle> findBy(ScrollPosition posicio, Sort sort, Limit limit);
+
+    Window<Vehicle> findByLocalitzacio(Localitzacio localitzacio, ScrollPosition posicio, Sort sort, Limit limit);
+
+    // Vehículos activos sin ninguna reserva no cancelada que ocupe algún día de [inici, fi),
+    // en una sola consulta (anti-join con NOT EXISTS). Los filtros nulos no se aplican.
+    // Una reserva ocupa [recollida, devolucio), o el día de recogida si es de un solo día.
+    @Query("SELECT v FROM Vehicle v JOIN FETCH v.localitzacio l LEFT JOIN FETCH l.agent "
+            + "WHERE v.actiu = true "
+            + "AND (:codiPostal IS NULL OR l.codiPostal = :codiPostal) "
+            + "AND (:tipus IS NULL OR v.tipusVehicle = :tipus) "
+            + "AND (:preuMaxim IS NULL OR v.preuPerDia <= :preuMaxim) "
+            + "AND NOT EXISTS (SELECT r.idReserva FROM Reserva r WHERE r.vehicle = v "
+            + "AND r.dataCancelacio IS NULL "
+            + "AND (:excloure IS NULL OR r.idReserva <> :excloure) "
+            + "AND r.dataHoraRecollida < :fi "
+            + "AND (r.dataHoraDevolucio > :inici OR r.dataHoraRecollida >= :inici)) "
+            + "ORDER BY v.preuPerDia, v.matricula")
+    List<Vehicle> findDisponibles(@Param("inici") LocalDate inici, @Param("fi") LocalDate fi,
+            @Param("codiPostal") String codiPostal, @Param("tipus") TipusVehicle tipus,
+            @Param("preuMaxim") Double preuMaxim, @Param("excloure") Long excloure);
+
     // Otros métodos si fueran necesarios
 }
@@ -0,0 +1,198 @@
+package cat.copernic.CarConnect.Security;
+
+import cat.copernic.CarConnect.Exceptions.ServeiSaturatException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Codificador de contraseñas BCrypt que hace el cálculo en un ejecutor propio
+ * y acotado, en lugar de en los hilos de Tomcat.
+ * <p>
+ * El ejecutor tiene un número fijo de hilos y una cola de capacidad limitada.
+ * Si la cola está llena, o una tarea no termina dentro de la espera máxima, se
+ * lanza {@link ServeiSaturatException} (HTTP 503 con Retry-After, ver
+ * {@link ServeiSaturatFilter}). Así un pico de inicios de sesión solo ocupa
+ * los hilos de BCrypt y el resto de páginas sigue respondiendo.
+ * </p>
+ * <p>
+ * La espera máxima se cuenta desde que la tarea entra en la cola. BCrypt no
+ * responde a las interrupciones, así que una tarea que ya calcula no se puede
+ * detener; por eso una tarea cuya petición ya ha dejado de esperar se saca de
+ * la cola y, si aun así llega a empezar, comprueba el plazo antes de calcular
+ * y no ocupa el hilo.
+ * </p>
+ * <p>
+ * El coste de BCrypt se configura por despliegue. Las contraseñas guardadas
+ * con otro coste se vuelven a codificar cuando el usuario inicia sesión (ver
+ * {@link #upgradeEncoding(String)} y {@link ValidadorUsuaris}).
+ * </p>
+ *
+ * @author david
+ */
+public class CodificadorContrasenyes implements PasswordEncoder {
+
+    private final BCryptPasswordEncoder bcrypt;
+
+    private final int cost;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Duration esperaMaxima;
+
+    private final Duration reintent;
+
+    private final AtomicLong rebutjades = new AtomicLong();
+
+    /**
+     * Estado del ejecutor, para consultarlo desde la aplicación.
+     *
+     * @param cost El coste de BCrypt configurado.
+     * @param fils El número de hilos del ejecutor.
+     * @param actius Los hilos que están calculando.
+     * @param enCua Las tareas que esperan en la cola.
+     * @param capacitatCua La capacidad de la cola.
+     * @param completades Las tareas completadas desde el arranque.
+     * @param rebutjades Las tareas rechazadas por saturación desde el
+     * arranque.
+     */
+    public record Estat(int cost, int fils, int actius, int enCua, int capacitatCua, long completades, long rebutjades) {
+    }
+
+    /**
+     * Crea el codificador y arranca su ejecutor.
+     *
+     * @param cost El coste (log2 de las rondas) de BCrypt, entre 4 y 31.
+     * @param fils El número de hilos del ejecutor.
+     * @param capacitatCua La capacidad de la cola de tareas pendientes.
+     * @param esperaMaxima El tiempo máximo que una petición espera el
+     * resultado.
+     * @param reintent El tiempo que se indica en la cabecera Retry-After.
+     */
+    public CodificadorContrasenyes(int cost, int fils, int capacitatCua, Duration esperaMaxima, Duration reintent) {
+        this.bcrypt = new BCryptPasswordEncoder(cost);
+        this.cost = cost;
+        this.esperaMaxima = esperaMaxima;
+        this.reintent = reintent;
+        this.executor = new ThreadPoolExecutor(fils, fils, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacitatCua),
+                Thread.ofPlatform().name("contrasenyes-", 1).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executar(() -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executar(() -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Indica si una contraseña se guardó con un coste distinto del configurado
+     * (mayor o menor), para volver a codificarla al iniciar sesión.
+     */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int costGuardat = cost(encodedPassword);
+        return costGuardat > 0 && costGuardat != cost;
+    }
+
+    /**
+     * Obtiene el estado actual del ejecutor.
+     *
+     * @return El estado del ejecutor.
+     */
+    public Estat estat() {
+        return new Estat(cost, executor.getMaximumPoolSize(), executor.getActiveCount(),
+                executor.getQueue().size(), executor.getQueue().size() + executor.getQueue().remainingCapacity(),
+                executor.getCompletedTaskCount(), rebutjades.get());
+    }
+
+    /**
+     * Detiene el ejecutor. Spring lo llama al cerrar el contexto.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T executar(Callable<T> tasca) {
+        long limit = System.nanoTime() + esperaMaxima.toNanos();
+        Future<T> resultat;
+        try {
+            resultat = executor.submit(() -> {
+                if (System.nanoTime() - limit > 0) {
+                    throw new TimeoutException(); // Nadie espera ya el resultado
+                }
+                return tasca.call();
+            });
+        } catch (RejectedExecutionException e) {
+            throw saturat("La cola de contraseñas está llena.");
+        }
+        try {
+            return resultat.get(limit - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            descartar(resultat);
+            throw saturat("El cálculo de la contraseña ha superado la espera máxima.");
+        } catch (InterruptedException e) {
+            descartar(resultat);
+            Thread.currentThread().interrupt();
+            throw saturat("Se ha interrumpido la espera de la contraseña.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw saturat("El cálculo de la contraseña ha superado la espera máxima.");
+            }
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Descarta una tarea que ya nadie espera: si todavía está en la cola, la
+     * saca para liberar su sitio. (Si ya calcula, termina igualmente.)
+     */
+    private void descartar(Future<?> resultat) {
+        resultat.cancel(false);
+        if (resultat instanceof Runnable tasca) {
+            executor.remove(tasca);
+        }
+    }
+
+    /**
+     * Cuenta una petición rechazada. No se escribe en el log: en un pico
+     * serían miles de líneas; el total se consulta con {@link #estat()}.
+     */
+    private ServeiSaturatException saturat(String missatge) {
+        rebutjades.incrementAndGet();
+        return new ServeiSaturatException(missatge, reintent);
+    }
+
+    /**
+     * Extrae el coste de un hash BCrypt ("$2a$10$..."), o 0 si no lo es.
+     */
+    private static int cost(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$'
+                || encodedPassword.charAt(3) != '$' || encodedPassword.charAt(6) != '$') {
+            return 0;
+        }
+        char desenes = encodedPassword.charAt(4);
+        char unitats = encodedPassword.charAt(5);
+        if (!Character.isDigit(desenes) || !Character.isDigit(unitats)) {
+            return 0;
+        }
+        return (desenes - '0') * 10 + (unitats - '0');
+    }
+}
@@ -0,0 +1,164 @@
+package cat.copernic.CarConnect.Security;
+
+import cat.copernic.CarConnect.Entity.MySQL.Agent;
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.Rol;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Resuelve el usuario autenticado (cliente o agente) a partir de su email.
+ * <p>
+ * Guarda en una caché acotada y con caducidad una foto de los datos que
+ * necesitan los servicios para filtrar por usuario: DNI, rol, localización y
+ * permisos. Un fallo de caché es una sola consulta por el índice único del
+ * email. {@code ClientService} y {@code AgentService} invalidan la foto de un
+ * usuario cuando lo modifican o lo eliminan; la invalidación se aplica al
+ * confirmar la transacción, para que nadie vuelva a cargar los datos
+ * antiguos mientras tanto.
+ * </p>
+ *
+ * @author david
+ */
+@Component
+public class CurrentUserResolver {
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Value("${carconnect.usuaris.cache.ttl:PT5M}")
+    private Duration ttl;
+
+    @Value("${carconnect.usuaris.cache.mida-maxima:10000}")
+    private int midaMaxima;
+
+    private final Map<String, Entrada> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Foto de los datos de un usuario.
+     *
+     * @param dni El DNI del usuario.
+     * @param email El email (nombre de usuario).
+     * @param agent true si el usuario es un agente.
+     * @param rol El rol del agente, o null si es un cliente.
+     * @param codiPostal El código postal de la localización del agente, o
+     * null.
+     * @param permisos La máscara de permisos (ver {@link TipusPermis#bit()}).
+     */
+    public record UsuariActual(String dni, String email, boolean agent, Rol rol, String codiPostal, long permisos) {
+
+        public boolean hasPermis(TipusPermis permis) {
+            return (permisos & permis.bit()) != 0;
+        }
+    }
+
+    private record Entrada(UsuariActual usuari, long caducitat) {
+    }
+
+    /**
+     * Resuelve el usuario de una autenticación.
+     *
+     * @param authentication La autenticación actual, o null.
+     * @return El usuario, o vacío si no hay un usuario autenticado o ya no
+     * existe.
+     */
+    public Optional<UsuariActual> resoldre(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        return resoldre(authentication.getName());
+    }
+
+    /**
+     * Resuelve un usuario por su email.
+     *
+     * @param email El email del usuario.
+     * @return El usuario, o vacío si no existe.
+     */
+    public Optional<UsuariActual> resoldre(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        Entrada entrada = cache.get(email);
+        if (entrada != null && entrada.caducitat() - System.nanoTime() > 0) {
+            return Optional.of(entrada.usuari());
+        }
+        return clientRepository.findFirstByEmail(email).map(this::registrar);
+    }
+
+    /**
+     * Guarda en la caché la foto de un usuario que ya se ha cargado (por
+     * ejemplo, al iniciar sesión).
+     *
+     * @param client El cliente o agente.
+     * @return La foto guardada.
+     */
+    public UsuariActual registrar(Client client) {
+        UsuariActual usuari;
+        if (client instanceof Agent agent) {
+            usuari = new UsuariActual(agent.getDni(), agent.getEmail(), true, agent.getRol(),
+                    agent.getLocalitzacio() != null ? agent.getLocalitzacio().getCodiPostal() : null,
+                    agent.getMascaraPermisos());
+        } else {
+            usuari = new UsuariActual(client.getDni(), client.getEmail(), false, null, null,
+                    client.getMascaraPermisos());
+        }
+        if (usuari.email() != null) {
+            if (cache.size() >= midaMaxima) {
+                alliberarEspai();
+            }
+            cache.put(usuari.email(), new Entrada(usuari, System.nanoTime() + ttl.toNanos()));
+        }
+        return usuari;
+    }
+
+    /**
+     * Invalida la foto de un usuario. Si hay una transacción activa, se
+     * invalida al confirmarla.
+     *
+     * @param dni El DNI del usuario.
+     */
+    public void invalidar(String dni) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eliminar(dni);
+                }
+            });
+        }
+        // También se invalida ahora, por si la transacción no llega a confirmarse
+        eliminar(dni);
+    }
+
+    private void eliminar(String dni) {
+        cache.values().removeIf(entrada -> entrada.usuari().dni().equals(dni));
+    }
+
+    /**
+     * Elimina las entradas caducadas y, si no basta, una parte de las demás.
+     */
+    private void alliberarEspai() {
+        long ara = System.nanoTime();
+        cache.values().removeIf(entrada -> entrada.caducitat() - ara <= 0);
+        Iterator<Entrada> it = cache.values().iterator();
+        int sobrants = cache.size() - midaMaxima + midaMaxima / 10;
+        while (sobrants-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
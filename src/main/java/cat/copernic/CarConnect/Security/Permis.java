@@ -5,25 +5,84 @@
 package cat.copernic.CarConnect.Security;
 
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.security.core.GrantedAuthority;
 
 /**
+ * Permiso de un usuario como {@link GrantedAuthority}. Hay una sola instancia
+ * inmutable por {@link TipusPermis}, y las listas de permisos de cada máscara
+ * se construyen una vez y se comparten entre todos los usuarios que la tienen.
  *
  * @author david
 
  */
 
-public class Permis implements GrantedAuthority{
-    
-    TipusPermis permis;
+public final class Permis implements GrantedAuthority{
 
-    public Permis(TipusPermis permis) {
+    private static final Permis[] PERMISOS = new Permis[TipusPermis.values().length];
+
+    private static final Map<Long, List<GrantedAuthority>> PER_MASCARA = new ConcurrentHashMap<>();
+
+    static {
+        for (TipusPermis tipus : TipusPermis.values()) {
+            PERMISOS[tipus.ordinal()] = new Permis(tipus);
+        }
+    }
+
+    private final TipusPermis permis;
+
+    private Permis(TipusPermis permis) {
         this.permis = permis;
     }
 
+    /**
+     * Obtiene la instancia de un permiso.
+     *
+     * @param permis El tipo de permiso.
+     * @return El permiso.
+     */
+    public static Permis de(TipusPermis permis) {
+        return PERMISOS[permis.ordinal()];
+    }
+
+    /**
+     * Obtiene la lista inmutable de permisos de una máscara.
+     *
+     * @param mascara La máscara de bits (ver {@link TipusPermis#bit()}).
+     * @return Los permisos de la máscara.
+     */
+    public static List<GrantedAuthority> deMascara(long mascara) {
+        return PER_MASCARA.computeIfAbsent(mascara, m -> {
+            List<GrantedAuthority> permisos = new ArrayList<>();
+            for (TipusPermis tipus : TipusPermis.deMascara(m)) {
+                permisos.add(de(tipus));
+            }
+            return List.copyOf(permisos);
+        });
+    }
+
+    public TipusPermis getTipus() {
+        return permis;
+    }
+
     @Override
     public String getAuthority() {
-        return permis.toString();
+        return permis.name();
+    }
+
+    @Override
+    public String toString() {
+        return permis.name();
+    }
+
+    /**
+     * Al deserializar una sesión se recupera la instancia compartida.
+     */
+    private Object readResolve() {
+        return de(permis);
     }
 
 }
@@ -4,16 +4,18 @@ import cat.copernic.CarConnect.Entity.MySQL.Agent;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.Rol;
 import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
 import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
+import java.time.Duration;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 /**
  *
@@ -26,57 +28,70 @@ public class SecurityConfig {
     @Autowired
     private AgentRepository agentRepo;
     
+    /**
+     * Reglas de acceso de cada ruta. Se aplica la primera regla que encaja con
+     * la ruta (ver {@link TaulaAutoritzacio}).
+     */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public TaulaAutoritzacio taulaAutoritzacio() {
+        return new TaulaAutoritzacio()
+                .permetre("/", "/login/**", "/Registre/**", "/index") // Acceso público
+                .permetre("/styles/**", "/scripts/**")   // Acceso público a recursos estáticos
+
+                .requerir("/reservas/create", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/edit/**", TipusPermis.EDITAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/delete/**", TipusPermis.ELIMINAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/list", TipusPermis.LLISTAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas", TipusPermis.LLISTAR_RESERVES, TipusPermis.ADMIN)
+                //.requerir("/vehicles/selected/**", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/calendari/**", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/selected/**", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/pagament", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/guardar", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+                .requerir("/reservas/confirmacion", TipusPermis.CREAR_RESERVES, TipusPermis.ADMIN)
+
+                .requerir("/vehicles/create", TipusPermis.CREAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/edit/**", TipusPermis.EDITAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/return/**", TipusPermis.EDITAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/deliver/**", TipusPermis.EDITAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/delete/**", TipusPermis.ELIMINAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/list", TipusPermis.LLISTAR_VEHICLE, TipusPermis.ADMIN)
+                .requerir("/vehicles/models/**", TipusPermis.CREAR_VEHICLE, TipusPermis.ADMIN)
+                .permetre("/vehicles/selected/**")
+                .permetre("/vehicles/disponibles")
+                .permetre("/vehicles/*/images/**")
+                .requerir("/vehicles", TipusPermis.LLISTAR_VEHICLE, TipusPermis.ADMIN)
+
+                .requerir("/incidencias/create/**", TipusPermis.CREAR_INCIDENCIES, TipusPermis.ADMIN)
+                .requerir("/incidencias/edit/**", TipusPermis.EDITAR_INCIDENCIES, TipusPermis.ADMIN)
+                .requerir("/incidencias/desactivate/**", TipusPermis.ELIMINAR_INCIDENCIES, TipusPermis.ADMIN)
+                .requerir("/incidencias/list", TipusPermis.LLISTAR_INCIDENCIES, TipusPermis.ADMIN)
+                .requerir("/incidencias/**", TipusPermis.LLISTAR_INCIDENCIES, TipusPermis.ADMIN)
+
+                .requerir("/clients", TipusPermis.LLISTAR_CLIENT, TipusPermis.ADMIN)
+                .requerir("/clients/filter", TipusPermis.LLISTAR_CLIENT, TipusPermis.ADMIN)
+                .requerir("/clients/create", TipusPermis.CREAR_CLIENT, TipusPermis.ADMIN)
+                .requerir("/clients/edit/**", TipusPermis.EDITAR_CLIENT, TipusPermis.ADMIN)
+                .requerir("/clients/delete/**", TipusPermis.ELIMINAR_CLIENT, TipusPermis.ADMIN)
+
+                .requerir("/agents", TipusPermis.LLISTAR_AGENT, TipusPermis.ADMIN)
+                .requerir("/agents/filter", TipusPermis.LLISTAR_AGENT, TipusPermis.ADMIN)
+                .requerir("/agents/create", TipusPermis.CREAR_AGENT, TipusPermis.ADMIN)
+                .requerir("/agents/edit/**", TipusPermis.EDITAR_AGENT, TipusPermis.ADMIN)
+                .requerir("/agents/delete/**", TipusPermis.ELIMINAR_AGENT, TipusPermis.ADMIN)
+
+                .requerir("/historic/estadistiques/reagregar", TipusPermis.ADMIN)
+                .requerir("/historic/**", TipusPermis.HISTORIC_INCIDENCIES, TipusPermis.HISTORIC_RESERVES, TipusPermis.ADMIN)
+
+                .requerir("/**", TipusPermis.ADMIN);
+    }
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TaulaAutoritzacio taulaAutoritzacio) throws Exception {
         http
+            .addFilterBefore(new ServeiSaturatFilter(), UsernamePasswordAuthenticationFilter.class) // 503 si las contraseñas están saturadas
             .authorizeHttpRequests(auth -> auth
-                .requestMatchers("/", "/login/**", "/Registre/**", "/index").permitAll() // Acceso público
-                .requestMatchers("/styles/**", "/scripts/**").permitAll()   // Acceso público a recursos estáticos
-                
-                .requestMatchers("/reservas/create").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/edit/**").hasAnyAuthority(TipusPermis.EDITAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/delete/**").hasAnyAuthority(TipusPermis.ELIMINAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/list").hasAnyAuthority(TipusPermis.LLISTAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas").hasAnyAuthority(TipusPermis.LLISTAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                //.requestMatchers("/vehicles/selected/**").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/selected/**").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/pagament").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/guardar").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/reservas/confirmacion").hasAnyAuthority(TipusPermis.CREAR_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                    
-                .requestMatchers("/vehicles/create").hasAnyAuthority(TipusPermis.CREAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/edit/**").hasAnyAuthority(TipusPermis.EDITAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/return/**").hasAnyAuthority(TipusPermis.EDITAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/deliver/**").hasAnyAuthority(TipusPermis.EDITAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/delete/**").hasAnyAuthority(TipusPermis.ELIMINAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/list").hasAnyAuthority(TipusPermis.LLISTAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/models/**").hasAnyAuthority(TipusPermis.CREAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/vehicles/selected/**").permitAll()
-                .requestMatchers("/vehicles").hasAnyAuthority(TipusPermis.LLISTAR_VEHICLE.toString(),TipusPermis.ADMIN.toString())
-                    
-                .requestMatchers("/incidencias/create/**").hasAnyAuthority(TipusPermis.CREAR_INCIDENCIES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/incidencias/edit/**").hasAnyAuthority(TipusPermis.EDITAR_INCIDENCIES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/incidencias/desactivate/**").hasAnyAuthority(TipusPermis.ELIMINAR_INCIDENCIES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/incidencias/list").hasAnyAuthority(TipusPermis.LLISTAR_INCIDENCIES.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/incidencias/**").hasAnyAuthority(TipusPermis.LLISTAR_INCIDENCIES.toString(),TipusPermis.ADMIN.toString())
-                    
-                .requestMatchers("/clients").hasAnyAuthority(TipusPermis.LLISTAR_CLIENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/clients/filter").hasAnyAuthority(TipusPermis.LLISTAR_CLIENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/clients/create").hasAnyAuthority(TipusPermis.CREAR_CLIENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/clients/edit/**").hasAnyAuthority(TipusPermis.EDITAR_CLIENT.toString(),TipusPermis.ADMIN.toString())  
-                .requestMatchers("/clients/delete/**").hasAnyAuthority(TipusPermis.ELIMINAR_CLIENT.toString(),TipusPermis.ADMIN.toString())
-                
-                .requestMatchers("/agents").hasAnyAuthority(TipusPermis.LLISTAR_AGENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/agents/filter").hasAnyAuthority(TipusPermis.LLISTAR_AGENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/agents/create").hasAnyAuthority(TipusPermis.CREAR_AGENT.toString(),TipusPermis.ADMIN.toString())
-                .requestMatchers("/agents/edit/**").hasAnyAuthority(TipusPermis.EDITAR_AGENT.toString(),TipusPermis.ADMIN.toString())  
-                .requestMatchers("/agents/delete/**").hasAnyAuthority(TipusPermis.ELIMINAR_AGENT.toString(),TipusPermis.ADMIN.toString())
-                
-                .requestMatchers("/historic/**").hasAnyAuthority(TipusPermis.HISTORIC_INCIDENCIES.toString(),TipusPermis.HISTORIC_RESERVES.toString(),TipusPermis.ADMIN.toString())
-                
-                .requestMatchers("/**").hasAuthority(TipusPermis.ADMIN.toString())
-                    
-                .anyRequest().authenticated()             // Acceso restringido
+                .anyRequest().access(taulaAutoritzacio)   // Reglas de la tabla de autorización
             )
             .formLogin(form -> form
                 .loginPage("/login")                      // Página de login personalizada
@@ -103,9 +118,20 @@ public class SecurityConfig {
     
     }
    
+    /**
+     * Codificador de contraseñas BCrypt con ejecutor propio y acotado (ver
+     * {@link CodificadorContrasenyes}). Si no se indica el número de hilos, se
+     * usa uno por procesador.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public CodificadorContrasenyes passwordEncoder(
+            @Value("${carconnect.contrasenyes.cost:10}") int cost,
+            @Value("${carconnect.contrasenyes.fils:0}") int fils,
+            @Value("${carconnect.contrasenyes.cua:64}") int cua,
+            @Value("${carconnect.contrasenyes.espera-maxima:PT10S}") Duration esperaMaxima,
+            @Value("${carconnect.contrasenyes.reintent:PT5S}") Duration reintent) {
+        int numFils = fils > 0 ? fils : Runtime.getRuntime().availableProcessors();
+        return new CodificadorContrasenyes(cost, numFils, cua, esperaMaxima, reintent);
     }
     
 
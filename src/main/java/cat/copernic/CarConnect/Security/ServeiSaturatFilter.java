@@ -0,0 +1,50 @@
+package cat.copernic.CarConnect.Security;
+
+import cat.copernic.CarConnect.Exceptions.ServeiSaturatException;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Filtro que convierte una {@link ServeiSaturatException} en una respuesta
+ * HTTP 503 con la cabecera Retry-After. Se coloca delante del filtro de login,
+ * así que cubre tanto el inicio de sesión como los controladores.
+ *
+ * @author david
+ */
+public class ServeiSaturatFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            ServeiSaturatException saturat = cercar(e);
+            if (saturat == null || response.isCommitted()) {
+                throw e;
+            }
+            response.resetBuffer();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", String.valueOf(Math.max(1, saturat.getReintent().toSeconds())));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("El servicio está saturado. Vuelve a intentarlo en unos segundos.");
+        }
+    }
+
+    /**
+     * Busca la excepción de saturación en la cadena de causas (el
+     * DispatcherServlet la envuelve en una ServletException).
+     */
+    private static ServeiSaturatException cercar(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ServeiSaturatException saturat) {
+                return saturat;
+            }
+        }
+        return null;
+    }
+}
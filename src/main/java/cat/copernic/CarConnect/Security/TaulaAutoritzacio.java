@@ -0,0 +1,242 @@
+package cat.copernic.CarConnect.Security;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Entity.MySQL.Usuario;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.Arrays;
+import java.util.function.Supplier;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+/**
+ * Tabla de autorización de las rutas de la aplicación, compilada en un árbol
+ * de prefijos por segmentos de la ruta.
+ * <p>
+ * Las reglas se declaran en orden, como en
+ * {@code authorizeHttpRequests().requestMatchers(...)}, y para cada petición
+ * se aplica la primera regla (la de índice más bajo) que encaja con la ruta.
+ * Los patrones admiten segmentos literales, {@code *} (un segmento cualquiera)
+ * y {@code /**} al final (el resto de la ruta, incluida la ruta vacía). Cada
+ * regla guarda los permisos que exige como máscara de bits
+ * ({@link TipusPermis#bit()}), así que decidir una petición recorre la ruta
+ * una vez, sin crear cadenas, y compara la máscara del usuario con una
+ * operación de bits.
+ * </p>
+ * <p>
+ * La tabla se configura una sola vez al arrancar, antes de atender peticiones.
+ * </p>
+ *
+ * @author david
+ */
+public final class TaulaAutoritzacio implements AuthorizationManager<RequestAuthorizationContext> {
+
+    private static final AuthorizationDecision PERMETRE = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENEGAR = new AuthorizationDecision(false);
+
+    private static final long QUALSEVOL = -1L; // permitAll
+    private static final long AUTENTICAT = 0L; // authenticated
+
+    private static final int SENSE_REGLA = Integer.MAX_VALUE;
+
+    private final AuthenticationTrustResolver trustResolver = new AuthenticationTrustResolverImpl();
+
+    private final Node arrel = new Node();
+
+    private long[] requerits = new long[16]; // Permisos exigidos por cada regla, por índice
+
+    private int regles;
+
+    /**
+     * Nodo del árbol: un segmento de la ruta.
+     */
+    private static final class Node {
+
+        private String[] claus = new String[0];
+        private Node[] fills = new Node[0];
+        private Node comodi; // Hijo para "*"
+        private int reglaExacta = SENSE_REGLA; // Regla que acaba justo en este nodo
+        private int reglaPrefix = SENSE_REGLA; // Regla "/**" que empieza en este nodo
+
+        private Node fill(String clau) {
+            for (int i = 0; i < claus.length; i++) {
+                if (claus[i].equals(clau)) {
+                    return fills[i];
+                }
+            }
+            claus = Arrays.copyOf(claus, claus.length + 1);
+            fills = Arrays.copyOf(fills, fills.length + 1);
+            claus[claus.length - 1] = clau;
+            fills[fills.length - 1] = new Node();
+            return fills[fills.length - 1];
+        }
+    }
+
+    /**
+     * Añade una regla que permite el acceso a cualquiera.
+     *
+     * @param patrons Los patrones de ruta.
+     * @return Esta tabla.
+     */
+    public TaulaAutoritzacio permetre(String... patrons) {
+        return afegir(QUALSEVOL, patrons);
+    }
+
+    /**
+     * Añade una regla que exige cualquiera de los permisos indicados.
+     *
+     * @param patro El patrón de ruta.
+     * @param permisos Los permisos que dan acceso.
+     * @return Esta tabla.
+     */
+    public TaulaAutoritzacio requerir(String patro, TipusPermis... permisos) {
+        long mascara = 0;
+        for (TipusPermis permis : permisos) {
+            mascara |= permis.bit();
+        }
+        return afegir(mascara, patro);
+    }
+
+    /**
+     * Añade una regla que solo exige estar autenticado.
+     *
+     * @param patro El patrón de ruta.
+     * @return Esta tabla.
+     */
+    public TaulaAutoritzacio autenticat(String patro) {
+        return afegir(AUTENTICAT, patro);
+    }
+
+    private TaulaAutoritzacio afegir(long mascara, String... patrons) {
+        if (regles == requerits.length) {
+            requerits = Arrays.copyOf(requerits, regles * 2);
+        }
+        int index = regles++;
+        requerits[index] = mascara;
+
+        for (String patro : patrons) {
+            if (!patro.startsWith("/")) {
+                throw new IllegalArgumentException("El patrón debe empezar por '/': " + patro);
+            }
+            Node node = arrel;
+            String[] segments = patro.substring(1).split("/", -1);
+            int numSegments = patro.length() == 1 ? 0 : segments.length;
+            boolean prefix = numSegments > 0 && segments[numSegments - 1].equals("**");
+            if (prefix) {
+                numSegments--;
+            }
+            for (int i = 0; i < numSegments; i++) {
+                String segment = segments[i];
+                if (segment.equals("**")) {
+                    throw new IllegalArgumentException("'**' solo se admite al final del patrón: " + patro);
+                }
+                if (segment.equals("*")) {
+                    if (node.comodi == null) {
+                        node.comodi = new Node();
+                    }
+                    node = node.comodi;
+                } else {
+                    node = node.fill(segment);
+                }
+            }
+            if (prefix) {
+                node.reglaPrefix = Math.min(node.reglaPrefix, index);
+            } else {
+                node.reglaExacta = Math.min(node.reglaExacta, index);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public AuthorizationDecision check(Supplier<Authentication> authentication, RequestAuthorizationContext context) {
+        int regla = regla(cami(context.getRequest()));
+        if (regla == SENSE_REGLA) {
+            return DENEGAR;
+        }
+        long mascara = requerits[regla];
+        if (mascara == QUALSEVOL) {
+            return PERMETRE;
+        }
+
+        Authentication auth = authentication.get();
+        if (auth == null || !auth.isAuthenticated() || trustResolver.isAnonymous(auth)) {
+            return DENEGAR;
+        }
+        return mascara == AUTENTICAT || (permisos(auth) & mascara) != 0 ? PERMETRE : DENEGAR;
+    }
+
+    /**
+     * Busca la primera regla que encaja con una ruta.
+     *
+     * @param cami La ruta, empezando por "/".
+     * @return El índice de la regla, o {@link Integer#MAX_VALUE} si ninguna
+     * encaja.
+     */
+    int regla(String cami) {
+        // "/" es la ruta sin segmentos
+        return cercar(arrel, cami, cami.length() == 1 ? 1 : 0, SENSE_REGLA);
+    }
+
+    /**
+     * Recorre el árbol desde un nodo. {@code posicio} apunta a la "/" que
+     * precede al siguiente segmento, o al final de la ruta.
+     */
+    private static int cercar(Node node, String cami, int posicio, int millor) {
+        millor = Math.min(millor, node.reglaPrefix);
+        if (posicio >= cami.length()) {
+            return Math.min(millor, node.reglaExacta);
+        }
+
+        int inici = posicio + 1;
+        int fi = cami.indexOf('/', inici);
+        if (fi < 0) {
+            fi = cami.length();
+        }
+        int llargada = fi - inici;
+
+        String[] claus = node.claus;
+        for (int i = 0; i < claus.length; i++) {
+            if (claus[i].length() == llargada && cami.regionMatches(inici, claus[i], 0, llargada)) {
+                millor = cercar(node.fills[i], cami, fi, millor);
+                break;
+            }
+        }
+        if (node.comodi != null && llargada > 0) {
+            millor = cercar(node.comodi, cami, fi, millor);
+        }
+        return millor;
+    }
+
+    /**
+     * Obtiene la ruta de la petición dentro de la aplicación.
+     */
+    private static String cami(HttpServletRequest request) {
+        String cami = request.getServletPath();
+        String pathInfo = request.getPathInfo();
+        if (pathInfo != null) {
+            cami = cami + pathInfo;
+        }
+        return cami.isEmpty() ? "/" : cami;
+    }
+
+    /**
+     * Obtiene la máscara de permisos del usuario autenticado.
+     */
+    private static long permisos(Authentication auth) {
+        if (auth.getPrincipal() instanceof Usuario usuari) {
+            return usuari.getMascaraPermisos();
+        }
+        long mascara = 0;
+        for (GrantedAuthority autoritat : auth.getAuthorities()) {
+            if (autoritat instanceof Permis permis) {
+                mascara |= permis.getTipus().bit();
+            }
+        }
+        return mascara;
+    }
+}
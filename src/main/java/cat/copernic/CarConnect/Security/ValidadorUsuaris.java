@@ -2,35 +2,62 @@ package cat.copernic.CarConnect.Security;
 
 import cat.copernic.CarConnect.Entity.MySQL.Client;
 import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
-import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 /**
  * Servicio para validar usuarios basado únicamente en clientes.
- * 
+ * <p>
+ * También vuelve a guardar la contraseña cuando Spring Security la recodifica
+ * al iniciar sesión, porque se guardó con un coste de BCrypt distinto del
+ * configurado (ver {@link CodificadorContrasenyes#upgradeEncoding(String)}).
+ * </p>
+ *
  * @author david
  */
 @Service
-public class ValidadorUsuaris implements UserDetailsService {
+public class ValidadorUsuaris implements UserDetailsService, UserDetailsPasswordService {
 
     @Autowired
     private ClientRepository clientRepo;
+
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
     
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // Buscar clientes por correo electrónico
-        List<Client> llistaClient = clientRepo.findByEmail(username);
-
-        if (llistaClient.isEmpty()) {
-            throw new UsernameNotFoundException("Usuario no encontrado: " + username);
-        }
+        // Buscar el cliente por correo electrónico (índice único)
+        Client client = clientRepo.findFirstByEmail(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Usuario no encontrado: " + username));
 
+        // Se aprovecha la consulta para dejar el usuario en la caché de CurrentUserResolver
+        currentUserResolver.registrar(client);
 
         // Retornar el cliente como un objeto UserDetails
-        return llistaClient.get(0); // Asegúrate de que la clase Client implemente UserDetails.
+        return client; // Asegúrate de que la clase Client implemente UserDetails.
+    }
+
+    /**
+     * Guarda la contraseña recodificada de un usuario que acaba de iniciar
+     * sesión.
+     *
+     * @param user El usuario autenticado.
+     * @param newPassword La contraseña codificada con el coste actual.
+     * @return El usuario con la nueva contraseña.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        Client client = clientRepo.findFirstByEmail(user.getUsername()).orElse(null);
+        if (client == null) {
+            return user;
+        }
+        client.setPassword(newPassword);
+        return client;
     }
 }
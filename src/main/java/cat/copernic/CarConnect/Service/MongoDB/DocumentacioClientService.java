@@ -5,8 +5,13 @@ import cat.copernic.CarConnect.Repository.MongoDB.DocumentacioClientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
+import cat.copernic.CarConnect.Storage.DocumentsGridFs;
+import java.io.IOException;
 import java.util.Optional;
-import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * Servicio que gestiona las operaciones relacionadas con la documentación de
@@ -19,7 +24,8 @@ public class DocumentacioClientService {
     @Autowired
     private DocumentacioClientRepository repository;
     @Autowired
-    private MongoTemplate mongoTemplate;
+    @Qualifier("documentsClient")
+    private DocumentsGridFs documents;
 
     /**
      * Guarda o actualiza la documentación de un cliente.
@@ -43,4 +49,42 @@ public class DocumentacioClientService {
     public Optional<DocumentacioClient> getDocumentByDni(String dni) {
         return Optional.ofNullable(repository.findByDni(dni));
     }
+
+    /**
+     * Añade un archivo a la documentación del cliente. El contenido se guarda en
+     * GridFS (con el tamaño máximo y la detección de tipo de las subidas) y el
+     * documento de documentación solo recibe la referencia. Si todavía
+     * no hay documentación del cliente, se crea.
+     *
+     * @param dni El DNI del cliente.
+     * @param fitxer El archivo subido.
+     * @return La referencia al archivo guardado.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    public DocumentFitxer afegirDocument(String dni, MultipartFile fitxer) throws IOException {
+        return documents.afegir(dni, fitxer);
+    }
+
+    /**
+     * Abre un archivo de la documentación del cliente para descargarlo en
+     * streaming desde GridFS.
+     *
+     * @param dni El DNI del cliente.
+     * @param fileId El ID del archivo en GridFS.
+     * @return El recurso, o vacío si no existe o no pertenece a este cliente.
+     */
+    public Optional<GridFsResource> obrirDocument(String dni, String fileId) {
+        return documents.obrir(dni, fileId);
+    }
+
+    /**
+     * Elimina un archivo de la documentación del cliente, tanto de GridFS como de la
+     * lista de referencias.
+     *
+     * @param dni El DNI del cliente.
+     * @param fileId El ID del archivo en GridFS.
+     */
+    public void eliminarDocument(String dni, String fileId) {
+        documents.eliminar(dni, fileId);
+    }
 }
@@ -5,8 +5,13 @@ import cat.copernic.CarConnect.Repository.MongoDB.DocumentacioIncidenciaReposito
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
+import cat.copernic.CarConnect.Storage.DocumentsGridFs;
+import java.io.IOException;
 import java.util.Optional;
-import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * Servicio que gestiona las operaciones relacionadas con la documentación de
@@ -20,7 +25,8 @@ public class DocumentacioIncidenciaService {
     @Autowired
     private DocumentacioIncidenciaRepository repository;
     @Autowired
-    private MongoTemplate mongoTemplate;
+    @Qualifier("documentsIncidencia")
+    private DocumentsGridFs documents;
 
     /**
      * Guarda o actualiza la documentación de una incidencia.
@@ -45,4 +51,42 @@ public class DocumentacioIncidenciaService {
     public Optional<DocumentacioIncidencia> getDocumentByIdIncidencia(String idIncidencia) {
         return Optional.ofNullable(repository.findByIdIncidencia(idIncidencia));
     }
+
+    /**
+     * Añade un archivo a la documentación de la incidencia. El contenido se guarda en
+     * GridFS (con el tamaño máximo y la detección de tipo de las subidas) y el
+     * documento de documentación solo recibe la referencia. Si todavía
+     * no hay documentación de la incidencia, se crea.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fitxer El archivo subido.
+     * @return La referencia al archivo guardado.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    public DocumentFitxer afegirDocument(String idIncidencia, MultipartFile fitxer) throws IOException {
+        return documents.afegir(idIncidencia, fitxer);
+    }
+
+    /**
+     * Abre un archivo de la documentación de la incidencia para descargarlo en
+     * streaming desde GridFS.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fileId El ID del archivo en GridFS.
+     * @return El recurso, o vacío si no existe o no pertenece a esta incidencia.
+     */
+    public Optional<GridFsResource> obrirDocument(String idIncidencia, String fileId) {
+        return documents.obrir(idIncidencia, fileId);
+    }
+
+    /**
+     * Elimina un archivo de la documentación de la incidencia, tanto de GridFS como de la
+     * lista de referencias.
+     *
+     * @param idIncidencia El ID de la incidencia.
+     * @param fileId El ID del archivo en GridFS.
+     */
+    public void eliminarDocument(String idIncidencia, String fileId) {
+        documents.eliminar(idIncidencia, fileId);
+    }
 }
@@ -0,0 +1,383 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import cat.copernic.CarConnect.Entity.MongoDB.AportacioReserva;
+import cat.copernic.CarConnect.Entity.MongoDB.EstadisticaDiariaReserves;
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+/**
+ * Mantiene los agregados diarios de reservas ({@link EstadisticaDiariaReserves})
+ * a partir de los eventos del histórico de reservas, y los consulta.
+ * <p>
+ * Cada reserva activa aporta, a cada día que ocupa el vehículo, un día de
+ * utilización y la parte proporcional de su precio, y al día de recogida una
+ * reserva. Cuando llega un evento de una reserva se resta lo que aportaba
+ * ({@link AportacioReserva}) y se suma lo nuevo con {@code $inc}, así que el
+ * coste de aplicar un evento depende de los días de la reserva y no del
+ * tamaño del histórico. Los informes agrupan los documentos diarios, así que
+ * dependen del número de días consultados y no del número de reservas.
+ * </p>
+ * <p>
+ * {@link #reagregar()} vuelve a calcular los agregados desde cero a partir de
+ * {@code historic_reserves}; sirve para el backfill inicial y para reparar los
+ * agregados si un fallo los ha dejado a medias.
+ * </p>
+ *
+ * @author Carlos
+ */
+@Service
+public class EstadistiquesReservesService {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadistiquesReservesService.class);
+
+    private static final int MIDA_LOT = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private VehicleRepository vehicleRepository;
+
+    private final ReentrantLock bloqueig = new ReentrantLock();
+
+    private final AtomicBoolean reagregant = new AtomicBoolean();
+
+    /**
+     * Dimensión por la que se agrupan los agregados en un informe.
+     */
+    public enum Dimensio {
+        VEHICLE("vehicleId"),
+        LOCALITZACIO("codiPostal"),
+        TIPUS("tipusVehicle");
+
+        private final String camp;
+
+        Dimensio(String camp) {
+            this.camp = camp;
+        }
+    }
+
+    /**
+     * Totales de un día para un valor de la dimensión.
+     */
+    public record FilaEstadistica(LocalDate dia, String clau, long reserves, double ingressos, long diesUtilitzacio) {
+    }
+
+    /**
+     * Incremento pendiente de aplicar a un documento diario.
+     */
+    private static class Increment {
+
+        private final LocalDate dia;
+        private final String vehicleId;
+        private final String codiPostal;
+        private final String tipusVehicle;
+        private long reserves;
+        private double ingressos;
+        private long diesUtilitzacio;
+
+        private Increment(LocalDate dia, String vehicleId, String codiPostal, String tipusVehicle) {
+            this.dia = dia;
+            this.vehicleId = vehicleId;
+            this.codiPostal = codiPostal;
+            this.tipusVehicle = tipusVehicle;
+        }
+    }
+
+    /**
+     * Indica si se están recalculando los agregados.
+     *
+     * @return true mientras dura {@link #reagregar()}.
+     */
+    public boolean isReagregant() {
+        return reagregant.get();
+    }
+
+    /**
+     * Aplica a los agregados un lote de eventos del histórico de reservas. Los
+     * eventos ya aplicados (por ID) se ignoran, así que se puede volver a
+     * aplicar un lote sin contar dos veces.
+     *
+     * @param events Los eventos, en el orden en que se registraron.
+     */
+    public void aplicar(List<HistoricReserves> events) {
+        bloqueig.lock();
+        try {
+            aplicarLot(events);
+        } finally {
+            bloqueig.unlock();
+        }
+    }
+
+    /**
+     * Inicia {@link #reagregar()} en segundo plano.
+     *
+     * @return false si ya había un recálculo en curso.
+     */
+    public boolean iniciarReagregacio() {
+        if (reagregant.get()) {
+            return false;
+        }
+        Thread.ofVirtual().name("reagregacio-estadistiques").start(this::reagregar);
+        return true;
+    }
+
+    /**
+     * Vuelve a calcular todos los agregados a partir de
+     * {@code historic_reserves}, recorriendo los eventos en orden de ID. A los
+     * eventos anteriores a los agregados, que no guardan la localización ni el
+     * tipo del vehículo, se les asignan los actuales del vehículo.
+     */
+    public void reagregar() {
+        if (!reagregant.compareAndSet(false, true)) {
+            return;
+        }
+        bloqueig.lock();
+        try {
+            long inici = System.currentTimeMillis();
+            mongoTemplate.remove(new Query(), EstadisticaDiariaReserves.class);
+            mongoTemplate.remove(new Query(), AportacioReserva.class);
+
+            Map<String, Optional<Vehicle>> vehicles = new HashMap<>();
+            List<HistoricReserves> lot = new ArrayList<>(MIDA_LOT);
+            long total = 0;
+            Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+            try (Stream<HistoricReserves> events = mongoTemplate.stream(query, HistoricReserves.class)) {
+                for (HistoricReserves event : (Iterable<HistoricReserves>) events::iterator) {
+                    if (event.getCodiPostal() == null || event.getTipusVehicle() == null) {
+                        completarVehicle(event, vehicles);
+                    }
+                    lot.add(event);
+                    if (lot.size() == MIDA_LOT) {
+                        aplicarLot(lot);
+                        total += lot.size();
+                        lot.clear();
+                    }
+                }
+            }
+            aplicarLot(lot);
+            total += lot.size();
+            log.info("Estadísticas de reservas recalculadas: {} eventos en {} ms", total,
+                    System.currentTimeMillis() - inici);
+        } catch (Exception e) {
+            log.error("Error al recalcular las estadísticas de reservas", e);
+        } finally {
+            bloqueig.unlock();
+            reagregant.set(false);
+        }
+    }
+
+    /**
+     * Al arrancar, calcula los agregados si todavía no existen pero ya hay
+     * histórico de reservas.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillInicial() {
+        try {
+            if (!mongoTemplate.exists(new Query(), AportacioReserva.class)
+                    && mongoTemplate.exists(new Query(), HistoricReserves.class)) {
+                iniciarReagregacio();
+            }
+        } catch (Exception e) {
+            log.error("No se han podido comprobar las estadísticas de reservas", e);
+        }
+    }
+
+    /**
+     * Consulta los agregados diarios de un periodo agrupados por una
+     * dimensión.
+     *
+     * @param desde El primer día (incluido).
+     * @param fins El último día (incluido).
+     * @param dimensio La dimensión por la que agrupar.
+     * @return Una fila por día y valor de la dimensión, ordenadas por día.
+     */
+    public List<FilaEstadistica> consultar(LocalDate desde, LocalDate fins, Dimensio dimensio) {
+        Aggregation agregacio = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("dia").gte(desde).lte(fins)),
+                Aggregation.group("dia", dimensio.camp)
+                        .sum("reserves").as("reserves")
+                        .sum("ingressos").as("ingressos")
+                        .sum("diesUtilitzacio").as("diesUtilitzacio"),
+                Aggregation.sort(Sort.by(Sort.Order.asc("_id.dia"), Sort.Order.asc("_id." + dimensio.camp))));
+
+        List<FilaEstadistica> files = new ArrayList<>();
+        for (Document fila : mongoTemplate.aggregate(agregacio, EstadisticaDiariaReserves.class, Document.class)) {
+            Document id = fila.get("_id", Document.class);
+            LocalDate dia = id.getDate("dia").toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            files.add(new FilaEstadistica(dia, id.getString(dimensio.camp),
+                    ((Number) fila.get("reserves")).longValue(),
+                    ((Number) fila.get("ingressos")).doubleValue(),
+                    ((Number) fila.get("diesUtilitzacio")).longValue()));
+        }
+        return files;
+    }
+
+    private void aplicarLot(List<HistoricReserves> events) {
+        List<Long> ids = events.stream()
+                .map(HistoricReserves::getReservaId)
+                .filter(id -> id != null)
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        Map<Long, AportacioReserva> aportacions = new HashMap<>();
+        for (AportacioReserva aportacio : mongoTemplate.find(
+                new Query(Criteria.where("_id").in(ids)), AportacioReserva.class)) {
+            aportacions.put(aportacio.getReservaId(), aportacio);
+        }
+
+        Map<String, Increment> increments = new LinkedHashMap<>();
+        Map<Long, AportacioReserva> canviades = new LinkedHashMap<>();
+        for (HistoricReserves event : events) {
+            if (event.getReservaId() == null) {
+                continue;
+            }
+            AportacioReserva anterior = aportacions.get(event.getReservaId());
+            if (anterior != null && jaAplicat(anterior.getEventId(), event.getId())) {
+                continue;
+            }
+            AportacioReserva nova = aportacio(event);
+            if (anterior != null) {
+                sumar(increments, anterior, -1);
+            }
+            sumar(increments, nova, 1);
+            aportacions.put(nova.getReservaId(), nova);
+            canviades.put(nova.getReservaId(), nova);
+        }
+        if (canviades.isEmpty()) {
+            return;
+        }
+
+        BulkOperations diaris = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, EstadisticaDiariaReserves.class);
+        int operacions = 0;
+        for (Map.Entry<String, Increment> entrada : increments.entrySet()) {
+            Increment increment = entrada.getValue();
+            if (increment.reserves == 0 && increment.diesUtilitzacio == 0 && increment.ingressos == 0) {
+                continue;
+            }
+            Update update = new Update()
+                    .inc("reserves", increment.reserves)
+                    .inc("ingressos", increment.ingressos)
+                    .inc("diesUtilitzacio", increment.diesUtilitzacio)
+                    .setOnInsert("dia", increment.dia)
+                    .setOnInsert("vehicleId", increment.vehicleId)
+                    .setOnInsert("codiPostal", increment.codiPostal)
+                    .setOnInsert("tipusVehicle", increment.tipusVehicle);
+            diaris.upsert(new Query(Criteria.where("_id").is(entrada.getKey())), update);
+            operacions++;
+        }
+        if (operacions > 0) {
+            diaris.execute();
+        }
+
+        // Se guarda después de los incrementos: si falla a medias, el evento se vuelve a aplicar
+        BulkOperations estat = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, AportacioReserva.class);
+        for (AportacioReserva aportacio : canviades.values()) {
+            estat.replaceOne(new Query(Criteria.where("_id").is(aportacio.getReservaId())), aportacio,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        estat.execute();
+
+        // Los días que se han quedado sin reservas no se guardan
+        mongoTemplate.remove(new Query(Criteria.where("_id").in(increments.keySet())
+                .and("reserves").is(0).and("diesUtilitzacio").is(0)), EstadisticaDiariaReserves.class);
+    }
+
+    private AportacioReserva aportacio(HistoricReserves event) {
+        String estat = event.getStatus();
+        boolean activa = !"ELIMINADA".equals(estat) && !"CANCELADA".equals(estat)
+                && event.getStartDate() != null && event.getEndDate() != null;
+        return new AportacioReserva(event.getReservaId(), event.getId(), activa, event.getVehicleId(),
+                event.getCodiPostal(), event.getTipusVehicle(), event.getStartDate(), event.getEndDate(),
+                event.getTotalPrice());
+    }
+
+    /**
+     * Suma (o resta, con signe -1) la aportación de una reserva a los
+     * incrementos. La reserva ocupa el vehículo del día de recogida al día
+     * anterior a la devolución, y como mínimo un día.
+     */
+    private void sumar(Map<String, Increment> increments, AportacioReserva aportacio, int signe) {
+        if (!aportacio.isActiva()) {
+            return;
+        }
+        LocalDate inici = aportacio.getInici();
+        LocalDate fi = aportacio.getFi().isAfter(inici) ? aportacio.getFi() : inici.plusDays(1);
+        long dies = ChronoUnit.DAYS.between(inici, fi);
+        double ingressosPerDia = aportacio.getIngressos() / dies;
+
+        for (LocalDate dia = inici; dia.isBefore(fi); dia = dia.plusDays(1)) {
+            LocalDate diaIncrement = dia;
+            Increment increment = increments.computeIfAbsent(clau(dia, aportacio),
+                    clau -> new Increment(diaIncrement, aportacio.getVehicleId(), aportacio.getCodiPostal(),
+                            aportacio.getTipusVehicle()));
+            if (dia.equals(inici)) {
+                increment.reserves += signe;
+            }
+            increment.ingressos += signe * ingressosPerDia;
+            increment.diesUtilitzacio += signe;
+        }
+    }
+
+    private static String clau(LocalDate dia, AportacioReserva aportacio) {
+        return dia + "|" + aportacio.getVehicleId() + "|" + aportacio.getCodiPostal() + "|" + aportacio.getTipusVehicle();
+    }
+
+    /**
+     * Indica si el evento ya está incluido en la aportación, comparando los
+     * ObjectId (que crecen con el tiempo de registro).
+     */
+    private static boolean jaAplicat(String eventAplicat, String event) {
+        if (eventAplicat == null || event == null || !ObjectId.isValid(eventAplicat) || !ObjectId.isValid(event)) {
+            return false;
+        }
+        return new ObjectId(event).compareTo(new ObjectId(eventAplicat)) <= 0;
+    }
+
+    private void completarVehicle(HistoricReserves event, Map<String, Optional<Vehicle>> vehicles) {
+        if (event.getVehicleId() == null) {
+            return;
+        }
+        Optional<Vehicle> vehicle = vehicles.computeIfAbsent(event.getVehicleId(), vehicleRepository::findByMatricula);
+        vehicle.ifPresent(v -> {
+            if (event.getCodiPostal() == null && v.getLocalitzacio() != null) {
+                event.setCodiPostal(v.getLocalitzacio().getCodiPostal());
+            }
+            if (event.getTipusVehicle() == null && v.getTipusVehicle() != null) {
+                event.setTipusVehicle(v.getTipusVehicle().name());
+            }
+        });
+    }
+}
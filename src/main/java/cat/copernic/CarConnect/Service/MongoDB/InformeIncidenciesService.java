@@ -0,0 +1,156 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricIncidencies;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+/**
+ * Servicio del informe de costes de las incidencias del histórico.
+ * <p>
+ * La página de incidencias se lee con una consulta ({@code find} con orden,
+ * {@code skip} y {@code limit}) que los índices {@code vehicleId}/{@code fecha}/
+ * {@code _id} y {@code fecha}/{@code _id} de {@link HistoricIncidencies} sirven
+ * ya ordenada. Los totales, los totales por vehículo y los totales por mes son
+ * agregaciones aparte, cada una con su {@code $match} por vehículo, por el
+ * mismo motivo que en {@link InformeReservesService}. Solo llega a la
+ * aplicación la página pedida y los totales ya calculados.
+ * </p>
+ * <p>
+ * Cada una de estas lecturas se hace por separado y en cada página, así que
+ * si el histórico recibe incidencias mientras tanto, la página y los
+ * distintos totales pueden no cuadrar entre sí.
+ * </p>
+ *
+ * @author David
+ */
+@Service
+public class InformeIncidenciesService {
+
+    public static final int MIDA_PER_DEFECTE = 50;
+    public static final int MIDA_MAXIMA = 500;
+
+    /**
+     * Número máximo de vehículos en los totales por vehículo (los de más
+     * coste).
+     */
+    public static final int MAX_VEHICLES = 100;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Totales de un vehículo.
+     */
+    public record TotalVehicle(String vehicleId, long incidencies, double cost) {
+    }
+
+    /**
+     * Totales de un mes.
+     */
+    public record TotalMes(int any, int mes, long incidencies, double cost) {
+    }
+
+    /**
+     * Una página del informe de incidencias con los totales de todo el filtro.
+     */
+    public record InformeIncidencies(List<HistoricIncidencies> incidencies, long totalIncidencies,
+            double totalCost, List<TotalVehicle> perVehicle, List<TotalMes> perMes, int pagina, int mida) {
+
+        public int getTotalPagines() {
+            return (int) ((totalIncidencies + mida - 1) / mida);
+        }
+
+        public boolean hiHaAnterior() {
+            return pagina > 0;
+        }
+
+        public boolean hiHaSeguent() {
+            return (long) (pagina + 1) * mida < totalIncidencies;
+        }
+    }
+
+    /**
+     * Genera una página del informe de incidencias, ordenada por fecha (más
+     * reciente primero, las que no tienen fecha al final).
+     *
+     * @param vehicleId La matrícula por la que filtrar, o null para todas.
+     * @param pagina El número de página (desde 0).
+     * @param mida El número de incidencias por página.
+     * @return La página con los totales.
+     */
+    public InformeIncidencies generarInforme(String vehicleId, int pagina, int mida) {
+        int midaPagina = Math.min(Math.max(mida, 1), MIDA_MAXIMA);
+        int numPagina = Math.max(pagina, 0);
+
+        Criteria filtre = vehicleId != null && !vehicleId.isEmpty()
+                ? Criteria.where("vehicleId").is(vehicleId)
+                : new Criteria();
+
+        Query consulta = Query.query(filtre)
+                .with(Sort.by(Sort.Order.desc("fecha"), Sort.Order.asc("_id")))
+                .skip((long) numPagina * midaPagina)
+                .limit(midaPagina);
+        List<HistoricIncidencies> incidencies = mongoTemplate.find(consulta, HistoricIncidencies.class);
+
+        long totalIncidencies = 0;
+        double totalCost = 0;
+        List<Document> totals = agregar(filtre,
+                Aggregation.group().count().as("incidencies").sum("cost").as("cost"));
+        if (!totals.isEmpty()) {
+            totalIncidencies = numero(totals.getFirst(), "incidencies").longValue();
+            totalCost = numero(totals.getFirst(), "cost").doubleValue();
+        }
+
+        List<TotalVehicle> perVehicle = new ArrayList<>();
+        for (Document fila : agregar(filtre,
+                Aggregation.group("vehicleId").count().as("incidencies").sum("cost").as("cost"),
+                Aggregation.sort(Sort.by(Sort.Order.desc("cost"), Sort.Order.asc("_id"))),
+                Aggregation.limit(MAX_VEHICLES))) {
+            perVehicle.add(new TotalVehicle(fila.getString("_id"),
+                    numero(fila, "incidencies").longValue(), numero(fila, "cost").doubleValue()));
+        }
+
+        // Las fechas se guardan como el inicio del día en la zona del servidor
+        DateOperators.DateOperatorFactory data = DateOperators.dateOf("fecha")
+                .withTimezone(DateOperators.Timezone.fromZone(ZoneId.systemDefault()));
+
+        List<TotalMes> perMes = new ArrayList<>();
+        for (Document fila : agregar(new Criteria().andOperator(filtre, Criteria.where("fecha").ne(null)),
+                Aggregation.project("cost").and(data.year()).as("any").and(data.month()).as("mes"),
+                Aggregation.group("any", "mes").count().as("incidencies").sum("cost").as("cost"),
+                Aggregation.sort(Sort.by(Sort.Order.desc("_id.any"), Sort.Order.desc("_id.mes"))))) {
+            Document id = fila.get("_id", Document.class);
+            perMes.add(new TotalMes(numero(id, "any").intValue(), numero(id, "mes").intValue(),
+                    numero(fila, "incidencies").longValue(), numero(fila, "cost").doubleValue()));
+        }
+        return new InformeIncidencies(incidencies, totalIncidencies, totalCost, perVehicle, perMes,
+                numPagina, midaPagina);
+    }
+
+    /**
+     * Ejecuta una agregación sobre las incidencias que cumplen el filtro.
+     */
+    private List<Document> agregar(Criteria filtre, AggregationOperation... operacions) {
+        List<AggregationOperation> pipeline = new ArrayList<>();
+        pipeline.add(Aggregation.match(filtre));
+        pipeline.addAll(List.of(operacions));
+        return mongoTemplate.aggregate(Aggregation.newAggregation(pipeline),
+                HistoricIncidencies.class, Document.class).getMappedResults();
+    }
+
+    private static Number numero(Document document, String camp) {
+        Object valor = document.get(camp);
+        return valor instanceof Number numero ? numero : 0;
+    }
+}
@@ -0,0 +1,105 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+/**
+ * Servicio del informe de reservas del histórico.
+ * <p>
+ * La página se lee con una consulta ({@code find} con orden, {@code skip} y
+ * {@code limit}) que el índice compuesto {@code clientDni}/{@code startDate}/
+ * {@code _id} de {@link HistoricReserves} sirve ya ordenada, sin ordenar en
+ * memoria. Los totales del filtro se calculan aparte con un {@code $group}:
+ * dentro de un {@code $facet} el orden no puede usar ningún índice. Solo
+ * llega a la aplicación la página pedida, así que el informe no depende del
+ * tamaño del histórico.
+ * </p>
+ * <p>
+ * Como la página y los totales son dos lecturas distintas, y los totales se
+ * vuelven a calcular en cada página, no son una foto consistente: si el
+ * histórico recibe reservas mientras tanto, los totales pueden contar
+ * documentos que la página no muestra, o al revés.
+ * </p>
+ *
+ * @author Carlos
+ */
+@Service
+public class InformeReservesService {
+
+    public static final int MIDA_PER_DEFECTE = 50;
+    public static final int MIDA_MAXIMA = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Una página del informe de reservas con los totales de todo el filtro.
+     *
+     * @param reserves Las reservas de la página.
+     * @param totalReserves El número de reservas que cumplen el filtro.
+     * @param totalPrice La suma del precio total de esas reservas.
+     * @param pagina El número de página (desde 0).
+     * @param mida El número de reservas por página.
+     */
+    public record InformeReserves(List<HistoricReserves> reserves, long totalReserves, double totalPrice,
+            int pagina, int mida) {
+
+        public int getTotalPagines() {
+            return (int) ((totalReserves + mida - 1) / mida);
+        }
+
+        public boolean hiHaAnterior() {
+            return pagina > 0;
+        }
+
+        public boolean hiHaSeguent() {
+            return (long) (pagina + 1) * mida < totalReserves;
+        }
+    }
+
+    /**
+     * Genera una página del informe de reservas, ordenada por DNI del cliente
+     * y por fecha de inicio (más reciente primero).
+     *
+     * @param clientDni El DNI del cliente por el que filtrar, o null para
+     * todos.
+     * @param pagina El número de página (desde 0).
+     * @param mida El número de reservas por página.
+     * @return La página con los totales.
+     */
+    public InformeReserves generarInforme(String clientDni, int pagina, int mida) {
+        int midaPagina = Math.min(Math.max(mida, 1), MIDA_MAXIMA);
+        int numPagina = Math.max(pagina, 0);
+
+        Criteria filtre = clientDni != null && !clientDni.isEmpty()
+                ? Criteria.where("clientDni").is(clientDni)
+                : new Criteria();
+
+        Query consulta = Query.query(filtre)
+                .with(Sort.by(Sort.Order.asc("clientDni"), Sort.Order.desc("startDate"), Sort.Order.asc("_id")))
+                .skip((long) numPagina * midaPagina)
+                .limit(midaPagina);
+        List<HistoricReserves> reserves = mongoTemplate.find(consulta, HistoricReserves.class);
+
+        Document totals = mongoTemplate.aggregate(Aggregation.newAggregation(
+                Aggregation.match(filtre),
+                Aggregation.group().count().as("totalReserves").sum("totalPrice").as("totalPrice")),
+                HistoricReserves.class, Document.class).getUniqueMappedResult();
+
+        long totalReserves = 0;
+        double totalPrice = 0;
+        if (totals != null) {
+            totalReserves = ((Number) totals.get("totalReserves")).longValue();
+            totalPrice = ((Number) totals.get("totalPrice")).doubleValue();
+        }
+        return new InformeReserves(reserves, totalReserves, totalPrice, numPagina, midaPagina);
+    }
+}
@@ -0,0 +1,126 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
+import cat.copernic.CarConnect.utils.TipusContingutUtils;
+import java.io.ByteArrayInputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.bson.Document;
+import org.bson.types.Binary;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migración de la documentación antigua, que guardaba los archivos como un
+ * array de binarios dentro del propio documento, a los buckets de GridFS.
+ * <p>
+ * Al arrancar se buscan los documentos cuyo campo {@code documents} todavía
+ * contiene binarios; cada binario se sube a GridFS y se sustituye por su
+ * {@link DocumentFitxer}. Los documentos se procesan de uno en uno para no
+ * tener más de uno en memoria.
+ * </p>
+ * <p>
+ * Cada archivo se sube con el metadato {@code origen} ({@code <_id>-<posición>}
+ * del binario). Si la migración se interrumpe después de subir un archivo
+ * pero antes de actualizar el documento, en la siguiente ejecución se
+ * encuentra por ese origen y se reutiliza, así que no queda duplicado ni
+ * huérfano.
+ * </p>
+ *
+ * @author David
+ */
+@Component
+public class MigracioDocumentacioGridFs {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracioDocumentacioGridFs.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    @Qualifier("gridFsDocumentacioClient")
+    private GridFsTemplate bucketClient;
+
+    @Autowired
+    @Qualifier("gridFsDocumentacioIncidencia")
+    private GridFsTemplate bucketIncidencia;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrar() {
+        migrarColeccio("documentacio_client", "dni", bucketClient);
+        migrarColeccio("documentacio_incidencia", "idIncidencia", bucketIncidencia);
+    }
+
+    private void migrarColeccio(String coleccio, String clau, GridFsTemplate bucket) {
+        Query pendents = Query.query(Criteria.where("documents").type(5)); // 5 = binData
+        pendents.fields().include("_id");
+
+        List<Document> ids = mongoTemplate.find(pendents, Document.class, coleccio);
+        if (ids.isEmpty()) {
+            return;
+        }
+        // La búsqueda por origen de cada binario necesita el índice (cada
+        // bucket se llama igual que su colección, ver GridFsConfig)
+        mongoTemplate.indexOps(coleccio + ".files")
+                .ensureIndex(new Index().on("metadata.origen", Sort.Direction.ASC).sparse());
+
+        int migrats = 0;
+        for (Document id : ids) {
+            Document original = mongoTemplate.findById(id.get("_id"), Document.class, coleccio);
+            if (original == null) {
+                continue;
+            }
+            String propietari = original.getString(clau);
+
+            List<Object> documents = new ArrayList<>();
+            int index = 0;
+            for (Object element : original.getList("documents", Object.class)) {
+                index++;
+                if (!(element instanceof Binary binari)) {
+                    documents.add(element); // Ya migrado en una ejecución anterior
+                    continue;
+                }
+                documents.add(migrar(bucket, clau, propietari, original.get("_id") + "-" + index,
+                        "document-" + index, binari.getData()));
+            }
+
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(original.get("_id"))),
+                    new Update().set("documents", documents), coleccio);
+            migrats++;
+        }
+        if (migrats > 0) {
+            log.info("Migrados {} documentos de {} a GridFS", migrats, coleccio);
+        }
+    }
+
+    /**
+     * Sube un binario a GridFS, o reutiliza el archivo que ya se subió desde
+     * el mismo origen en una ejecución interrumpida.
+     */
+    private DocumentFitxer migrar(GridFsTemplate bucket, String clau, String propietari, String origen, String nom,
+            byte[] data) {
+        String contentType = TipusContingutUtils.detectar(data);
+
+        GridFSFile existent = bucket.findOne(Query.query(Criteria.where("metadata.origen").is(origen)));
+        ObjectId fileId = existent != null
+                ? existent.getObjectId()
+                : bucket.store(new ByteArrayInputStream(data), nom, contentType,
+                        new Document(clau, propietari).append("origen", origen));
+        return new DocumentFitxer(fileId.toHexString(), nom, contentType, data.length, Instant.now());
+    }
+}
@@ -0,0 +1,114 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricIncidencies;
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Entity.MySQL.EsdevenimentHistoric;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusEsdeveniment;
+import cat.copernic.CarConnect.Repository.MySQL.EsdevenimentHistoricRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Proceso en segundo plano que publica en MongoDB los eventos del histórico
+ * guardados en MySQL ({@link EsdevenimentHistoric}).
+ * <p>
+ * Lee los eventos por lotes y los escribe con un {@code bulkWrite} por
+ * colección ({@code historic_reserves} y {@code historic_incidencies}). Cada
+ * documento se escribe con un reemplazo con upsert por su ID, así que
+ * publicar dos veces el mismo evento no lo duplica. Los eventos de reservas
+ * se aplican también a las estadísticas diarias
+ * ({@link EstadistiquesReservesService}). Si MongoDB no responde, los eventos
+ * se quedan en MySQL y se reintentan en la siguiente pasada.
+ * </p>
+ *
+ * @author Toni
+ */
+@Component
+public class PublicadorHistoric {
+
+    private static final Logger log = LoggerFactory.getLogger(PublicadorHistoric.class);
+
+    @Autowired
+    private EsdevenimentHistoricRepository esdevenimentRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EstadistiquesReservesService estadistiquesService;
+
+    @Value("${carconnect.historic.lot:500}")
+    private int midaLot;
+
+    /**
+     * Publica lotes de eventos hasta que no queda ninguno.
+     */
+    @Scheduled(fixedDelayString = "${carconnect.historic.interval:PT2S}")
+    public void publicar() {
+        if (estadistiquesService.isReagregant()) {
+            return; // Se publicará cuando acabe el recálculo de las estadísticas
+        }
+        try {
+            List<EsdevenimentHistoric> lot;
+            do {
+                lot = esdevenimentRepository.findByOrderByIdAsc(Limit.of(midaLot));
+                if (!lot.isEmpty()) {
+                    publicarLot(lot);
+                }
+            } while (lot.size() == midaLot);
+        } catch (Exception e) {
+            log.error("Error al publicar el histórico en MongoDB", e);
+        }
+    }
+
+    private void publicarLot(List<EsdevenimentHistoric> lot) throws JsonProcessingException {
+        List<HistoricReserves> reserves = new ArrayList<>();
+        List<HistoricIncidencies> incidencies = new ArrayList<>();
+        for (EsdevenimentHistoric esdeveniment : lot) {
+            if (esdeveniment.getTipus() == TipusEsdeveniment.RESERVA) {
+                reserves.add(objectMapper.readValue(esdeveniment.getDocument(), HistoricReserves.class));
+            } else {
+                incidencies.add(objectMapper.readValue(esdeveniment.getDocument(), HistoricIncidencies.class));
+            }
+        }
+
+        escriure(reserves, HistoricReserves.class, HistoricReserves::getId);
+        escriure(incidencies, HistoricIncidencies.class, HistoricIncidencies::getId);
+        if (!reserves.isEmpty()) {
+            estadistiquesService.aplicar(reserves);
+        }
+
+        // Solo se borran cuando MongoDB ya los ha confirmado
+        esdevenimentRepository.deleteAllInBatch(lot);
+    }
+
+    private <T> void escriure(List<T> documents, Class<T> tipus, Function<T, String> id) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        BulkOperations operacions = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, tipus);
+        for (T document : documents) {
+            operacions.replaceOne(new Query(Criteria.where("_id").is(id.apply(document))), document,
+                    FindAndReplaceOptions.options().upsert());
+        }
+        operacions.execute();
+    }
+}
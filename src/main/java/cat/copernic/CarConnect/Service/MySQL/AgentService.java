@@ -6,12 +6,15 @@ import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
 import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
 import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.util.ArrayList;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.List;
 import jakarta.persistence.criteria.Predicate;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -23,12 +26,20 @@ import java.util.regex.Pattern;
 @Service
 public class AgentService {
 
+    /**
+     * Propiedades por las que se puede ordenar el listado de agentes.
+     */
+    public static final Set<String> ORDRES = Set.of("dni", "nombre", "apellido", "email");
+
     @Autowired
     private AgentRepository agentRepository;
 
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+
     /**
      * Obtiene todos los agentes registrados.
      *
@@ -37,6 +48,16 @@ public class AgentService {
     public List<Agent> llistarAgents() {
         return agentRepository.findAll(); // Cambié de Client a Agent
     }
+
+    /**
+     * Obtiene una página de agentes con paginación keyset.
+     *
+     * @param peticio El cursor, tamaño y orden de la página.
+     * @return La página de agentes.
+     */
+    public Paginacio<Agent> llistarAgents(Paginacio.Peticio peticio) {
+        return Paginacio.consultar(peticio, "dni", agentRepository::findById, agentRepository::findBy);
+    }
     
     /**
      * Obtiene un agente por su DNI.
@@ -103,6 +124,7 @@ public class AgentService {
         } else {
             agentRepository.save(agent);
         }
+        currentUserResolver.invalidar(dni);
         // Actualizar otras relaciones o campos si es necesario
     }
 
@@ -115,6 +137,7 @@ public class AgentService {
     public boolean eliminarAgent(String dni) {
         if (agentRepository.existsById(dni)) { // Busca si existe el agente
             agentRepository.deleteById(dni); // Eliminar el agente
+            currentUserResolver.invalidar(dni);
             return true;
         }
         return false;
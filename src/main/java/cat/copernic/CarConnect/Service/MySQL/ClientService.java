@@ -6,17 +6,20 @@ import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusClient;
 import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
 import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.utils.Paginacio;
 import jakarta.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 
 /**
  * Servicio que gestiona las operaciones relacionadas con los clientes.
@@ -26,9 +29,17 @@ import org.springframework.security.core.userdetails.UserDetails;
 @Service
 public class ClientService {
 
+    /**
+     * Propiedades por las que se puede ordenar el listado de clientes.
+     */
+    public static final Set<String> ORDRES = Set.of("dni", "nombre", "apellido", "email");
+
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+
     /**
      * Obtiene todos los clientes registrados.
      *
@@ -38,6 +49,16 @@ public class ClientService {
         return clientRepository.findAll();
     }
 
+    /**
+     * Obtiene una página de clientes con paginación keyset.
+     *
+     * @param peticio El cursor, tamaño y orden de la página.
+     * @return La página de clientes.
+     */
+    public Paginacio<Client> getClients(Paginacio.Peticio peticio) {
+        return Paginacio.consultar(peticio, "dni", clientRepository::findById, clientRepository::findBy);
+    }
+
     /**
      * Guarda un nuevo cliente en la base de datos.
      *
@@ -60,20 +81,23 @@ public class ClientService {
     public Client getClientByDni(String dni) {
         return clientRepository.findById(dni).orElseThrow(() -> new RuntimeException("Client no trobat"));
     }
+
+    /**
+     * Obtiene el cliente autenticado con una sola consulta por el índice
+     * único del email. Para el DNI, el rol o los permisos basta con la foto en
+     * caché de {@link CurrentUserResolver}.
+     *
+     * @param authentication La autenticación del cliente.
+     * @return El cliente, o null si no hay un cliente autenticado o no existe.
+     */
     public Client getClientAutenticat(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String username = userDetails.getUsername();
-        
-        List<Client> clients = clientRepository.findByEmail(username);
-        Client client = new Client();
-       if(!clients.isEmpty()){
-           client = clients.getFirst();
-       }else client = null;
-       
-        //clientRepository.findById(dni).orElseThrow(() -> new RuntimeException("Client no trobat"));
-        
-        return client;
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return clientRepository.findFirstByEmail(authentication.getName()).orElse(null);
     }
+
     /**
      * Actualiza la información de un cliente existente.
      *
@@ -94,6 +118,7 @@ public class ClientService {
         client.setAdreca(updatedClient.getAdreca());
         client.setTipusClient(updatedClient.getTipusClient());
         clientRepository.save(client);
+        currentUserResolver.invalidar(dni);
     }
 
     /**
@@ -103,6 +128,7 @@ public class ClientService {
      */
     public void deleteClient(String dni) {
         clientRepository.deleteById(dni);
+        currentUserResolver.invalidar(dni);
     }
 
     /**
@@ -182,20 +208,19 @@ public class ClientService {
         return false;
     }
 
+    /**
+     * Obtiene un cliente por su email con una sola consulta por el índice
+     * único del email. Es para quien necesita la entidad completa; para el
+     * DNI, el rol o los permisos del usuario autenticado basta con la foto en
+     * caché de {@link CurrentUserResolver}.
+     *
+     * @param email El email del cliente.
+     * @return El cliente.
+     * @throws RuntimeException Si no se encuentra el cliente.
+     */
     public Client getClientByEmail(String email) {
-        // Recuperar la lista de clientes con el email dado
-        List<Client> clients = clientRepository.findByEmail(email);
-
-        if (clients == null || clients.isEmpty()) {
-            throw new RuntimeException("No se encontró ningún cliente con el email: " + email);
-        }
-
-        if (clients.size() > 1) {
-            throw new RuntimeException("Hay múltiples clientes con el email: " + email);
-        }
-
-        // Retornar el único cliente encontrado
-        return clients.get(0);
+        return clientRepository.findFirstByEmail(email)
+                .orElseThrow(() -> new RuntimeException("No se encontró ningún cliente con el email: " + email));
     }
 
 }
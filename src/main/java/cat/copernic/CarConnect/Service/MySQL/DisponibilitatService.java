@@ -0,0 +1,260 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository;
+import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository.PeriodeReserva;
+import cat.copernic.CarConnect.utils.IndexIntervals;
+import cat.copernic.CarConnect.utils.IndexIntervals.Interval;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Motor de disponibilidad de vehículos.
+ * <p>
+ * Mantiene en memoria, para cada vehículo, un {@link IndexIntervals} con los
+ * días ocupados por sus reservas no canceladas, de forma que comprobar si un
+ * vehículo está libre en un periodo no necesita consultar la base de datos y
+ * cuesta O(log n) en el número de reservas del vehículo. El índice se carga
+ * con una sola consulta la primera vez que se usa y {@link ReservaService} lo
+ * mantiene al día cada vez que guarda o elimina una reserva.
+ * </p>
+ * <p>
+ * Una reserva ocupa desde el día de recogida (incluido) hasta el de
+ * devolución (excluido), así que un vehículo devuelto un día se puede volver
+ * a recoger ese mismo día. Las reservas de un solo día ocupan el día de
+ * recogida.
+ * </p>
+ * <p>
+ * Las lecturas no se bloquean: cada vehículo tiene un índice inmutable que
+ * los escritores sustituyen de forma atómica.
+ * </p>
+ *
+ * @author Toni
+ */
+@Service
+public class DisponibilitatService {
+
+    private static final Logger log = LoggerFactory.getLogger(DisponibilitatService.class);
+
+    @Autowired
+    private ReservaRepository reservaRepository;
+
+    private final Map<String, IndexIntervals> perVehicle = new ConcurrentHashMap<>();
+
+    // Vehículo en el que está indexada cada reserva, por si se cambia de vehículo
+    private final Map<Long, String> vehiclePerReserva = new ConcurrentHashMap<>();
+
+    private volatile boolean carregat = false;
+
+    // ReentrantLock y no synchronized: la carga hace una consulta y, con hilos
+    // virtuales, un monitor fijaría el hilo a su portador durante la consulta
+    private final ReentrantLock bloqueigCarrega = new ReentrantLock();
+
+    /**
+     * Indica si un vehículo está libre durante todo un periodo.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @return true si ninguna reserva del vehículo se solapa con el periodo.
+     */
+    public boolean estaLliure(String matricula, LocalDate inici, LocalDate fi) {
+        return estaLliure(matricula, inici, fi, null);
+    }
+
+    /**
+     * Indica si un vehículo está libre durante todo un periodo sin tener en
+     * cuenta una reserva concreta, por ejemplo la que se está editando.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @param excloureId El ID de la reserva a ignorar, o null.
+     * @return true si ninguna otra reserva del vehículo se solapa con el
+     * periodo.
+     */
+    public boolean estaLliure(String matricula, LocalDate inici, LocalDate fi, Long excloureId) {
+        return !index(matricula).solapa(inici(inici), fi(inici, fi), excloureId);
+    }
+
+    /**
+     * Obtiene los IDs de las reservas de un vehículo que se solapan con un
+     * periodo.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @return Los IDs de las reservas, ordenados por día de recogida.
+     */
+    public List<Long> reservesSolapades(String matricula, LocalDate inici, LocalDate fi) {
+        return index(matricula).solapats(inici(inici), fi(inici, fi));
+    }
+
+    /**
+     * Periodo ocupado de un vehículo, con los dos días incluidos.
+     *
+     * @param inici El primer día ocupado.
+     * @param fi El último día ocupado.
+     */
+    public record PeriodeOcupat(LocalDate inici, LocalDate fi) {
+    }
+
+    /**
+     * Obtiene el calendario de ocupación de un vehículo entre dos días como
+     * periodos fusionados: las reservas que se solapan o son contiguas salen
+     * como un único periodo. El día de devolución de una reserva no cuenta
+     * como ocupado, porque ese mismo día se puede volver a recoger.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param desde El primer día del calendario.
+     * @param fins El último día del calendario (incluido).
+     * @return Los periodos ocupados, ordenados y disjuntos.
+     */
+    public List<PeriodeOcupat> calendari(String matricula, LocalDate desde, LocalDate fins) {
+        List<Interval> intervals = index(matricula).fusionats(desde.toEpochDay(), fins.toEpochDay() + 1);
+        return intervals.stream()
+                .map(interval -> new PeriodeOcupat(LocalDate.ofEpochDay(interval.inici()),
+                        LocalDate.ofEpochDay(interval.fi() - 1)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Filtra los vehículos que están libres durante todo un periodo.
+     *
+     * @param matricules Las matrículas de los vehículos candidatos.
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @return Las matrículas libres, en el mismo orden.
+     */
+    public List<String> lliures(Collection<String> matricules, LocalDate inici, LocalDate fi) {
+        long a = inici(inici);
+        long b = fi(inici, fi);
+        return matricules.stream()
+                .filter(matricula -> !index(matricula).solapa(a, b, null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Actualiza el índice con el estado de una reserva ya guardada. Si la
+     * reserva está cancelada se quita del índice. Dentro de una transacción,
+     * el índice se actualiza cuando esta se confirma.
+     *
+     * @param reserva La reserva guardada.
+     */
+    public void actualitzar(Reserva reserva) {
+        if (reserva.getIdReserva() == null) {
+            return;
+        }
+        // Si la transacción se deshace, el índice no debe ver la reserva
+        despresDeConfirmar(() -> actualitzarIndex(reserva));
+    }
+
+    private void actualitzarIndex(Reserva reserva) {
+        carregar();
+        if (reserva.getDataCancelacio() != null || reserva.getVehicle() == null
+                || reserva.getDataHoraRecollida() == null || reserva.getDataHoraDevolucio() == null) {
+            eliminarIndex(reserva.getIdReserva());
+            return;
+        }
+        afegir(reserva.getIdReserva(), reserva.getVehicle().getMatricula(),
+                reserva.getDataHoraRecollida(), reserva.getDataHoraDevolucio());
+    }
+
+    /**
+     * Quita una reserva del índice. Dentro de una transacción, la reserva se
+     * quita cuando esta se confirma.
+     *
+     * @param idReserva El ID de la reserva.
+     */
+    public void eliminar(Long idReserva) {
+        // Si la transacción se deshace, la reserva sigue ocupando el vehículo
+        despresDeConfirmar(() -> eliminarIndex(idReserva));
+    }
+
+    private void eliminarIndex(Long idReserva) {
+        carregar();
+        String matricula = vehiclePerReserva.remove(idReserva);
+        if (matricula != null) {
+            perVehicle.computeIfPresent(matricula, (m, index) -> index.sense(idReserva));
+        }
+    }
+
+    /**
+     * Ejecuta un cambio del índice cuando se confirma la transacción actual,
+     * o enseguida si no hay ninguna.
+     */
+    private void despresDeConfirmar(Runnable canvi) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    canvi.run();
+                }
+            });
+        } else {
+            canvi.run();
+        }
+    }
+
+    private void afegir(Long idReserva, String matricula, LocalDate inici, LocalDate fi) {
+        String anterior = vehiclePerReserva.put(idReserva, matricula);
+        if (anterior != null && !anterior.equals(matricula)) {
+            perVehicle.computeIfPresent(anterior, (m, index) -> index.sense(idReserva));
+        }
+        perVehicle.compute(matricula, (m, index)
+                -> (index != null ? index : IndexIntervals.BUIT).amb(idReserva, inici(inici), fi(inici, fi)));
+    }
+
+    private IndexIntervals index(String matricula) {
+        carregar();
+        return perVehicle.getOrDefault(matricula, IndexIntervals.BUIT);
+    }
+
+    /**
+     * Carga el índice con las reservas no canceladas la primera vez que se
+     * necesita.
+     */
+    private void carregar() {
+        if (carregat) {
+            return;
+        }
+        bloqueigCarrega.lock();
+        try {
+            if (carregat) {
+                return;
+            }
+            List<PeriodeReserva> periodes = reservaRepository.findPeriodesActius();
+            for (PeriodeReserva periode : periodes) {
+                afegir(periode.getIdReserva(), periode.getMatricula(),
+                        periode.getDataHoraRecollida(), periode.getDataHoraDevolucio());
+            }
+            carregat = true;
+            log.info("Índice de disponibilidad cargado con {} reservas", periodes.size());
+        } finally {
+            bloqueigCarrega.unlock();
+        }
+    }
+
+    private static long inici(LocalDate inici) {
+        return inici.toEpochDay();
+    }
+
+    /**
+     * Fin exclusivo de un periodo: el día de devolución, o el día siguiente a
+     * la recogida si la reserva es de un solo día.
+     */
+    private static long fi(LocalDate inici, LocalDate fi) {
+        return Math.max(fi.toEpochDay(), inici.toEpochDay() + 1);
+    }
+}
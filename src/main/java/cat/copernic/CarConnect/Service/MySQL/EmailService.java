@@ -1,5 +1,12 @@
 package cat.copernic.CarConnect.Service.MySQL;
 
+import cat.copernic.CarConnect.Entity.MySQL.CorreuPendent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.EstatCorreu;
+import cat.copernic.CarConnect.Repository.MySQL.CorreuPendentRepository;
+import cat.copernic.CarConnect.Service.MySQL.PlantillesCorreu.ImatgeInline;
+import cat.copernic.CarConnect.Service.MySQL.PlantillesCorreu.PlantillaCorreu;
+import java.time.LocalDateTime;
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -9,7 +16,9 @@ import jakarta.mail.internet.MimeMessage;
 
 /**
  * Servicio que gestiona el envío de correos electrónicos. Proporciona métodos
- * para enviar correos tanto en texto plano como en formato HTML.
+ * para enviar correos tanto en texto plano como en formato HTML, y para
+ * dejarlos en la cola de salida ({@link CorreuPendent}) de modo que la
+ * petición no espere al servidor SMTP.
  */
 @Service
 public class EmailService {
@@ -17,6 +26,101 @@ public class EmailService {
     @Autowired
     private JavaMailSender mailSender;
 
+    @Autowired
+    private CorreuPendentRepository correuPendentRepository;
+
+    @Autowired
+    private PlantillesCorreu plantillesCorreu;
+
+    /**
+     * Genera un correo a partir de su plantilla ({@link PlantillaCorreu}) y lo
+     * deja en la cola de salida.
+     *
+     * @param to La dirección de correo electrónico del destinatario.
+     * @param plantilla El tipo de correo, que define la plantilla y el asunto.
+     * @param variables Las variables de la plantilla.
+     * @return El correo guardado en la cola.
+     */
+    public CorreuPendent encuarEmail(String to, PlantillaCorreu plantilla, Map<String, Object> variables) {
+        return encuar(to, plantilla.getAssumpte(), plantillesCorreu.renderitzar(plantilla, variables), true);
+    }
+
+    /**
+     * Deja un correo HTML en la cola de salida. El proceso
+     * {@link EnviamentCorreus} lo envía en segundo plano y lo reintenta si
+     * falla, así que un problema con el servidor SMTP no afecta a la petición.
+     *
+     * @param to La dirección de correo electrónico del destinatario.
+     * @param subject El asunto del correo electrónico.
+     * @param htmlContent El cuerpo del correo en formato HTML.
+     * @return El correo guardado en la cola.
+     */
+    public CorreuPendent encuarHtmlEmail(String to, String subject, String htmlContent) {
+        return encuar(to, subject, htmlContent, true);
+    }
+
+    /**
+     * Deja un correo en texto plano en la cola de salida.
+     *
+     * @param to La dirección de correo electrónico del destinatario.
+     * @param subject El asunto del correo electrónico.
+     * @param text El cuerpo del correo en texto plano.
+     * @return El correo guardado en la cola.
+     */
+    public CorreuPendent encuarEmail(String to, String subject, String text) {
+        return encuar(to, subject, text, false);
+    }
+
+    private CorreuPendent encuar(String to, String subject, String contingut, boolean html) {
+        LocalDateTime ara = LocalDateTime.now();
+        CorreuPendent correu = new CorreuPendent();
+        correu.setDestinatari(to);
+        correu.setAssumpte(subject);
+        correu.setContingut(contingut);
+        correu.setHtml(html);
+        correu.setEstat(EstatCorreu.PENDENT);
+        correu.setProperIntent(ara);
+        correu.setDataCreacio(ara);
+        return correuPendentRepository.save(correu);
+    }
+
+    /**
+     * Crea el mensaje MIME de un correo de la cola de salida, sin enviarlo.
+     *
+     * @param correu El correo de la cola.
+     * @return El mensaje.
+     * @throws MessagingException Si alguna dirección o cabecera no es válida.
+     */
+    public MimeMessage crearMissatge(CorreuPendent correu) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setTo(correu.getDestinatari());
+        helper.setSubject(correu.getAssumpte());
+        helper.setText(correu.getContingut(), correu.isHtml());
+        if (correu.isHtml()) {
+            // Las imágenes en línea ya están en memoria; solo se adjuntan las que usa el correo
+            for (Map.Entry<String, ImatgeInline> imatge : plantillesCorreu.getImatgesInline().entrySet()) {
+                if (correu.getContingut().contains("cid:" + imatge.getKey())) {
+                    helper.addInline(imatge.getKey(), imatge.getValue().contingut(), imatge.getValue().contentType());
+                }
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Envía varios mensajes con una sola conexión al servidor SMTP.
+     *
+     * @param missatges Los mensajes a enviar.
+     * @throws org.springframework.mail.MailSendException Si falla el envío de
+     * alguno de los mensajes; los fallidos se indican en
+     * {@code getFailedMessages()}.
+     * @throws org.springframework.mail.MailException Si no se puede conectar.
+     */
+    public void enviarLot(MimeMessage... missatges) {
+        mailSender.send(missatges);
+    }
+
     /**
      * Envía un correo electrónico en texto plano.
      *
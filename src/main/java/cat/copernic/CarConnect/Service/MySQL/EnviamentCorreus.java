@@ -0,0 +1,174 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.CorreuPendent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.EstatCorreu;
+import cat.copernic.CarConnect.Repository.MySQL.CorreuPendentRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Proceso en segundo plano que envía los correos de la cola de salida
+ * ({@link CorreuPendent}).
+ * <p>
+ * Cada pasada se ejecuta en un hilo virtual, para no ocupar el hilo del
+ * planificador (compartido con otras tareas) mientras se espera al servidor
+ * SMTP. Los correos se envían por lotes con una sola conexión SMTP por lote.
+ * Un correo que falla se reintenta con una espera exponencial y, tras
+ * {@code carconnect.correus.intents-maxims} intentos, se marca como
+ * {@link EstatCorreu#FALLIT}.
+ * </p>
+ *
+ * @author Toni
+ */
+@Component
+public class EnviamentCorreus {
+
+    private static final Logger log = LoggerFactory.getLogger(EnviamentCorreus.class);
+
+    private static final Duration ESPERA_INICIAL = Duration.ofSeconds(30);
+    private static final Duration ESPERA_MAXIMA = Duration.ofHours(1);
+
+    @Autowired
+    private CorreuPendentRepository correuPendentRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${carconnect.correus.lot:50}")
+    private int midaLot;
+
+    @Value("${carconnect.correus.intents-maxims:8}")
+    private int intentsMaxims;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicBoolean enCurs = new AtomicBoolean(false);
+
+    /**
+     * Lanza una pasada de envío en un hilo virtual, si no hay otra en curso.
+     */
+    @Scheduled(fixedDelayString = "${carconnect.correus.interval:PT2S}")
+    public void programar() {
+        if (enCurs.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    enviarPendents();
+                } catch (Exception e) {
+                    log.error("Error al enviar la cola de correos", e);
+                } finally {
+                    enCurs.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Envía lotes de correos pendientes hasta que no queda ninguno listo.
+     */
+    void enviarPendents() {
+        List<CorreuPendent> lot;
+        do {
+            lot = correuPendentRepository.findByEstatAndProperIntentLessThanEqualOrderById(
+                    EstatCorreu.PENDENT, LocalDateTime.now(), Limit.of(midaLot));
+            if (!lot.isEmpty()) {
+                enviarLot(lot);
+            }
+        } while (lot.size() == midaLot);
+    }
+
+    private void enviarLot(List<CorreuPendent> lot) {
+        Map<MimeMessage, CorreuPendent> perMissatge = new IdentityHashMap<>();
+        List<MimeMessage> missatges = new ArrayList<>();
+        for (CorreuPendent correu : lot) {
+            try {
+                MimeMessage missatge = emailService.crearMissatge(correu);
+                perMissatge.put(missatge, correu);
+                missatges.add(missatge);
+            } catch (MessagingException e) {
+                // Una dirección no válida no se arregla reintentando
+                marcarFallit(correu, e, true);
+            }
+        }
+
+        Map<Object, Exception> fallits = Map.of();
+        if (!missatges.isEmpty()) {
+            try {
+                emailService.enviarLot(missatges.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                fallits = e.getFailedMessages();
+                if (fallits.isEmpty()) {
+                    // No se ha podido enviar ninguno (p. ej. error de conexión)
+                    fallits = new IdentityHashMap<>();
+                    for (MimeMessage missatge : missatges) {
+                        fallits.put(missatge, e);
+                    }
+                }
+            } catch (MailException e) {
+                fallits = new IdentityHashMap<>();
+                for (MimeMessage missatge : missatges) {
+                    fallits.put(missatge, e);
+                }
+            }
+        }
+
+        LocalDateTime ara = LocalDateTime.now();
+        for (MimeMessage missatge : missatges) {
+            CorreuPendent correu = perMissatge.get(missatge);
+            Exception error = fallits.get(missatge);
+            if (error == null) {
+                correu.setEstat(EstatCorreu.ENVIAT);
+                correu.setDataEnviament(ara);
+                correu.setDarrerError(null);
+            } else {
+                marcarFallit(correu, error, false);
+            }
+        }
+        correuPendentRepository.saveAll(lot);
+    }
+
+    /**
+     * Registra un envío fallido y programa el siguiente intento con espera
+     * exponencial, o marca el correo como fallido si no quedan intentos.
+     */
+    private void marcarFallit(CorreuPendent correu, Exception error, boolean definitiu) {
+        int intents = correu.getIntents() + 1;
+        correu.setIntents(intents);
+        String missatge = String.valueOf(error.getMessage());
+        correu.setDarrerError(missatge.length() > 1000 ? missatge.substring(0, 1000) : missatge);
+
+        if (definitiu || intents >= intentsMaxims) {
+            correu.setEstat(EstatCorreu.FALLIT);
+            log.warn("No se ha podido enviar el correo {}: {}", correu.getId(), missatge);
+            return;
+        }
+        Duration espera = ESPERA_INICIAL.multipliedBy(1L << Math.min(intents - 1, 20));
+        if (espera.compareTo(ESPERA_MAXIMA) > 0) {
+            espera = ESPERA_MAXIMA;
+        }
+        correu.setProperIntent(LocalDateTime.now().plus(espera));
+    }
+
+    @PreDestroy
+    public void aturar() {
+        executor.shutdown();
+    }
+}
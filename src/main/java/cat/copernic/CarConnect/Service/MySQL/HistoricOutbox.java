@@ -0,0 +1,95 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricIncidencies;
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Entity.MySQL.EsdevenimentHistoric;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusEsdeveniment;
+import cat.copernic.CarConnect.Entity.MySQL.Incidencia;
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import cat.copernic.CarConnect.Repository.MySQL.EsdevenimentHistoricRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDateTime;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Registra los cambios de reservas e incidencias como eventos del histórico
+ * ({@link EsdevenimentHistoric}) en MySQL. Se debe llamar dentro de la misma
+ * transacción que el cambio, de modo que los dos se confirman juntos; el
+ * proceso {@code PublicadorHistoric} los copia después a MongoDB.
+ * <p>
+ * Cada documento recibe su ID de MongoDB al registrarse, así que volver a
+ * publicar un evento (por ejemplo, tras un fallo a medias) no lo duplica.
+ * </p>
+ *
+ * @author Toni
+ */
+@Service
+public class HistoricOutbox {
+
+    @Autowired
+    private EsdevenimentHistoricRepository esdevenimentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Registra el estado de una reserva en el histórico de reservas.
+     *
+     * @param reserva La reserva.
+     * @param estat El estado a registrar ("CREADA", "MODIFICADA", "CANCELADA",
+     * "LLIURADA", "RETORNADA" o "ELIMINADA").
+     */
+    public void registrarReserva(Reserva reserva, String estat) {
+        HistoricReserves historic = new HistoricReserves();
+        historic.setId(new ObjectId().toHexString());
+        historic.setReservaId(reserva.getIdReserva());
+        historic.setClientDni(reserva.getClient().getDni());
+        historic.setVehicleId(reserva.getVehicle().getMatricula());
+        historic.setStartDate(reserva.getDataHoraRecollida());
+        historic.setEndDate(reserva.getDataHoraDevolucio());
+        historic.setTotalPrice(reserva.getPreuTotal());
+        historic.setStatus(estat);
+        historic.setEmail(reserva.getClient().getEmail());
+        historic.setNom(reserva.getClient().getNombre());
+        if (reserva.getVehicle().getLocalitzacio() != null) {
+            historic.setCodiPostal(reserva.getVehicle().getLocalitzacio().getCodiPostal());
+        }
+        if (reserva.getVehicle().getTipusVehicle() != null) {
+            historic.setTipusVehicle(reserva.getVehicle().getTipusVehicle().name());
+        }
+
+        registrar(TipusEsdeveniment.RESERVA, historic);
+    }
+
+    /**
+     * Registra el estado de una incidencia en el histórico de incidencias.
+     *
+     * @param incidencia La incidencia.
+     */
+    public void registrarIncidencia(Incidencia incidencia) {
+        HistoricIncidencies historic = new HistoricIncidencies();
+        historic.setId(new ObjectId().toHexString());
+        historic.setDescription(incidencia.getDescription());
+        historic.setCost(incidencia.getCost());
+        historic.setVehicleId(incidencia.getVehicle().getMatricula());
+        historic.setAberta(incidencia.isOberta());
+        historic.setFecha(incidencia.getFecha());
+
+        registrar(TipusEsdeveniment.INCIDENCIA, historic);
+    }
+
+    private void registrar(TipusEsdeveniment tipus, Object document) {
+        EsdevenimentHistoric esdeveniment = new EsdevenimentHistoric();
+        esdeveniment.setTipus(tipus);
+        esdeveniment.setDataCreacio(LocalDateTime.now());
+        try {
+            esdeveniment.setDocument(objectMapper.writeValueAsString(document));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se ha podido serializar el evento del histórico", e);
+        }
+        esdevenimentRepository.save(esdeveniment);
+    }
+}
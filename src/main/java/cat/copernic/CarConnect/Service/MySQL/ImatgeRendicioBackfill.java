@@ -0,0 +1,100 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tarea en segundo plano que genera las versiones redimensionadas de las
+ * imágenes de vehículos subidas antes de que existiera el pipeline de
+ * versiones. Procesa las imágenes por lotes y en orden de ID, de manera que
+ * una imagen que ImageIO no sepa decodificar no bloquee al resto. Esas
+ * imágenes quedan marcadas como fallidas y ya no se vuelven a leer en las
+ * pasadas siguientes; se cuentan en el resumen de cada lote y en
+ * {@link #getFallides()}.
+ *
+ * @author Carlos
+ */
+@Component
+public class ImatgeRendicioBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(ImatgeRendicioBackfill.class);
+
+    @Autowired
+    private ImatgeService imatgeService;
+
+    @Value("${carconnect.imatges.backfill.lot:20}")
+    private int midaLot;
+
+    /**
+     * Último ID procesado en la pasada actual.
+     */
+    private long darrerId = 0;
+
+    /**
+     * Imágenes que no se han podido procesar desde el arranque, ya sea porque
+     * han quedado marcadas como fallidas o por un error inesperado.
+     */
+    private final AtomicLong fallides = new AtomicLong();
+
+    /**
+     * Procesa el siguiente lote de imágenes sin versiones. Cuando no quedan
+     * más, vuelve a empezar desde el principio en la siguiente ejecución.
+     *
+     * @return El resultado del lote.
+     */
+    @Scheduled(fixedDelayString = "${carconnect.imatges.backfill.interval:PT1M}")
+    public Lot processarLot() {
+        List<Long> ids = imatgeService.getImatgesSenseRendicions(darrerId, midaLot);
+        if (ids.isEmpty()) {
+            darrerId = 0;
+            return new Lot(0, 0);
+        }
+
+        int errors = 0;
+        for (Long id : ids) {
+            try {
+                if (!imatgeService.generarRendicions(id)) {
+                    errors++;
+                }
+            } catch (Exception e) {
+                log.error("Error al generar las versiones de la imagen {}", id, e);
+                errors++;
+            }
+            darrerId = id;
+        }
+        fallides.addAndGet(errors);
+        Lot lot = new Lot(ids.size(), errors);
+        if (errors > 0) {
+            log.warn("Versiones de imágenes: {} procesadas, {} fallidas", lot.processades(), lot.fallides());
+        } else {
+            log.info("Versiones de imágenes: {} procesadas", lot.processades());
+        }
+        return lot;
+    }
+
+    /**
+     * Obtiene el número de imágenes que no se han podido procesar desde el
+     * arranque.
+     *
+     * @return Las imágenes fallidas.
+     */
+    public long getFallides() {
+        return fallides.get();
+    }
+
+    /**
+     * Resultado de un lote del backfill.
+     *
+     * @param processades Imágenes del lote.
+     * @param fallides Imágenes del lote que no se han podido procesar.
+     */
+    public record Lot(int processades, int fallides) {
+
+    }
+}
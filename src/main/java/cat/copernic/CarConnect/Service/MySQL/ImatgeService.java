@@ -1,23 +1,255 @@
 package cat.copernic.CarConnect.Service.MySQL;
 
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusRendicio;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Entity.MySQL.VehicleImageRendition;
 import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
 import cat.copernic.CarConnect.Repository.MySQL.ImatgeRepository;
+import cat.copernic.CarConnect.Repository.MySQL.ImatgeRepository.ImatgeInfo;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleImageRenditionRepository;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleImageRenditionRepository.RendicioInfo;
+import cat.copernic.CarConnect.Storage.BlobStore;
+import cat.copernic.CarConnect.Storage.BlobStore.BlobRef;
+import cat.copernic.CarConnect.Storage.PujadaFitxers;
+import cat.copernic.CarConnect.Storage.PujadaFitxers.Pujada;
 import cat.copernic.CarConnect.utils.ImatgeUtils;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
 
 /**
  * Servicio que gestiona el almacenamiento de imágenes asociadas a vehículos.
- * Este servicio permite guardar imágenes como bytes en la base de datos.
+ * Este servicio permite guardar el contenido de las imágenes en el
+ * {@link BlobStore}, generar sus versiones redimensionadas
+ * ({@link TipusRendicio}) y servirlas en streaming sin cargarlas enteras en
+ * memoria.
  */
 @Service
 public class ImatgeService {
 
+    private static final Logger log = LoggerFactory.getLogger(ImatgeService.class);
+
+    private static final String CONTENT_TYPE_RENDICIO = "image/jpeg";
+    private static final float QUALITAT_JPEG = 0.82f;
+
+    // Lado más largo de la versión más grande: no hace falta decodificar más resolución
+    private static final int MIDA_MAXIMA_RENDICIONS = Arrays.stream(TipusRendicio.values())
+            .mapToInt(TipusRendicio::getMidaMaxima).max().orElse(Integer.MAX_VALUE);
+
     @Autowired
     private ImatgeRepository imatgeRepository;
 
+    @Autowired
+    private VehicleImageRenditionRepository rendicioRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PujadaFitxers pujadaFitxers;
+
+    /**
+     * Obtiene los metadatos de la imagen principal (la de ID más bajo) de un
+     * vehículo, sin tocar el contenido binario.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @return Los metadatos de la imagen, o vacío si el vehículo no tiene
+     * imágenes.
+     */
+    public Optional<ImatgeInfo> getImatgePrincipal(String matricula) {
+        return imatgeRepository.findPrimaryInfoByMatricula(matricula);
+    }
+
+    /**
+     * Obtiene los metadatos de una imagen de un vehículo, sin tocar el
+     * contenido binario.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param idImatge El ID de la imagen.
+     * @return Los metadatos, o vacío si la imagen no es de ese vehículo.
+     */
+    public Optional<ImatgeInfo> getImatge(String matricula, Long idImatge) {
+        return imatgeRepository.findInfoByIdAndMatricula(idImatge, matricula);
+    }
+
+    /**
+     * Obtiene los metadatos de todas las imágenes de un vehículo, ordenadas
+     * por ID (la primera es la principal), sin tocar el contenido binario.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @return Los metadatos de las imágenes.
+     */
+    public List<ImatgeInfo> getImatgesVehicle(String matricula) {
+        return imatgeRepository.findInfoByMatricula(matricula);
+    }
+
+    /**
+     * Obtiene los metadatos de una versión redimensionada de una imagen.
+     *
+     * @param idImatge El ID de la imagen original.
+     * @param tipus El tipo de versión.
+     * @return Los metadatos, o vacío si la versión aún no se ha generado.
+     */
+    public Optional<RendicioInfo> getRendicio(Long idImatge, TipusRendicio tipus) {
+        return rendicioRepository.findInfoByImatgeIdAndTipus(idImatge, tipus);
+    }
+
+    /**
+     * Obtiene un contenido del {@link BlobStore} como {@link Resource}, para
+     * servirlo sin cargarlo en memoria y con soporte de peticiones Range.
+     *
+     * @param hash El hash del contenido.
+     * @return El recurso con el contenido.
+     */
+    public Resource getRecurs(String hash) {
+        return blobStore.resource(hash);
+    }
+
+    /**
+     * Lee un contenido entero del {@link BlobStore}.
+     *
+     * @param hash El hash del contenido.
+     * @return Los bytes del contenido.
+     * @throws IOException Si el contenido no existe o no se puede leer.
+     */
+    public byte[] getContingut(String hash) throws IOException {
+        return blobStore.get(hash);
+    }
+
+    /**
+     * Guarda una imagen subida en el {@link BlobStore} en streaming, asigna su
+     * referencia, tamaño y tipo detectado a la entidad y genera sus versiones
+     * redimensionadas.
+     *
+     * @param imatge La imagen.
+     * @param fitxer El archivo subido.
+     * @throws IllegalArgumentException Si el archivo no es una imagen o supera
+     * el tamaño máximo.
+     * @throws IOException Si ocurre un error al guardar o procesar la imagen.
+     */
+    public void assignarContingut(VehicleImages imatge, MultipartFile fitxer) throws IOException {
+        Pujada pujada = pujadaFitxers.pujarImatge(fitxer);
+        imatge.setHash(pujada.hash());
+        imatge.setMida(pujada.mida());
+        imatge.setContentType(pujada.contentType());
+        generarRendicions(imatge);
+    }
+
+    /**
+     * Guarda el contenido de una imagen en el {@link BlobStore}, asigna su
+     * referencia, tamaño y tipo a la entidad y genera sus versiones
+     * redimensionadas.
+     *
+     * @param imatge La imagen.
+     * @param data El contenido original.
+     * @param contentType El tipo MIME del contenido.
+     * @throws IOException Si ocurre un error al guardar o procesar la imagen.
+     */
+    public void assignarContingut(VehicleImages imatge, byte[] data, String contentType) throws IOException {
+        BlobRef ref = blobStore.put(data);
+        imatge.setHash(ref.hash());
+        imatge.setMida(ref.mida());
+        imatge.setContentType(contentType);
+        generarRendicions(imatge);
+    }
+
+    /**
+     * Genera (o regenera) las versiones redimensionadas de una imagen a partir
+     * de su contenido original, que se decodifica leyendo directamente del
+     * {@link BlobStore}. Las versiones se guardan en cascada junto con la
+     * imagen. Si ImageIO no reconoce el formato, la imagen se queda sin
+     * versiones, se marca como fallida para que el backfill no la vuelva a
+     * procesar y se sigue sirviendo la original.
+     *
+     * @param imatge La imagen con el contenido original ya guardado.
+     * @throws IOException Si ocurre un error al decodificar o codificar.
+     * @throws cat.copernic.CarConnect.Exceptions.FitxerMassaGranException Si
+     * la imagen supera el número máximo de píxeles.
+     */
+    public void generarRendicions(VehicleImages imatge) throws IOException {
+        if (imatge.getHash() == null || !blobStore.exists(imatge.getHash())) {
+            return;
+        }
+
+        BufferedImage decodificada;
+        try (InputStream in = blobStore.open(imatge.getHash())) {
+            decodificada = ImatgeUtils.llegirImatge(in, MIDA_MAXIMA_RENDICIONS);
+        }
+        if (decodificada == null) {
+            imatge.setRendicionsFallides(true);
+            return;
+        }
+        imatge.setRendicionsFallides(false);
+
+        imatge.getRendicions().clear();
+        for (TipusRendicio tipus : TipusRendicio.values()) {
+            BufferedImage redimensionada = ImatgeUtils.redimensionar(decodificada, tipus.getMidaMaxima());
+            BlobRef ref = blobStore.put(ImatgeUtils.codificarJpeg(redimensionada, QUALITAT_JPEG));
+
+            VehicleImageRendition rendicio = new VehicleImageRendition();
+            rendicio.setImatge(imatge);
+            rendicio.setTipus(tipus);
+            rendicio.setHash(ref.hash());
+            rendicio.setContentType(CONTENT_TYPE_RENDICIO);
+            rendicio.setMida(ref.mida());
+            rendicio.setAmplada(redimensionada.getWidth());
+            rendicio.setAlcada(redimensionada.getHeight());
+            imatge.getRendicions().add(rendicio);
+        }
+    }
+
+    /**
+     * Genera las versiones redimensionadas de una imagen ya guardada. Lo usa
+     * el proceso de backfill para las imágenes anteriores a las versiones. Si
+     * la imagen no se puede decodificar (formato no soportado, contenido
+     * dañado o demasiados píxeles) se marca como fallida y el backfill ya no
+     * la vuelve a leer.
+     *
+     * @param idImatge El ID de la imagen.
+     * @return false si la imagen ha quedado marcada como fallida, true en
+     * otro caso (también si ya no existe).
+     */
+    @Transactional
+    public boolean generarRendicions(Long idImatge) {
+        VehicleImages imatge = imatgeRepository.findById(idImatge).orElse(null);
+        if (imatge == null) {
+            return true;
+        }
+        boolean generades = true;
+        try {
+            generarRendicions(imatge);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("No se han podido generar las versiones de la imagen {}: {}", idImatge, e.getMessage());
+            imatge.getRendicions().clear();
+            imatge.setRendicionsFallides(true);
+            generades = false;
+        }
+        imatgeRepository.save(imatge);
+        return generades;
+    }
+
+    /**
+     * Obtiene un lote de IDs de imágenes que todavía no tienen versiones.
+     *
+     * @param desdeId Solo se devuelven IDs mayores que este.
+     * @param mida Tamaño máximo del lote.
+     * @return Los IDs ordenados de forma ascendente.
+     */
+    public List<Long> getImatgesSenseRendicions(Long desdeId, int mida) {
+        return imatgeRepository.findIdsSenseRendicions(desdeId, PageRequest.of(0, mida));
+    }
+
     /**
      * Guarda una imagen convertida a bytes en la base de datos. La imagen se
      * asocia a un vehículo específico.
@@ -33,7 +265,7 @@ public class ImatgeService {
             // Crea un objeto de imagen y asigna los datos
             VehicleImages imatge = new VehicleImages();
             imatge.setNombre("Ejemplo de Imagen"); // Nombre de la imagen, este puede personalizarse
-            imatge.setData(imagenBytes);  // Los datos de la imagen en formato byte[]
+            assignarContingut(imatge, imagenBytes, "image/jpeg"); // Contenido, miniatura, tarjeta y versión completa
             imatge.setVehicle(vehiculo);  // Se asocia al vehículo
 
             // Guarda la imagen en la base de datos
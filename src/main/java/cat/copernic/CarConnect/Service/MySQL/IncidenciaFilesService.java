@@ -10,13 +10,25 @@ package cat.copernic.CarConnect.Service.MySQL;
  */
 
 
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
 import cat.copernic.CarConnect.Entity.MySQL.IncidenciaFiles;
 import cat.copernic.CarConnect.Repository.MySQL.IncidenciaFilesRepository;
+import cat.copernic.CarConnect.Repository.MySQL.IncidenciaFilesRepository.IncidenciaFileInfo;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.Security.CurrentUserResolver.UsuariActual;
+import cat.copernic.CarConnect.Storage.BlobStore;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,6 +38,12 @@ public class IncidenciaFilesService {
     @Autowired
     private IncidenciaFilesRepository incidenciaFilesRepository;
 
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+
     @Transactional
     public void saveFile(IncidenciaFiles file) {
         incidenciaFilesRepository.save(file);
@@ -36,6 +54,64 @@ public class IncidenciaFilesService {
         return incidenciaFilesRepository.findByIncidenciaId(incidenciaId);
     }
 
+    @Transactional(readOnly = true)
+    public List<IncidenciaFileInfo> getFileInfoByIncidencia(Long incidenciaId) {
+        return incidenciaFilesRepository.findInfoByIncidenciaId(incidenciaId);
+    }
+
+    /**
+     * Obtiene los metadatos de un archivo si el usuario puede verlo: los
+     * administradores ven todos los archivos y los agentes solo los de las
+     * incidencias de los vehículos de su localización, igual que en el
+     * listado de incidencias.
+     *
+     * @param fileId El ID del archivo.
+     * @param authentication La autenticación del usuario.
+     * @return Los metadatos, o vacío si el archivo no existe o el usuario no
+     * tiene acceso.
+     */
+    @Transactional(readOnly = true)
+    public Optional<IncidenciaFileInfo> getFileInfo(Long fileId, Authentication authentication) {
+        UsuariActual usuari = currentUserResolver.resoldre(authentication).orElse(null);
+        if (usuari == null) {
+            return Optional.empty();
+        }
+        return incidenciaFilesRepository.findInfoById(fileId)
+                .filter(fitxer -> usuari.hasPermis(TipusPermis.ADMIN)
+                || (usuari.agent() && usuari.codiPostal() != null && usuari.codiPostal().equals(fitxer.getCodiPostal())));
+    }
+
+    /**
+     * Obtiene el contenido de un archivo de incidencia como {@link Resource},
+     * para descargarlo sin cargarlo en memoria y con soporte de peticiones
+     * Range.
+     *
+     * @param hash El hash del contenido.
+     * @return El recurso con el contenido.
+     */
+    public Resource getContingut(String hash) {
+        return blobStore.resource(hash);
+    }
+
+    /**
+     * Obtiene los metadatos de los archivos de varias incidencias con una sola
+     * consulta, agrupados por incidencia.
+     *
+     * @param incidenciaIds Los IDs de las incidencias.
+     * @return Un mapa con una entrada (posiblemente vacía) por incidencia.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<IncidenciaFileInfo>> getFileInfoByIncidencies(Collection<Long> incidenciaIds) {
+        Map<Long, List<IncidenciaFileInfo>> fitxers = new HashMap<>();
+        incidenciaIds.forEach(id -> fitxers.put(id, new ArrayList<>()));
+        if (!incidenciaIds.isEmpty()) {
+            for (IncidenciaFileInfo fitxer : incidenciaFilesRepository.findInfoByIncidenciaIdIn(incidenciaIds)) {
+                fitxers.get(fitxer.getIncidenciaId()).add(fitxer);
+            }
+        }
+        return fitxers;
+    }
+
     public IncidenciaFiles getFileById(Long fileId) {
         return incidenciaFilesRepository.findById(fileId)
                 .orElseThrow(() -> new IllegalArgumentException("Archivo no encontrado con ID: " + fileId));
@@ -1,16 +1,19 @@
 package cat.copernic.CarConnect.Service.MySQL;
 
-import cat.copernic.CarConnect.Entity.MySQL.Agent;
 import cat.copernic.CarConnect.Entity.MySQL.Incidencia;
 import cat.copernic.CarConnect.Entity.MySQL.IncidenciaFiles;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Reserva;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
 import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
-import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
 import cat.copernic.CarConnect.Repository.MySQL.IncidenciaFilesRepository;
 import cat.copernic.CarConnect.Repository.MySQL.IncidenciaRepository;
+import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
 import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.Security.CurrentUserResolver.UsuariActual;
+import cat.copernic.CarConnect.Storage.PujadaFitxers;
+import cat.copernic.CarConnect.Storage.PujadaFitxers.Pujada;
 import jakarta.persistence.criteria.Path;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -18,17 +21,16 @@ import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.multipart.MultipartFile;
 
 /**
@@ -50,41 +52,37 @@ public class IncidenciaService {
     @Autowired
     private VehicleRepository vehicleRepository;
     @Autowired
-    private AgentRepository agentRepo;
+    private LocalitzacioRepository localitzacioRepository;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+    @Autowired
+    private PujadaFitxers pujadaFitxers;
+    @Autowired
+    private HistoricOutbox historicOutbox;
     /**
      * Obtiene todas las incidencias registradas en el sistema.
      *
      * @return Una lista con todas las incidencias.
      */
     public List<Incidencia> getAllIncidencias() {
-        return incidenciaRepository.findAll();
+        return incidenciaRepository.findAllAmbVehicle();
     }
     
+    /**
+     * Obtiene las incidencias de los vehículos de la localización del agente
+     * autenticado, con una sola consulta.
+     *
+     * @param authentication La autenticación del agente.
+     * @return Las incidencias, o una lista vacía si el usuario no es un
+     * agente con localización.
+     */
     public List<Incidencia> getIncidenciasPropias(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String username = userDetails.getUsername();
-        List<Agent> agents = agentRepo.findByEmail(username);
-        Agent agent = new Agent();
-         List<Incidencia> incidencias = new ArrayList<>();
-        if(!agents.isEmpty()){
-            agent = agents.getFirst();
-            Localitzacio localitzacio = agent.getLocalitzacio();
-            List<Vehicle> vehicles = vehicleRepository.findByLocalitzacio(localitzacio);
-            if(!vehicles.isEmpty()){
-                for(Vehicle vehicle : vehicles){
-                   List<Incidencia> incidenc = incidenciaRepository.findByVehicleMatricula(vehicle.getMatricula());
-                   if(!incidenc.isEmpty()){
-                       incidencias.add(incidenc.getFirst());
-                   }
-                    
-                }
-               
-            }
-            
-        }else agent = null;
-        
-            return incidencias;
+        UsuariActual usuari = currentUserResolver.resoldre(authentication).orElse(null);
+        if (usuari == null || !usuari.agent() || usuari.codiPostal() == null) {
+            return new ArrayList<>();
         }
+        return incidenciaRepository.findByLocalitzacio(localitzacioRepository.getReferenceById(usuari.codiPostal()));
+    }
     /**
      * Obtiene una incidencia por su ID.
      *
@@ -106,6 +104,7 @@ public class IncidenciaService {
      * @throws IllegalStateException Si ya existe una incidencia abierta para el
      * vehículo.
      */
+    @Transactional
     public void saveIncidencia(Incidencia incidencia) {
         if (incidencia.getVehicle() == null || incidencia.getVehicle().getMatricula() == null) {
             throw new IllegalArgumentException("Debe asociar una incidencia a un vehículo válido.");
@@ -122,6 +121,7 @@ public class IncidenciaService {
         incidencia.setVehicle(vehicle);
         incidencia.setOberta(true); // Marcar como abierta si es nueva
         incidenciaRepository.save(incidencia);
+        historicOutbox.registrarIncidencia(incidencia);
     }
 
     /**
@@ -130,6 +130,7 @@ public class IncidenciaService {
      *
      * @param incidencia La incidencia con los datos actualizados.
      */
+    @Transactional
     public void updateIncidencia(Incidencia incidencia) {
         if (incidencia.getId() != null) {
             Optional<Incidencia> existingIncidencia = incidenciaRepository.findById(incidencia.getId());
@@ -145,6 +146,7 @@ public class IncidenciaService {
                 }
 
                 incidenciaRepository.save(updatedIncidencia);
+                historicOutbox.registrarIncidencia(updatedIncidencia);
             }
         }
     }
@@ -219,6 +221,7 @@ public class IncidenciaService {
      * @throws IllegalStateException Si ya existe una incidencia abierta para el
      * vehículo.
      */
+    @Transactional
     public void toggleIncidenciaState(Long id) {
         Optional<Incidencia> incidenciaOptional = incidenciaRepository.findById(id);
 
@@ -238,6 +241,7 @@ public class IncidenciaService {
             // Alternar estado
             incidencia.setOberta(!incidencia.isOberta());
             incidenciaRepository.save(incidencia);
+            historicOutbox.registrarIncidencia(incidencia);
         } else {
             throw new IllegalArgumentException("La incidencia no existe.");
         }
@@ -252,12 +256,14 @@ public class IncidenciaService {
 
     Incidencia incidencia = optionalIncidencia.get();
 
-    // Convierte el archivo a un array de bytes
-    byte[] fileBytes = file.getBytes();
+    // Guarda el contenido en streaming en el BlobStore; si ya existía se reutiliza
+    Pujada pujada = pujadaFitxers.pujar(file);
     
     // Crea el objeto Archivo y lo guarda en la base de datos
     IncidenciaFiles archivo = new IncidenciaFiles();
-    archivo.setFileData(fileBytes);
+    archivo.setHash(pujada.hash());
+    archivo.setMida(pujada.mida());
+    archivo.setFileType(pujada.contentType());
     archivo.setDescription(description);
     archivo.setIncidencia(incidencia); // Establece la relación con la incidencia
 
@@ -265,20 +271,4 @@ public class IncidenciaService {
     incidenciaFilesRepository.save(archivo);  // Suponiendo que tienes un repositorio de archivos
 }
 
-    public List<byte[]> getImagesForIncidencia(Long id) {
-            Incidencia incidencia = incidenciaRepository.findById(id).orElse(null);
-
-            if (incidencia != null && !incidencia.getFiles().isEmpty()) {
-               
-                // Devuelve todas las imágenes excepto la del ID más bajo
-                return incidencia.getFiles()
-                              .stream()
-                              .map(IncidenciaFiles::getFileData) // Extraer el byte[] de cada imagen
-                              .collect(Collectors.toList());
-            }
-
-            return Collections.emptyList(); // Retorna lista vacía si no hay vehículo o imágenes
-        }
-    
-
 }
@@ -0,0 +1,141 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import cat.copernic.CarConnect.Storage.BlobStore;
+import cat.copernic.CarConnect.Storage.BlobStore.BlobRef;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migración de los blobs guardados en MySQL al {@link BlobStore}.
+ * <p>
+ * Hibernate (ddl-auto=update) añade las columnas nuevas pero no elimina las
+ * antiguas, así que al arrancar se copia al BlobStore el contenido que todavía
+ * esté en la base de datos, ya sea en la columna BLOB original
+ * ({@code vehicle_images.data}, {@code incidencia_files.file_data}) o en la
+ * tabla intermedia {@code contingut_binari}, y se rellenan el hash y el tamaño
+ * de cada fila. Como el BlobStore es direccionado por contenido, volver a
+ * ejecutar la migración a medias es inocuo.
+ * </p>
+ * <p>
+ * Las columnas antiguas que eran NOT NULL ({@code incidencia_files.file_data}
+ * y {@code vehicle_image_rendition.data}) se tratan antes, al crear el bean:
+ * después de que Hibernate actualice el esquema, pero antes de que se atiendan
+ * peticiones o se ejecuten tareas programadas. Si no, las inserciones fallarían
+ * hasta que terminara la copia.
+ * </p>
+ *
+ * @author Carlos
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class MigracioBlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(MigracioBlobStore.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    /**
+     * Prepara el esquema antiguo para que las inserciones nuevas, que ya no
+     * escriben las columnas de contenido, no fallen.
+     */
+    @PostConstruct
+    public void prepararEsquema() {
+        // Las versiones redimensionadas se pueden regenerar: se eliminan las
+        // que tienen el contenido en MySQL y ImatgeRendicioBackfill las vuelve a crear
+        if (existeixColumna("vehicle_image_rendition", "data")) {
+            jdbcTemplate.update("DELETE FROM vehicle_image_rendition WHERE data IS NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE vehicle_image_rendition DROP COLUMN data");
+        }
+        // El contenido de los archivos se copia en migrar(); mientras tanto la columna deja de ser obligatoria
+        if (existeixColumna("incidencia_files", "file_data")) {
+            jdbcTemplate.execute("ALTER TABLE incidencia_files MODIFY file_data LONGBLOB NULL");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrar() {
+        migrarColumna("vehicle_images", "data");
+        migrarColumna("incidencia_files", "file_data");
+        migrarContingutBinari("vehicle_images");
+        migrarContingutBinari("incidencia_files");
+
+        // Las versiones redimensionadas se regeneran con ImatgeRendicioBackfill
+        if (existeixColumna("vehicle_image_rendition", "contingut_id")) {
+            jdbcTemplate.update("DELETE FROM vehicle_image_rendition WHERE contingut_id IS NOT NULL");
+        }
+    }
+
+    /**
+     * Copia al BlobStore el contenido de una columna BLOB y, al acabar,
+     * elimina la columna.
+     */
+    private void migrarColumna(String taula, String columna) {
+        if (!existeixColumna(taula, columna)) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + taula + " WHERE " + columna + " IS NOT NULL", Long.class);
+        for (Long id : ids) {
+            copiarAlBlobStore(taula, "SELECT " + columna + " FROM " + taula + " WHERE id = ?", id);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + taula + " DROP COLUMN " + columna);
+        log.info("Migrados {} blobs de {}.{} al BlobStore", ids.size(), taula, columna);
+    }
+
+    /**
+     * Copia al BlobStore el contenido referenciado desde contingut_binari y
+     * libera la fila intermedia.
+     */
+    private void migrarContingutBinari(String taula) {
+        if (!existeixColumna(taula, "contingut_id")) {
+            return;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM " + taula + " WHERE contingut_id IS NOT NULL", Long.class);
+        for (Long id : ids) {
+            copiarAlBlobStore(taula, "SELECT c.data FROM " + taula + " t JOIN contingut_binari c ON c.id = t.contingut_id "
+                    + "WHERE t.id = ?", id);
+            Long contingutId = jdbcTemplate.queryForObject("SELECT contingut_id FROM " + taula + " WHERE id = ?", Long.class, id);
+            jdbcTemplate.update("UPDATE " + taula + " SET contingut_id = NULL WHERE id = ?", id);
+            jdbcTemplate.update("DELETE FROM contingut_binari WHERE id = ?", contingutId);
+        }
+        if (!ids.isEmpty()) {
+            log.info("Migrados {} blobs de contingut_binari ({}) al BlobStore", ids.size(), taula);
+        }
+    }
+
+    private void copiarAlBlobStore(String taula, String select, Long id) {
+        jdbcTemplate.query(select, (RowCallbackHandler) rs -> {
+            try (InputStream in = rs.getBinaryStream(1)) {
+                BlobRef ref = blobStore.put(in);
+                jdbcTemplate.update("UPDATE " + taula + " SET hash = ?, mida = ? WHERE id = ?", ref.hash(), ref.mida(), id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, id);
+    }
+
+    private boolean existeixColumna(String taula, String columna) {
+        Integer existeix = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = ?",
+                Integer.class, taula, columna);
+        return existeix != null && existeix > 0;
+    }
+}
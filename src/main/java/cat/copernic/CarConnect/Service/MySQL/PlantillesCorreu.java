@@ -0,0 +1,155 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+
+/**
+ * Plantillas de los correos que envía la aplicación.
+ * <p>
+ * Cada tipo de correo es una plantilla Thymeleaf de {@code templates/email/}.
+ * El motor de plantillas guarda en caché las plantillas ya analizadas, y al
+ * arrancar se cargan todas (con las variables de ejemplo de cada tipo), así
+ * que cada correo solo evalúa las expresiones.
+ * </p>
+ * <p>
+ * Las imágenes de {@code classpath:email/} se leen una sola vez al arrancar y
+ * se adjuntan como partes MIME en línea a los correos que las referencian con
+ * {@code cid:<nombre del archivo>}, en lugar de enlazar imágenes remotas.
+ * </p>
+ *
+ * @author Toni
+ */
+@Component
+public class PlantillesCorreu {
+
+    private static final Logger log = LoggerFactory.getLogger(PlantillesCorreu.class);
+
+    /**
+     * Tipos de correo, con su plantilla, su asunto y unas variables de
+     * ejemplo con las que la plantilla se puede generar.
+     */
+    public enum PlantillaCorreu {
+        CONFIRMACIO_RESERVA("email/confirmacio-reserva", "Confirmación de Reserva", Map.of(
+                "nom", "Nom",
+                "matricula", "0000AAA",
+                "localitzacio", "Carrer, Ciutat",
+                "recollida", LocalDate.of(2024, 1, 1),
+                "devolucio", LocalDate.of(2024, 1, 2),
+                "preuTotal", 0.0));
+
+        private final String plantilla;
+        private final String assumpte;
+        private final Map<String, Object> variablesExemple;
+
+        PlantillaCorreu(String plantilla, String assumpte, Map<String, Object> variablesExemple) {
+            this.plantilla = plantilla;
+            this.assumpte = assumpte;
+            this.variablesExemple = variablesExemple;
+        }
+
+        public String getPlantilla() {
+            return plantilla;
+        }
+
+        public String getAssumpte() {
+            return assumpte;
+        }
+
+        public Map<String, Object> getVariablesExemple() {
+            return variablesExemple;
+        }
+    }
+
+    /**
+     * Imagen en línea cargada en memoria.
+     */
+    public record ImatgeInline(Resource contingut, String contentType) {
+    }
+
+    private static final Locale LOCALE = Locale.of("es", "ES");
+
+    @Autowired
+    private ITemplateEngine templateEngine;
+
+    private volatile Map<String, ImatgeInline> imatgesInline = Map.of();
+
+    /**
+     * Genera el cuerpo HTML de un correo.
+     *
+     * @param plantilla El tipo de correo.
+     * @param variables Las variables de la plantilla.
+     * @return El HTML del correo.
+     */
+    public String renderitzar(PlantillaCorreu plantilla, Map<String, Object> variables) {
+        return templateEngine.process(plantilla.getPlantilla(), new Context(LOCALE, variables));
+    }
+
+    /**
+     * Obtiene las imágenes en línea disponibles, por su Content-ID.
+     *
+     * @return Las imágenes.
+     */
+    public Map<String, ImatgeInline> getImatgesInline() {
+        return imatgesInline;
+    }
+
+    /**
+     * Carga las plantillas y las imágenes en línea al arrancar la aplicación.
+     * Cada plantilla se genera con sus variables de ejemplo, así que un error
+     * aquí es un error de la plantilla y se escribe en el log.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void precarregar() {
+        for (PlantillaCorreu plantilla : PlantillaCorreu.values()) {
+            try {
+                renderitzar(plantilla, plantilla.getVariablesExemple());
+            } catch (RuntimeException e) {
+                log.error("Error en la plantilla de correo {}", plantilla.getPlantilla(), e);
+            }
+        }
+
+        Map<String, ImatgeInline> imatges = new HashMap<>();
+        try {
+            Resource[] recursos = new PathMatchingResourcePatternResolver().getResources("classpath*:email/*");
+            for (Resource recurs : recursos) {
+                String nom = recurs.getFilename();
+                if (nom == null || !recurs.isReadable()) {
+                    continue;
+                }
+                String contentType = contentType(nom);
+                if (contentType != null) {
+                    imatges.put(nom, new ImatgeInline(new ByteArrayResource(recurs.getContentAsByteArray()), contentType));
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error al cargar las imágenes de los correos", e);
+        }
+        imatgesInline = Map.copyOf(imatges);
+    }
+
+    private static String contentType(String nom) {
+        String minuscules = nom.toLowerCase(Locale.ROOT);
+        if (minuscules.endsWith(".png")) {
+            return "image/png";
+        } else if (minuscules.endsWith(".gif")) {
+            return "image/gif";
+        } else if (minuscules.endsWith(".jpg") || minuscules.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        return null;
+    }
+}
@@ -1,24 +1,29 @@
 package cat.copernic.CarConnect.Service.MySQL;
 
-import cat.copernic.CarConnect.Entity.MySQL.Agent;
-import cat.copernic.CarConnect.Entity.MySQL.Client;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Reserva;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
-import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
-import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Exceptions.ReservaSolapadaException;
+import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
 import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository;
 import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.Security.CurrentUserResolver.UsuariActual;
+import cat.copernic.CarConnect.Service.MySQL.DisponibilitatService.PeriodeOcupat;
+import cat.copernic.CarConnect.Service.MySQL.PlantillesCorreu.PlantillaCorreu;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 
 /**
  * Servicio que gestiona las reservas de vehículos en el sistema. Proporciona
@@ -27,14 +32,25 @@ import org.springframework.security.core.userdetails.UserDetails;
 @Service
 public class ReservaService {
 
+    /**
+     * Propiedades por las que se puede ordenar el listado de reservas.
+     */
+    public static final Set<String> ORDRES = Set.of("idReserva", "dataHoraRecollida", "dataHoraDevolucio", "preuTotal");
+
     @Autowired
     private ReservaRepository reservaRepository;
     @Autowired
-    private AgentRepository agentRepo;
+    private VehicleRepository vehicleRepository;
+    @Autowired
+    private DisponibilitatService disponibilitatService;
     @Autowired
-    private ClientRepository clientRepo;
+    private HistoricOutbox historicOutbox;
     @Autowired
-    private VehicleRepository vehicleRepository;
+    private LocalitzacioRepository localitzacioRepository;
+    @Autowired
+    private CurrentUserResolver currentUserResolver;
+    @Autowired
+    private EmailService emailService;
     /**
      * Obtiene todas las reservas almacenadas en el sistema. Forza la
      * inicialización de las relaciones Lazy con Client y Vehicle.
@@ -52,56 +68,49 @@ public class ReservaService {
 
         return reservas;
     }
+
     /**
-     * Obtiene  las reservas de los vehiculos del usuario autenticado almacenadas en el sistema. Forza la
-     * inicialización de las relaciones Lazy con Client y Vehicle.
+     * Obtiene una página de reservas con paginación keyset. El cliente y el
+     * vehículo de cada reserva se cargan en la misma consulta.
      *
-     * @return Una lista de todas las reservas.
+     * @param peticio El cursor, tamaño y orden de la página.
+     * @return La página de reservas.
      */
-    public List<Reserva> getReservasPropias(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String username = userDetails.getUsername();
-        
-        List<Client> clients = clientRepo.findByEmail(username);
-        List<Agent> agents = agentRepo.findByEmail(username);
-        List<Reserva> reservas = new ArrayList<>();
-        
-        Agent agent = new Agent();
-         
-        if(!agents.isEmpty()){
-            
-            
-            agent = agents.getFirst();
-            Localitzacio localitzacio = agent.getLocalitzacio();
-            List<Vehicle> vehicles = vehicleRepository.findByLocalitzacio(localitzacio);
-            if(!vehicles.isEmpty()){
-                for(Vehicle vehicle : vehicles){
-                   List<Reserva> reserv = reservaRepository.findByVehicleMatricula(vehicle.getMatricula());
-                   if(!reserv.isEmpty()){
-                       reservas.add(reserv.getFirst());
-                   }
-                    
-                }
-               
-            }
-            
-        }else if(!clients.isEmpty()){
-                Client client = new Client();
-                client = clients.getFirst();
-                reservas = reservaRepository.findByClientDni(client.getDni());
-                
-        }else{
-            agent = null;
+    public Paginacio<Reserva> getAllReservas(Paginacio.Peticio peticio) {
+        return Paginacio.consultar(peticio, "idReserva", this::getReservaPerCursor, reservaRepository::findBy);
+    }
+
+    private Optional<Reserva> getReservaPerCursor(String cursor) {
+        try {
+            return reservaRepository.findById(Long.valueOf(cursor));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
         }
-        
-        
-        // Forzar la inicialización de relaciones Lazy
-        reservas.forEach(reserva -> {
-            reserva.getClient().getNombre(); // Inicializa la relación con Client
-            reserva.getVehicle().getMarca(); // Inicializa la relación con Vehicle
-        });
+    }
 
-        return reservas;
+    /**
+     * Obtiene las reservas del usuario autenticado. Si es un agente, las
+     * reservas de los vehículos de su localización; si es un cliente, las
+     * suyas. En ambos casos se hace una sola consulta que ya trae el cliente y
+     * el vehículo de cada reserva, así que el número de consultas no depende
+     * del tamaño de la flota. El usuario se resuelve con
+     * {@link CurrentUserResolver}, normalmente sin consultar la base de datos.
+     *
+     * @param authentication La autenticación del usuario.
+     * @return Las reservas del usuario, o una lista vacía si no es agente ni
+     * cliente.
+     */
+    public List<Reserva> getReservasPropias(Authentication authentication) {
+        UsuariActual usuari = currentUserResolver.resoldre(authentication).orElse(null);
+        if (usuari == null) {
+            return new ArrayList<>();
+        }
+        if (usuari.agent()) {
+            return usuari.codiPostal() != null
+                    ? reservaRepository.findByLocalitzacio(localitzacioRepository.getReferenceById(usuari.codiPostal()))
+                    : new ArrayList<>();
+        }
+        return reservaRepository.findByClientDni(usuari.dni());
     }
 
     /**
@@ -116,81 +125,178 @@ public class ReservaService {
     }
 
     /**
-     * Marca un vehículo como retornado, desactivando su reserva activa.
+     * Marca un vehículo como retornado, desactivando su reserva activa. El
+     * cambio se registra en el histórico en la misma transacción.
      *
      * @param matricula La matrícula del vehículo a retornar.
      * @throws IllegalArgumentException Si el vehículo no existe.
      * @throws IllegalStateException Si no hay reservas activas para el
      * vehículo.
      */
+    @Transactional
     public void retornarVehicle(Long id) {
-        Reserva reserva = reservaRepository.findById(id)
+        Reserva reserva = reservaRepository.findByIdPerModificar(id)
                 .orElseThrow(() -> new IllegalArgumentException("la reserva especificada no existe."));
 
         reserva.setRetornat(true);
         reservaRepository.save(reserva);  // Guardar cambios en el vehículo
+        historicOutbox.registrarReserva(reserva, "RETORNADA");
     }
 
     /**
-     * Marca un vehículo como entregado, finalizando su reserva activa.
+     * Marca un vehículo como entregado, finalizando su reserva activa. El
+     * cambio se registra en el histórico en la misma transacción.
      *
      * @param matricula La matrícula del vehículo a entregar.
      * @throws IllegalArgumentException Si el vehículo no existe.
      * @throws IllegalStateException Si no hay reservas activas para el
      * vehículo.
      */
+    @Transactional
     public void lliurarVehicle(Long id) {
-        Reserva reserva = reservaRepository.findById(id)
+        Reserva reserva = reservaRepository.findByIdPerModificar(id)
                 .orElseThrow(() -> new IllegalArgumentException("la reserva especificada no existe."));
 
         reserva.setLliurat(true);
         reservaRepository.save(reserva);  // Guardar cambios en el vehículo
+        historicOutbox.registrarReserva(reserva, "LLIURADA");
     }
     
     /**
-     * Guarda una nueva reserva en el sistema.
+     * Guarda una reserva, nueva o existente, garantizando que no se solape con
+     * ninguna otra reserva no cancelada del mismo vehículo aunque lleguen
+     * varias peticiones a la vez.
+     * <p>
+     * Dentro de la transacción se bloquea la fila del vehículo
+     * ({@code SELECT ... FOR UPDATE}), se comprueba el solapamiento contra la
+     * base de datos y se guarda la reserva. Otra reserva del mismo vehículo
+     * espera al bloqueo y, cuando lo obtiene, ya ve la reserva confirmada. Las
+     * reservas de vehículos distintos no se bloquean entre sí. El índice de
+     * disponibilidad se actualiza al confirmar la transacción.
+     * </p>
+     * <p>
+     * El nuevo estado de la reserva ("CREADA", "MODIFICADA" o "CANCELADA") se
+     * registra en el histórico en la misma transacción.
+     * </p>
      *
      * @param reserva La reserva a guardar.
+     * @throws ReservaSolapadaException Si el vehículo ya está reservado en
+     * ese periodo.
+     * @throws IllegalArgumentException Si el vehículo no existe.
      */
+    @Transactional
     public void saveReserva(Reserva reserva) {
+        boolean nova = reserva.getIdReserva() == null;
+        if (reserva.getDataCancelacio() == null) {
+            String matricula = reserva.getVehicle().getMatricula();
+            vehicleRepository.findByMatriculaPerReservar(matricula)
+                    .orElseThrow(() -> new IllegalArgumentException("El vehículo especificado no existe."));
+
+            LocalDate inici = reserva.getDataHoraRecollida();
+            LocalDate fi = reserva.getDataHoraDevolucio().isAfter(inici) ? reserva.getDataHoraDevolucio() : inici.plusDays(1);
+            if (reservaRepository.existsSolapada(matricula, inici, fi, reserva.getIdReserva())) {
+                throw new ReservaSolapadaException("El vehículo ya está reservado en este periodo de tiempo.");
+            }
+        }
         reservaRepository.save(reserva);
+        disponibilitatService.actualitzar(reserva);
+        historicOutbox.registrarReserva(reserva,
+                nova ? "CREADA" : reserva.getDataCancelacio() != null ? "CANCELADA" : "MODIFICADA");
+    }
+
+    /**
+     * Guarda una reserva nueva como {@link #saveReserva(Reserva)}, que
+     * registra su creación en el histórico, y en la misma transacción deja el
+     * correo de confirmación en la cola de salida, así que el correo solo se
+     * envía si la reserva se confirma, y una reserva confirmada siempre tiene
+     * su correo.
+     *
+     * @param reserva La reserva a guardar, con el cliente y el vehículo
+     * cargados.
+     * @throws ReservaSolapadaException Si el vehículo ya está reservado en
+     * ese periodo.
+     */
+    @Transactional
+    public void crearReserva(Reserva reserva) {
+        saveReserva(reserva);
+        emailService.encuarEmail(reserva.getClient().getEmail(), PlantillaCorreu.CONFIRMACIO_RESERVA,
+                variablesConfirmacio(reserva));
+    }
+
+    private static Map<String, Object> variablesConfirmacio(Reserva reserva) {
+        Localitzacio localitzacio = reserva.getVehicle().getLocalitzacio();
+        String localitzacioInfo = String.format("%s, %s, %s, %s, %d",
+                localitzacio.getCarrer(), localitzacio.getCiutat(),
+                localitzacio.getProvincia(), localitzacio.getComunitatAutonoma(),
+                localitzacio.getNum());
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("nom", reserva.getClient().getNombre());
+        variables.put("matricula", reserva.getVehicle().getMatricula());
+        variables.put("localitzacio", localitzacioInfo);
+        variables.put("recollida", reserva.getDataHoraRecollida());
+        variables.put("devolucio", reserva.getDataHoraDevolucio());
+        variables.put("preuTotal", reserva.getPreuTotal());
+        return variables;
+    }
+
+    /**
+     * Indica si un vehículo está libre durante un periodo.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @param excloureId El ID de una reserva que no se tiene en cuenta (la que
+     * se está editando), o null.
+     * @return true si ninguna otra reserva del vehículo se solapa con el
+     * periodo.
+     */
+    public boolean esVehicleLliure(String matricula, LocalDate inici, LocalDate fi, Long excloureId) {
+        return disponibilitatService.estaLliure(matricula, inici, fi, excloureId);
     }
 
     /**
-     * Actualiza los datos de una reserva existente. Solo se actualizan los
-     * campos que han cambiado respecto a la reserva original.
+     * Actualiza los datos que se editan de una reserva: el cliente, el
+     * vehículo, las fechas y el precio. Se guarda como
+     * {@link #saveReserva(Reserva)}, que comprueba los solapamientos y
+     * registra el nuevo estado en el histórico en la misma transacción.
+     * <p>
+     * La reserva se lee con el bloqueo de su fila. Con REPEATABLE READ, una
+     * lectura normal antes del bloqueo del vehículo fijaría la instantánea de
+     * la transacción y podría guardar datos que otra edición ya ha cambiado.
+     * </p>
      *
      * @param id El ID de la reserva a actualizar.
-     * @param updatedReserva Los nuevos datos de la reserva.
+     * @param dades Los nuevos datos, con el cliente y el vehículo cargados.
+     * @throws IllegalArgumentException Si la reserva no existe.
+     * @throws ReservaSolapadaException Si el vehículo ya está reservado en
+     * ese periodo.
      */
-    public void updateReserva(Long id, Reserva updatedReserva) {
-        Reserva reserva = getReservaById(id);
+    @Transactional
+    public void updateReserva(Long id, Reserva dades) {
+        Reserva reserva = reservaRepository.findByIdPerModificar(id)
+                .orElseThrow(() -> new IllegalArgumentException("La reserva especificada no existe."));
 
-        // Solo actualizamos si hay cambios
-        if (!reserva.getClient().equals(updatedReserva.getClient())) {
-            reserva.setClient(updatedReserva.getClient());
-        }
-        if (!reserva.getVehicle().equals(updatedReserva.getVehicle())) {
-            reserva.setVehicle(updatedReserva.getVehicle());
-        }
-        reserva.setDataHoraRecollida(updatedReserva.getDataHoraRecollida());
-        reserva.setDataHoraDevolucio(updatedReserva.getDataHoraDevolucio());
-        reserva.setDataCancelacio(updatedReserva.getDataCancelacio());
-        reserva.setPreuTotal(updatedReserva.getPreuTotal());
-        reserva.setFianca(updatedReserva.getFianca());
-        reserva.setActiu(updatedReserva.isActiu());
-        reserva.setAsseguranca(updatedReserva.getAsseguranca());
+        reserva.setClient(dades.getClient());
+        reserva.setVehicle(dades.getVehicle());
+        reserva.setDataHoraRecollida(dades.getDataHoraRecollida());
+        reserva.setDataHoraDevolucio(dades.getDataHoraDevolucio());
+        reserva.setPreuTotal(dades.getPreuTotal());
 
-        reservaRepository.save(reserva);  // Guardamos la reserva actualizada
+        saveReserva(reserva);  // Guardamos la reserva actualizada comprobando solapamientos
     }
 
     /**
-     * Elimina una reserva del sistema.
+     * Elimina una reserva del sistema y registra la eliminación en el
+     * histórico en la misma transacción.
      *
      * @param id El ID de la reserva a eliminar.
      */
+    @Transactional
     public void deleteReserva(Long id) {
+        reservaRepository.findByIdPerModificar(id).ifPresent(reserva -> historicOutbox.registrarReserva(reserva, "ELIMINADA"));
         reservaRepository.deleteById(id);
+        disponibilitatService.eliminar(id);
     }
 
     /**
@@ -204,37 +310,36 @@ public class ReservaService {
     }
 
 
-    /**
-     * Obtiene las fechas reservadas para un vehículo dado su matrícula. Este
-     * método devuelve todas las fechas en las que el vehículo está reservado,
-     * desde la fecha de recogida hasta la fecha de devolución (inclusive).
-     *
-     * @param matricula La matrícula del vehículo.
-     * @return Una lista de fechas reservadas para el vehículo.
-     */
-
     public List<Reserva> obtenerTodasLasReservas() {
         return reservaRepository.findAll();
     }
 
-    public List<LocalDate> getFechasReservadasPorVehiculo(String matricula) {
-        return reservaRepository.findByVehicleMatricula(matricula)
-                .stream()
-                .flatMap(reserva -> {
-                    LocalDate start = reserva.getDataHoraRecollida();  // Aquí, no es necesario toLocalDate()
-                    LocalDate end = reserva.getDataHoraDevolucio();    // Tampoco es necesario toLocalDate()
-                    return start.datesUntil(end.plusDays(1)); // Incluye la fecha de devolución
-                })
-                .collect(Collectors.toList());
+    /**
+     * Obtiene el calendario de ocupación de un vehículo como periodos
+     * fusionados, en lugar de una lista con cada día reservado.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param desde El primer día del calendario.
+     * @param fins El último día del calendario (incluido).
+     * @return Los periodos ocupados, ordenados y disjuntos.
+     */
+    public List<PeriodeOcupat> getCalendariVehicle(String matricula, LocalDate desde, LocalDate fins) {
+        return disponibilitatService.calendari(matricula, desde, fins);
     }
 
-
+    /**
+     * Obtiene las reservas no canceladas de un vehículo que se solapan con un
+     * periodo. Los IDs salen del índice de disponibilidad y solo se cargan
+     * esas reservas.
+     *
+     * @param matricula La matrícula del vehículo.
+     * @param fechaInicio El día de recogida.
+     * @param fechaFin El día de devolución.
+     * @return Las reservas solapadas.
+     */
     public List<Reserva> getReservasByVehicleAndDates(String matricula, LocalDate fechaInicio, LocalDate fechaFin) {
-        return reservaRepository.findAll().stream()
-                .filter(reserva -> reserva.getVehicle().getMatricula().equals(matricula)
-                && (fechaInicio.isBefore(reserva.getDataHoraDevolucio())
-                && fechaFin.isAfter(reserva.getDataHoraRecollida())))
-                .collect(Collectors.toList());
+        List<Long> ids = disponibilitatService.reservesSolapades(matricula, fechaInicio, fechaFin);
+        return ids.isEmpty() ? new ArrayList<>() : reservaRepository.findAllById(ids);
     }
 
     public int contarReservasSolapadas(String matricula, LocalDate inicio, LocalDate fin) {
@@ -1,28 +1,28 @@
 package cat.copernic.CarConnect.Service.MySQL;
 
 import cat.copernic.CarConnect.Entity.MySQL.Incidencia;
-import cat.copernic.CarConnect.Entity.MySQL.Agent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusVehicle;
 import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
 import cat.copernic.CarConnect.Entity.MySQL.Reserva;
 import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
 import cat.copernic.CarConnect.Entity.MySQL.VehicleImages;
 import cat.copernic.CarConnect.Exceptions.DniDuplicadoException;
 import cat.copernic.CarConnect.Exceptions.DniIncorrecteException;
-import cat.copernic.CarConnect.Repository.MySQL.AgentRepository;
 import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
 import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
 import cat.copernic.CarConnect.Repository.MySQL.IncidenciaRepository;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.utils.Paginacio;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
@@ -35,6 +35,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 @Service
 public class VehicleService {
 
+    /**
+     * Propiedades por las que se puede ordenar el listado de vehículos.
+     */
+    public static final Set<String> ORDRES = Set.of("matricula", "marca", "model", "any", "preuPerDia");
+
     @Autowired
     private VehicleRepository vehicleRepository;
     
@@ -42,9 +47,11 @@ public class VehicleService {
     private LocalitzacioRepository localitzacioRepo;
     
     @Autowired
-    private AgentRepository agentRepo;
+    private CurrentUserResolver currentUserResolver;
     @Autowired
     private IncidenciaRepository incidenciaRepository;
+    @Autowired
+    private ImatgeService imatgeService;
 
     /**
      * Obtiene todos los vehículos almacenados en el sistema.
@@ -81,46 +88,6 @@ public class VehicleService {
         return vehicleRepository.findByMatricula(matricula).orElseThrow(() -> new RuntimeException("vehicle no trobat"));
     }
 
-    /**
-     * Obtiene la imagen más pequeña asociada a un vehículo por su matrícula.
-     *
-     * @param matricula La matrícula del vehículo.
-     * @return Los datos de la imagen más pequeña, o null si no hay imágenes.
-     */
-    public byte[] getSmallestImageForVehicle(String matricula) {
-        Vehicle vehicle = vehicleRepository.findByMatricula(matricula).orElse(null);
-        if (vehicle != null && vehicle.getImatges() != null && !vehicle.getImatges().isEmpty()) {
-            return vehicle.getImatges()
-                    .stream()
-                    .min(Comparator.comparing(VehicleImages::getId))
-                    .map(VehicleImages::getData)
-                    .orElse(null); // Retorna la imagen con el ID más bajo
-        }
-        return null; // Si no hay vehículo o imágenes, retorna null
-    }
-
-    public List<byte[]> getRestImagesForVehicle(String matricula) {
-        Vehicle vehicle = vehicleRepository.findByMatricula(matricula).orElse(null);
-
-        if (vehicle != null && vehicle.getImatges() != null && !vehicle.getImatges().isEmpty()) {
-            // Encuentra el ID más bajo
-            Long smallestId = vehicle.getImatges()
-                    .stream()
-                    .min(Comparator.comparing(VehicleImages::getId))
-                    .map(VehicleImages::getId)
-                    .orElse(null);
-
-            // Devuelve todas las imágenes excepto la del ID más bajo
-            return vehicle.getImatges()
-                    .stream()
-                    .filter(image -> !image.getId().equals(smallestId)) // Excluir la de ID más bajo
-                    .map(VehicleImages::getData) // Extraer el byte[] de cada imagen
-                    .collect(Collectors.toList());
-        }
-
-        return Collections.emptyList(); // Retorna lista vacía si no hay vehículo o imágenes
-    }
-
     /**
      * Actualiza un vehículo existente con nuevos datos y una nueva imagen
      * (opcional).
@@ -152,8 +119,9 @@ public class VehicleService {
         // Manejo de la imagen (si se proporciona)
         if (imagen != null && !imagen.isEmpty()) {
             VehicleImages vehicleImage = new VehicleImages();
-            vehicleImage.setData(imagen.getBytes());
             vehicleImage.setVehicle(vehicle);
+            // Guarda el contenido en streaming en el BlobStore y genera miniatura, tarjeta y versión completa
+            imatgeService.assignarContingut(vehicleImage, imagen);
 
             // Inicializar la lista de imágenes si está vacía
             if (vehicle.getImatges() == null) {
@@ -244,7 +212,74 @@ public class VehicleService {
     public List<Vehicle> consultarVehicles() {
         return vehicleRepository.findAll();
     }
+
+    /**
+     * Obtiene los vehículos activos que están libres durante todo un periodo,
+     * con una sola consulta. Los filtros nulos no se aplican.
+     *
+     * @param inici El día de recogida.
+     * @param fi El día de devolución.
+     * @param codiPostal El código postal de la localización, o null.
+     * @param tipus El tipo de vehículo, o null.
+     * @param preuMaxim El precio por día máximo, o null.
+     * @param excloureId El ID de una reserva que no se tiene en cuenta (la que
+     * se está editando), o null.
+     * @return Los vehículos libres, ordenados por precio.
+     * @throws IllegalArgumentException Si la devolución es anterior a la
+     * recogida.
+     */
+    public List<Vehicle> consultarVehiclesDisponibles(LocalDate inici, LocalDate fi, String codiPostal,
+            TipusVehicle tipus, Double preuMaxim, Long excloureId) {
+        if (fi.isBefore(inici)) {
+            throw new IllegalArgumentException("La fecha de devolución debe ser posterior a la fecha de recogida.");
+        }
+        // Una reserva de un solo día ocupa el día de recogida
+        LocalDate fiExclusiu = fi.isAfter(inici) ? fi : inici.plusDays(1);
+        String codi = codiPostal == null || codiPostal.isBlank() ? null : codiPostal;
+        return vehicleRepository.findDisponibles(inici, fiExclusiu, codi, tipus, preuMaxim, excloureId);
+    }
+
+    /**
+     * Obtiene una página de vehículos con paginación keyset.
+     *
+     * @param peticio El cursor, tamaño y orden de la página.
+     * @return La página de vehículos.
+     */
+    public Paginacio<Vehicle> consultarVehicles(Paginacio.Peticio peticio) {
+        return Paginacio.consultar(peticio, "matricula", vehicleRepository::findById, vehicleRepository::findBy);
+    }
+
+    /**
+     * Obtiene una página de los vehículos de la localización del agente
+     * autenticado, con paginación keyset.
+     *
+     * @param authentication La autenticación del agente.
+     * @param peticio El cursor, tamaño y orden de la página.
+     * @return La página de vehículos.
+     */
+    public Paginacio<Vehicle> consultarVehiclesPropis(Authentication authentication, Paginacio.Peticio peticio) {
+        Localitzacio localitzacio = getLocalitzacioAgent(authentication);
+
+        return Paginacio.consultar(peticio, "matricula", vehicleRepository::findById,
+                (posicio, sort, limit) -> vehicleRepository.findByLocalitzacio(localitzacio, posicio, sort, limit));
+    }
     
+    /**
+     * Obtiene la localización del agente autenticado, resuelto con
+     * {@link CurrentUserResolver}. La localización es una referencia que solo
+     * se carga si se accede a sus datos.
+     *
+     * @param authentication La autenticación del agente.
+     * @return La localización, o null si el usuario no es un agente con
+     * localización.
+     */
+    public Localitzacio getLocalitzacioAgent(Authentication authentication) {
+        return currentUserResolver.resoldre(authentication)
+                .filter(usuari -> usuari.agent() && usuari.codiPostal() != null)
+                .map(usuari -> localitzacioRepo.getReferenceById(usuari.codiPostal()))
+                .orElse(null);
+    }
+
      /**
      * Obtiene los vehículos asociados al agente autenticado en el sistema.
      *
@@ -252,15 +287,7 @@ public class VehicleService {
      */
     
      public List<Vehicle> consultarVehiclesPropis(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String username = userDetails.getUsername();
-        List<Agent> agents = agentRepo.findByEmail(username);
-        Agent agent = new Agent();
-        if(!agents.isEmpty()){
-            agent = agents.getFirst();
-        }else agent = null;
-        
-        Localitzacio localitzacio = agent.getLocalitzacio();
+        Localitzacio localitzacio = getLocalitzacioAgent(authentication);
         List<Vehicle> vehicles = vehicleRepository.findByLocalitzacio(localitzacio);
        
         
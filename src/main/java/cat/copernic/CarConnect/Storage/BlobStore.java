@@ -0,0 +1,119 @@
+package cat.copernic.CarConnect.Storage;
+
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import org.springframework.core.io.Resource;
+
+/**
+ * Almacén de contenido direccionado por hash.
+ * <p>
+ * Cada contenido se identifica por su SHA-256 en hexadecimal: guardar dos
+ * veces el mismo archivo devuelve la misma referencia y solo ocupa espacio una
+ * vez. Las entidades ({@code VehicleImages}, {@code IncidenciaFiles}, ...)
+ * guardan solo esta referencia en lugar de los bytes.
+ * </p>
+ *
+ * @author Carlos
+ */
+public interface BlobStore {
+
+    /**
+     * Referencia a un contenido guardado.
+     *
+     * @param hash SHA-256 del contenido en hexadecimal.
+     * @param mida Tamaño del contenido en bytes.
+     */
+    record BlobRef(String hash, long mida) {
+    }
+
+    /**
+     * Guarda un contenido leyéndolo del flujo indicado. El hash se calcula
+     * mientras se copia, sin cargar el contenido entero en memoria.
+     *
+     * @param in El flujo con el contenido. No se cierra.
+     * @return La referencia al contenido.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    BlobRef put(InputStream in) throws IOException;
+
+    /**
+     * Guarda un contenido leyéndolo del flujo indicado y sin aceptar más de
+     * {@code midaMaxima} bytes. El límite se comprueba mientras se copia: si
+     * se supera, se descarta lo escrito sin haber leído el resto del flujo.
+     *
+     * @param in El flujo con el contenido. No se cierra.
+     * @param midaMaxima El tamaño máximo en bytes.
+     * @return La referencia al contenido.
+     * @throws FitxerMassaGranException Si el contenido supera el tamaño máximo.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    BlobRef put(InputStream in, long midaMaxima) throws IOException;
+
+    /**
+     * Guarda un contenido que ya está en memoria.
+     *
+     * @param data El contenido.
+     * @return La referencia al contenido.
+     * @throws IOException Si ocurre un error de escritura.
+     */
+    BlobRef put(byte[] data) throws IOException;
+
+    /**
+     * Indica si existe un contenido con el hash indicado.
+     *
+     * @param hash El SHA-256 del contenido.
+     * @return true si existe.
+     */
+    boolean exists(String hash);
+
+    /**
+     * Obtiene el tamaño de un contenido.
+     *
+     * @param hash El SHA-256 del contenido.
+     * @return El tamaño en bytes.
+     * @throws IOException Si el contenido no existe o no se puede leer.
+     */
+    long size(String hash) throws IOException;
+
+    /**
+     * Abre un flujo de lectura sobre un contenido.
+     *
+     * @param hash El SHA-256 del contenido.
+     * @return Un flujo que el llamante debe cerrar.
+     * @throws IOException Si el contenido no existe o no se puede leer.
+     */
+    InputStream open(String hash) throws IOException;
+
+    /**
+     * Lee un contenido entero en memoria. Solo para contenidos pequeños o para
+     * código que todavía trabaja con byte[].
+     *
+     * @param hash El SHA-256 del contenido.
+     * @return Los bytes del contenido.
+     * @throws IOException Si el contenido no existe o no se puede leer.
+     */
+    byte[] get(String hash) throws IOException;
+
+    /**
+     * Copia un contenido al canal indicado sin pasar por el heap cuando la
+     * implementación lo permite.
+     *
+     * @param hash El SHA-256 del contenido.
+     * @param target El canal de destino. No se cierra.
+     * @return El número de bytes copiados.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    long transferTo(String hash, WritableByteChannel target) throws IOException;
+
+    /**
+     * Obtiene un {@link Resource} sobre un contenido, para devolverlo desde un
+     * controlador. Spring lo escribe en la respuesta por bloques, con
+     * Content-Length y soporte de peticiones Range, sin cargarlo en memoria.
+     *
+     * @param hash El SHA-256 del contenido.
+     * @return El recurso. Puede no existir si el hash no está guardado.
+     */
+    Resource resource(String hash);
+}
@@ -0,0 +1,148 @@
+package cat.copernic.CarConnect.Storage;
+
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentFitxer;
+import cat.copernic.CarConnect.utils.DescarregaFitxer;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Optional;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.core.io.Resource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Archivos de un tipo de documentación (de clientes o de incidencias)
+ * guardados en su bucket de GridFS (ver {@link GridFsConfig}, que crea una
+ * instancia para cada tipo).
+ * <p>
+ * Cada archivo se guarda con un campo de metadatos que indica a quién
+ * pertenece (el DNI del cliente o el ID de la incidencia), y solo se puede
+ * abrir o eliminar indicando ese mismo propietario. El documento de
+ * documentación del propietario solo guarda la lista de referencias
+ * ({@link DocumentFitxer}), que se actualiza con {@code $push}/{@code $pull}
+ * atómicos sin cargar la lista existente.
+ * </p>
+ *
+ * @author David
+ */
+public class DocumentsGridFs {
+
+    private final GridFsTemplate bucket;
+    private final MongoTemplate mongoTemplate;
+    private final PujadaFitxers pujadaFitxers;
+    private final String clau;
+    private final Class<?> documentacio;
+
+    /**
+     * @param bucket El bucket de los archivos.
+     * @param mongoTemplate Para actualizar la lista de referencias.
+     * @param pujadaFitxers Para comprobar el tamaño y el tipo de las subidas.
+     * @param clau El campo con el propietario, tanto en los metadatos de
+     * GridFS como en el documento de documentación.
+     * @param documentacio La clase del documento de documentación.
+     */
+    public DocumentsGridFs(GridFsTemplate bucket, MongoTemplate mongoTemplate, PujadaFitxers pujadaFitxers,
+            String clau, Class<?> documentacio) {
+        this.bucket = bucket;
+        this.mongoTemplate = mongoTemplate;
+        this.pujadaFitxers = pujadaFitxers;
+        this.clau = clau;
+        this.documentacio = documentacio;
+    }
+
+    /**
+     * Añade un archivo subido a la documentación de un propietario. El
+     * contenido se copia a GridFS en streaming, con el tamaño máximo y la
+     * detección de tipo de {@link PujadaFitxers}. Si todavía no hay
+     * documentación del propietario, se crea.
+     *
+     * @param propietari El propietario.
+     * @param fitxer El archivo subido.
+     * @return La referencia al archivo guardado.
+     * @throws cat.copernic.CarConnect.Exceptions.FitxerMassaGranException Si
+     * el archivo supera el tamaño máximo.
+     * @throws IOException Si ocurre un error de lectura.
+     */
+    public DocumentFitxer afegir(String propietari, MultipartFile fitxer) throws IOException {
+        String nom = fitxer.getOriginalFilename();
+        ObjectId id = pujadaFitxers.pujar(fitxer, false,
+                (in, contentType) -> bucket.store(in, nom, contentType, new Document(clau, propietari)));
+
+        GridFSFile guardat = bucket.findOne(Query.query(Criteria.where("_id").is(id)));
+        DocumentFitxer document = new DocumentFitxer(id.toHexString(), nom, tipus(guardat),
+                guardat.getLength(), Instant.now());
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where(clau).is(propietari)),
+                    new Update().push("documents", document), documentacio);
+        } catch (RuntimeException e) {
+            // Sin la referencia nadie podría encontrar el archivo
+            bucket.delete(Query.query(Criteria.where("_id").is(id)));
+            throw e;
+        }
+        return document;
+    }
+
+    /**
+     * Abre un archivo para leerlo en streaming.
+     *
+     * @param propietari El propietario esperado.
+     * @param fileId El ID del archivo.
+     * @return El recurso, o vacío si no existe o pertenece a otro propietario.
+     */
+    public Optional<GridFsResource> obrir(String propietari, String fileId) {
+        if (!ObjectId.isValid(fileId)) {
+            return Optional.empty();
+        }
+        GridFSFile fitxer = bucket.findOne(perPropietari(fileId, propietari));
+        return Optional.ofNullable(fitxer).map(bucket::getResource);
+    }
+
+    /**
+     * Elimina un archivo (y todos sus chunks) y su referencia en la
+     * documentación del propietario.
+     *
+     * @param propietari El propietario esperado.
+     * @param fileId El ID del archivo.
+     */
+    public void eliminar(String propietari, String fileId) {
+        if (ObjectId.isValid(fileId)) {
+            bucket.delete(perPropietari(fileId, propietari));
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where(clau).is(propietari)),
+                new Update().pull("documents", new Document("fileId", fileId)), documentacio);
+    }
+
+    /**
+     * Construye la respuesta de descarga de un archivo con
+     * {@link DescarregaFitxer}, que solo sirve en línea los tipos seguros.
+     *
+     * @param recurs El archivo abierto con {@link #obrir}.
+     * @return La respuesta.
+     */
+    public static ResponseEntity<Resource> resposta(GridFsResource recurs) {
+        GridFSFile fitxer = recurs.getGridFSFile();
+        String id = fitxer.getObjectId().toHexString();
+        return DescarregaFitxer.resposta(recurs, tipus(fitxer), "document-" + id, id);
+    }
+
+    /**
+     * Tipo MIME guardado en los metadatos, o null si no tiene.
+     * ({@link GridFsResource#getContentType()} falla si no lo tiene.)
+     */
+    private static String tipus(GridFSFile fitxer) {
+        Document metadata = fitxer.getMetadata();
+        return metadata != null ? metadata.getString("_contentType") : null;
+    }
+
+    private Query perPropietari(String fileId, String propietari) {
+        return Query.query(Criteria.where("_id").is(new ObjectId(fileId)).and("metadata." + clau).is(propietari));
+    }
+}
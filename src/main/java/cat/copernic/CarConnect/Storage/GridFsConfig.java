@@ -0,0 +1,49 @@
+package cat.copernic.CarConnect.Storage;
+
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentacioClient;
+import cat.copernic.CarConnect.Entity.MongoDB.DocumentacioIncidencia;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+/**
+ * Buckets de GridFS para la documentación de clientes e incidencias. Cada tipo
+ * de documentación tiene su propio bucket ({@code <bucket>.files} y
+ * {@code <bucket>.chunks}), así que los archivos no cuentan para el límite de
+ * 16MB de los documentos BSON. Las operaciones sobre los archivos de cada
+ * bucket son las de su {@link DocumentsGridFs}.
+ *
+ * @author David
+ */
+@Configuration
+public class GridFsConfig {
+
+    public static final String BUCKET_DOCUMENTACIO_CLIENT = "documentacio_client";
+    public static final String BUCKET_DOCUMENTACIO_INCIDENCIA = "documentacio_incidencia";
+
+    @Bean
+    public GridFsTemplate gridFsDocumentacioClient(MongoDatabaseFactory dbFactory, MongoConverter converter) {
+        return new GridFsTemplate(dbFactory, converter, BUCKET_DOCUMENTACIO_CLIENT);
+    }
+
+    @Bean
+    public GridFsTemplate gridFsDocumentacioIncidencia(MongoDatabaseFactory dbFactory, MongoConverter converter) {
+        return new GridFsTemplate(dbFactory, converter, BUCKET_DOCUMENTACIO_INCIDENCIA);
+    }
+
+    @Bean
+    public DocumentsGridFs documentsClient(@Qualifier("gridFsDocumentacioClient") GridFsTemplate bucket,
+            MongoTemplate mongoTemplate, PujadaFitxers pujadaFitxers) {
+        return new DocumentsGridFs(bucket, mongoTemplate, pujadaFitxers, "dni", DocumentacioClient.class);
+    }
+
+    @Bean
+    public DocumentsGridFs documentsIncidencia(@Qualifier("gridFsDocumentacioIncidencia") GridFsTemplate bucket,
+            MongoTemplate mongoTemplate, PujadaFitxers pujadaFitxers) {
+        return new DocumentsGridFs(bucket, mongoTemplate, pujadaFitxers, "idIncidencia", DocumentacioIncidencia.class);
+    }
+}
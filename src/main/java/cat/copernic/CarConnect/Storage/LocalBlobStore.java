@@ -0,0 +1,150 @@
+package cat.copernic.CarConnect.Storage;
+
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import cat.copernic.CarConnect.utils.HashUtils;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Implementación de {@link BlobStore} sobre el sistema de archivos local.
+ * <p>
+ * Cada contenido se guarda en {@code <arrel>/ab/cd/abcd...}, donde los dos
+ * primeros niveles de directorio son los cuatro primeros caracteres del hash,
+ * para no acumular miles de archivos en un mismo directorio. Los contenidos se
+ * escriben primero en {@code <arrel>/tmp} y se mueven a su sitio de forma
+ * atómica, así que un lector nunca ve un archivo a medias.
+ * </p>
+ *
+ * @author Carlos
+ */
+@Component
+public class LocalBlobStore implements BlobStore {
+
+    private static final Pattern HASH_VALID = Pattern.compile("^[0-9a-f]{64}$");
+
+    private final Path arrel;
+
+    private final Path temporals;
+
+    public LocalBlobStore(@Value("${carconnect.blobs.dir:./data/blobs}") String directori) throws IOException {
+        this.arrel = Path.of(directori).toAbsolutePath().normalize();
+        this.temporals = arrel.resolve("tmp");
+        Files.createDirectories(temporals);
+    }
+
+    @Override
+    public BlobRef put(InputStream in) throws IOException {
+        return put(in, Long.MAX_VALUE - 1);
+    }
+
+    @Override
+    public BlobRef put(InputStream in, long midaMaxima) throws IOException {
+        Path temporal = Files.createTempFile(temporals, "blob", ".tmp");
+        try {
+            MessageDigest digest = HashUtils.sha256();
+            long mida;
+            try (ReadableByteChannel origen = Channels.newChannel(new DigestInputStream(in, digest));
+                    FileChannel desti = FileChannel.open(temporal, StandardOpenOption.WRITE)) {
+                // Se copia un byte más del máximo para saber si el contenido lo supera
+                mida = desti.transferFrom(origen, 0, midaMaxima + 1);
+            }
+            if (mida > midaMaxima) {
+                throw new FitxerMassaGranException("El contingut supera la mida màxima de " + midaMaxima + " bytes.");
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            guardar(temporal, ruta(hash));
+            return new BlobRef(hash, mida);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @Override
+    public BlobRef put(byte[] data) throws IOException {
+        return put(new ByteArrayInputStream(data));
+    }
+
+    @Override
+    public boolean exists(String hash) {
+        return Files.exists(ruta(hash));
+    }
+
+    @Override
+    public long size(String hash) throws IOException {
+        return Files.size(ruta(hash));
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(ruta(hash));
+    }
+
+    @Override
+    public byte[] get(String hash) throws IOException {
+        return Files.readAllBytes(ruta(hash));
+    }
+
+    @Override
+    public long transferTo(String hash, WritableByteChannel target) throws IOException {
+        try (FileChannel origen = FileChannel.open(ruta(hash), StandardOpenOption.READ)) {
+            long mida = origen.size();
+            long posicio = 0;
+            while (posicio < mida) {
+                posicio += origen.transferTo(posicio, mida - posicio, target);
+            }
+            return mida;
+        }
+    }
+
+    @Override
+    public Resource resource(String hash) {
+        // FileSystemResource lee el archivo a través de un FileChannel
+        return new FileSystemResource(ruta(hash));
+    }
+
+    /**
+     * Mueve el archivo temporal a su ruta definitiva. Si ya existe un archivo
+     * con el mismo hash, el contenido es idéntico y el temporal se descarta.
+     */
+    private void guardar(Path temporal, Path desti) throws IOException {
+        if (Files.exists(desti)) {
+            return;
+        }
+        Files.createDirectories(desti.getParent());
+        try {
+            Files.move(temporal, desti, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Otra petición ha guardado el mismo contenido a la vez
+        }
+    }
+
+    /**
+     * Calcula la ruta de un contenido a partir de su hash.
+     *
+     * @throws IllegalArgumentException Si el hash no es un SHA-256 válido.
+     */
+    Path ruta(String hash) {
+        if (hash == null || !HASH_VALID.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Hash de contingut no vàlid: " + hash);
+        }
+        return arrel.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+}
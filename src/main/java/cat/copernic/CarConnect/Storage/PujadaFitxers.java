@@ -0,0 +1,212 @@
+package cat.copernic.CarConnect.Storage;
+
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import cat.copernic.CarConnect.Storage.BlobStore.BlobRef;
+import cat.copernic.CarConnect.utils.TipusContingutUtils;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Guarda en el {@link BlobStore} los archivos subidos por los formularios.
+ * <p>
+ * El contenido se copia en streaming desde {@link MultipartFile#getInputStream()}
+ * (que Tomcat ya tiene en disco), calculando el hash por el camino. El tipo
+ * MIME se detecta mirando los primeros bytes (si no se reconoce, se guarda
+ * como {@code application/octet-stream}) y el tamaño máximo se comprueba
+ * mientras se copia, así que ningún archivo llega a estar entero en memoria.
+ * Las mismas comprobaciones sirven para otros destinos (por ejemplo GridFS)
+ * con {@link #pujar(MultipartFile, boolean, Desti)}.
+ * </p>
+ *
+ * @author Carlos
+ */
+@Component
+public class PujadaFitxers {
+
+    /**
+     * Resultado de una subida.
+     *
+     * @param hash SHA-256 del contenido, referencia al BlobStore.
+     * @param mida Tamaño en bytes.
+     * @param contentType Tipo MIME detectado.
+     */
+    public record Pujada(String hash, long mida, String contentType) {
+    }
+
+    /**
+     * Destino donde se copia el contenido de un archivo subido.
+     *
+     * @param <T> El tipo de la referencia que devuelve el destino.
+     */
+    @FunctionalInterface
+    public interface Desti<T> {
+
+        /**
+         * Copia el contenido.
+         *
+         * @param in El contenido, que falla al leer más bytes del máximo.
+         * @param contentType El tipo MIME detectado.
+         * @return La referencia al contenido guardado.
+         * @throws IOException Si ocurre un error de lectura o escritura.
+         */
+        T guardar(InputStream in, String contentType) throws IOException;
+    }
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${carconnect.pujades.mida-maxima:10MB}")
+    private DataSize midaMaxima;
+
+    /**
+     * Guarda un archivo subido.
+     *
+     * @param fitxer El archivo.
+     * @return La referencia, el tamaño y el tipo MIME detectado.
+     * @throws FitxerMassaGranException Si el archivo supera el tamaño máximo.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    public Pujada pujar(MultipartFile fitxer) throws IOException {
+        return pujar(fitxer, false);
+    }
+
+    /**
+     * Guarda una imagen subida. Igual que {@link #pujar(MultipartFile)}, pero
+     * rechaza los archivos que no son imágenes antes de copiarlos.
+     *
+     * @param fitxer La imagen.
+     * @return La referencia, el tamaño y el tipo MIME detectado.
+     * @throws IllegalArgumentException Si el archivo no es una imagen o supera
+     * el tamaño máximo.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    public Pujada pujarImatge(MultipartFile fitxer) throws IOException {
+        return pujar(fitxer, true);
+    }
+
+    private Pujada pujar(MultipartFile fitxer, boolean nomesImatges) throws IOException {
+        return pujar(fitxer, nomesImatges, (in, contentType) -> {
+            BlobRef ref = blobStore.put(in, midaMaxima.toBytes());
+            return new Pujada(ref.hash(), ref.mida(), contentType);
+        });
+    }
+
+    /**
+     * Copia un archivo subido a otro destino con las mismas comprobaciones
+     * que {@link #pujar(MultipartFile)}: tamaño máximo y tipo detectado por
+     * la firma.
+     *
+     * @param <T> El tipo de la referencia que devuelve el destino.
+     * @param fitxer El archivo.
+     * @param nomesImatges Si solo se aceptan imágenes.
+     * @param desti El destino.
+     * @return La referencia que devuelve el destino.
+     * @throws FitxerMassaGranException Si el archivo supera el tamaño máximo.
+     * @throws IllegalArgumentException Si solo se aceptan imágenes y el
+     * archivo no lo es.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    public <T> T pujar(MultipartFile fitxer, boolean nomesImatges, Desti<T> desti) throws IOException {
+        long maxim = midaMaxima.toBytes();
+        // El tamaño declarado permite rechazar sin leer nada; al copiar se
+        // vuelve a aplicar el límite por si no es fiable
+        if (fitxer.getSize() > maxim) {
+            throw massaGran();
+        }
+
+        try (InputStream in = new BufferedInputStream(fitxer.getInputStream())) {
+            // Se leen los primeros bytes para detectar el tipo y se vuelve atrás
+            in.mark(TipusContingutUtils.MIDA_CAPCALERA);
+            byte[] capcalera = in.readNBytes(TipusContingutUtils.MIDA_CAPCALERA);
+            in.reset();
+
+            // El tipo declarado por el navegador no se guarda nunca
+            String contentType = TipusContingutUtils.detectar(capcalera);
+            if (nomesImatges && !TipusContingutUtils.esImatge(contentType)) {
+                throw new IllegalArgumentException("El fitxer " + fitxer.getOriginalFilename() + " no és una imatge.");
+            }
+
+            try {
+                return desti.guardar(new EntradaLimitada(in, maxim), contentType);
+            } catch (IOException | RuntimeException e) {
+                // El destino puede envolver el error de la entrada en el suyo
+                for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+                    if (causa instanceof MidaSuperadaException) {
+                        throw massaGran();
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private FitxerMassaGranException massaGran() {
+        return new FitxerMassaGranException("El fitxer supera la mida màxima de " + midaMaxima.toMegabytes() + " MB.");
+    }
+
+    /**
+     * Se lanza como IOException para que los destinos que deshacen la copia
+     * cuando falla la lectura (como GridFS, que borra los chunks ya escritos)
+     * también lo hagan cuando se supera el tamaño.
+     */
+    private static final class MidaSuperadaException extends IOException {
+    }
+
+    /**
+     * Entrada que falla en cuanto se ha leído más del máximo de bytes.
+     */
+    private static final class EntradaLimitada extends FilterInputStream {
+
+        private final long maxim;
+        private long llegits;
+
+        EntradaLimitada(InputStream in, long maxim) {
+            super(in);
+            this.maxim = maxim;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                comptar(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                comptar(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long saltats = super.skip(n);
+            comptar(saltats);
+            return saltats;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void comptar(long n) throws MidaSuperadaException {
+            llegits += n;
+            if (llegits > maxim) {
+                throw new MidaSuperadaException();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package cat.copernic.CarConnect.utils;
+
+import java.util.Map;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Construye las respuestas que sirven archivos subidos por los usuarios.
+ * <p>
+ * El tipo guardado de un archivo puede venir del navegador que lo subió, así
+ * que no se puede servir tal cual: un {@code text/html} o un
+ * {@code image/svg+xml} servido en línea se ejecutaría en el origen de la
+ * aplicación. Solo se sirven en línea los tipos de {@link #TIPUS_EN_LINIA},
+ * que son los que {@link TipusContingutUtils#detectar} reconoce por su firma;
+ * el resto se descarga como {@code application/octet-stream}. Todas las
+ * respuestas llevan {@code X-Content-Type-Options: nosniff} para que el
+ * navegador no adivine otro tipo.
+ * </p>
+ *
+ * @author Carlos
+ */
+public class DescarregaFitxer {
+
+    /**
+     * Tipos que se pueden mostrar en línea, con la extensión del nombre del
+     * archivo.
+     */
+    public static final Map<String, String> TIPUS_EN_LINIA = Map.of(
+            "image/jpeg", "jpg",
+            "image/png", "png",
+            "image/gif", "gif",
+            "image/webp", "webp",
+            "application/pdf", "pdf");
+
+    /**
+     * Construye la respuesta para un archivo.
+     *
+     * @param recurs El contenido del archivo.
+     * @param contentType El tipo MIME guardado, o null.
+     * @param nomBase El nombre del archivo sin extensión.
+     * @param etag El ETag (sin comillas), o null.
+     * @return La respuesta con las cabeceras de tipo, disposición y nosniff.
+     */
+    public static ResponseEntity<Resource> resposta(Resource recurs, String contentType, String nomBase, String etag) {
+        String tipus = normalitzar(contentType);
+        String extensio = tipus != null ? TIPUS_EN_LINIA.get(tipus) : null;
+
+        MediaType mediaType;
+        ContentDisposition disposition;
+        if (extensio != null) {
+            mediaType = MediaType.parseMediaType(tipus);
+            disposition = ContentDisposition.inline().filename(nomBase + "." + extensio).build();
+        } else {
+            mediaType = MediaType.APPLICATION_OCTET_STREAM;
+            disposition = ContentDisposition.attachment().filename(nomBase + ".bin").build();
+        }
+
+        ResponseEntity.BodyBuilder resposta = ResponseEntity.ok()
+                .contentType(mediaType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, disposition.toString())
+                .header("X-Content-Type-Options", "nosniff");
+        if (etag != null) {
+            resposta.eTag("\"" + etag + "\"");
+        }
+        return resposta.body(recurs);
+    }
+
+    /**
+     * Indica si un tipo MIME se puede servir en línea.
+     *
+     * @param contentType El tipo MIME, o null.
+     * @return true si el tipo está en {@link #TIPUS_EN_LINIA}.
+     */
+    public static boolean esEnLinia(String contentType) {
+        String tipus = normalitzar(contentType);
+        return tipus != null && TIPUS_EN_LINIA.containsKey(tipus);
+    }
+
+    /**
+     * Tipo y subtipo en minúsculas, sin parámetros, o null si el tipo no es
+     * válido.
+     */
+    private static String normalitzar(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return (mediaType.getType() + "/" + mediaType.getSubtype()).toLowerCase();
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package cat.copernic.CarConnect.utils;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Utilidades para calcular resúmenes (hash) del contenido de archivos.
+ *
+ * @author Carlos
+ */
+public class HashUtils {
+
+    /**
+     * Crea un nuevo MessageDigest SHA-256.
+     *
+     * @return El MessageDigest.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e); // Todas las JVM lo incluyen
+        }
+    }
+
+    /**
+     * Calcula el SHA-256 de un contenido en hexadecimal.
+     *
+     * @param data El contenido.
+     * @return El hash en hexadecimal (64 caracteres).
+     */
+    public static String sha256Hex(byte[] data) {
+        return HexFormat.of().formatHex(sha256().digest(data));
+    }
+}
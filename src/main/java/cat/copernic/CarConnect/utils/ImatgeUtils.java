@@ -4,9 +4,26 @@
  */
 package cat.copernic.CarConnect.utils;
 
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
 
 /**
  *
@@ -14,6 +31,13 @@ import java.nio.file.Path;
  */
 public class ImatgeUtils {
 
+    /**
+     * Número máximo de píxeles (ancho x alto) que se acepta decodificar. Una
+     * imagen pequeña en bytes puede declarar dimensiones enormes y agotar la
+     * memoria al decodificarla.
+     */
+    public static final long PIXELS_MAXIMS = 64_000_000L;
+
     public static void convertirBytesAImagen(byte[] imagenBytes, String rutaSalida) throws IOException {
         Path ruta = Path.of(rutaSalida);
         Files.write(ruta, imagenBytes); // Escribe los bytes en un archivo
@@ -24,4 +48,127 @@ public class ImatgeUtils {
         Path ruta = Path.of(rutaImagen);
         return Files.readAllBytes(ruta); // Lee el archivo en formato byte array
     }
+
+    /**
+     * Decodifica una imagen con ImageIO.
+     *
+     * @param imagenBytes Los bytes de la imagen.
+     * @return La imagen decodificada, o null si ImageIO no reconoce el formato.
+     */
+    public static BufferedImage llegirImatge(byte[] imagenBytes) throws IOException {
+        return llegirImatge(new ByteArrayInputStream(imagenBytes));
+    }
+
+    /**
+     * Decodifica una imagen con ImageIO leyendo de un flujo.
+     *
+     * @param in El flujo con la imagen. No se cierra.
+     * @return La imagen decodificada, o null si ImageIO no reconoce el formato.
+     * @throws FitxerMassaGranException Si la imagen supera
+     * {@link #PIXELS_MAXIMS}.
+     */
+    public static BufferedImage llegirImatge(InputStream in) throws IOException {
+        return llegirImatge(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodifica una imagen con ImageIO leyendo de un flujo. Antes de
+     * decodificar se leen sus dimensiones de la cabecera: si superan
+     * {@link #PIXELS_MAXIMS} se rechaza la imagen, y si son mucho mayores que
+     * {@code midaMinima} se decodifica submuestreada (una de cada N filas y
+     * columnas), de manera que el lado más largo del resultado nunca es menor
+     * que {@code midaMinima}.
+     *
+     * @param in El flujo con la imagen. No se cierra.
+     * @param midaMinima El tamaño mínimo del lado más largo que se necesita,
+     * en píxeles.
+     * @return La imagen decodificada, o null si ImageIO no reconoce el formato.
+     * @throws FitxerMassaGranException Si la imagen supera
+     * {@link #PIXELS_MAXIMS}.
+     */
+    public static BufferedImage llegirImatge(InputStream in, int midaMinima) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(in);
+        if (iis == null) {
+            return null;
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                long amplada = reader.getWidth(0);
+                long alcada = reader.getHeight(0);
+                if (amplada * alcada > PIXELS_MAXIMS) {
+                    throw new FitxerMassaGranException("La imatge de " + amplada + "x" + alcada
+                            + " píxels supera el màxim de " + PIXELS_MAXIMS + " píxels.");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int pas = (int) Math.max(1, Math.max(amplada, alcada) / Math.max(1, midaMinima));
+                if (pas > 1) {
+                    param.setSourceSubsampling(pas, pas, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Redimensiona una imagen para que su lado más largo no supere
+     * {@code midaMaxima}, manteniendo la proporción. Las imágenes más pequeñas
+     * no se amplían. El resultado siempre es RGB (sin canal alfa) para poder
+     * codificarlo como JPEG.
+     *
+     * @param original La imagen original.
+     * @param midaMaxima El tamaño máximo del lado más largo, en píxeles.
+     * @return La imagen redimensionada.
+     */
+    public static BufferedImage redimensionar(BufferedImage original, int midaMaxima) {
+        int amplada = original.getWidth();
+        int alcada = original.getHeight();
+        double escala = Math.min(1.0, (double) midaMaxima / Math.max(amplada, alcada));
+        int novaAmplada = Math.max(1, (int) Math.round(amplada * escala));
+        int novaAlcada = Math.max(1, (int) Math.round(alcada * escala));
+
+        BufferedImage resultat = new BufferedImage(novaAmplada, novaAlcada, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resultat.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE); // Fondo para las imágenes con transparencia
+            g.fillRect(0, 0, novaAmplada, novaAlcada);
+            g.drawImage(original, 0, 0, novaAmplada, novaAlcada, null);
+        } finally {
+            g.dispose();
+        }
+        return resultat;
+    }
+
+    /**
+     * Codifica una imagen como JPEG con la calidad indicada.
+     *
+     * @param imatge La imagen a codificar.
+     * @param qualitat Calidad entre 0 y 1.
+     * @return Los bytes del JPEG.
+     */
+    public static byte[] codificarJpeg(BufferedImage imatge, float qualitat) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(qualitat);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(imatge, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
 }
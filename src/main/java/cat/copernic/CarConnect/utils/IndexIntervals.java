@@ -0,0 +1,202 @@
+package cat.copernic.CarConnect.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice inmutable de intervalos semiabiertos {@code [inici, fi)} de enteros,
+ * pensado para los días ocupados por las reservas de un vehículo.
+ * <p>
+ * Es un árbol de intervalos aplanado: los intervalos se guardan ordenados por
+ * inicio y, para cada posición, el fin máximo de todos los anteriores (el
+ * mismo dato que guarda cada nodo de un árbol de intervalos aumentado). Para
+ * saber si {@code [a, b)} se solapa con algún intervalo basta con buscar
+ * cuántos empiezan antes de {@code b} (búsqueda binaria) y mirar si el fin
+ * máximo de esos supera {@code a}: O(log n).
+ * </p>
+ * <p>
+ * Las modificaciones devuelven un índice nuevo (copy-on-write, O(n)), así que
+ * una instancia se puede consultar desde varios hilos sin sincronización.
+ * </p>
+ *
+ * @author Carlos
+ */
+public final class IndexIntervals {
+
+    /**
+     * Intervalo semiabierto {@code [inici, fi)}.
+     */
+    public record Interval(long inici, long fi) {
+    }
+
+    public static final IndexIntervals BUIT = new IndexIntervals(new long[0], new long[0], new long[0]);
+
+    private final long[] ids;
+    private final long[] inicis;
+    private final long[] finals;
+    private final long[] maxFinal; // maxFinal[i] = max(finals[0..i])
+
+    private IndexIntervals(long[] ids, long[] inicis, long[] finals) {
+        this.ids = ids;
+        this.inicis = inicis;
+        this.finals = finals;
+        this.maxFinal = new long[finals.length];
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < finals.length; i++) {
+            max = Math.max(max, finals[i]);
+            maxFinal[i] = max;
+        }
+    }
+
+    /**
+     * Número de intervalos del índice.
+     *
+     * @return El número de intervalos.
+     */
+    public int mida() {
+        return ids.length;
+    }
+
+    /**
+     * Indica si algún intervalo se solapa con {@code [a, b)}.
+     *
+     * @param a Inicio (inclusivo).
+     * @param b Fin (exclusivo).
+     * @param excloure ID de un intervalo que no se tiene en cuenta (por
+     * ejemplo, la propia reserva al editarla), o null.
+     * @return true si hay solapamiento.
+     */
+    public boolean solapa(long a, long b, Long excloure) {
+        int k = comencenAbans(b);
+        if (k == 0 || maxFinal[k - 1] <= a) {
+            return false;
+        }
+        if (excloure == null) {
+            return true;
+        }
+        // Solo hace falta recorrer si el candidato puede ser el excluido
+        for (int i = k - 1; i >= 0 && maxFinal[i] > a; i--) {
+            if (finals[i] > a && ids[i] != excloure) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene los IDs de los intervalos que se solapan con {@code [a, b)}.
+     *
+     * @param a Inicio (inclusivo).
+     * @param b Fin (exclusivo).
+     * @return Los IDs, ordenados por inicio.
+     */
+    public List<Long> solapats(long a, long b) {
+        List<Long> resultat = new ArrayList<>();
+        int k = comencenAbans(b);
+        for (int i = 0; i < k; i++) {
+            if (finals[i] > a) {
+                resultat.add(ids[i]);
+            }
+        }
+        return resultat;
+    }
+
+    /**
+     * Obtiene la unión de los intervalos que se solapan con {@code [a, b)},
+     * fusionando los que se solapan o son contiguos. El resultado crece con el
+     * número de intervalos, no con su longitud.
+     *
+     * @param a Inicio (inclusivo).
+     * @param b Fin (exclusivo).
+     * @return Los intervalos fusionados, ordenados y disjuntos.
+     */
+    public List<Interval> fusionats(long a, long b) {
+        List<Interval> resultat = new ArrayList<>();
+        int k = comencenAbans(b);
+        long inici = 0;
+        long fi = Long.MIN_VALUE;
+        for (int i = 0; i < k; i++) {
+            if (finals[i] <= a) {
+                continue;
+            }
+            if (fi != Long.MIN_VALUE && inicis[i] <= fi) {
+                fi = Math.max(fi, finals[i]);
+            } else {
+                if (fi != Long.MIN_VALUE) {
+                    resultat.add(new Interval(inici, fi));
+                }
+                inici = inicis[i];
+                fi = finals[i];
+            }
+        }
+        if (fi != Long.MIN_VALUE) {
+            resultat.add(new Interval(inici, fi));
+        }
+        return resultat;
+    }
+
+    /**
+     * Devuelve un índice con el intervalo indicado añadido, o sustituido si ya
+     * había uno con el mismo ID.
+     *
+     * @param id El ID del intervalo.
+     * @param inici Inicio (inclusivo).
+     * @param fi Fin (exclusivo).
+     * @return El índice nuevo.
+     */
+    public IndexIntervals amb(long id, long inici, long fi) {
+        IndexIntervals base = sense(id);
+        int pos = base.comencenAbans(inici + 1); // después de los que empiezan igual
+        long[] nousIds = inserir(base.ids, pos, id);
+        long[] nousInicis = inserir(base.inicis, pos, inici);
+        long[] nousFinals = inserir(base.finals, pos, fi);
+        return new IndexIntervals(nousIds, nousInicis, nousFinals);
+    }
+
+    /**
+     * Devuelve un índice sin el intervalo indicado.
+     *
+     * @param id El ID del intervalo.
+     * @return El índice nuevo, o este mismo si no contenía el ID.
+     */
+    public IndexIntervals sense(long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return new IndexIntervals(treure(ids, i), treure(inicis, i), treure(finals, i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Número de intervalos que empiezan antes de {@code valor}.
+     */
+    private int comencenAbans(long valor) {
+        int baix = 0;
+        int alt = inicis.length;
+        while (baix < alt) {
+            int mig = (baix + alt) >>> 1;
+            if (inicis[mig] < valor) {
+                baix = mig + 1;
+            } else {
+                alt = mig;
+            }
+        }
+        return baix;
+    }
+
+    private static long[] inserir(long[] valors, int pos, long valor) {
+        long[] resultat = Arrays.copyOf(valors, valors.length + 1);
+        System.arraycopy(valors, pos, resultat, pos + 1, valors.length - pos);
+        resultat[pos] = valor;
+        return resultat;
+    }
+
+    private static long[] treure(long[] valors, int pos) {
+        long[] resultat = new long[valors.length - 1];
+        System.arraycopy(valors, 0, resultat, 0, pos);
+        System.arraycopy(valors, pos + 1, resultat, pos, valors.length - pos - 1);
+        return resultat;
+    }
+}
@@ -0,0 +1,163 @@
+package cat.copernic.CarConnect.utils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+
+/**
+ * Página de resultados obtenida con paginación keyset (seek).
+ * <p>
+ * En lugar de un número de página (OFFSET), cada página se pide a partir de un
+ * cursor: el ID del último elemento de la página anterior ({@code despres}) o
+ * del primero de la página siguiente ({@code abans}). La consulta empieza
+ * justo después de ese elemento según el orden pedido, así que el coste no
+ * crece con el número de página. Como desempate se usa siempre el ID, que
+ * Spring Data añade al final del orden.
+ * </p>
+ *
+ * @param <T> El tipo de los elementos.
+ * @author Carlos
+ */
+public class Paginacio<T> {
+
+    public static final int MIDA_PER_DEFECTE = 20;
+    public static final int MIDA_MAXIMA = 100;
+
+    /**
+     * Parámetros de una petición de página, ya validados.
+     *
+     * @param despres Cursor: ID del elemento después del cual empieza la página.
+     * @param abans Cursor: ID del elemento antes del cual acaba la página.
+     * @param mida Número de elementos por página.
+     * @param ordre Propiedad por la que se ordena.
+     * @param direccio Dirección del orden.
+     */
+    public record Peticio(String despres, String abans, int mida, String ordre, Sort.Direction direccio) {
+
+        /**
+         * Crea una petición a partir de los parámetros de la URL. Los valores
+         * que faltan o no son válidos se sustituyen por los de por defecto.
+         *
+         * @param despres Cursor {@code despres}, o null.
+         * @param abans Cursor {@code abans}, o null.
+         * @param mida Número de elementos por página, o null.
+         * @param ordre Propiedad por la que ordenar, o null.
+         * @param direccio "asc" o "desc", o null.
+         * @param ordresPermesos Propiedades por las que se permite ordenar.
+         * @param ordrePerDefecte Propiedad por defecto.
+         * @return La petición.
+         */
+        public static Peticio de(String despres, String abans, Integer mida, String ordre, String direccio,
+                Set<String> ordresPermesos, String ordrePerDefecte) {
+            int midaValida = mida == null || mida < 1 ? MIDA_PER_DEFECTE : Math.min(mida, MIDA_MAXIMA);
+            String ordreValid = ordre != null && ordresPermesos.contains(ordre) ? ordre : ordrePerDefecte;
+            Sort.Direction direccioValida = Sort.Direction.fromOptionalString(direccio).orElse(Sort.Direction.ASC);
+            return new Peticio(buit(despres), buit(abans), midaValida, ordreValid, direccioValida);
+        }
+
+        private static String buit(String cursor) {
+            return cursor == null || cursor.isBlank() ? null : cursor;
+        }
+    }
+
+    /**
+     * Consulta keyset de un repositorio, normalmente un método derivado con
+     * parámetros {@code (ScrollPosition, Sort, Limit)}.
+     */
+    @FunctionalInterface
+    public interface Consulta<T> {
+
+        Window<T> executar(ScrollPosition posicio, Sort sort, Limit limit);
+    }
+
+    private final List<T> elements;
+    private final String anterior;
+    private final String seguent;
+    private final int mida;
+    private final String ordre;
+    private final String direccio;
+
+    private Paginacio(List<T> elements, String anterior, String seguent, int mida, String ordre, String direccio) {
+        this.elements = elements;
+        this.anterior = anterior;
+        this.seguent = seguent;
+        this.mida = mida;
+        this.ordre = ordre;
+        this.direccio = direccio;
+    }
+
+    /**
+     * Ejecuta una consulta keyset para la petición indicada.
+     *
+     * @param peticio La petición.
+     * @param propietatId El nombre de la propiedad ID de la entidad.
+     * @param carregarCursor Carga el elemento al que apunta un cursor, para
+     * obtener sus valores de orden.
+     * @param consulta La consulta del repositorio.
+     * @return La página.
+     */
+    public static <T> Paginacio<T> consultar(Peticio peticio, String propietatId,
+            Function<String, Optional<T>> carregarCursor, Consulta<T> consulta) {
+        boolean enrere = peticio.abans() != null;
+        String cursor = enrere ? peticio.abans() : peticio.despres();
+        T referencia = cursor != null ? carregarCursor.apply(cursor).orElse(null) : null;
+
+        ScrollPosition posicio = ScrollPosition.keyset();
+        if (referencia != null) {
+            BeanWrapperImpl valors = new BeanWrapperImpl(referencia);
+            Map<String, Object> claus = new LinkedHashMap<>();
+            claus.put(peticio.ordre(), valors.getPropertyValue(peticio.ordre()));
+            claus.put(propietatId, valors.getPropertyValue(propietatId));
+            posicio = enrere ? ScrollPosition.backward(claus) : ScrollPosition.forward(claus);
+        }
+
+        Window<T> finestra = consulta.executar(posicio, Sort.by(peticio.direccio(), peticio.ordre()),
+                Limit.of(peticio.mida()));
+        List<T> elements = finestra.getContent();
+
+        // En una consulta hacia atrás, hasNext() indica si quedan elementos antes
+        boolean hiHaAnterior = referencia != null && (!enrere || finestra.hasNext());
+        boolean hiHaSeguent = enrere || finestra.hasNext();
+
+        String anterior = hiHaAnterior && !elements.isEmpty() ? id(elements.getFirst(), propietatId) : null;
+        String seguent = hiHaSeguent && !elements.isEmpty() ? id(elements.getLast(), propietatId) : null;
+        return new Paginacio<>(elements, anterior, seguent, peticio.mida(), peticio.ordre(),
+                peticio.direccio().name().toLowerCase());
+    }
+
+    private static String id(Object element, String propietatId) {
+        return String.valueOf(new BeanWrapperImpl(element).getPropertyValue(propietatId));
+    }
+
+    public List<T> getElements() {
+        return elements;
+    }
+
+    public String getAnterior() {
+        return anterior;
+    }
+
+    public String getSeguent() {
+        return seguent;
+    }
+
+    public int getMida() {
+        return mida;
+    }
+
+    public String getOrdre() {
+        return ordre;
+    }
+
+    public String getDireccio() {
+        return direccio;
+    }
+}
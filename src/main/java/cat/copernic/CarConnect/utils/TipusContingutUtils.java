@@ -0,0 +1,84 @@
+package cat.copernic.CarConnect.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Utilidades para detectar el tipo MIME de un archivo a partir de sus primeros
+ * bytes (la "firma" del formato), sin fiarse del Content-Type que envía el
+ * navegador.
+ *
+ * @author Carlos
+ */
+public class TipusContingutUtils {
+
+    /**
+     * Número de bytes iniciales necesarios para reconocer todos los formatos.
+     */
+    public static final int MIDA_CAPCALERA = 12;
+
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    /**
+     * Tipos de imagen que {@link #detectar(byte[])} reconoce por su firma.
+     */
+    public static final Set<String> TIPUS_IMATGE = Set.of("image/jpeg", "image/png", "image/gif", "image/webp", "image/bmp");
+
+    /**
+     * Detecta el tipo MIME de un contenido a partir de su cabecera. El tipo
+     * que declara el navegador no se usa nunca: si la firma no se reconoce,
+     * el contenido se trata como binario genérico.
+     *
+     * @param capcalera Los primeros bytes del contenido (puede ser más corta
+     * que {@link #MIDA_CAPCALERA} si el archivo es pequeño).
+     * @return El tipo MIME detectado, o {@code application/octet-stream} si no
+     * se reconoce la firma.
+     */
+    public static String detectar(byte[] capcalera) {
+        if (comencaPer(capcalera, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (comencaPer(capcalera, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (comencaPer(capcalera, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (comencaPer(capcalera, 'R', 'I', 'F', 'F') && capcalera.length >= 12
+                && "WEBP".equals(new String(Arrays.copyOfRange(capcalera, 8, 12), StandardCharsets.US_ASCII))) {
+            return "image/webp";
+        }
+        if (comencaPer(capcalera, 'B', 'M')) {
+            return "image/bmp";
+        }
+        if (comencaPer(capcalera, '%', 'P', 'D', 'F', '-')) {
+            return "application/pdf";
+        }
+        return OCTET_STREAM;
+    }
+
+    /**
+     * Indica si el tipo MIME corresponde a una imagen que se reconoce por su
+     * firma. Otros {@code image/*}, como {@code image/svg+xml}, no cuentan:
+     * pueden contener scripts.
+     *
+     * @param contentType El tipo MIME.
+     * @return true si es uno de {@link #TIPUS_IMATGE}.
+     */
+    public static boolean esImatge(String contentType) {
+        return contentType != null && TIPUS_IMATGE.contains(contentType);
+    }
+
+    private static boolean comencaPer(byte[] capcalera, int... firma) {
+        if (capcalera.length < firma.length) {
+            return false;
+        }
+        for (int i = 0; i < firma.length; i++) {
+            if ((capcalera[i] & 0xFF) != firma[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
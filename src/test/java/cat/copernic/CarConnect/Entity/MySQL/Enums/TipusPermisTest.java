@@ -0,0 +1,55 @@
+package cat.copernic.CarConnect.Entity.MySQL.Enums;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la máscara de bits de los permisos.
+ */
+class TipusPermisTest {
+
+    @Test
+    void cadaPermisTeUnBitPropi() {
+        // La máscara es un long: no caben más de 64 permisos
+        assertTrue(TipusPermis.values().length <= Long.SIZE);
+
+        long vistos = 0;
+        for (TipusPermis permis : TipusPermis.values()) {
+            assertEquals(1, Long.bitCount(permis.bit()), permis.name());
+            assertEquals(0, vistos & permis.bit(), permis.name());
+            vistos |= permis.bit();
+        }
+    }
+
+    @Test
+    void laMascaraConservaElsPermisos() {
+        assertEquals(0, TipusPermis.mascara(EnumSet.noneOf(TipusPermis.class)));
+        assertEquals(EnumSet.noneOf(TipusPermis.class), TipusPermis.deMascara(0));
+        assertEquals(EnumSet.allOf(TipusPermis.class),
+                TipusPermis.deMascara(TipusPermis.mascara(EnumSet.allOf(TipusPermis.class))));
+
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            EnumSet<TipusPermis> permisos = EnumSet.noneOf(TipusPermis.class);
+            for (TipusPermis permis : TipusPermis.values()) {
+                if (random.nextBoolean()) {
+                    permisos.add(permis);
+                }
+            }
+            assertEquals(permisos, TipusPermis.deMascara(TipusPermis.mascara(permisos)));
+        }
+    }
+
+    @Test
+    void elsBitsSonLesPosicionsDelsPermisos() {
+        // Las máscaras guardadas dependen del orden: los permisos nuevos van al final
+        assertEquals(1L, TipusPermis.CREAR_CLIENT.bit());
+        assertEquals(1L << 12, TipusPermis.CREAR_RESERVES.bit());
+        assertEquals(1L << 14, TipusPermis.LLISTAR_RESERVES.bit());
+        assertEquals(1L << 24, TipusPermis.ADMIN.bit());
+    }
+}
@@ -0,0 +1,89 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Security.Permis;
+import jakarta.persistence.EntityManager;
+import java.util.EnumSet;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Pruebas de la migración de la antigua lista de permisos separados por comas
+ * ({@code llista_permisos}) a la máscara de bits al cargar un usuario.
+ */
+@DataJpaTest(properties = ProvaJpaConfig.QUOTE_KEYWORDS)
+@ContextConfiguration(classes = ProvaJpaConfig.class)
+class ClientPermisosTest {
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void laLlistaAnticaEsConverteixEnLaMascara() {
+        Client client = carregarAmbLlistaAntiga("C1", "CREAR_RESERVES,LLISTAR_RESERVES, HISTORIC_RESERVES");
+
+        assertEquals(EnumSet.of(TipusPermis.CREAR_RESERVES, TipusPermis.LLISTAR_RESERVES,
+                TipusPermis.HISTORIC_RESERVES), client.getPermisos());
+        // Las autoridades son las instancias compartidas de la máscara
+        assertSame(Permis.deMascara(client.getMascaraPermisos()), client.getAuthorities());
+    }
+
+    @Test
+    void elsPermisosDesconegutsIElsBuitsEsDescarten() {
+        Client client = carregarAmbLlistaAntiga("C2", "ADMIN,PERMIS_ELIMINAT,,LLISTAR_VEHICLE,");
+
+        assertEquals(EnumSet.of(TipusPermis.ADMIN, TipusPermis.LLISTAR_VEHICLE), client.getPermisos());
+    }
+
+    @Test
+    void unaMascaraJaMigradaNoEsToca() {
+        Client client = DadesProva.client("C3");
+        client.setPermisos(Set.of(TipusPermis.LLISTAR_CLIENT));
+        clientRepository.saveAndFlush(client);
+        entityManager.createNativeQuery("UPDATE client SET llista_permisos = 'ADMIN' WHERE dni = 'C3'").executeUpdate();
+        entityManager.clear();
+
+        assertEquals(EnumSet.of(TipusPermis.LLISTAR_CLIENT), clientRepository.findById("C3").orElseThrow().getPermisos());
+    }
+
+    @Test
+    void laMigracioEsGuardaIEsManteAlTornarACarregar() {
+        Client client = carregarAmbLlistaAntiga("C4", "EDITAR_VEHICLE,ELIMINAR_VEHICLE");
+        long mascara = client.getMascaraPermisos();
+        entityManager.flush();
+        entityManager.clear();
+
+        Object[] fila = (Object[]) entityManager.createNativeQuery(
+                "SELECT permisos, llista_permisos FROM client WHERE dni = 'C4'").getSingleResult();
+        assertEquals(mascara, ((Number) fila[0]).longValue());
+        assertNull(fila[1]);
+        assertEquals(mascara, clientRepository.findById("C4").orElseThrow().getMascaraPermisos());
+    }
+
+    /**
+     * Guarda un cliente como lo dejaba la versión anterior: sin máscara y con
+     * la lista de permisos, y lo vuelve a cargar.
+     */
+    private Client carregarAmbLlistaAntiga(String dni, String llista) {
+        Client client = DadesProva.client(dni);
+        client.setPermisos(Set.of());
+        clientRepository.saveAndFlush(client);
+        entityManager.createNativeQuery("UPDATE client SET llista_permisos = ?1 WHERE dni = ?2")
+                .setParameter(1, llista)
+                .setParameter(2, dni)
+                .executeUpdate();
+        entityManager.clear();
+        return clientRepository.findById(dni).orElseThrow();
+    }
+}
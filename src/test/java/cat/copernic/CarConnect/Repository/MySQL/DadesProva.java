@@ -0,0 +1,72 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Agent;
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import java.time.LocalDate;
+
+/**
+ * Entidades con los campos obligatorios rellenados, para las pruebas con JPA.
+ */
+public final class DadesProva {
+
+    private DadesProva() {
+    }
+
+    public static Localitzacio localitzacio(String codiPostal) {
+        Localitzacio localitzacio = new Localitzacio();
+        localitzacio.setCodiPostal(codiPostal);
+        localitzacio.setComunitatAutonoma("Catalunya");
+        localitzacio.setProvincia("Barcelona");
+        localitzacio.setCiutat("Terrassa");
+        localitzacio.setCarrer("Carrer Major");
+        localitzacio.setNum(1);
+        return localitzacio;
+    }
+
+    public static Client client(String dni) {
+        Client client = new Client();
+        omplir(client, dni);
+        return client;
+    }
+
+    public static Agent agent(String dni, Localitzacio localitzacio) {
+        Agent agent = new Agent();
+        omplir(agent, dni);
+        agent.setLocalitzacio(localitzacio);
+        return agent;
+    }
+
+    public static Vehicle vehicle(String matricula, Localitzacio localitzacio) {
+        Vehicle vehicle = new Vehicle();
+        vehicle.setMatricula(matricula);
+        vehicle.setMarca("Seat");
+        vehicle.setModel("Ibiza");
+        vehicle.setDescripcio("Vehicle de prova");
+        vehicle.setPreuPerDia(40);
+        vehicle.setFianca(100);
+        vehicle.setActiu(true);
+        vehicle.setLocalitzacio(localitzacio);
+        return vehicle;
+    }
+
+    public static Reserva reserva(Client client, Vehicle vehicle, LocalDate inici, LocalDate fi) {
+        Reserva reserva = new Reserva();
+        reserva.setClient(client);
+        reserva.setVehicle(vehicle);
+        reserva.setDataHoraRecollida(inici);
+        reserva.setDataHoraDevolucio(fi);
+        reserva.setActiu(true);
+        return reserva;
+    }
+
+    private static void omplir(Client client, String dni) {
+        client.setDni(dni);
+        client.setNombre("Nom " + dni);
+        client.setApellido("Cognom");
+        client.setEmail(dni.toLowerCase() + "@carconnect.cat");
+        client.setPassword("{noop}secret");
+    }
+}
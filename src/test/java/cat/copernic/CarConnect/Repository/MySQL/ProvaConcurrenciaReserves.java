@@ -0,0 +1,145 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
+import cat.copernic.CarConnect.Exceptions.ReservaSolapadaException;
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.Service.MySQL.DisponibilitatService;
+import cat.copernic.CarConnect.Service.MySQL.EmailService;
+import cat.copernic.CarConnect.Service.MySQL.HistoricOutbox;
+import cat.copernic.CarConnect.Service.MySQL.ReservaService;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Base de las pruebas que lanzan muchas peticiones a la vez contra el
+ * {@link ReservaService} real.
+ * <p>
+ * Sin la transacción de la prueba, para que cada llamada confirme la suya y
+ * el bloqueo de la fila del vehículo sea el que las ordena. El tiempo de
+ * espera de los bloqueos de H2 se sube para que ninguna falle por esperar.
+ * Las subclases pueden añadir beans con {@code @ContextConfiguration} y
+ * cambiar propiedades con {@code @TestPropertySource}.
+ * </p>
+ */
+@DataJpaTest(properties = {
+    ProvaJpaConfig.QUOTE_KEYWORDS,
+    "spring.datasource.url=jdbc:h2:mem:concurrencia;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+    "spring.datasource.driver-class-name=org.h2.Driver",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.datasource.hikari.maximum-pool-size=32"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = {ProvaJpaConfig.class, ReservaService.class, DisponibilitatService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public abstract class ProvaConcurrenciaReserves {
+
+    @Autowired
+    protected ReservaService reservaService;
+    @Autowired
+    protected ReservaRepository reservaRepository;
+    @Autowired
+    protected VehicleRepository vehicleRepository;
+    @Autowired
+    private DisponibilitatService disponibilitatService;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private LocalitzacioRepository localitzacioRepository;
+
+    @MockBean
+    private HistoricOutbox historicOutbox;
+    @MockBean
+    private CurrentUserResolver currentUserResolver;
+    @MockBean
+    private EmailService emailService;
+
+    protected Localitzacio localitzacio;
+    protected Client client;
+
+    @BeforeEach
+    void preparar() {
+        localitzacio = localitzacioRepository.save(DadesProva.localitzacio("08221"));
+        client = clientRepository.save(DadesProva.client("C0"));
+    }
+
+    @AfterEach
+    void netejar() {
+        // El índice de disponibilidad se comparte entre las pruebas
+        reservaRepository.findAll().forEach(reserva -> disponibilitatService.eliminar(reserva.getIdReserva()));
+        reservaRepository.deleteAll();
+        vehicleRepository.deleteAll();
+        clientRepository.deleteAll();
+        localitzacioRepository.deleteAll();
+    }
+
+    /**
+     * Cómo han acabado las tareas de {@link #executar}.
+     */
+    protected static final class Resultat {
+
+        private final AtomicInteger correctes = new AtomicInteger();
+        private final AtomicInteger solapades = new AtomicInteger();
+        private final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        public int correctes() {
+            return correctes.get();
+        }
+
+        public int solapades() {
+            return solapades.get();
+        }
+
+        public Queue<Throwable> errors() {
+            return errors;
+        }
+    }
+
+    /**
+     * Envía todas las tareas al ejecutor, que esperan a la misma señal de
+     * salida para empezar a la vez, como un pico de tráfico, y espera a que
+     * acaben. Cierra el ejecutor.
+     */
+    protected static Resultat executar(List<Callable<Void>> tasques, ExecutorService executor)
+            throws InterruptedException {
+        Resultat resultat = new Resultat();
+        CountDownLatch sortida = new CountDownLatch(1);
+        try {
+            for (Callable<Void> tasca : tasques) {
+                executor.execute(() -> {
+                    try {
+                        sortida.await();
+                        tasca.call();
+                        resultat.correctes.incrementAndGet();
+                    } catch (ReservaSolapadaException e) {
+                        resultat.solapades.incrementAndGet();
+                    } catch (Throwable e) {
+                        resultat.errors.add(e);
+                    }
+                });
+            }
+            sortida.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES), "Las peticiones no han acabado a tiempo");
+        return resultat;
+    }
+}
@@ -0,0 +1,26 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+/**
+ * Configuración de las pruebas con JPA sobre H2. La clase de la aplicación
+ * lleva un {@code @ComponentScan} sin filtros que cargaría todos los
+ * componentes (también MongoDB), así que las pruebas de JPA la indican con
+ * {@code @ContextConfiguration} y solo cargan las entidades y los
+ * repositorios de MySQL.
+ * <p>
+ * La propiedad {@link #QUOTE_KEYWORDS} hace que Hibernate ponga entre
+ * comillas los nombres de columna que son palabras reservadas en H2 (como
+ * {@code any}).
+ * </p>
+ */
+@Configuration(proxyBeanMethods = false)
+@EntityScan(basePackageClasses = Reserva.class)
+@EnableJpaRepositories(basePackageClasses = ReservaRepository.class)
+public class ProvaJpaConfig {
+
+    public static final String QUOTE_KEYWORDS = "spring.jpa.properties.hibernate.auto_quote_keyword=true";
+}
@@ -0,0 +1,54 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import cat.copernic.CarConnect.Security.CurrentUserResolver;
+import cat.copernic.CarConnect.Service.MySQL.DisponibilitatService;
+import cat.copernic.CarConnect.Service.MySQL.EmailService;
+import cat.copernic.CarConnect.Service.MySQL.EnviamentCorreus;
+import cat.copernic.CarConnect.Service.MySQL.HistoricOutbox;
+import cat.copernic.CarConnect.Service.MySQL.PlantillesCorreu;
+import cat.copernic.CarConnect.Service.MySQL.ReservaService;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.mail.MailSenderAutoConfiguration;
+import org.springframework.boot.autoconfigure.thymeleaf.ThymeleafAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Contexto de las pruebas de {@link ReservaService} con el histórico y la
+ * cola de correos reales: las plantillas de Thymeleaf y un
+ * {@code JavaMailSender} que envía al puerto de GreenMail
+ * ({@code ServerSetupTest.SMTP}).
+ * <p>
+ * Sin la transacción de la prueba, para que cada llamada confirme la suya y
+ * se ejecuten las acciones de después de confirmar. Todas las clases con
+ * esta anotación comparten el mismo contexto de Spring.
+ * </p>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@DataJpaTest(properties = {
+    ProvaJpaConfig.QUOTE_KEYWORDS,
+    "spring.mail.host=localhost",
+    "spring.mail.port=3025",
+    "spring.mail.username=",
+    "spring.mail.password=",
+    "spring.mail.properties.mail.smtp.auth=false",
+    "spring.mail.properties.mail.smtp.starttls.enable=false"})
+@ContextConfiguration(classes = {ProvaJpaConfig.class, ReservaService.class, DisponibilitatService.class,
+    HistoricOutbox.class, EmailService.class, PlantillesCorreu.class, EnviamentCorreus.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ThymeleafAutoConfiguration.class,
+    MailSenderAutoConfiguration.class})
+@MockBean(CurrentUserResolver.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public @interface ProvaReservesAmbCorreu {
+}
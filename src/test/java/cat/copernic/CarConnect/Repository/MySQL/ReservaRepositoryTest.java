@@ -0,0 +1,115 @@
+package cat.copernic.CarConnect.Repository.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import cat.copernic.CarConnect.Entity.MySQL.Agent;
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Localitzacio;
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDate;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+
+/**
+ * Pruebas del número de consultas de los listados de reservas: con cliente,
+ * vehículo, localización y agente cargados en la misma consulta, el número de
+ * sentencias no depende del tamaño de la flota.
+ */
+@DataJpaTest(properties = {ProvaJpaConfig.QUOTE_KEYWORDS, "spring.jpa.properties.hibernate.generate_statistics=true"})
+@ContextConfiguration(classes = ProvaJpaConfig.class)
+class ReservaRepositoryTest {
+
+    @Autowired
+    private ReservaRepository reservaRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Statistics estadistiques;
+
+    @BeforeEach
+    void preparar() {
+        estadistiques = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 40})
+    void lesReservesDUnaLocalitzacioEsCarreguenAmbUnaSolaConsulta(int vehicles) {
+        Localitzacio localitzacio = flota("08221", vehicles);
+
+        estadistiques.clear();
+        List<Reserva> reserves = reservaRepository.findByLocalitzacio(
+                entityManager.getReference(Localitzacio.class, localitzacio.getCodiPostal()));
+        recorrer(reserves);
+
+        assertEquals(2 * vehicles, reserves.size());
+        assertEquals(1, estadistiques.getPrepareStatementCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 5, 40})
+    void lesReservesDUnClientEsCarreguenAmbUnaSolaConsulta(int vehicles) {
+        flota("08221", vehicles);
+
+        estadistiques.clear();
+        List<Reserva> reserves = reservaRepository.findByClientDni("C0");
+        recorrer(reserves);
+
+        assertEquals(vehicles, reserves.size());
+        assertEquals(1, estadistiques.getPrepareStatementCount());
+    }
+
+    /**
+     * Crea una localización con su agente y una flota de vehículos, cada uno
+     * con una reserva de dos clientes. Al final vacía el contexto de
+     * persistencia para que las consultas vayan a la base de datos.
+     */
+    private Localitzacio flota(String codiPostal, int vehicles) {
+        Localitzacio localitzacio = DadesProva.localitzacio(codiPostal);
+        entityManager.persist(localitzacio);
+        Agent agent = DadesProva.agent("A0", localitzacio);
+        entityManager.persist(agent);
+        Client[] clients = {DadesProva.client("C0"), DadesProva.client("C1")};
+        for (Client client : clients) {
+            entityManager.persist(client);
+        }
+
+        LocalDate inici = LocalDate.of(2026, 1, 1);
+        for (int i = 0; i < vehicles; i++) {
+            Vehicle vehicle = DadesProva.vehicle("V" + i, localitzacio);
+            entityManager.persist(vehicle);
+            for (int c = 0; c < clients.length; c++) {
+                entityManager.persist(DadesProva.reserva(clients[c], vehicle,
+                        inici.plusDays(10L * c), inici.plusDays(10L * c + 3)));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return localitzacio;
+    }
+
+    /**
+     * Accede a las asociaciones que usan las vistas de reservas, para que una
+     * carga perezosa o un select por fila contaran como sentencias.
+     */
+    private static void recorrer(List<Reserva> reserves) {
+        for (Reserva reserva : reserves) {
+            reserva.getClient().getNombre();
+            reserva.getVehicle().getMarca();
+            Localitzacio localitzacio = reserva.getVehicle().getLocalitzacio();
+            localitzacio.getCiutat();
+            if (localitzacio.getAgent() != null) {
+                localitzacio.getAgent().getNombre();
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cat.copernic.CarConnect.Security;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authorization.AuthenticatedAuthorizationManager;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.security.web.access.intercept.RequestMatcherDelegatingAuthorizationManager;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+
+/**
+ * La cadena de {@code requestMatchers(...)} que {@link SecurityConfig}
+ * declaraba antes de {@link TaulaAutoritzacio}, con las mismas reglas en el
+ * mismo orden, como referencia para las pruebas. Cada regla es un
+ * {@link AntPathRequestMatcher} y se aplica la primera que encaja.
+ */
+final class CadenaRequestMatchers {
+
+    private static final String ADMIN = TipusPermis.ADMIN.toString();
+
+    private final List<RequestMatcher> matchers = new ArrayList<>();
+
+    private final RequestMatcherDelegatingAuthorizationManager.Builder builder
+            = RequestMatcherDelegatingAuthorizationManager.builder();
+
+    private final RequestMatcherDelegatingAuthorizationManager gestor;
+
+    CadenaRequestMatchers() {
+        permitAll("/", "/login/**", "/Registre/**", "/index");
+        permitAll("/styles/**", "/scripts/**");
+
+        hasAnyAuthority("/reservas/create", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/edit/**", TipusPermis.EDITAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/delete/**", TipusPermis.ELIMINAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/list", TipusPermis.LLISTAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas", TipusPermis.LLISTAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/calendari/**", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/selected/**", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/pagament", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/guardar", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+        hasAnyAuthority("/reservas/confirmacion", TipusPermis.CREAR_RESERVES.toString(), ADMIN);
+
+        hasAnyAuthority("/vehicles/create", TipusPermis.CREAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/edit/**", TipusPermis.EDITAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/return/**", TipusPermis.EDITAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/deliver/**", TipusPermis.EDITAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/delete/**", TipusPermis.ELIMINAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/list", TipusPermis.LLISTAR_VEHICLE.toString(), ADMIN);
+        hasAnyAuthority("/vehicles/models/**", TipusPermis.CREAR_VEHICLE.toString(), ADMIN);
+        permitAll("/vehicles/selected/**");
+        permitAll("/vehicles/disponibles");
+        permitAll("/vehicles/*/images/**");
+        hasAnyAuthority("/vehicles", TipusPermis.LLISTAR_VEHICLE.toString(), ADMIN);
+
+        hasAnyAuthority("/incidencias/create/**", TipusPermis.CREAR_INCIDENCIES.toString(), ADMIN);
+        hasAnyAuthority("/incidencias/edit/**", TipusPermis.EDITAR_INCIDENCIES.toString(), ADMIN);
+        hasAnyAuthority("/incidencias/desactivate/**", TipusPermis.ELIMINAR_INCIDENCIES.toString(), ADMIN);
+        hasAnyAuthority("/incidencias/list", TipusPermis.LLISTAR_INCIDENCIES.toString(), ADMIN);
+        hasAnyAuthority("/incidencias/**", TipusPermis.LLISTAR_INCIDENCIES.toString(), ADMIN);
+
+        hasAnyAuthority("/clients", TipusPermis.LLISTAR_CLIENT.toString(), ADMIN);
+        hasAnyAuthority("/clients/filter", TipusPermis.LLISTAR_CLIENT.toString(), ADMIN);
+        hasAnyAuthority("/clients/create", TipusPermis.CREAR_CLIENT.toString(), ADMIN);
+        hasAnyAuthority("/clients/edit/**", TipusPermis.EDITAR_CLIENT.toString(), ADMIN);
+        hasAnyAuthority("/clients/delete/**", TipusPermis.ELIMINAR_CLIENT.toString(), ADMIN);
+
+        hasAnyAuthority("/agents", TipusPermis.LLISTAR_AGENT.toString(), ADMIN);
+        hasAnyAuthority("/agents/filter", TipusPermis.LLISTAR_AGENT.toString(), ADMIN);
+        hasAnyAuthority("/agents/create", TipusPermis.CREAR_AGENT.toString(), ADMIN);
+        hasAnyAuthority("/agents/edit/**", TipusPermis.EDITAR_AGENT.toString(), ADMIN);
+        hasAnyAuthority("/agents/delete/**", TipusPermis.ELIMINAR_AGENT.toString(), ADMIN);
+
+        hasAnyAuthority("/historic/estadistiques/reagregar", ADMIN);
+        hasAnyAuthority("/historic/**", TipusPermis.HISTORIC_INCIDENCIES.toString(),
+                TipusPermis.HISTORIC_RESERVES.toString(), ADMIN);
+
+        hasAnyAuthority("/**", ADMIN);
+
+        builder.add(AnyRequestMatcher.INSTANCE, AuthenticatedAuthorizationManager.authenticated());
+        gestor = builder.build();
+    }
+
+    /**
+     * El gestor de autorización equivalente a la cadena.
+     */
+    AuthorizationManager<HttpServletRequest> gestor() {
+        return gestor;
+    }
+
+    /**
+     * El índice de la primera regla que encaja con una ruta, o
+     * {@link Integer#MAX_VALUE} si solo encaja {@code anyRequest()}.
+     */
+    int regla(String cami) {
+        MockHttpServletRequest request = peticio(cami);
+        for (int i = 0; i < matchers.size(); i++) {
+            if (matchers.get(i).matches(request)) {
+                return i;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Una petición GET a una ruta de la aplicación.
+     */
+    static MockHttpServletRequest peticio(String cami) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", cami);
+        request.setServletPath(cami);
+        return request;
+    }
+
+    private void permitAll(String... patrons) {
+        afegir((a, context) -> new AuthorizationDecision(true), patrons);
+    }
+
+    private void hasAnyAuthority(String patro, String... autoritats) {
+        afegir(AuthorityAuthorizationManager.hasAnyAuthority(autoritats), patro);
+    }
+
+    private void afegir(AuthorizationManager<RequestAuthorizationContext> manager, String... patrons) {
+        List<RequestMatcher> perPatro = new ArrayList<>();
+        for (String patro : patrons) {
+            perPatro.add(new AntPathRequestMatcher(patro));
+        }
+        RequestMatcher matcher = perPatro.size() == 1 ? perPatro.get(0) : new OrRequestMatcher(perPatro);
+        matchers.add(matcher);
+        builder.add(matcher, manager);
+    }
+}
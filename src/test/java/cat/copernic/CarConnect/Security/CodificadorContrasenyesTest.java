@@ -0,0 +1,70 @@
+package cat.copernic.CarConnect.Security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Exceptions.ServeiSaturatException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Pruebas de la espera máxima del ejecutor de BCrypt.
+ */
+class CodificadorContrasenyesTest {
+
+    private static final int COST = 12;
+
+    private final String hash = new BCryptPasswordEncoder(COST).encode("contrasenya");
+
+    private CodificadorContrasenyes codificador;
+
+    @AfterEach
+    void netejar() {
+        if (codificador != null) {
+            codificador.shutdown();
+        }
+    }
+
+    @Test
+    void ambTempsSuficientCompara() {
+        codificador = new CodificadorContrasenyes(COST, 1, 4, Duration.ofSeconds(30), Duration.ofSeconds(1));
+
+        assertTrue(codificador.matches("contrasenya", hash));
+        assertFalse(codificador.matches("una altra", hash));
+    }
+
+    @Test
+    void lesTasquesQueNinguEsperaSurtenDeLaCua() throws Exception {
+        // Espera máxima mucho más corta que un cálculo: todas las peticiones se rechazan
+        codificador = new CodificadorContrasenyes(COST, 1, 16, Duration.ofMillis(5), Duration.ofSeconds(1));
+        int peticions = 8;
+        ExecutorService clients = Executors.newFixedThreadPool(peticions);
+        try {
+            List<Future<?>> respostes = new ArrayList<>();
+            for (int i = 0; i < peticions; i++) {
+                respostes.add(clients.submit(() -> codificador.matches("contrasenya", hash)));
+            }
+            for (Future<?> resposta : respostes) {
+                Exception e = assertThrows(Exception.class, resposta::get);
+                assertTrue(e.getCause() instanceof ServeiSaturatException, String.valueOf(e.getCause()));
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        CodificadorContrasenyes.Estat estat = codificador.estat();
+        assertEquals(peticions, estat.rebutjades());
+        // Cada petición rechazada ha sacado su tarea de la cola: sin eso el hilo
+        // calcularía las ocho, una tras otra, aunque nadie esperara el resultado
+        assertEquals(0, estat.enCua());
+    }
+}
@@ -0,0 +1,124 @@
+package cat.copernic.CarConnect.Security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Repository.MySQL.DadesProva;
+import cat.copernic.CarConnect.Security.CurrentUserResolver.UsuariActual;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Pruebas de la caché de usuarios de {@link CurrentUserResolver}.
+ */
+class CurrentUserResolverTest {
+
+    private static final String EMAIL = "c1@carconnect.cat";
+
+    private final ClientRepository clientRepository = mock(ClientRepository.class);
+
+    private CurrentUserResolver resolver;
+
+    @BeforeEach
+    void preparar() {
+        resolver = new CurrentUserResolver();
+        ReflectionTestUtils.setField(resolver, "clientRepository", clientRepository);
+        ReflectionTestUtils.setField(resolver, "ttl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(resolver, "midaMaxima", 100);
+        retornar(TipusPermis.CREAR_RESERVES);
+    }
+
+    @Test
+    void dinsDelTtlNomesEsConsultaUnCop() {
+        UsuariActual primer = resolver.resoldre(EMAIL).orElseThrow();
+        UsuariActual segon = resolver.resoldre(EMAIL).orElseThrow();
+
+        assertSame(primer, segon);
+        assertEquals("C1", primer.dni());
+        verify(clientRepository, times(1)).findFirstByEmail(EMAIL);
+    }
+
+    @Test
+    void unaFotoCaducadaEsTornaACarregar() throws InterruptedException {
+        ReflectionTestUtils.setField(resolver, "ttl", Duration.ofMillis(20));
+        resolver.resoldre(EMAIL);
+        retornar(TipusPermis.ADMIN);
+
+        Thread.sleep(50);
+
+        assertTrue(resolver.resoldre(EMAIL).orElseThrow().hasPermis(TipusPermis.ADMIN));
+        verify(clientRepository, times(2)).findFirstByEmail(EMAIL);
+    }
+
+    @Test
+    void invalidarEsborraLaFotoDelUsuari() {
+        resolver.resoldre(EMAIL);
+        retornar(TipusPermis.ADMIN);
+
+        resolver.invalidar("C1");
+
+        assertTrue(resolver.resoldre(EMAIL).orElseThrow().hasPermis(TipusPermis.ADMIN));
+        verify(clientRepository, times(2)).findFirstByEmail(EMAIL);
+    }
+
+    @Test
+    void dinsDUnaTransaccioEsTornaAInvalidarAlConfirmar() {
+        resolver.resoldre(EMAIL);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            resolver.invalidar("C1");
+            // Otra petición vuelve a cargar los datos antiguos antes de la confirmación
+            resolver.resoldre(EMAIL);
+            retornar(TipusPermis.ADMIN);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(resolver.resoldre(EMAIL).orElseThrow().hasPermis(TipusPermis.ADMIN));
+        verify(clientRepository, times(3)).findFirstByEmail(EMAIL);
+    }
+
+    @Test
+    void unUsuariQueNoExisteNoEsGuarda() {
+        when(clientRepository.findFirstByEmail("no@carconnect.cat")).thenReturn(Optional.empty());
+
+        assertFalse(resolver.resoldre("no@carconnect.cat").isPresent());
+        assertFalse(resolver.resoldre("no@carconnect.cat").isPresent());
+        verify(clientRepository, times(2)).findFirstByEmail("no@carconnect.cat");
+    }
+
+    @Test
+    void laCacheNoPassaDeLaMidaMaxima() {
+        ReflectionTestUtils.setField(resolver, "midaMaxima", 10);
+        for (int i = 0; i < 25; i++) {
+            resolver.registrar(DadesProva.client("D" + i));
+        }
+
+        Map<?, ?> cache = (Map<?, ?>) ReflectionTestUtils.getField(resolver, "cache");
+        assertTrue(cache.size() <= 10, () -> cache.size() + " entradas");
+    }
+
+    private void retornar(TipusPermis permis) {
+        Client client = DadesProva.client("C1");
+        client.setPermisos(Set.of(permis));
+        when(clientRepository.findFirstByEmail(EMAIL)).thenReturn(Optional.of(client));
+    }
+}
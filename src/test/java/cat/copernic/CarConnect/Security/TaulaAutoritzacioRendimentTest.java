@@ -0,0 +1,116 @@
+package cat.copernic.CarConnect.Security;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+/**
+ * Medida del tiempo de decisión de {@link TaulaAutoritzacio} frente a la
+ * cadena de {@code requestMatchers(...)} a la que sustituye
+ * ({@link CadenaRequestMatchers}), con una mezcla de peticiones parecida a la
+ * real: sobre todo recursos estáticos e imágenes de vehículos, y después
+ * listados, calendarios y el histórico.
+ * <p>
+ * Cada ronda decide toda la mezcla con los dos gestores y se queda con la
+ * mejor ronda de cada uno, después de un calentamiento para que el JIT
+ * compile los dos caminos. Los tiempos se escriben en la salida de la prueba.
+ * </p>
+ * <p>
+ * Mide tiempo real, así que depende de la máquina: no se ejecuta con
+ * {@code mvn test}, sino con el perfil {@code rendiment}
+ * ({@code mvn test -Prendiment}).
+ * </p>
+ */
+@Tag("rendiment")
+class TaulaAutoritzacioRendimentTest {
+
+    private static final int PETICIONS = 1024;
+    private static final int ESCALFAMENT = 200;
+    private static final int RONDES = 50;
+
+    private static volatile int resultat; // Evita que el JIT elimine las decisiones
+
+    @Test
+    void laTaulaDecideixMesRapidQueLaCadena() {
+        RequestAuthorizationContext[] peticions = barreja();
+        Authentication usuari = TaulaAutoritzacioTest.usuari(TipusPermis.LLISTAR_RESERVES, TipusPermis.CREAR_RESERVES,
+                TipusPermis.LLISTAR_VEHICLE, TipusPermis.HISTORIC_RESERVES);
+        Supplier<Authentication> autenticacio = () -> usuari;
+
+        TaulaAutoritzacio taula = new SecurityConfig().taulaAutoritzacio();
+        AuthorizationManager<HttpServletRequest> cadena = new CadenaRequestMatchers().gestor();
+
+        for (int i = 0; i < ESCALFAMENT; i++) {
+            decidirTaula(taula, autenticacio, peticions);
+            decidirCadena(cadena, autenticacio, peticions);
+        }
+        long millorTaula = Long.MAX_VALUE;
+        long millorCadena = Long.MAX_VALUE;
+        for (int i = 0; i < RONDES; i++) {
+            millorTaula = Math.min(millorTaula, decidirTaula(taula, autenticacio, peticions));
+            millorCadena = Math.min(millorCadena, decidirCadena(cadena, autenticacio, peticions));
+        }
+
+        System.out.printf("Autorización de %d peticiones: tabla %d ns/petición, cadena %d ns/petición%n",
+                PETICIONS, millorTaula / PETICIONS, millorCadena / PETICIONS);
+        assertTrue(millorTaula < millorCadena,
+                "tabla " + millorTaula + " ns, cadena " + millorCadena + " ns");
+    }
+
+    private static long decidirTaula(TaulaAutoritzacio taula, Supplier<Authentication> autenticacio,
+            RequestAuthorizationContext[] peticions) {
+        int permeses = 0;
+        long inici = System.nanoTime();
+        for (RequestAuthorizationContext peticio : peticions) {
+            if (taula.check(autenticacio, peticio).isGranted()) {
+                permeses++;
+            }
+        }
+        long temps = System.nanoTime() - inici;
+        resultat += permeses;
+        return temps;
+    }
+
+    private static long decidirCadena(AuthorizationManager<HttpServletRequest> cadena,
+            Supplier<Authentication> autenticacio, RequestAuthorizationContext[] peticions) {
+        int permeses = 0;
+        long inici = System.nanoTime();
+        for (RequestAuthorizationContext peticio : peticions) {
+            if (cadena.check(autenticacio, peticio.getRequest()).isGranted()) {
+                permeses++;
+            }
+        }
+        long temps = System.nanoTime() - inici;
+        resultat += permeses;
+        return temps;
+    }
+
+    /**
+     * Mezcla de peticiones: la mitad recursos estáticos e imágenes, y el resto
+     * repartido entre las demás rutas de la aplicación.
+     */
+    private static RequestAuthorizationContext[] barreja() {
+        List<String> estatics = List.of("/styles/main.css", "/scripts/calendari.js",
+                "/vehicles/1234ABC/images/primary", "/vehicles/5678DEF/images/primary/miniatura");
+        List<String> rutes = TaulaAutoritzacioTest.RUTES;
+        Random random = new Random(11);
+
+        RequestAuthorizationContext[] peticions = new RequestAuthorizationContext[PETICIONS];
+        for (int i = 0; i < PETICIONS; i++) {
+            String cami = random.nextBoolean()
+                    ? estatics.get(random.nextInt(estatics.size()))
+                    : rutes.get(random.nextInt(rutes.size()));
+            peticions[i] = new RequestAuthorizationContext(CadenaRequestMatchers.peticio(cami));
+        }
+        return peticions;
+    }
+}
@@ -0,0 +1,159 @@
+package cat.copernic.CarConnect.Security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.TipusPermis;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+
+/**
+ * Pruebas de que {@link TaulaAutoritzacio} aplica las mismas reglas que la
+ * cadena de {@code requestMatchers(...)} a la que sustituye
+ * ({@link CadenaRequestMatchers}).
+ */
+class TaulaAutoritzacioTest {
+
+    /**
+     * Rutas de la aplicación, como las piden los navegadores.
+     */
+    static final List<String> RUTES = List.of(
+            "/", "/index", "/login", "/login/error", "/Registre", "/Registre/client",
+            "/styles/main.css", "/styles/fonts/roboto.woff2", "/scripts/calendari.js",
+            "/reservas", "/reservas/list", "/reservas/create", "/reservas/edit/42", "/reservas/delete/42",
+            "/reservas/calendari/1234ABC", "/reservas/selected/1234ABC", "/reservas/pagament",
+            "/reservas/guardar", "/reservas/confirmacion", "/reservas/return/42", "/reservas/deliver/42",
+            "/reservas/search", "/reservas/cancelar", "/reservas/error", "/reservas/inici-reserva",
+            "/vehicles", "/vehicles/list", "/vehicles/create", "/vehicles/edit/1234ABC",
+            "/vehicles/delete/1234ABC", "/vehicles/return/1234ABC", "/vehicles/deliver/1234ABC",
+            "/vehicles/models/Seat", "/vehicles/selected/1234ABC", "/vehicles/disponibles",
+            "/vehicles/1234ABC/images/primary", "/vehicles/1234ABC/images/primary/miniatura",
+            "/vehicles/edit/images/primary", "/vehicles/images", "/vehicles/activate/1234ABC",
+            "/incidencias", "/incidencias/list", "/incidencias/create/1234ABC", "/incidencias/edit/7",
+            "/incidencias/desactivate/7", "/incidencias/7/documents/65a1b2c3d4e5f6a7b8c9d0e1",
+            "/clients", "/clients/filter", "/clients/create", "/clients/edit/12345678Z",
+            "/clients/delete/12345678Z", "/clients/12345678Z/documents/65a1b2c3d4e5f6a7b8c9d0e1",
+            "/agents", "/agents/filter", "/agents/create", "/agents/edit/12345678Z", "/agents/delete/12345678Z",
+            "/historic", "/historic/informe", "/historic/informe-reservas", "/historic/estadistiques",
+            "/historic/estadistiques/reagregar", "/historic/historic-incidencies",
+            "/localitzacions", "/localitzacions/edit/08001", "/estat/fils-virtuals", "/files/17",
+            "/documentacio-client/12345678Z", "/error", "/contrasenyes",
+            "/reservas/list/", "/vehicles//images/primary", "/login/", "/historic/");
+
+    private final TaulaAutoritzacio taula = new SecurityConfig().taulaAutoritzacio();
+
+    private final CadenaRequestMatchers cadena = new CadenaRequestMatchers();
+
+    @Test
+    void lesRutesDeLAplicacioTrobenLaMateixaRegla() {
+        for (String cami : RUTES) {
+            assertEquals(cadena.regla(cami), taula.regla(cami), cami);
+        }
+    }
+
+    @Test
+    void lesRutesAleatoriesTrobenLaMateixaRegla() {
+        String[] segments = {"reservas", "vehicles", "incidencias", "clients", "agents", "historic",
+            "login", "styles", "images", "primary", "edit", "list", "create", "delete", "selected",
+            "estadistiques", "reagregar", "1234ABC", "42", "*", "index", "Registre"};
+        Random random = new Random(7);
+
+        for (int i = 0; i < 5_000; i++) {
+            StringBuilder cami = new StringBuilder();
+            int llargada = random.nextInt(5);
+            for (int j = 0; j < llargada; j++) {
+                cami.append('/').append(segments[random.nextInt(segments.length)]);
+            }
+            String ruta = cami.isEmpty() ? "/" : cami.toString();
+            assertEquals(cadena.regla(ruta), taula.regla(ruta), ruta);
+        }
+    }
+
+    @Test
+    void lesDecisionsCoincideixenPerACadaUsuari() {
+        List<Authentication> usuaris = List.of(
+                new AnonymousAuthenticationToken("clau", "anonymousUser",
+                        AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")),
+                usuari(),
+                usuari(TipusPermis.CREAR_RESERVES),
+                usuari(TipusPermis.LLISTAR_VEHICLE, TipusPermis.EDITAR_VEHICLE),
+                usuari(TipusPermis.HISTORIC_RESERVES),
+                usuari(TipusPermis.LLISTAR_CLIENT, TipusPermis.LLISTAR_AGENT, TipusPermis.LLISTAR_INCIDENCIES),
+                usuari(TipusPermis.ADMIN));
+
+        for (Authentication usuari : usuaris) {
+            for (String cami : RUTES) {
+                MockHttpServletRequest request = CadenaRequestMatchers.peticio(cami);
+                boolean esperat = cadena.gestor().check(() -> usuari, request).isGranted();
+                boolean decidit = taula.check(() -> usuari, new RequestAuthorizationContext(request)).isGranted();
+                assertEquals(esperat, decidit, cami + " " + usuari.getAuthorities());
+            }
+        }
+    }
+
+    @Test
+    void unClientDecideixPelsSeusPermisos() {
+        Client client = new Client(); // Con los permisos por defecto de un cliente
+        Authentication usuari = UsernamePasswordAuthenticationToken.authenticated(client, null, client.getAuthorities());
+
+        for (String cami : List.of("/reservas/list", "/reservas/create", "/reservas/calendari/1234ABC",
+                "/vehicles/selected/1234ABC", "/vehicles/1234ABC/images/primary")) {
+            assertTrue(decidir(usuari, cami), cami);
+        }
+        for (String cami : List.of("/reservas/edit/42", "/reservas/delete/42", "/vehicles/list", "/clients",
+                "/agents", "/historic/informe", "/estat/fils-virtuals")) {
+            assertFalse(decidir(usuari, cami), cami);
+        }
+    }
+
+    @Test
+    void elPrincipalILesAutoritatsDonenLaMateixaDecisio() {
+        for (TipusPermis permis : TipusPermis.values()) {
+            Client client = new Client();
+            client.setPermisos(Set.of(permis));
+            // Con el usuario como principal se lee su máscara; sin él, las autoridades Permis
+            Authentication ambUsuari = UsernamePasswordAuthenticationToken.authenticated(client, null,
+                    client.getAuthorities());
+            Authentication nomesAutoritats = UsernamePasswordAuthenticationToken.authenticated("usuari", null,
+                    client.getAuthorities());
+
+            for (String cami : RUTES) {
+                assertEquals(decidir(ambUsuari, cami), decidir(nomesAutoritats, cami), permis + " " + cami);
+            }
+        }
+        Client admin = new Client();
+        admin.setPermisos(Set.of(TipusPermis.ADMIN));
+        Authentication usuari = UsernamePasswordAuthenticationToken.authenticated(admin, null, admin.getAuthorities());
+        // ADMIN abre todas las rutas, también las que solo encajan con "/**"
+        for (String cami : RUTES) {
+            assertTrue(decidir(usuari, cami), cami);
+        }
+    }
+
+    @Test
+    void elComodiDobleNomesEsPermetAlFinal() {
+        assertThrows(IllegalArgumentException.class, () -> new TaulaAutoritzacio().permetre("/a/**/b"));
+        assertThrows(IllegalArgumentException.class, () -> new TaulaAutoritzacio().permetre("a/b"));
+    }
+
+    private boolean decidir(Authentication usuari, String cami) {
+        return taula.check(() -> usuari, new RequestAuthorizationContext(CadenaRequestMatchers.peticio(cami)))
+                .isGranted();
+    }
+
+    static Authentication usuari(TipusPermis... permisos) {
+        return UsernamePasswordAuthenticationToken.authenticated("usuari", null,
+                Permis.deMascara(TipusPermis.mascara(Set.of(permisos))));
+    }
+}
@@ -0,0 +1,245 @@
+package cat.copernic.CarConnect.Service.MongoDB;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import cat.copernic.CarConnect.Entity.MongoDB.AportacioReserva;
+import cat.copernic.CarConnect.Entity.MongoDB.EstadisticaDiariaReserves;
+import cat.copernic.CarConnect.Entity.MongoDB.HistoricReserves;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Pruebas de los agregados diarios de reservas. El {@link MongoTemplate} es
+ * un doble en memoria que aplica los {@code $inc} de los documentos diarios y
+ * guarda las aportaciones de cada reserva, así que las pruebas recorren el
+ * mismo código que en producción.
+ */
+class EstadistiquesReservesServiceTest {
+
+    private final LocalDate dia = LocalDate.of(2026, 7, 1);
+
+    private final Map<String, Document> diaris = new TreeMap<>();
+    private final Map<Long, AportacioReserva> aportacions = new TreeMap<>();
+    private final List<HistoricReserves> historic = new ArrayList<>();
+
+    private EstadistiquesReservesService service;
+
+    @BeforeEach
+    void preparar() {
+        service = new EstadistiquesReservesService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoEnMemoria());
+        ReflectionTestUtils.setField(service, "vehicleRepository", mock(VehicleRepository.class));
+    }
+
+    @Test
+    void unaReservaNovaAportaLaReservaIElPreuRepartitPerDies() {
+        service.aplicar(List.of(event(1L, "CREADA", "1234ABC", dia, dia.plusDays(3), 90)));
+
+        assertEquals(3, diaris.size());
+        assertEquals(List.of(1L, 0L, 0L), valors("reserves"));
+        assertEquals(List.of(1L, 1L, 1L), valors("diesUtilitzacio"));
+        assertEquals(List.of(30.0, 30.0, 30.0), valors("ingressos"));
+        assertEquals(List.of(dia, dia.plusDays(1), dia.plusDays(2)), dies());
+    }
+
+    @Test
+    void unaReservaDUnSolDiaOcupaElDiaDeRecollida() {
+        service.aplicar(List.of(event(1L, "CREADA", "1234ABC", dia, dia, 40)));
+
+        assertEquals(List.of(dia), dies());
+        assertEquals(List.of(40.0), valors("ingressos"));
+    }
+
+    @Test
+    void unaModificacioTreuElQueAportavaISumaElNou() {
+        service.aplicar(List.of(event(1L, "CREADA", "1234ABC", dia, dia.plusDays(3), 90)));
+        service.aplicar(List.of(event(1L, "MODIFICADA", "5678DEF", dia.plusDays(2), dia.plusDays(4), 100)));
+
+        // Los días que se quedan sin reservas no se guardan
+        assertEquals(List.of(dia.plusDays(2), dia.plusDays(3)), dies());
+        assertTrue(diaris.values().stream().allMatch(diari -> "5678DEF".equals(diari.getString("vehicleId"))));
+        assertEquals(List.of(50.0, 50.0), valors("ingressos"));
+        assertEquals(List.of(1L, 0L), valors("reserves"));
+    }
+
+    @Test
+    void unaReservaCancelladaOEliminadaJaNoAporta() {
+        service.aplicar(List.of(event(1L, "CREADA", "1234ABC", dia, dia.plusDays(3), 90),
+                event(2L, "CREADA", "1234ABC", dia.plusDays(5), dia.plusDays(6), 20)));
+        service.aplicar(List.of(event(1L, "CANCELADA", "1234ABC", dia, dia.plusDays(3), 90)));
+        service.aplicar(List.of(event(2L, "ELIMINADA", "1234ABC", dia.plusDays(5), dia.plusDays(6), 20)));
+
+        assertTrue(diaris.isEmpty(), () -> "Quedan agregados: " + diaris);
+        assertFalse(aportacions.get(1L).isActiva());
+        assertFalse(aportacions.get(2L).isActiva());
+    }
+
+    @Test
+    void elPreuEsReparteixEntreMesosSegonsElsDiesDeCadaMes() {
+        LocalDate finalDeJuny = LocalDate.of(2026, 6, 29);
+        service.aplicar(List.of(event(1L, "CREADA", "1234ABC", finalDeJuny, finalDeJuny.plusDays(4), 200)));
+
+        Map<YearMonth, Double> perMes = new TreeMap<>();
+        for (Document diari : diaris.values()) {
+            perMes.merge(YearMonth.from((LocalDate) diari.get("dia")), diari.getDouble("ingressos"), Double::sum);
+        }
+        assertEquals(Map.of(YearMonth.of(2026, 6), 100.0, YearMonth.of(2026, 7), 100.0), perMes);
+    }
+
+    @Test
+    void tornarAAplicarElMateixLotNoComptaDuesVegades() {
+        List<HistoricReserves> lot = List.of(event(1L, "CREADA", "1234ABC", dia, dia.plusDays(3), 90),
+                event(1L, "MODIFICADA", "1234ABC", dia, dia.plusDays(2), 60),
+                event(2L, "CREADA", "5678DEF", dia, dia.plusDays(1), 25));
+        service.aplicar(lot);
+        Map<String, Document> abans = copia(diaris);
+
+        service.aplicar(lot);
+        // Un evento anterior al último aplicado tampoco cuenta
+        service.aplicar(List.of(lot.getFirst()));
+
+        assertEquals(abans, diaris);
+    }
+
+    @Test
+    void reagregarDonaElMateixQueAplicarElsEventsPerLots() {
+        Random random = new Random(3);
+        List<HistoricReserves> events = new ArrayList<>();
+        String[] estats = {"CREADA", "MODIFICADA", "MODIFICADA", "LLIURADA", "CANCELADA", "ELIMINADA"};
+        for (int i = 0; i < 1_200; i++) {
+            long reserva = random.nextInt(150);
+            LocalDate inici = dia.plusDays(random.nextInt(90));
+            events.add(event(reserva, estats[random.nextInt(estats.length)], "V" + random.nextInt(12),
+                    inici, inici.plusDays(random.nextInt(10)), 10 + random.nextInt(500)));
+        }
+        // Lotes de tamaños distintos, como los que publica PublicadorHistoric
+        for (int i = 0; i < events.size();) {
+            int fi = Math.min(events.size(), i + 1 + random.nextInt(40));
+            service.aplicar(events.subList(i, fi));
+            i = fi;
+        }
+        Map<String, Document> incremental = arrodonits(diaris);
+
+        diaris.put("residu", new Document("reserves", 7L)); // El recálculo empieza desde cero
+        service.reagregar();
+
+        assertFalse(service.isReagregant());
+        assertEquals(incremental, arrodonits(diaris));
+    }
+
+    private HistoricReserves event(Long reservaId, String estat, String vehicleId, LocalDate inici, LocalDate fi,
+            double preu) {
+        HistoricReserves event = new HistoricReserves();
+        event.setId(new ObjectId().toHexString()); // Los ObjectId crecen con cada evento
+        event.setReservaId(reservaId);
+        event.setStatus(estat);
+        event.setVehicleId(vehicleId);
+        event.setCodiPostal("08221");
+        event.setTipusVehicle("COTXE");
+        event.setStartDate(inici);
+        event.setEndDate(fi);
+        event.setTotalPrice(preu);
+        historic.add(event);
+        return event;
+    }
+
+    private List<Object> valors(String camp) {
+        return diaris.values().stream().map(diari -> diari.get(camp)).toList();
+    }
+
+    private List<LocalDate> dies() {
+        return diaris.values().stream().map(diari -> (LocalDate) diari.get("dia")).toList();
+    }
+
+    private static Map<String, Document> copia(Map<String, Document> diaris) {
+        Map<String, Document> copia = new TreeMap<>();
+        diaris.forEach((clau, diari) -> copia.put(clau, new Document(diari)));
+        return copia;
+    }
+
+    /**
+     * Los ingresos se suman en otro orden, así que se comparan al céntimo.
+     */
+    private static Map<String, Document> arrodonits(Map<String, Document> diaris) {
+        Map<String, Document> arrodonits = copia(diaris);
+        arrodonits.values().forEach(diari -> diari.put("ingressos", Math.round(diari.getDouble("ingressos") * 100)));
+        return arrodonits;
+    }
+
+    /**
+     * Doble del MongoTemplate con las operaciones que usa el servicio.
+     */
+    private MongoTemplate mongoEnMemoria() {
+        MongoTemplate mongo = mock(MongoTemplate.class);
+        when(mongo.find(any(Query.class), eq(AportacioReserva.class)))
+                .thenAnswer(invocacio -> new ArrayList<>(aportacions.values()));
+        when(mongo.stream(any(Query.class), eq(HistoricReserves.class)))
+                .thenAnswer(invocacio -> new ArrayList<>(historic).stream());
+
+        BulkOperations bulkDiaris = mock(BulkOperations.class);
+        when(bulkDiaris.upsert(any(Query.class), any(Update.class))).thenAnswer(invocacio -> {
+            Query query = invocacio.getArgument(0);
+            Update update = invocacio.getArgument(1);
+            Document inc = update.getUpdateObject().get("$inc", Document.class);
+            Document diari = diaris.computeIfAbsent(query.getQueryObject().getString("_id"),
+                    clau -> new Document(update.getUpdateObject().get("$setOnInsert", Document.class))
+                            .append("reserves", 0L).append("ingressos", 0.0).append("diesUtilitzacio", 0L));
+            diari.put("reserves", diari.getLong("reserves") + ((Number) inc.get("reserves")).longValue());
+            diari.put("ingressos", diari.getDouble("ingressos") + ((Number) inc.get("ingressos")).doubleValue());
+            diari.put("diesUtilitzacio", diari.getLong("diesUtilitzacio")
+                    + ((Number) inc.get("diesUtilitzacio")).longValue());
+            return bulkDiaris;
+        });
+        when(mongo.bulkOps(any(BulkOperations.BulkMode.class), eq(EstadisticaDiariaReserves.class)))
+                .thenReturn(bulkDiaris);
+
+        BulkOperations bulkAportacions = mock(BulkOperations.class);
+        when(bulkAportacions.replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class)))
+                .thenAnswer(invocacio -> {
+                    AportacioReserva aportacio = invocacio.getArgument(1);
+                    aportacions.put(aportacio.getReservaId(), aportacio);
+                    return bulkAportacions;
+                });
+        when(mongo.bulkOps(any(BulkOperations.BulkMode.class), eq(AportacioReserva.class)))
+                .thenReturn(bulkAportacions);
+
+        doAnswer(invocacio -> {
+            Query query = invocacio.getArgument(0);
+            if (query.getQueryObject().isEmpty()) {
+                diaris.clear();
+            } else {
+                diaris.values().removeIf(diari -> diari.getLong("reserves") == 0
+                        && diari.getLong("diesUtilitzacio") == 0);
+            }
+            return null;
+        }).when(mongo).remove(any(Query.class), eq(EstadisticaDiariaReserves.class));
+        doAnswer(invocacio -> {
+            aportacions.clear();
+            return null;
+        }).when(mongo).remove(any(Query.class), eq(AportacioReserva.class));
+        return mongo;
+    }
+}
@@ -0,0 +1,143 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.DiagnosticFilsVirtuals;
+import cat.copernic.CarConnect.DiagnosticFilsVirtuals.Fixacio;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Repository.MySQL.DadesProva;
+import cat.copernic.CarConnect.Repository.MySQL.ProvaConcurrenciaReserves;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Prueba de carga del flujo de reservas con los hilos de Tomcat (un pool de
+ * 200 hilos de plataforma, el valor por defecto) y con un hilo virtual por
+ * petición ({@code spring.threads.virtual.enabled=true}).
+ * <p>
+ * Cada modo recibe de golpe la misma mezcla de peticiones sobre el
+ * {@link ReservaService} real y su índice de disponibilidad: calendarios,
+ * consultas de disponibilidad, reservas solapadas de un periodo y reservas
+ * nuevas (que bloquean la fila del vehículo). Los dos modos deben acabar
+ * todas las peticiones sin errores y con las mismas reservas ganadas, y
+ * {@link DiagnosticFilsVirtuals} no debe registrar ningún hilo virtual fijado
+ * en nuestro código. El rendimiento de cada modo se escribe en la salida de
+ * la prueba.
+ * </p>
+ * <p>
+ * La base de datos es H2 en memoria, así que las esperas son mucho más cortas
+ * que con MySQL: los números sirven para comparar los dos modos en la misma
+ * máquina, no como capacidad del servidor. No se ejecuta con
+ * {@code mvn test}, sino con el perfil {@code rendiment}
+ * ({@code mvn test -Prendiment}).
+ * </p>
+ */
+@Tag("rendiment")
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:carrega;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000",
+    "spring.threads.virtual.enabled=true",
+    "carconnect.fils-virtuals.diagnostic.llindar=PT0.001S"})
+@ContextConfiguration(classes = DiagnosticFilsVirtuals.class)
+class CarregaFilsVirtualsTest extends ProvaConcurrenciaReserves {
+
+    private static final int PETICIONS = 4_000;
+    private static final int VEHICLES = 40;
+    private static final int FILS_TOMCAT = 200;
+
+    @Autowired
+    private DiagnosticFilsVirtuals diagnostic;
+
+    @Test
+    void elFluxDeReservesAguantaLaMateixaCarregaAmbFilsDePlataformaIVirtuals() throws Exception {
+        if (!diagnostic.isActiu()) {
+            diagnostic.iniciar(); // En la aplicación lo hace ApplicationReadyEvent
+        }
+        assertTrue(diagnostic.isActiu(), "El diagnóstico de hilos virtuales no se ha iniciado");
+
+        // Una ronda de calentamiento para que el JIT no penalice al primer modo.
+        // Vehículos distintos en cada ronda: el índice de disponibilidad se conserva
+        executar("de plataforma (calentamiento)", "E", Executors.newFixedThreadPool(FILS_TOMCAT));
+        Ronda virtuals = executar("virtuales", "V", Executors.newVirtualThreadPerTaskExecutor());
+        Ronda plataforma = executar("de plataforma", "P", Executors.newFixedThreadPool(FILS_TOMCAT));
+
+        for (Ronda ronda : List.of(virtuals, plataforma)) {
+            Resultat resultat = ronda.resultat();
+            assertTrue(resultat.errors().isEmpty(), () -> "Errores inesperados: " + resultat.errors());
+            assertEquals(PETICIONS, resultat.correctes() + resultat.solapades());
+        }
+        assertEquals(virtuals.reservades(), plataforma.reservades());
+
+        Thread.sleep(1_500); // El stream de JFR entrega los eventos por bloques
+        List<Fixacio> nostres = diagnostic.fixacions().stream()
+                .filter(fixacio -> fixacio.origen().startsWith("cat.copernic."))
+                .toList();
+        assertTrue(nostres.isEmpty(), () -> "Hilos virtuales fijados en nuestro código: " + nostres);
+    }
+
+    private record Ronda(Resultat resultat, int reservades) {
+    }
+
+    /**
+     * Envía la mezcla de peticiones al ejecutor sobre vehículos nuevos con el
+     * prefijo indicado.
+     */
+    private Ronda executar(String mode, String prefix, ExecutorService executor) throws InterruptedException {
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < VEHICLES; i++) {
+            vehicles.add(vehicleRepository.save(DadesProva.vehicle(prefix + i, localitzacio)));
+        }
+        LocalDate dia = LocalDate.of(2026, 7, 1);
+
+        AtomicInteger reservades = new AtomicInteger();
+        List<Callable<Void>> tasques = new ArrayList<>();
+        for (int i = 0; i < PETICIONS; i++) {
+            int peticio = i;
+            Vehicle vehicle = vehicles.get(i % VEHICLES);
+            tasques.add(() -> {
+                peticio(peticio, vehicle, dia, reservades);
+                return null;
+            });
+        }
+
+        long inici = System.nanoTime();
+        Resultat resultat = executar(tasques, executor);
+        double segons = (System.nanoTime() - inici) / 1e9;
+
+        System.out.printf("Carga con hilos %s: %d peticiones en %.2f s (%.0f/s), %d reservas, %d solapadas%n",
+                mode, PETICIONS, segons, PETICIONS / segons, reservades.get(), resultat.solapades());
+        return new Ronda(resultat, reservades.get());
+    }
+
+    /**
+     * Una petición de la mezcla: la mitad son lecturas del índice, un cuarto
+     * consultas de las reservas de un periodo y el resto intentos de reserva
+     * (semanas distintas por vehículo, así que cada semana la gana una).
+     */
+    private void peticio(int peticio, Vehicle vehicle, LocalDate dia, AtomicInteger reservades) {
+        String matricula = vehicle.getMatricula();
+        switch (peticio % 8) {
+            case 0, 1 ->
+                reservaService.getCalendariVehicle(matricula, dia, dia.plusDays(60));
+            case 2, 3 ->
+                reservaService.esVehicleLliure(matricula, dia.plusDays(peticio % 30), dia.plusDays(peticio % 30 + 3), null);
+            case 4, 5 ->
+                reservaService.getReservasByVehicleAndDates(matricula, dia, dia.plusDays(30));
+            default -> {
+                LocalDate setmana = dia.plusWeeks(peticio / (8 * VEHICLES) % 8);
+                reservaService.saveReserva(DadesProva.reserva(client, vehicle, setmana, setmana.plusDays(7)));
+                reservades.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Service.MySQL.PlantillesCorreu.PlantillaCorreu;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+/**
+ * Pruebas de las plantillas de los correos con el motor de Thymeleaf de Spring y las
+ * plantillas de {@code templates/email/}.
+ */
+class PlantillesCorreuTest {
+
+    private PlantillesCorreu plantillesCorreu;
+
+    @BeforeEach
+    void preparar() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        plantillesCorreu = new PlantillesCorreu();
+        ReflectionTestUtils.setField(plantillesCorreu, "templateEngine", templateEngine);
+    }
+
+    @Test
+    void totesLesPlantillesEsGenerenAmbLesVariablesDExemple() {
+        for (PlantillaCorreu plantilla : PlantillaCorreu.values()) {
+            String html = plantillesCorreu.renderitzar(plantilla, plantilla.getVariablesExemple());
+
+            assertFalse(html.isBlank(), plantilla.name());
+            for (Object valor : plantilla.getVariablesExemple().values()) {
+                if (valor instanceof String text) {
+                    assertTrue(html.contains(text), plantilla + " no contiene " + text);
+                }
+            }
+        }
+    }
+}
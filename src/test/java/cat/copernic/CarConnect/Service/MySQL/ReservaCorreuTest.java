@@ -0,0 +1,134 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.CorreuPendent;
+import cat.copernic.CarConnect.Entity.MySQL.Enums.EstatCorreu;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Exceptions.ReservaSolapadaException;
+import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Repository.MySQL.CorreuPendentRepository;
+import cat.copernic.CarConnect.Repository.MySQL.DadesProva;
+import cat.copernic.CarConnect.Repository.MySQL.EsdevenimentHistoricRepository;
+import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
+import cat.copernic.CarConnect.Repository.MySQL.ProvaReservesAmbCorreu;
+import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Pruebas del correo de confirmación de las reservas: se deja en la cola en
+ * la misma transacción que la reserva y {@link EnviamentCorreus} lo envía a un
+ * servidor SMTP en memoria (GreenMail).
+ */
+@ProvaReservesAmbCorreu
+class ReservaCorreuTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @Autowired
+    private ReservaService reservaService;
+    @Autowired
+    private DisponibilitatService disponibilitatService;
+    @Autowired
+    private EnviamentCorreus enviamentCorreus;
+    @Autowired
+    private CorreuPendentRepository correuPendentRepository;
+    @Autowired
+    private EsdevenimentHistoricRepository esdevenimentRepository;
+    @Autowired
+    private ReservaRepository reservaRepository;
+    @Autowired
+    private VehicleRepository vehicleRepository;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private LocalitzacioRepository localitzacioRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Client client;
+    private Vehicle vehicle;
+    private final LocalDate dia = LocalDate.of(2026, 7, 1);
+
+    @BeforeEach
+    void preparar() {
+        var localitzacio = localitzacioRepository.save(DadesProva.localitzacio("08221"));
+        client = clientRepository.save(DadesProva.client("C0"));
+        vehicle = vehicleRepository.save(DadesProva.vehicle("1234ABC", localitzacio));
+    }
+
+    @AfterEach
+    void netejar() {
+        correuPendentRepository.deleteAll();
+        esdevenimentRepository.deleteAll();
+        // El índice de disponibilidad se comparte entre las pruebas
+        reservaRepository.findAll().forEach(reserva -> disponibilitatService.eliminar(reserva.getIdReserva()));
+        reservaRepository.deleteAll();
+        vehicleRepository.deleteAll();
+        clientRepository.deleteAll();
+        localitzacioRepository.deleteAll();
+    }
+
+    @Test
+    void crearReservaEncuaIEnviaLaConfirmacio() throws Exception {
+        reservaService.crearReserva(DadesProva.reserva(client, vehicle, dia, dia.plusDays(3)));
+
+        List<CorreuPendent> cua = correuPendentRepository.findAll();
+        assertEquals(1, cua.size());
+        assertEquals(EstatCorreu.PENDENT, cua.get(0).getEstat());
+        assertEquals(1, esdevenimentRepository.count());
+
+        enviamentCorreus.enviarPendents();
+
+        MimeMessage[] rebuts = greenMail.getReceivedMessages();
+        assertEquals(1, rebuts.length);
+        assertEquals("Confirmación de Reserva", rebuts[0].getSubject());
+        assertEquals(client.getEmail(), rebuts[0].getAllRecipients()[0].toString());
+        assertTrue(GreenMailUtil.getBody(rebuts[0]).contains("1234ABC"));
+        assertEquals(EstatCorreu.ENVIAT, correuPendentRepository.findAll().get(0).getEstat());
+    }
+
+    @Test
+    void unaReservaSolapadaNoEncuaCapCorreu() {
+        reservaService.crearReserva(DadesProva.reserva(client, vehicle, dia, dia.plusDays(3)));
+
+        assertThrows(ReservaSolapadaException.class,
+                () -> reservaService.crearReserva(DadesProva.reserva(client, vehicle, dia.plusDays(1), dia.plusDays(5))));
+
+        assertEquals(1, correuPendentRepository.count());
+        assertEquals(1, esdevenimentRepository.count());
+    }
+
+    @Test
+    void siLaTransaccioEsDesfaNoQuedaCapCorreu() {
+        TransactionTemplate transaccio = new TransactionTemplate(transactionManager);
+
+        assertThrows(IllegalStateException.class, () -> transaccio.executeWithoutResult(estat -> {
+            reservaService.crearReserva(DadesProva.reserva(client, vehicle, dia, dia.plusDays(3)));
+            throw new IllegalStateException("Error después de crear la reserva");
+        }));
+
+        assertEquals(0, reservaRepository.count());
+        assertEquals(0, correuPendentRepository.count());
+        assertEquals(0, esdevenimentRepository.count());
+        enviamentCorreus.enviarPendents();
+        assertEquals(0, greenMail.getReceivedMessages().length);
+    }
+}
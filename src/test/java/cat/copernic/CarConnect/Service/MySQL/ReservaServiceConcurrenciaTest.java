@@ -0,0 +1,69 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Repository.MySQL.DadesProva;
+import cat.copernic.CarConnect.Repository.MySQL.ProvaConcurrenciaReserves;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Prueba de carga de {@link ReservaService#saveReserva}: cientos de reservas
+ * simultáneas y solapadas del mismo vehículo, de las que solo puede ganar
+ * una.
+ */
+class ReservaServiceConcurrenciaTest extends ProvaConcurrenciaReserves {
+
+    private static final int PETICIONS = 300;
+    private static final int FILS = 64;
+
+    @Test
+    void deLesReservesSolapadesDelMateixVehicleNomesEnGuanyaUna() throws Exception {
+        Vehicle vehicle = vehicleRepository.save(DadesProva.vehicle("1234ABC", localitzacio));
+        LocalDate dia = LocalDate.of(2026, 7, 1);
+
+        // Periodos distintos, pero todos ocupan el día 10
+        List<Callable<Void>> tasques = new ArrayList<>();
+        for (int i = 0; i < PETICIONS; i++) {
+            LocalDate inici = dia.plusDays(i % 10);
+            LocalDate fi = dia.plusDays(11 + i % 7);
+            tasques.add(() -> {
+                reservaService.saveReserva(DadesProva.reserva(client, vehicle, inici, fi));
+                return null;
+            });
+        }
+
+        Resultat resultat = executar(tasques, Executors.newFixedThreadPool(FILS));
+
+        assertTrue(resultat.errors().isEmpty(), () -> "Errores inesperados: " + resultat.errors());
+        assertEquals(1, resultat.correctes());
+        assertEquals(PETICIONS - 1, resultat.solapades());
+        assertEquals(1, reservaRepository.findByVehicleMatricula(vehicle.getMatricula()).size());
+    }
+
+    @Test
+    void lesReservesDeVehiclesDiferentsNoEsBloquegenEntreElles() throws Exception {
+        int vehicles = 50;
+        LocalDate dia = LocalDate.of(2026, 7, 1);
+        List<Callable<Void>> tasques = new ArrayList<>();
+        for (int i = 0; i < vehicles; i++) {
+            Vehicle vehicle = vehicleRepository.save(DadesProva.vehicle("V" + i, localitzacio));
+            tasques.add(() -> {
+                reservaService.saveReserva(DadesProva.reserva(client, vehicle, dia, dia.plusDays(5)));
+                return null;
+            });
+        }
+
+        Resultat resultat = executar(tasques, Executors.newFixedThreadPool(FILS));
+
+        assertTrue(resultat.errors().isEmpty(), () -> "Errores inesperados: " + resultat.errors());
+        assertEquals(vehicles, resultat.correctes());
+        assertEquals(vehicles, reservaRepository.count());
+    }
+}
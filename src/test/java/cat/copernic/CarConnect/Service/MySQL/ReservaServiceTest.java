@@ -0,0 +1,192 @@
+package cat.copernic.CarConnect.Service.MySQL;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Entity.MySQL.Client;
+import cat.copernic.CarConnect.Entity.MySQL.EsdevenimentHistoric;
+import cat.copernic.CarConnect.Entity.MySQL.Reserva;
+import cat.copernic.CarConnect.Entity.MySQL.Vehicle;
+import cat.copernic.CarConnect.Exceptions.ReservaSolapadaException;
+import cat.copernic.CarConnect.Repository.MySQL.ClientRepository;
+import cat.copernic.CarConnect.Repository.MySQL.CorreuPendentRepository;
+import cat.copernic.CarConnect.Repository.MySQL.DadesProva;
+import cat.copernic.CarConnect.Repository.MySQL.EsdevenimentHistoricRepository;
+import cat.copernic.CarConnect.Repository.MySQL.LocalitzacioRepository;
+import cat.copernic.CarConnect.Repository.MySQL.ProvaReservesAmbCorreu;
+import cat.copernic.CarConnect.Repository.MySQL.ReservaRepository;
+import cat.copernic.CarConnect.Repository.MySQL.VehicleRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Pruebas del histórico de las reservas: cada cambio de una reserva deja su
+ * evento en la tabla de salida ({@link HistoricOutbox}) en la misma
+ * transacción. Mismo contexto que {@link ReservaCorreuTest}.
+ */
+@ProvaReservesAmbCorreu
+class ReservaServiceTest {
+
+    @Autowired
+    private ReservaService reservaService;
+    @Autowired
+    private DisponibilitatService disponibilitatService;
+    @Autowired
+    private EsdevenimentHistoricRepository esdevenimentRepository;
+    @Autowired
+    private CorreuPendentRepository correuPendentRepository;
+    @Autowired
+    private ReservaRepository reservaRepository;
+    @Autowired
+    private VehicleRepository vehicleRepository;
+    @Autowired
+    private ClientRepository clientRepository;
+    @Autowired
+    private LocalitzacioRepository localitzacioRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Client client;
+    private Vehicle vehicle;
+    private Vehicle altreVehicle;
+    private final LocalDate dia = LocalDate.of(2026, 7, 1);
+
+    @BeforeEach
+    void preparar() {
+        var localitzacio = localitzacioRepository.save(DadesProva.localitzacio("08221"));
+        client = clientRepository.save(DadesProva.client("C0"));
+        vehicle = vehicleRepository.save(DadesProva.vehicle("1234ABC", localitzacio));
+        altreVehicle = vehicleRepository.save(DadesProva.vehicle("5678DEF", localitzacio));
+    }
+
+    @AfterEach
+    void netejar() {
+        correuPendentRepository.deleteAll();
+        esdevenimentRepository.deleteAll();
+        // El índice de disponibilidad se comparte entre las pruebas
+        reservaRepository.findAll().forEach(reserva -> disponibilitatService.eliminar(reserva.getIdReserva()));
+        reservaRepository.deleteAll();
+        vehicleRepository.deleteAll();
+        clientRepository.deleteAll();
+        localitzacioRepository.deleteAll();
+    }
+
+    @Test
+    void cadaCanviDeLaReservaRegistraElSeuEstat() throws Exception {
+        Reserva reserva = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+        reservaService.crearReserva(reserva);
+        Long id = reserva.getIdReserva();
+
+        Reserva dades = DadesProva.reserva(client, altreVehicle, dia.plusDays(1), dia.plusDays(4));
+        dades.setPreuTotal(120);
+        reservaService.updateReserva(id, dades);
+        reservaService.lliurarVehicle(id);
+        reservaService.retornarVehicle(id);
+
+        Reserva cancelada = reservaService.getReservaById(id);
+        cancelada.setDataCancelacio(dia);
+        reservaService.saveReserva(cancelada);
+        reservaService.deleteReserva(id);
+
+        assertEquals(List.of("CREADA", "MODIFICADA", "LLIURADA", "RETORNADA", "CANCELADA", "ELIMINADA"), estats());
+    }
+
+    @Test
+    void updateReservaAplicaLesDadesEditades() {
+        Reserva reserva = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+        reservaService.crearReserva(reserva);
+
+        Reserva dades = DadesProva.reserva(client, altreVehicle, dia.plusDays(1), dia.plusDays(4));
+        dades.setPreuTotal(120);
+        reservaService.updateReserva(reserva.getIdReserva(), dades);
+
+        Reserva guardada = reservaService.getReservaById(reserva.getIdReserva());
+        assertEquals(altreVehicle.getMatricula(), guardada.getVehicle().getMatricula());
+        assertEquals(dia.plusDays(1), guardada.getDataHoraRecollida());
+        assertEquals(dia.plusDays(4), guardada.getDataHoraDevolucio());
+        assertEquals(120, guardada.getPreuTotal());
+        // Moverla dentro de su propio periodo no se solapa consigo misma
+        reservaService.updateReserva(reserva.getIdReserva(), dades);
+    }
+
+    @Test
+    void unaEdicioQueSolapaNoGuardaResNiRegistraEsdeveniment() throws Exception {
+        Reserva primera = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+        Reserva segona = DadesProva.reserva(client, vehicle, dia.plusDays(10), dia.plusDays(12));
+        reservaService.crearReserva(primera);
+        reservaService.crearReserva(segona);
+
+        Reserva dades = DadesProva.reserva(client, vehicle, dia.plusDays(2), dia.plusDays(11));
+        assertThrows(ReservaSolapadaException.class, () -> reservaService.updateReserva(segona.getIdReserva(), dades));
+
+        assertEquals(dia.plusDays(10), reservaService.getReservaById(segona.getIdReserva()).getDataHoraRecollida());
+        assertEquals(List.of("CREADA", "CREADA"), estats());
+    }
+
+    @Test
+    void elVehicleEsPotTornarARecollirElDiaQueEsRetorna() {
+        Reserva primera = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+        reservaService.crearReserva(primera);
+
+        // El día de devolución no está ocupado, ni en el índice ni en la base de datos
+        assertTrue(reservaService.esVehicleLliure(vehicle.getMatricula(), dia.plusDays(3), dia.plusDays(5), null));
+        assertFalse(reservaService.esVehicleLliure(vehicle.getMatricula(), dia.plusDays(2), dia.plusDays(5), null));
+        Reserva seguent = DadesProva.reserva(client, vehicle, dia.plusDays(3), dia.plusDays(5));
+        reservaService.crearReserva(seguent);
+        Reserva anterior = DadesProva.reserva(client, vehicle, dia.minusDays(2), dia);
+        reservaService.crearReserva(anterior);
+
+        Reserva solapada = DadesProva.reserva(client, vehicle, dia.plusDays(4), dia.plusDays(6));
+        assertThrows(ReservaSolapadaException.class, () -> reservaService.crearReserva(solapada));
+        // Una reserva de un solo día ocupa el día de recogida
+        Reserva unDia = DadesProva.reserva(client, vehicle, dia.plusDays(4), dia.plusDays(4));
+        assertThrows(ReservaSolapadaException.class, () -> reservaService.crearReserva(unDia));
+        assertEquals(3, reservaRepository.count());
+    }
+
+    @Test
+    void siEsDesfaLEliminacioLaReservaSegueixOcupantElVehicle() {
+        Reserva reserva = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+        reservaService.crearReserva(reserva);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(estat -> {
+            reservaService.deleteReserva(reserva.getIdReserva());
+            estat.setRollbackOnly();
+        });
+
+        assertTrue(reservaRepository.existsById(reserva.getIdReserva()));
+        assertFalse(reservaService.esVehicleLliure(vehicle.getMatricula(), dia, dia.plusDays(3), null));
+
+        reservaService.deleteReserva(reserva.getIdReserva());
+        assertTrue(reservaService.esVehicleLliure(vehicle.getMatricula(), dia, dia.plusDays(3), null));
+    }
+
+    @Test
+    void updateReservaDUnaReservaQueNoExisteFalla() {
+        Reserva dades = DadesProva.reserva(client, vehicle, dia, dia.plusDays(3));
+
+        assertThrows(IllegalArgumentException.class, () -> reservaService.updateReserva(-1L, dades));
+        assertEquals(0, esdevenimentRepository.count());
+    }
+
+    private List<String> estats() throws Exception {
+        List<String> estats = new ArrayList<>();
+        for (EsdevenimentHistoric esdeveniment : esdevenimentRepository.findAll(Sort.by("id"))) {
+            estats.add(objectMapper.readTree(esdeveniment.getDocument()).get("status").asText());
+        }
+        return estats;
+    }
+}
@@ -0,0 +1,83 @@
+package cat.copernic.CarConnect.Storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Pruebas de las comprobaciones de las subidas hacia un destino cualquiera
+ * (como los buckets de GridFS).
+ */
+class PujadaFitxersTest {
+
+    private PujadaFitxers pujadaFitxers;
+
+    @BeforeEach
+    void preparar() {
+        pujadaFitxers = new PujadaFitxers();
+        ReflectionTestUtils.setField(pujadaFitxers, "midaMaxima", DataSize.ofBytes(16));
+    }
+
+    @Test
+    void elDestiRepElContingutAmbElTipusDetectat() throws IOException {
+        byte[] pdf = "%PDF-1.7 hola".getBytes(StandardCharsets.US_ASCII);
+        MockMultipartFile fitxer = new MockMultipartFile("file", "a.html", "text/html", pdf);
+
+        String[] tipus = new String[1];
+        byte[] copiat = pujadaFitxers.pujar(fitxer, false, (in, contentType) -> {
+            tipus[0] = contentType;
+            return in.readAllBytes();
+        });
+
+        assertEquals("application/pdf", tipus[0]);
+        assertArrayEquals(pdf, copiat);
+    }
+
+    @Test
+    void esRebutjaSiLaMidaDeclaradaSuperaElMaxim() {
+        MockMultipartFile fitxer = new MockMultipartFile("file", new byte[17]);
+
+        assertThrows(FitxerMassaGranException.class,
+                () -> pujadaFitxers.pujar(fitxer, false, (in, contentType) -> in.readAllBytes()));
+    }
+
+    @Test
+    void esRebutjaSiElContingutSuperaElMaximEncaraQueLaMidaDeclaradaNo() {
+        MockMultipartFile fitxer = new MockMultipartFile("file", new byte[64]) {
+            @Override
+            public long getSize() {
+                return 1;
+            }
+        };
+
+        assertThrows(FitxerMassaGranException.class,
+                () -> pujadaFitxers.pujar(fitxer, false, (in, contentType) -> in.readAllBytes()));
+        // Igual si el destino envuelve el error de lectura en el suyo
+        assertThrows(FitxerMassaGranException.class, () -> pujadaFitxers.pujar(fitxer, false, (in, contentType) -> {
+            try {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+    }
+
+    @Test
+    void nomesImatgesRebutjaElQueNoEsImatge() {
+        MockMultipartFile fitxer = new MockMultipartFile("file", "a.png", "image/png",
+                "<svg/>".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> pujadaFitxers.pujar(fitxer, true, (in, contentType) -> in.readAllBytes()));
+    }
+}
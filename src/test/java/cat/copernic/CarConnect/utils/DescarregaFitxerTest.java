@@ -0,0 +1,64 @@
+package cat.copernic.CarConnect.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Pruebas de las cabeceras con las que {@link DescarregaFitxer} sirve los
+ * archivos subidos.
+ */
+class DescarregaFitxerTest {
+
+    private final Resource recurs = new ByteArrayResource(new byte[]{1, 2, 3});
+
+    @Test
+    void lesImatgesReconegudesEsServeixenEnLinia() {
+        ResponseEntity<Resource> resposta = DescarregaFitxer.resposta(recurs, "image/png", "fitxer-1", "abc");
+
+        assertEquals(MediaType.IMAGE_PNG, resposta.getHeaders().getContentType());
+        assertTrue(disposicio(resposta).startsWith("inline"));
+        assertTrue(disposicio(resposta).contains("fitxer-1.png"));
+        assertEquals("nosniff", resposta.getHeaders().getFirst("X-Content-Type-Options"));
+        assertEquals("\"abc\"", resposta.getHeaders().getETag());
+    }
+
+    @Test
+    void elsPdfEsServeixenEnLinia() {
+        ResponseEntity<Resource> resposta = DescarregaFitxer.resposta(recurs, "Application/PDF; name=doc", "doc", null);
+
+        assertEquals(MediaType.APPLICATION_PDF, resposta.getHeaders().getContentType());
+        assertTrue(disposicio(resposta).startsWith("inline"));
+    }
+
+    @Test
+    void elHtmlIElSvgEsDescarreguen() {
+        for (String tipus : new String[]{"text/html", "image/svg+xml", "application/xhtml+xml", "text/xml"}) {
+            ResponseEntity<Resource> resposta = DescarregaFitxer.resposta(recurs, tipus, "fitxer", null);
+
+            assertEquals(MediaType.APPLICATION_OCTET_STREAM, resposta.getHeaders().getContentType(), tipus);
+            assertTrue(disposicio(resposta).startsWith("attachment"), tipus);
+            assertEquals("nosniff", resposta.getHeaders().getFirst("X-Content-Type-Options"));
+        }
+    }
+
+    @Test
+    void unTipusMalFormatONulEsDescarrega() {
+        for (String tipus : new String[]{"no és un tipus", "image/", null, ""}) {
+            ResponseEntity<Resource> resposta = DescarregaFitxer.resposta(recurs, tipus, "fitxer", null);
+
+            assertEquals(MediaType.APPLICATION_OCTET_STREAM, resposta.getHeaders().getContentType());
+            assertTrue(disposicio(resposta).startsWith("attachment"));
+        }
+    }
+
+    private static String disposicio(ResponseEntity<Resource> resposta) {
+        return resposta.getHeaders().getFirst(HttpHeaders.CONTENT_DISPOSITION);
+    }
+}
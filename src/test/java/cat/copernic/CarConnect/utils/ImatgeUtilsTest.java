@@ -0,0 +1,109 @@
+package cat.copernic.CarConnect.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.Exceptions.FitxerMassaGranException;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la decodificación acotada de {@link ImatgeUtils}.
+ */
+class ImatgeUtilsTest {
+
+    @Test
+    void rebutjaUnaImatgeQueDeclaraMassaPixels() throws IOException {
+        // Un PNG de pocos bytes que declara 50000x50000 píxeles en la cabecera
+        byte[] png = pngAmbCapcalera(50_000, 50_000);
+
+        assertThrows(FitxerMassaGranException.class,
+                () -> ImatgeUtils.llegirImatge(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void submostrejaLesImatgesGrans() throws IOException {
+        byte[] png = png(new BufferedImage(4000, 100, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage imatge = ImatgeUtils.llegirImatge(new ByteArrayInputStream(png), 1000);
+
+        assertNotNull(imatge);
+        assertEquals(1000, imatge.getWidth());
+        assertEquals(25, imatge.getHeight());
+    }
+
+    @Test
+    void noSubmostrejaLesImatgesPetites() throws IOException {
+        byte[] png = png(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage imatge = ImatgeUtils.llegirImatge(new ByteArrayInputStream(png), 1600);
+
+        assertEquals(300, imatge.getWidth());
+        assertEquals(200, imatge.getHeight());
+    }
+
+    @Test
+    void retornaNullSiNoEsUnaImatge() throws IOException {
+        byte[] text = "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8);
+
+        assertNull(ImatgeUtils.llegirImatge(new ByteArrayInputStream(text)));
+    }
+
+    @Test
+    void elResultatEsMaiMenorQueLaMidaDemanada() throws IOException {
+        byte[] png = png(new BufferedImage(3999, 10, BufferedImage.TYPE_INT_RGB));
+
+        BufferedImage imatge = ImatgeUtils.llegirImatge(new ByteArrayInputStream(png), 1600);
+
+        assertTrue(imatge.getWidth() >= 1600);
+    }
+
+    private static byte[] png(BufferedImage imatge) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(imatge, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Construye un PNG con una cabecera IHDR válida y sin datos de imagen.
+     */
+    private static byte[] pngAmbCapcalera(int amplada, int alcada) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+        DataOutputStream cos = new DataOutputStream(ihdr);
+        cos.writeInt(amplada);
+        cos.writeInt(alcada);
+        cos.writeByte(8); // Bits por canal
+        cos.writeByte(2); // RGB
+        cos.writeByte(0);
+        cos.writeByte(0);
+        cos.writeByte(0);
+        chunk(data, "IHDR", ihdr.toByteArray());
+        chunk(data, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    private static void chunk(DataOutputStream out, String tipus, byte[] cos) throws IOException {
+        byte[] nom = tipus.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(nom);
+        crc.update(cos);
+        out.writeInt(cos.length);
+        out.write(nom);
+        out.write(cos);
+        out.writeInt((int) crc.getValue());
+    }
+}
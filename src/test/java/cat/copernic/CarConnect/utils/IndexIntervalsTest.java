@@ -0,0 +1,151 @@
+package cat.copernic.CarConnect.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import cat.copernic.CarConnect.utils.IndexIntervals.Interval;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas del índice de intervalos semiabiertos de la disponibilidad de los
+ * vehículos.
+ */
+class IndexIntervalsTest {
+
+    @Test
+    void lIndexBuitNoSolapaAmbRes() {
+        assertFalse(IndexIntervals.BUIT.solapa(0, 10, null));
+        assertTrue(IndexIntervals.BUIT.solapats(0, 10).isEmpty());
+        assertTrue(IndexIntervals.BUIT.fusionats(0, 10).isEmpty());
+        assertEquals(0, IndexIntervals.BUIT.mida());
+    }
+
+    @Test
+    void elsIntervalsContigusNoEsSolapen() {
+        IndexIntervals index = IndexIntervals.BUIT.amb(1, 10, 15);
+
+        assertFalse(index.solapa(5, 10, null)); // acaba justo cuando empieza
+        assertFalse(index.solapa(15, 20, null)); // empieza justo cuando acaba
+        assertTrue(index.solapa(9, 11, null));
+        assertTrue(index.solapa(14, 15, null));
+        assertTrue(index.solapa(0, 100, null)); // lo contiene
+        assertTrue(index.solapa(11, 12, null)); // está contenido
+    }
+
+    @Test
+    void unIntervalLlargAnteriorEsTrobaEncaraQueNoSiguiElDarrer() {
+        // El que empieza antes acaba después de los siguientes: el fin
+        // máximo acumulado es el que detecta el solapamiento
+        IndexIntervals index = IndexIntervals.BUIT
+                .amb(1, 0, 100)
+                .amb(2, 10, 12)
+                .amb(3, 20, 22);
+
+        assertTrue(index.solapa(50, 60, null));
+        assertEquals(List.of(1L), index.solapats(50, 60));
+        assertEquals(List.of(1L, 3L), index.solapats(21, 60));
+    }
+
+    @Test
+    void elIntervalExclosNoCompta() {
+        IndexIntervals index = IndexIntervals.BUIT
+                .amb(1, 10, 20)
+                .amb(2, 30, 40);
+
+        assertFalse(index.solapa(12, 18, 1L));
+        assertTrue(index.solapa(12, 18, 2L));
+        // Con dos candidatos, excluir uno no oculta el otro
+        assertTrue(index.amb(3, 15, 25).solapa(12, 18, 1L));
+        assertTrue(index.solapa(15, 35, 1L));
+    }
+
+    @Test
+    void ambSubstitueixElMateixId() {
+        IndexIntervals index = IndexIntervals.BUIT
+                .amb(1, 10, 20)
+                .amb(1, 50, 60);
+
+        assertEquals(1, index.mida());
+        assertFalse(index.solapa(10, 20, null));
+        assertTrue(index.solapa(55, 56, null));
+    }
+
+    @Test
+    void senseUnIdQueNoHiEsRetornaElMateixIndex() {
+        IndexIntervals index = IndexIntervals.BUIT.amb(1, 10, 20);
+
+        assertSame(index, index.sense(2));
+        assertEquals(0, index.sense(1).mida());
+        assertEquals(1, index.mida()); // las modificaciones no cambian el original
+    }
+
+    @Test
+    void elsIntervalsAmbElMateixIniciEsConserven() {
+        IndexIntervals index = IndexIntervals.BUIT
+                .amb(1, 10, 12)
+                .amb(2, 10, 30)
+                .amb(3, 10, 11);
+
+        assertEquals(List.of(1L, 2L, 3L), index.solapats(10, 11));
+        assertEquals(List.of(2L), index.solapats(20, 21));
+    }
+
+    @Test
+    void fusionatsUneixElsSolapatsIContigus() {
+        IndexIntervals index = IndexIntervals.BUIT
+                .amb(1, 0, 5)
+                .amb(2, 5, 8) // contiguo al anterior
+                .amb(3, 7, 10) // solapado
+                .amb(4, 20, 25)
+                .amb(5, 40, 45); // fuera del rango consultado
+
+        assertEquals(List.of(new Interval(0, 10), new Interval(20, 25)), index.fusionats(3, 30));
+        assertEquals(List.of(new Interval(20, 25)), index.fusionats(10, 30));
+    }
+
+    @Test
+    void coincideixAmbLaCercaExhaustiva() {
+        Random random = new Random(42);
+        Map<Long, long[]> intervals = new LinkedHashMap<>();
+        IndexIntervals index = IndexIntervals.BUIT;
+
+        for (int pas = 0; pas < 2_000; pas++) {
+            long id = random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                index = index.sense(id);
+                intervals.remove(id);
+            } else {
+                long inici = random.nextInt(365);
+                long fi = inici + 1 + random.nextInt(30);
+                index = index.amb(id, inici, fi);
+                intervals.put(id, new long[]{inici, fi});
+            }
+
+            long a = random.nextInt(400);
+            long b = a + 1 + random.nextInt(40);
+            Long excloure = random.nextBoolean() ? Long.valueOf(random.nextInt(60)) : null;
+
+            List<Long> esperats = new ArrayList<>();
+            boolean solapa = false;
+            for (Map.Entry<Long, long[]> interval : intervals.entrySet()) {
+                if (interval.getValue()[0] < b && interval.getValue()[1] > a) {
+                    esperats.add(interval.getKey());
+                    solapa |= !interval.getKey().equals(excloure);
+                }
+            }
+
+            assertEquals(intervals.size(), index.mida());
+            assertEquals(solapa, index.solapa(a, b, excloure));
+            List<Long> solapats = index.solapats(a, b);
+            assertEquals(esperats.size(), solapats.size());
+            assertTrue(solapats.containsAll(esperats));
+        }
+    }
+}
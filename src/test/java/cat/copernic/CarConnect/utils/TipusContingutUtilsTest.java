@@ -0,0 +1,48 @@
+package cat.copernic.CarConnect.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de la detección del tipo de contenido por su firma.
+ */
+class TipusContingutUtilsTest {
+
+    @Test
+    void detectaLesFirmesConegudes() {
+        assertEquals("image/jpeg", TipusContingutUtils.detectar(bytes(0xFF, 0xD8, 0xFF, 0xE0)));
+        assertEquals("image/png", TipusContingutUtils.detectar(bytes(0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)));
+        assertEquals("image/gif", TipusContingutUtils.detectar("GIF89a".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("image/webp", TipusContingutUtils.detectar("RIFF\0\0\0\0WEBP".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("application/pdf", TipusContingutUtils.detectar("%PDF-1.7".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void siNoEsReconeixEsBinariGeneric() {
+        byte[] svg = "<svg xmlns=\"http://www.w3.org/2000/svg\"><script>".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(TipusContingutUtils.OCTET_STREAM, TipusContingutUtils.detectar(svg));
+        assertEquals(TipusContingutUtils.OCTET_STREAM, TipusContingutUtils.detectar(new byte[0]));
+    }
+
+    @Test
+    void nomesSonImatgesLesQueEsReconeixenPerLaFirma() {
+        assertTrue(TipusContingutUtils.esImatge("image/png"));
+        assertFalse(TipusContingutUtils.esImatge("image/svg+xml"));
+        assertFalse(TipusContingutUtils.esImatge("image/x-icon"));
+        assertFalse(TipusContingutUtils.esImatge(TipusContingutUtils.OCTET_STREAM));
+        assertFalse(TipusContingutUtils.esImatge(null));
+    }
+
+    private static byte[] bytes(int... valors) {
+        byte[] resultat = new byte[valors.length];
+        for (int i = 0; i < valors.length; i++) {
+            resultat[i] = (byte) valors[i];
+        }
+        return resultat;
+    }
+}